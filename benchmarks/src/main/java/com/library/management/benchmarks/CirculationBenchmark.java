@@ -0,0 +1,30 @@
+package com.library.management.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Borrow/return round trips, including journal appends, group commit and
+// the periodic snapshots they trigger
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class CirculationBenchmark {
+
+    @Benchmark
+    public boolean borrowAndReturn(LibraryState state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String userId = "id-" + random.nextInt(state.users);
+        String isbn = SyntheticCatalog.isbn(random.nextInt(state.books));
+        return state.library.borrowBook(userId, isbn) && state.library.returnBook(userId, isbn);
+    }
+}
@@ -0,0 +1,111 @@
+package com.library.management.benchmarks;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.library.management.index.NGramIndex;
+import com.library.management.models.Book;
+import com.library.management.stats.CatalogColumns;
+
+// Whole-catalog aggregations over the column store against the same loops
+// over the Book objects, iterated the way Library holds them (map values).
+// Both sides accumulate into the same dense arrays, so the difference is the
+// memory layout being scanned.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnarBenchmark {
+    @Param({"100000", "1000000"})
+    private int books;
+
+    private Map<String, Book> booksByIsbn;
+    private CatalogColumns columns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        booksByIsbn = new ConcurrentHashMap<>();
+        for (Book book : SyntheticCatalog.books(books)) {
+            booksByIsbn.put(book.getIsbn(), book);
+        }
+        columns = new CatalogColumns();
+        columns.addAll(booksByIsbn.values());
+    }
+
+    @Benchmark
+    public Map<Integer, Long> columnsBooksByYear() {
+        return columns.countByYear();
+    }
+
+    @Benchmark
+    public Map<Integer, Long> objectsBooksByYear() {
+        int minYear = Integer.MAX_VALUE;
+        int maxYear = Integer.MIN_VALUE;
+        for (Book book : booksByIsbn.values()) {
+            minYear = Math.min(minYear, book.getYear());
+            maxYear = Math.max(maxYear, book.getYear());
+        }
+        long[] counts = new long[maxYear - minYear + 1];
+        for (Book book : booksByIsbn.values()) {
+            counts[book.getYear() - minYear]++;
+        }
+        Map<Integer, Long> result = new TreeMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                result.put(minYear + i, counts[i]);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Map<String, Long> columnsOnLoanByGenre() {
+        return columns.onLoanByGenre();
+    }
+
+    @Benchmark
+    public Map<String, Long> objectsOnLoanByGenre() {
+        long[] totals = new long[Book.GENRES.size() + 1];
+        for (Book book : booksByIsbn.values()) {
+            totals[book.getGenreId() + 1] += book.getTotalCopies() - book.getAvailableCopies() - book.getHeldCopies();
+        }
+        Map<String, Long> result = new TreeMap<>();
+        for (int slot = 0; slot < totals.length; slot++) {
+            if (totals[slot] != 0) {
+                result.merge(NGramIndex.normalize(Book.GENRES.get(slot - 1)), totals[slot], Long::sum);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long columnsTotalTimesBorrowed() {
+        return columns.totalTimesBorrowed();
+    }
+
+    @Benchmark
+    public long objectsTotalTimesBorrowed() {
+        long total = 0;
+        for (Book book : booksByIsbn.values()) {
+            total += book.getTimesBorrowed();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,75 @@
+package com.library.management.benchmarks;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+
+// Read paths of the public Library API
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LibraryBenchmark {
+
+    @Benchmark
+    public List<Book> findBooksByTitle(LibraryState state) {
+        return state.library.findBooksByTitle("garden " + ThreadLocalRandom.current().nextInt(100000));
+    }
+
+    @Benchmark
+    public List<Book> findBooksByAuthor(LibraryState state) {
+        return state.library.findBooksByAuthor("Author " + ThreadLocalRandom.current().nextInt(50000));
+    }
+
+    @Benchmark
+    public List<Book> findBooksByGenre(LibraryState state) {
+        return state.library.findBooksByGenre("poetry");
+    }
+
+    @Benchmark
+    public List<Book> getSortedBooks(LibraryState state) {
+        return state.library.getSortedBooks("title");
+    }
+
+    @Benchmark
+    public List<Book> getSortedBooksPage(LibraryState state) {
+        Book after = state.library.findBookByIsbn(SyntheticCatalog.isbn(ThreadLocalRandom.current().nextInt(state.books)));
+        return state.library.getSortedBooks("title", after, 20);
+    }
+
+    @Benchmark
+    public boolean authenticateUser(LibraryState state) {
+        int user = ThreadLocalRandom.current().nextInt(state.users);
+        return state.library.authenticateUser(SyntheticCatalog.username(user), SyntheticCatalog.password(user));
+    }
+
+    @Benchmark
+    public Book getMostBorrowedBook(LibraryState state) {
+        return state.library.getMostBorrowedBook();
+    }
+
+    @Benchmark
+    public LibraryUser getMostActiveUser(LibraryState state) {
+        return state.library.getMostActiveUser();
+    }
+
+    @Benchmark
+    public int countBooksAndUsers(LibraryState state) {
+        Collection<?> books = state.library.getAllBooks();
+        Collection<?> users = state.library.getAllUsers();
+        return books.size() + users.size();
+    }
+}
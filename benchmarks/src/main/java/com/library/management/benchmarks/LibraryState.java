@@ -0,0 +1,61 @@
+package com.library.management.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.library.management.Library;
+import com.library.management.LibraryConfig;
+
+// A Library loaded from a synthetic snapshot in a scratch directory.
+// Catalogs up to 10M books are supported, e.g. -p books=10000000 -p users=1000000.
+@State(Scope.Benchmark)
+public class LibraryState {
+    @Param({"10000", "100000", "1000000"})
+    public int books;
+
+    @Param({"10000"})
+    public int users;
+
+    public Path directory;
+    public Library library;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("library-bench");
+        SyntheticCatalog.writeSnapshot(directory, books, users);
+        library = open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        library.close();
+        delete(directory);
+    }
+
+    public Library open() {
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(directory);
+        return new Library(config);
+    }
+
+    static void delete(Path directory) throws IOException {
+        // Deepest paths first, so directories such as history/ are empty when reached
+        try (Stream<Path> files = Files.walk(directory).sorted(Comparator.reverseOrder())) {
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                Files.delete(iterator.next());
+            }
+        }
+    }
+}
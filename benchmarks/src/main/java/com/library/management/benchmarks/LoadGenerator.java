@@ -0,0 +1,197 @@
+package com.library.management.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.management.Library;
+import com.library.management.LibraryConfig;
+import com.library.management.metrics.LatencyHistogram;
+import com.library.management.server.LibraryServer;
+
+// Closed-loop load test of the HTTP service. Starts a LibraryServer on a
+// synthetic catalog in a scratch directory, logs in one session per client,
+// and has every client send requests back to back: mostly searches, plus
+// borrows and returns. Requests during the warm-up are not counted. Reports
+// throughput and latency percentiles per request type.
+//   java -cp target/benchmarks.jar com.library.management.benchmarks.LoadGenerator \
+//       [books] [users] [clients] [seconds] [warmupSeconds]
+// Client and server share the JVM and its CPUs, so results are a lower bound.
+public final class LoadGenerator {
+    private static final String[] TYPES = {"search", "borrow", "return"};
+
+    private final String baseUrl;
+    private final int books;
+    private final int users;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+    private final LatencyHistogram[] latencies;
+    private final LongAdder[] failures;
+    private volatile boolean recording;
+    private volatile boolean running;
+
+    private LoadGenerator(String baseUrl, int books, int users) {
+        this.baseUrl = baseUrl;
+        this.books = books;
+        this.users = users;
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10)).build();
+        this.objectMapper = new ObjectMapper();
+        this.latencies = new LatencyHistogram[TYPES.length];
+        this.failures = new LongAdder[TYPES.length];
+        for (int i = 0; i < TYPES.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            failures[i] = new LongAdder();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        int warmup = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+
+        Path directory = Files.createTempDirectory("library-load");
+        SyntheticCatalog.writeSnapshot(directory, books, users);
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(directory);
+        config.setHttpPort(0);
+        config.setJmxEnabled(false);
+        Library library = new Library(config);
+        LibraryServer server = new LibraryServer(library, config);
+        server.start();
+        try {
+            LoadGenerator generator = new LoadGenerator("http://localhost:" + server.getPort(), books, users);
+            generator.run(Math.min(clients, users), seconds, warmup);
+        } finally {
+            server.stop(0);
+            library.close();
+            LibraryState.delete(directory);
+        }
+    }
+
+    private void run(int clients, int seconds, int warmup) throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch loggedIn = new CountDownLatch(clients);
+        running = true;
+        for (int i = 0; i < clients; i++) {
+            int userIndex = i;
+            Thread thread = new Thread(() -> client(userIndex, loggedIn), "load-client-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        loggedIn.await();
+        Thread.sleep(warmup * 1000L);
+        recording = true;
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        recording = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        report(clients, elapsed);
+    }
+
+    // One patron: borrows only while it has fewer than 5 books, returns the oldest loan
+    private void client(int userIndex, CountDownLatch loggedIn) {
+        Random random = new Random(userIndex);
+        List<String> loans = new ArrayList<>();
+        String token;
+        try {
+            token = login(userIndex);
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Error logging in: " + e.getMessage());
+            return;
+        } finally {
+            loggedIn.countDown();
+        }
+        while (running) {
+            int roll = random.nextInt(10);
+            int type = roll < 8 ? 0 : roll == 8 && loans.size() < 5 ? 1 : loans.isEmpty() ? 0 : 2;
+            HttpRequest request;
+            String isbn = null;
+            if (type == 0) {
+                request = get("/books?title=" + SyntheticCatalog.word(random) + "&limit=20", token);
+            } else if (type == 1) {
+                isbn = SyntheticCatalog.isbn(random.nextInt(books));
+                request = post("/loans", "{\"isbn\":\"" + isbn + "\"}", token);
+            } else {
+                isbn = loans.remove(0);
+                request = HttpRequest.newBuilder(URI.create(baseUrl + "/loans/" + isbn))
+                        .header("Authorization", "Bearer " + token).DELETE().build();
+            }
+            long start = System.nanoTime();
+            int status;
+            try {
+                status = client.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+            } catch (IOException | InterruptedException e) {
+                status = -1;
+            }
+            if (recording) {
+                latencies[type].record(System.nanoTime() - start);
+                // 409 is a refused borrow, e.g. no copy left: an answer, not a failure
+                if (status != 200 && status != 409) {
+                    failures[type].increment();
+                }
+            }
+            if (type == 1 && status == 200) {
+                loans.add(isbn);
+            }
+        }
+    }
+
+    private String login(int userIndex) throws IOException, InterruptedException {
+        String body = objectMapper.writeValueAsString(Map.of(
+                "username", SyntheticCatalog.username(userIndex), "password", SyntheticCatalog.password(userIndex)));
+        HttpResponse<byte[]> response = client.send(post("/login", body, null), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("login returned " + response.statusCode());
+        }
+        return objectMapper.readTree(response.body()).get("token").asText();
+    }
+
+    private HttpRequest get(String path, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).header("Authorization", "Bearer " + token).GET().build();
+    }
+
+    private HttpRequest post(String path, String body, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder.build();
+    }
+
+    private void report(int clients, double elapsed) {
+        System.out.printf("%d books, %d users, %d clients, %.1f s measured%n", books, users, clients, elapsed);
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %8s%n",
+                "request", "count", "req/s", "p50 us", "p99 us", "max us", "errors");
+        long total = 0;
+        for (int i = 0; i < TYPES.length; i++) {
+            LatencyHistogram histogram = latencies[i];
+            total += histogram.getCount();
+            System.out.printf("%-8s %10d %10.0f %10.1f %10.1f %10.1f %8d%n", TYPES[i], histogram.getCount(),
+                    histogram.getCount() / elapsed, histogram.getPercentileNanos(50) / 1e3,
+                    histogram.getPercentileNanos(99) / 1e3, histogram.getMaxNanos() / 1e3, failures[i].sum());
+        }
+        System.out.printf("%-8s %10d %10.0f%n", "total", total, total / elapsed);
+    }
+}
@@ -0,0 +1,82 @@
+package com.library.management.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.library.management.models.Book;
+import com.library.management.query.BookQuery;
+import com.library.management.query.QueryExecutor;
+
+// Sequential scan against the fork-join path for the same combined query,
+// across catalog sizes; the crossover sets LibraryConfig.parallelQueryThreshold.
+// "threshold" is the executor's sequential threshold (-p threshold=0 forces the
+// fork-join path at every size) and "threads" the pool parallelism, 0 meaning
+// one per available processor.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+    @Param({"1000", "10000", "50000", "100000", "1000000"})
+    private int books;
+
+    @Param({"10000"})
+    private int threshold;
+
+    @Param({"0"})
+    private int threads;
+
+    @Param({"all", "limit"})
+    private String shape;
+
+    private List<Book> catalog;
+    private ForkJoinPool pool;
+    private QueryExecutor sequential;
+    private QueryExecutor parallel;
+    private BookQuery query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalog = SyntheticCatalog.books(books);
+        pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        sequential = new QueryExecutor(pool, Integer.MAX_VALUE);
+        parallel = new QueryExecutor(pool, threshold);
+        // Title + author + year range: no single index covers it
+        query = new BookQuery().titleContains("river").authorContains("7").yearBetween(1950, 1999);
+        if ("limit".equals(shape)) {
+            query.limit(20);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<Book> sequential() {
+        return sequential.execute(query, catalog, catalog.size());
+    }
+
+    @Benchmark
+    public List<Book> parallel() {
+        return parallel.execute(query, catalog, catalog.size());
+    }
+}
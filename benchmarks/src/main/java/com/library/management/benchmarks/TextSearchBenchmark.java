@@ -0,0 +1,60 @@
+package com.library.management.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.library.management.index.NGramIndex;
+import com.library.management.models.Book;
+
+// Compares the title n-gram index against the linear scan it replaced
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextSearchBenchmark {
+    @Param({"10000", "1000000"})
+    private int books;
+
+    @Param({"quantum", "river 4242", "ab", "zzzz"})
+    private String query;
+
+    private List<Book> catalog;
+    private NGramIndex titleIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalog = SyntheticCatalog.books(books);
+        titleIndex = new NGramIndex();
+        for (Book book : catalog) {
+            titleIndex.add(book, book.getTitle());
+        }
+    }
+
+    @Benchmark
+    public List<Book> scan() {
+        return catalog.stream()
+                .filter(book -> book.getTitle().toLowerCase().contains(query.toLowerCase()))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Book> index() {
+        return titleIndex.search(query);
+    }
+}
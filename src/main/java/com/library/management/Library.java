@@ -1,210 +1,1504 @@
 package com.library.management;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.management.concurrent.ExpiryScheduler;
+import com.library.management.concurrent.StripedLock;
+import com.library.management.index.CatalogIndex;
+import com.library.management.index.SearchCache;
+import com.library.management.index.SortedCatalog;
+import com.library.management.loans.LoanLedger;
+import com.library.management.loans.OverdueListener;
+import com.library.management.metrics.LibraryMetrics;
+import com.library.management.metrics.LibraryMetrics.Operation;
 import com.library.management.models.Book;
+import com.library.management.models.BookChangeListener;
+import com.library.management.models.BookSymbols;
 import com.library.management.models.LibraryUser;
+import com.library.management.models.Loan;
+import com.library.management.models.Reservations;
 import com.library.management.models.User;
+import com.library.management.persistence.Journal;
+import com.library.management.persistence.JournalEntry;
+import com.library.management.persistence.SegmentedHistoryArchive;
+import com.library.management.persistence.SnapshotFormat;
+import com.library.management.persistence.SnapshotStore;
+import com.library.management.query.BookQuery;
+import com.library.management.query.QueryExecutor;
+import com.library.management.replication.ChangeListener;
+import com.library.management.security.Authenticator;
+import com.library.management.security.PasswordHasher;
+import com.library.management.stats.CatalogColumns;
+import com.library.management.stats.LibraryStatistics;
 
-public class Library {
+public class Library implements LibraryApi {
     private Map<String, Book> booksByIsbn;
     private Map<String, User> users;
-    private static final String BOOKS_FILE = "books.json";
-    private static final String USERS_FILE = "users.json";
+    private Map<String, User> usersByUsername;
+    private static final String JOURNAL_FILE = "journal.log";
+    private static final String HISTORY_DIRECTORY = "history";
+    private static final String METRICS_FILE = "metrics.log";
+    private static final int LOCK_STRIPES = 256;
+    private static final int STATE_BATCH_SIZE = 10000;  // Books per entry of a captured state
+    private final LibraryConfig config;
     private final ObjectMapper objectMapper;
+    private final SnapshotStore snapshotStore;
+    private final SegmentedHistoryArchive historyArchive;
+    private final Set<LibraryUser> historyToSpill;  // Users whose in-memory history is full
+    private final Set<String> changedIsbns;    // Books added, changed or removed since the last snapshot
+    private final Set<String> changedUserIds;  // Likewise for users
+    private final BookSymbols bookSymbols;  // Author and genre tables of this library's books
+    private final CatalogIndex catalogIndex;
+    private final SortedCatalog sortedCatalog;
+    private final SearchCache searchCache;
+    private final QueryExecutor queryExecutor;
+    private final LibraryStatistics statistics;
+    private final CatalogColumns catalogColumns;  // Null unless config.isColumnarCatalog()
+    private final LibraryMetrics metrics;
+    private final Authenticator authenticator;
+    private volatile Thread passwordMigration;  // Null unless plaintext passwords were loaded
+    private final BookChangeListener bookChangeListener;
+    private final StripedLock bookLocks;
+    private final StripedLock userLocks;
+    private final ReadWriteLock checkpointLock;  // Held exclusively while a snapshot is taken
+    private final ExpiryScheduler<Hold> holdExpiry;
+    private final LoanLedger loanLedger;
+    private volatile OverdueListener overdueListener;
+    private volatile ChangeListener changeListener;
+    private volatile boolean standby;  // Applies only a primary's changes until promoted
+    private final ScheduledExecutorService backgroundExecutor;  // Snapshots and metric dumps, off the request path
+    private final AtomicBoolean snapshotPending;
+    private final AtomicBoolean closed;
+    private Journal journal;
 
     public Library() {
-        this.booksByIsbn = new HashMap<>();
-        this.users = new HashMap<>();
+        this(new LibraryConfig());
+    }
+
+    public Library(LibraryConfig config) {
+        this.config = config;
         this.objectMapper = new ObjectMapper();
+        this.snapshotStore = new SnapshotStore(config.getDataDirectory(), objectMapper, config.getSnapshotFormat());
+        this.historyArchive = new SegmentedHistoryArchive(config.getDataDirectory().resolve(HISTORY_DIRECTORY));
+        this.historyToSpill = ConcurrentHashMap.newKeySet();
+        this.changedIsbns = ConcurrentHashMap.newKeySet();
+        this.changedUserIds = ConcurrentHashMap.newKeySet();
+        this.bookSymbols = new BookSymbols();
+        this.catalogIndex = new CatalogIndex();
+        this.sortedCatalog = new SortedCatalog();
+        this.searchCache = new SearchCache(config.getSearchCacheSize());
+        this.queryExecutor = new QueryExecutor(ForkJoinPool.commonPool(), config.getParallelQueryThreshold());
+        this.statistics = new LibraryStatistics(bookSymbols);
+        this.catalogColumns = config.isColumnarCatalog() ? new CatalogColumns(bookSymbols) : null;
+        this.bookChangeListener = this::bookChanged;
+        this.bookLocks = new StripedLock(LOCK_STRIPES);
+        this.userLocks = new StripedLock(LOCK_STRIPES);
+        this.checkpointLock = new ReentrantReadWriteLock();
+        this.metrics = new LibraryMetrics(config.getDataDirectory().toAbsolutePath().normalize().toString());
+        this.backgroundExecutor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "library-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.snapshotPending = new AtomicBoolean();
+        this.closed = new AtomicBoolean();
+        this.holdExpiry = new ExpiryScheduler<>("hold-expiry", this::expireHolds);
+        this.loanLedger = new LoanLedger(config.getOverdueCheckIntervalMillis(), System.currentTimeMillis());
+        this.standby = config.isStandby();
+        this.authenticator = new Authenticator(config.getPasswordHashIterations(), config.getHashingThreads(),
+                config.getCredentialCacheSize(), config.getCredentialCacheTtlMillis());
+        long start = System.nanoTime();
         loadData();
+        this.passwordMigration = migratePasswords();
+        metrics.record(Operation.LOAD, start);
+        holdExpiry.start();
+        startMetrics();
+        backgroundExecutor.scheduleAtFixedRate(this::checkOverdue, 0, config.getOverdueCheckIntervalMillis(),
+                TimeUnit.MILLISECONDS);
     }
 
     // Book Management Methods
+    @Override
     public boolean addBook(Book book) {
-        if (!booksByIsbn.containsKey(book.getIsbn())) {
-            booksByIsbn.put(book.getIsbn(), book);
-            saveData();
-            return true;
+        long start = System.nanoTime();
+        boolean added = mutate(() -> {
+            book.setSymbols(bookSymbols);
+            if (booksByIsbn.putIfAbsent(book.getIsbn(), book) != null) {
+                return null;
+            }
+            indexBook(book);
+            statistics.bookAdded(book);
+            return JournalEntry.addBook(book);
+        }, bookLocks.get(book.getIsbn()));
+        metrics.record(Operation.ADD_BOOK, start, added);
+        return added;
+    }
+
+    // Adds a batch of books as one persistence commit and returns the ones
+    // added; ISBNs already in the catalog are skipped. Small batches become a
+    // single journal entry, batches of snapshotInterval or more go straight
+    // into a snapshot. The checkpoint write lock keeps other mutations out
+    // while the batch is applied. A batch that could not be committed throws
+    // UncheckedIOException; if it was meant for a snapshot it is also taken
+    // back out of the catalog.
+    @Override
+    public List<Book> addBooks(Collection<Book> books) {
+        long start = System.nanoTime();
+        checkWritable();
+        checkpointLock.writeLock().lock();
+        try {
+            List<Book> added = new ArrayList<>(books.size());
+            for (Book book : books) {
+                book.setSymbols(bookSymbols);
+                if (booksByIsbn.putIfAbsent(book.getIsbn(), book) == null) {
+                    added.add(book);
+                }
+            }
+            if (added.isEmpty()) {
+                return added;
+            }
+            boolean snapshot = added.size() >= config.getSnapshotInterval();
+            if (snapshot) {
+                // Nothing is journaled, so the batch must be marked changed
+                // for a segmented snapshot to write it. Written before
+                // indexing, so a failure only has the map and the marks to undo.
+                List<String> marked = new ArrayList<>(added.size());
+                for (Book book : added) {
+                    if (changedIsbns.add(book.getIsbn())) {
+                        marked.add(book.getIsbn());
+                    }
+                }
+                try {
+                    writeSnapshot();
+                } catch (IOException e) {
+                    for (Book book : added) {
+                        booksByIsbn.remove(book.getIsbn());
+                    }
+                    changedIsbns.removeAll(marked);
+                    throw new UncheckedIOException("Unable to snapshot the imported books", e);
+                }
+            }
+            indexBooks(added);
+            statistics.booksAdded(added);
+            if (snapshot) {
+                publishUnjournaled(JournalEntry.addBooks(added));
+            } else {
+                JournalEntry entry = JournalEntry.addBooks(added);
+                record(entry);
+                try {
+                    journal.sync();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to journal " + entry.getType(), e);
+                }
+            }
+            return added;
+        } finally {
+            checkpointLock.writeLock().unlock();
+            metrics.record(Operation.ADD_BOOK, start);
         }
-        return false;
     }
 
+    // Refused while copies are on loan or held, or patrons are waiting, so no
+    // loan or reservation is ever left pointing at a book outside the catalog
+    @Override
     public boolean removeBook(String isbn) {
-        if (booksByIsbn.containsKey(isbn)) {
+        long start = System.nanoTime();
+        boolean removed = mutate(() -> {
+            Book book = booksByIsbn.get(isbn);
+            if (book == null || book.getAvailableCopies() < book.getTotalCopies() || book.hasWaitingList()) {
+                return null;
+            }
             booksByIsbn.remove(isbn);
-            saveData();
-            return true;
-        }
-        return false;
+            unindexBook(book);
+            statistics.bookRemoved(book);
+            return JournalEntry.removeBook(isbn);
+        }, bookLocks.get(isbn));
+        metrics.record(Operation.REMOVE_BOOK, start, removed);
+        return removed;
     }
 
+    @Override
     public Book findBookByIsbn(String isbn) {
-        return booksByIsbn.get(isbn);
+        long start = System.nanoTime();
+        Book book = booksByIsbn.get(isbn);
+        metrics.record(Operation.LOOKUP, start, book != null);
+        return book;
     }
 
+    @Override
     public List<Book> findBooksByTitle(String title) {
-        return booksByIsbn.values().stream()
-                .filter(book -> book.getTitle().toLowerCase().contains(title.toLowerCase()))
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        return searched(cachedSearch(SearchCache.Field.TITLE, title, catalogIndex::findByTitle), start);
     }
 
+    @Override
     public List<Book> findBooksByAuthor(String author) {
-        return booksByIsbn.values().stream()
-                .filter(book -> book.getAuthor().toLowerCase().contains(author.toLowerCase()))
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        return searched(cachedSearch(SearchCache.Field.AUTHOR, author, catalogIndex::findByAuthor), start);
     }
 
+    @Override
     public List<Book> findBooksByGenre(String genre) {
-        return booksByIsbn.values().stream()
-                .filter(book -> book.getGenre().toLowerCase().equals(genre.toLowerCase()))
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        return searched(cachedSearch(SearchCache.Field.GENRE, genre, catalogIndex::findByGenre), start);
+    }
+
+    // Scans the catalog for books matching every criterion of the query
+    @Override
+    public List<Book> findBooks(BookQuery query) {
+        long start = System.nanoTime();
+        Collection<Book> source = query.getOrder() == null ? booksByIsbn.values() : sortedCatalog.view(query.getOrder());
+        return searched(queryExecutor.execute(query, bookSymbols, source, booksByIsbn.size()), start);
+    }
+
+    private List<Book> cachedSearch(SearchCache.Field field, String term, Function<String, List<Book>> search) {
+        List<Book> cached = searchCache.get(field, term);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
+        long generation = searchCache.getGeneration();
+        List<Book> results = search.apply(term);
+        searchCache.put(field, term, results, generation);
+        return results;
+    }
+
+    private List<Book> searched(List<Book> results, long start) {
+        metrics.record(Operation.SEARCH, start, !results.isEmpty());
+        return results;
     }
 
     // User Management Methods
+    // A plaintext password is replaced by its hash before the user is stored
+    @Override
     public boolean addUser(User user) {
-        if (!users.containsKey(user.getUserId())) {
-            users.put(user.getUserId(), user);
-            saveData();
-            return true;
+        long start = System.nanoTime();
+        // A null password is a record that cannot log in, such as a shard's circulation record
+        if (user.getPassword() != null && !PasswordHasher.isHash(user.getPassword())) {
+            user.setPassword(authenticator.hash(user.getPassword()).join());
         }
-        return false;
+        boolean added = mutate(() -> {
+            if (usersByUsername.putIfAbsent(user.getUsername(), user) != null) {
+                return null;
+            }
+            if (users.putIfAbsent(user.getUserId(), user) != null) {
+                usersByUsername.remove(user.getUsername(), user);
+                return null;
+            }
+            attachHistoryArchive(user);
+            statistics.userAdded(user);
+            return JournalEntry.addUser(user);
+        }, userLocks.get(user.getUserId()));
+        metrics.record(Operation.ADD_USER, start, added);
+        return added;
     }
 
+    @Override
     public User findUser(String userId) {
         return users.get(userId);
     }
 
+    @Override
     public boolean authenticateUser(String username, String password) {
-        return users.values().stream()
-                .anyMatch(user -> user.getUsername().equals(username) 
-                        && user.getPassword().equals(password));
+        return authenticateUserAsync(username, password).join();
     }
 
+    // Completes on a hashing worker unless the login was verified recently
+    @Override
+    public CompletableFuture<Boolean> authenticateUserAsync(String username, String password) {
+        long start = System.nanoTime();
+        User user = usersByUsername.get(username);
+        if (user == null) {
+            return authenticator.reject(password).thenApply(authenticated -> {
+                metrics.record(Operation.AUTHENTICATE, start, false);
+                return false;
+            });
+        }
+        String stored = user.getPassword();
+        if (PasswordHasher.matchesPlaintext(password, stored)) {
+            // Stored before passwords were hashed; hashed now that it is known to be right
+            return authenticator.hash(password).thenApply(hash -> {
+                migratePassword(user, stored, hash);
+                metrics.record(Operation.AUTHENTICATE, start, true);
+                return true;
+            });
+        }
+        return authenticator.verify(username, password, user.getPassword()).thenApply(authenticated -> {
+            metrics.record(Operation.AUTHENTICATE, start, authenticated);
+            return authenticated;
+        });
+    }
+
+    @Override
     public User getUserByUsername(String username) {
-        return users.values().stream()
-                .filter(user -> user.getUsername().equals(username))
-                .findFirst()
-                .orElse(null);
+        return usersByUsername.get(username);
+    }
+
+    // Moves the user to the new username in the index under the user's
+    // stripe, so logins and lookups never see the user under a stale name.
+    // False if the user is unknown, already has the name, or it is taken.
+    public boolean changeUsername(String userId, String username) {
+        User user = findUser(userId);
+        if (user == null) {
+            return false;
+        }
+        return mutate(() -> {
+            if (username.equals(user.getUsername()) || usersByUsername.putIfAbsent(username, user) != null) {
+                return null;
+            }
+            usersByUsername.remove(user.getUsername(), user);
+            user.setUsername(username);
+            return JournalEntry.renameUser(userId, username);
+        }, userLocks.get(userId));
+    }
+
+    // Empty for unknown users and admins
+    @Override
+    public List<Book> getBorrowedBooks(String userId) {
+        User user = users.get(userId);
+        return user instanceof LibraryUser ? ((LibraryUser) user).getBorrowedBooks() : new ArrayList<>();
     }
 
     // Book Borrowing Methods
+    @Override
     public boolean borrowBook(String userId, String isbn) {
+        long start = System.nanoTime();
         User user = findUser(userId);
-        Book book = findBookByIsbn(isbn);
-        
-        if (user instanceof LibraryUser && book != null) {
+        boolean borrowed = false;
+
+        if (user instanceof LibraryUser) {
             LibraryUser libraryUser = (LibraryUser) user;
-            boolean success = libraryUser.borrowBook(book);
-            if (success) {
-                saveData();
-            }
-            return success;
+            borrowed = mutate(() -> {
+                // Looked up under the book's lock so a concurrent removeBook is observed
+                Book book = booksByIsbn.get(isbn);
+                long borrowedAt = System.currentTimeMillis();
+                long dueAt = borrowedAt + config.getLoanPeriodMillis();
+                if (book == null || !borrow(libraryUser, book, borrowedAt, dueAt)) {
+                    return null;
+                }
+                statistics.bookBorrowed(libraryUser, book);
+                copiesChanged(book);
+                return JournalEntry.borrow(userId, isbn, borrowedAt, dueAt);
+            }, userLocks.get(userId), bookLocks.get(isbn));
         }
-        return false;
+        metrics.record(Operation.BORROW, start, borrowed);
+        return borrowed;
     }
 
+    @Override
     public boolean returnBook(String userId, String isbn) {
+        long start = System.nanoTime();
         User user = findUser(userId);
-        Book book = findBookByIsbn(isbn);
-        
-        if (user instanceof LibraryUser && book != null) {
+        boolean returned = false;
+
+        if (user instanceof LibraryUser) {
             LibraryUser libraryUser = (LibraryUser) user;
-            boolean success = libraryUser.returnBook(book);
-            if (success) {
-                saveData();
+            returned = mutate(() -> {
+                Book book = booksByIsbn.get(isbn);
+                long returnedAt = System.currentTimeMillis();
+                if (book == null || !returnCopy(libraryUser, book, returnedAt)) {
+                    return null;
+                }
+                statistics.bookReturned(book);
+                copiesChanged(book);
+                return JournalEntry.returnBook(userId, isbn, returnedAt);
+            }, userLocks.get(userId), bookLocks.get(isbn));
+        }
+        metrics.record(Operation.RETURN, start, returned);
+        return returned;
+    }
+
+    // Extends the loan by a full loan period from now. Refused once the loan
+    // is overdue or has used its renewals, and while patrons wait for the book.
+    @Override
+    public boolean renewLoan(String userId, String isbn) {
+        long start = System.nanoTime();
+        User user = findUser(userId);
+        boolean renewed = false;
+
+        if (user instanceof LibraryUser) {
+            LibraryUser libraryUser = (LibraryUser) user;
+            renewed = mutate(() -> {
+                Book book = booksByIsbn.get(isbn);
+                Loan loan = libraryUser.getLoan(isbn);
+                long renewedAt = System.currentTimeMillis();
+                if (book == null || loan == null || loan.getRenewals() >= config.getMaxRenewals()
+                        || loan.isOverdue(renewedAt) || book.hasWaitingList()) {
+                    return null;
+                }
+                long dueAt = renewedAt + config.getLoanPeriodMillis();
+                renew(libraryUser, loan, dueAt);
+                return JournalEntry.renew(userId, isbn, renewedAt, dueAt);
+            }, userLocks.get(userId), bookLocks.get(isbn));
+        }
+        metrics.record(Operation.RENEW, start, renewed);
+        return renewed;
+    }
+
+    // The user's loans with their due dates, in borrowing order
+    @Override
+    public List<Loan> getLoans(String userId) {
+        return loanLedger.getLoans(userId);
+    }
+
+    // Loans reported overdue and not yet returned
+    @Override
+    public long getOverdueLoanCount() {
+        return loanLedger.getOverdueCount();
+    }
+
+    @Override
+    public long getFinesOwed(String userId) {
+        User user = users.get(userId);
+        return user instanceof LibraryUser ? ((LibraryUser) user).getFinesOwed() : 0;
+    }
+
+    // Settles the user's fines and returns the amount paid, in cents
+    @Override
+    public long payFines(String userId) {
+        long start = System.nanoTime();
+        User user = findUser(userId);
+        long[] paid = new long[1];
+
+        if (user instanceof LibraryUser) {
+            LibraryUser libraryUser = (LibraryUser) user;
+            mutate(() -> {
+                paid[0] = libraryUser.payFines();
+                return paid[0] > 0 ? JournalEntry.payFines(userId) : null;
+            }, userLocks.get(userId));
+        }
+        metrics.record(Operation.PAY_FINES, start, paid[0] > 0);
+        return paid[0];
+    }
+
+    // Called on the background thread with each loan as it falls overdue,
+    // including loans found overdue at startup
+    public void setOverdueListener(OverdueListener listener) {
+        this.overdueListener = listener;
+    }
+
+    // Reservation Methods
+    // Joins the book's waiting list. Books with a copy on the shelf and nobody
+    // waiting are borrowed rather than reserved.
+    @Override
+    public boolean reserveBook(String userId, String isbn) {
+        long start = System.nanoTime();
+        User user = findUser(userId);
+        boolean reserved = false;
+
+        if (user instanceof LibraryUser) {
+            LibraryUser libraryUser = (LibraryUser) user;
+            reserved = mutate(() -> {
+                Book book = booksByIsbn.get(isbn);
+                if (book == null || (book.isAvailable() && !book.hasWaitingList())
+                        || libraryUser.hasBorrowed(book) || !book.addToWaitingList(userId)) {
+                    return null;
+                }
+                return JournalEntry.reserve(userId, isbn);
+            }, userLocks.get(userId), bookLocks.get(isbn));
+        }
+        metrics.record(Operation.RESERVE, start, reserved);
+        return reserved;
+    }
+
+    // Leaves the waiting list, or gives up a copy held for the user
+    @Override
+    public boolean cancelReservation(String userId, String isbn) {
+        long start = System.nanoTime();
+        boolean cancelled = mutate(() -> {
+            Book book = booksByIsbn.get(isbn);
+            long cancelledAt = System.currentTimeMillis();
+            if (book == null || !cancel(userId, book, cancelledAt)) {
+                return null;
+            }
+            statistics.holdsChanged(book);
+            copiesChanged(book);
+            return JournalEntry.cancelReservation(userId, isbn, cancelledAt);
+        }, userLocks.get(userId), bookLocks.get(isbn));
+        metrics.record(Operation.CANCEL_RESERVATION, start, cancelled);
+        return cancelled;
+    }
+
+    // 1-based place in the book's waiting list, 0 if a copy is held for the user, -1 if neither
+    @Override
+    public int getReservationPosition(String userId, String isbn) {
+        Book book = booksByIsbn.get(isbn);
+        return book == null ? -1 : book.getWaitingPosition(userId);
+    }
+
+    // Borrow, return and reservation rules, shared by live calls and journal
+    // replay; callers hold the user's and the book's locks.
+
+    // A user with a copy on hold picks it up; walk-in borrows wait their turn
+    // while anyone is queued
+    private boolean borrow(LibraryUser user, Book book, long borrowedAt, long dueAt) {
+        boolean borrowed;
+        if (book.getHoldExpiry(user.getUserId()) >= 0) {
+            if (!user.canBorrowBooks() || user.hasBorrowed(book)) {
+                return false;
+            }
+            book.releaseHold(user.getUserId());
+            borrowed = user.borrowBook(book, borrowedAt, dueAt);
+        } else {
+            borrowed = !book.hasWaitingList() && user.borrowBook(book, borrowedAt, dueAt);
+        }
+        if (borrowed) {
+            loanLedger.add(user.getUserId(), user.getLoan(book.getIsbn()));
+            if (user.hasHistoryToSpill()) {
+                historyToSpill.add(user);
+            }
+        }
+        return borrowed;
+    }
+
+    // A copy returned after its due date is fined per started day late
+    private boolean returnCopy(LibraryUser user, Book book, long returnedAt) {
+        Loan loan = user.getLoan(book.getIsbn());
+        if (!user.returnBook(book)) {
+            return false;
+        }
+        loanLedger.remove(user.getUserId(), book.getIsbn());
+        if (loan != null && loan.isOverdue(returnedAt)) {
+            user.addFine(loan.getDaysOverdue(returnedAt) * config.getFinePerDayCents());
+        }
+        handOff(book, returnedAt);
+        return true;
+    }
+
+    private void renew(LibraryUser user, Loan loan, long dueAt) {
+        Loan renewed = loan.renewed(dueAt);
+        user.updateLoan(renewed);
+        loanLedger.add(user.getUserId(), renewed);
+    }
+
+    // Reports loans that fell overdue since the last check
+    private void checkOverdue() {
+        try {
+            loanLedger.advance(System.currentTimeMillis(), (userId, loan) -> {
+                // A standby leaves the notices to its primary
+                OverdueListener listener = overdueListener;
+                if (listener != null && !standby) {
+                    listener.loanOverdue(userId, loan);
+                }
+            });
+        } catch (RuntimeException e) {
+            System.err.println("Error processing overdue loans: " + e.getMessage());
+        }
+    }
+
+    private boolean cancel(String userId, Book book, long cancelledAt) {
+        if (book.removeFromWaitingList(userId)) {
+            return true;
+        }
+        if (!book.releaseHold(userId)) {
+            return false;
+        }
+        handOff(book, cancelledAt);
+        return true;
+    }
+
+    // Moves a copy that just came back to the shelf straight to the next
+    // waiter, so nobody else can borrow it in between
+    private void handOff(Book book, long now) {
+        long expiresAt = now + config.getHoldDurationMillis();
+        String userId = book.holdForNextWaiter(expiresAt);
+        if (userId != null) {
+            holdExpiry.schedule(new Hold(book.getIsbn(), userId, expiresAt), expiresAt);
+        }
+    }
+
+    // A standby's holds are expired by its primary; promote() reschedules them
+    private void expireHolds(List<Hold> holds) {
+        if (standby) {
+            return;
+        }
+        for (Hold hold : holds) {
+            mutate(() -> {
+                Book book = booksByIsbn.get(hold.isbn);
+                // The hold may have been picked up, cancelled or renewed since it was scheduled
+                if (book == null || book.getHoldExpiry(hold.userId) != hold.expiresAt) {
+                    return null;
+                }
+                long expiredAt = System.currentTimeMillis();
+                book.releaseHold(hold.userId);
+                handOff(book, expiredAt);
+                statistics.holdsChanged(book);
+                copiesChanged(book);
+                return JournalEntry.expireHold(hold.userId, hold.isbn, expiredAt);
+            }, userLocks.get(hold.userId), bookLocks.get(hold.isbn));
+        }
+    }
+
+    private void scheduleHolds(Book book) {
+        Reservations reservations = book.getReservations();
+        if (reservations != null) {
+            for (Map.Entry<String, Long> hold : reservations.getHolds().entrySet()) {
+                holdExpiry.schedule(new Hold(book.getIsbn(), hold.getKey(), hold.getValue()), hold.getValue());
             }
-            return success;
         }
-        return false;
+    }
+
+    private static final class Hold {
+        final String isbn;
+        final String userId;
+        final long expiresAt;
+
+        Hold(String isbn, String userId, long expiresAt) {
+            this.isbn = isbn;
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
     }
 
     // Data Persistence Methods
     private void loadData() {
+        long snapshotSequence = 0;
         try {
-            // Load books
-            File booksFile = new File(BOOKS_FILE);
-            if (booksFile.exists()) {
-                List<Book> books = Arrays.asList(objectMapper.readValue(booksFile, Book[].class));
-                booksByIsbn = books.stream().collect(
-                    Collectors.toMap(Book::getIsbn, book -> book));
+            snapshotSequence = snapshotStore.recover();
+        } catch (IOException e) {
+            System.err.println("Error loading data: " + e.getMessage());
+        }
+
+        // Presized from the checkpoint so the maps never rehash while loading
+        booksByIsbn = new ConcurrentHashMap<>(Math.max(16, snapshotStore.getBookCount()));
+        users = new ConcurrentHashMap<>(Math.max(16, snapshotStore.getUserCount()));
+        usersByUsername = new ConcurrentHashMap<>(Math.max(16, snapshotStore.getUserCount()));
+
+        // Load snapshot, streaming each record straight into its map
+        CompletableFuture<Void> booksLoaded = runLoad(
+                () -> snapshotStore.readBooks(book -> booksByIsbn.put(book.getIsbn(), book)));
+        CompletableFuture<Void> usersLoaded = runLoad(
+                () -> snapshotStore.readUsers(user -> users.put(user.getUserId(), user)));
+        for (CompletableFuture<Void> load : Arrays.asList(booksLoaded, usersLoaded)) {
+            try {
+                load.join();
+            } catch (CompletionException e) {
+                System.err.println("Error loading data: " + e.getCause().getMessage());
             }
+        }
 
-            // Load users
-            File usersFile = new File(USERS_FILE);
-            if (usersFile.exists()) {
-                List<User> userList = Arrays.asList(objectMapper.readValue(usersFile, User[].class));
-                users = userList.stream().collect(
-                    Collectors.toMap(User::getUserId, user -> user));
+        // Single pass pointing every loan at the canonical catalog entry and
+        // entering it in the loan ledger
+        long loadedAt = System.currentTimeMillis();
+        for (User user : users.values()) {
+            if (user instanceof LibraryUser) {
+                LibraryUser libraryUser = (LibraryUser) user;
+                for (Loan duplicate : libraryUser.relinkBooks(booksByIsbn::get)) {
+                    // Written back with the next snapshot, with the copy on the shelf
+                    System.err.println("Returned duplicate loan of " + duplicate.getIsbn()
+                            + " held by " + user.getUserId());
+                    changedIsbns.add(duplicate.getIsbn());
+                    changedUserIds.add(user.getUserId());
+                }
+                for (Loan loan : libraryUser.getLoans()) {
+                    loanLedger.add(user.getUserId(), loan.getDueAt() > 0 ? loan : assignDueDate(libraryUser, loan, loadedAt));
+                }
+            }
+            attachHistoryArchive(user);
+        }
+
+        try {
+            // Replay mutations logged since the snapshot
+            journal = new Journal(config.getDataDirectory().resolve(JOURNAL_FILE), objectMapper,
+                    config.getDurability(), config.getGroupCommitSize(), config.getGroupCommitWindowMillis(),
+                    config.getJournalQueueCapacity());
+            for (JournalEntry entry : journal.recover(snapshotSequence)) {
+                apply(entry);
             }
         } catch (IOException e) {
-            System.err.println("Error loading data: " + e.getMessage());
+            throw new UncheckedIOException("Unable to open journal", e);
+        }
+
+        indexBooks(booksByIsbn.values());
+        statistics.booksAdded(booksByIsbn.values());
+        for (Book book : booksByIsbn.values()) {
+            scheduleHolds(book);
+        }
+        for (User user : users.values()) {
+            usersByUsername.putIfAbsent(user.getUsername(), user);
+            statistics.userAdded(user);
+        }
+    }
+
+    // Users stored before passwords were hashed can log in at once, and are
+    // hashed on their first login. A background thread hashes the rest one at
+    // a time on the worker pool, leaving the other workers to logins, then
+    // takes a snapshot so no plaintext stays in users.json or the journal.
+    // Each rehash is journaled, so standbys receive it; a standby leaves
+    // migration to its primary and takes over what is left when promoted.
+    private Thread migratePasswords() {
+        if (standby) {
+            return null;
+        }
+        List<User> plaintext = new ArrayList<>();
+        for (User user : users.values()) {
+            if (user.getPassword() != null && !PasswordHasher.isHash(user.getPassword())) {
+                plaintext.add(user);
+            }
+        }
+        if (plaintext.isEmpty()) {
+            return null;
+        }
+        Thread migration = new Thread(() -> {
+            for (User user : plaintext) {
+                String stored = user.getPassword();
+                if (closed.get()) {
+                    return;
+                }
+                if (!PasswordHasher.isHash(stored)) {
+                    migratePassword(user, stored, authenticator.hash(stored).join());
+                }
+            }
+            checkpointLock.writeLock().lock();
+            try {
+                if (!closed.get()) {
+                    saveData();
+                }
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+        }, "password-migration");
+        migration.setDaemon(true);
+        migration.start();
+        return migration;
+    }
+
+    // Unless a login or the background pass got there first
+    private void migratePassword(User user, String plaintext, String hash) {
+        if (standby) {
+            return;
+        }
+        commit(false, () -> {
+            if (!plaintext.equals(user.getPassword())) {
+                return null;
+            }
+            user.setPassword(hash);
+            return JournalEntry.setPassword(user.getUserId(), hash);
+        }, userLocks.get(user.getUserId()));
+    }
+
+    private CompletableFuture<Void> runLoad(IOAction load) {
+        Runnable task = () -> {
+            try {
+                load.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        if (config.isParallelLoad()) {
+            return CompletableFuture.runAsync(task);
+        }
+        task.run();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    // Loans stored before due dates existed are due a loan period after they
+    // were borrowed, or after this start if the borrow time was lost too
+    private Loan assignDueDate(LibraryUser user, Loan loan, long loadedAt) {
+        long borrowedAt = loan.getBorrowedAt() > 0 ? loan.getBorrowedAt() : loadedAt;
+        Loan dated = loan.withDueAt(borrowedAt + config.getLoanPeriodMillis());
+        user.updateLoan(dated);
+        changedUserIds.add(user.getUserId());
+        return dated;
+    }
+
+    // Lets the user's in-memory history stay bounded by spilling to disk
+    private void attachHistoryArchive(User user) {
+        if (user instanceof LibraryUser) {
+            ((LibraryUser) user).setHistoryArchive(historyArchive);
+        }
+    }
+
+    private void apply(JournalEntry entry) {
+        recordChanged(entry);
+        switch (entry.getType()) {
+            case ADD_BOOK:
+                booksByIsbn.putIfAbsent(entry.getBook().getIsbn(), entry.getBook());
+                break;
+            case ADD_BOOKS:
+                for (Book book : entry.getBooks()) {
+                    booksByIsbn.putIfAbsent(book.getIsbn(), book);
+                }
+                break;
+            case REMOVE_BOOK:
+                booksByIsbn.remove(entry.getIsbn());
+                break;
+            case ADD_USER:
+                if (users.putIfAbsent(entry.getUser().getUserId(), entry.getUser()) == null) {
+                    attachHistoryArchive(entry.getUser());
+                }
+                break;
+            case PAY_FINES:
+                if (users.get(entry.getUserId()) instanceof LibraryUser) {
+                    ((LibraryUser) users.get(entry.getUserId())).payFines();
+                }
+                break;
+            case SET_PASSWORD:
+                setPassword(entry);
+                break;
+            case RENAME_USER:
+                // The username index is built once the journal is replayed
+                if (users.containsKey(entry.getUserId())) {
+                    users.get(entry.getUserId()).setUsername(entry.getUsername());
+                }
+                break;
+            default:
+                applyCirculation(entry);
+                break;
+        }
+    }
+
+    private boolean setPassword(JournalEntry entry) {
+        User user = users.get(entry.getUserId());
+        if (user == null || entry.getPassword().equals(user.getPassword())) {
+            return false;
+        }
+        user.setPassword(entry.getPassword());
+        return true;
+    }
+
+    // Returns whether the entry changed anything
+    private boolean applyCirculation(JournalEntry entry) {
+        User user = users.get(entry.getUserId());
+        Book book = booksByIsbn.get(entry.getIsbn());
+        if (book == null) {
+            return false;
+        }
+        long timestamp = entry.getTimestamp() != null ? entry.getTimestamp() : 0;
+        // Borrows journaled before due dates existed get the current loan period
+        long dueAt = entry.getDueAt() != null ? entry.getDueAt() : timestamp + config.getLoanPeriodMillis();
+        switch (entry.getType()) {
+            case BORROW:
+                return user instanceof LibraryUser && borrow((LibraryUser) user, book, timestamp, dueAt);
+            case RENEW:
+                if (user instanceof LibraryUser && ((LibraryUser) user).getLoan(entry.getIsbn()) != null) {
+                    renew((LibraryUser) user, ((LibraryUser) user).getLoan(entry.getIsbn()), dueAt);
+                    return true;
+                }
+                return false;
+            case RETURN:
+                return user instanceof LibraryUser && returnCopy((LibraryUser) user, book, timestamp);
+            case RESERVE:
+                return book.addToWaitingList(entry.getUserId());
+            case CANCEL_RESERVATION:
+                return cancel(entry.getUserId(), book, timestamp);
+            case EXPIRE_HOLD:
+                if (book.releaseHold(entry.getUserId())) {
+                    handOff(book, timestamp);
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    // Runs a mutation and journals the entry it returns while holding the
+    // stripes of every user and book involved (always user before book), so
+    // the journal orders conflicting operations exactly as they were applied.
+    // The loan ledger and statistics they update keep per-user and per-book
+    // state in concurrent maps, so besides the journal append the only lock
+    // every borrow shares is the ledger's timer wheel, held just long enough
+    // to move a due date. Mutations return null when nothing changed. Waiting for the entry to
+    // become durable, when the durability level asks for it, happens after
+    // the locks are released. An entry that could not be journaled throws
+    // UncheckedIOException rather than report success; the change stays in
+    // memory but is not acknowledged and is gone after a restart. A standby
+    // refuses with IllegalStateException.
+    private boolean mutate(Supplier<JournalEntry> mutation, Lock... stripes) {
+        checkWritable();
+        return commit(true, mutation, stripes);
+    }
+
+    private boolean commit(boolean awaitDurable, Supplier<JournalEntry> mutation, Lock... stripes) {
+        JournalEntry entry;
+        long sequence = 0;
+        checkpointLock.readLock().lock();
+        try {
+            for (Lock stripe : stripes) {
+                stripe.lock();
+            }
+            try {
+                entry = mutation.get();
+                if (entry != null) {
+                    sequence = record(entry);
+                }
+            } finally {
+                for (int i = stripes.length - 1; i >= 0; i--) {
+                    stripes[i].unlock();
+                }
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+
+        if (entry == null) {
+            return false;
+        }
+        try {
+            if (awaitDurable) {
+                journal.awaitDurable(sequence);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to journal " + entry.getType(), e);
+        }
+        if (journal.size() >= config.getSnapshotInterval() && snapshotPending.compareAndSet(false, true)) {
+            backgroundExecutor.execute(this::takeSnapshot);
+        }
+        return true;
+    }
+
+    private void checkWritable() {
+        if (standby) {
+            throw new IllegalStateException("Standby library is read-only until promoted");
+        }
+    }
+
+    // Returns the entry's journal sequence
+    private long record(JournalEntry entry) {
+        recordChanged(entry);
+        try {
+            return journal.append(entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to journal " + entry.getType(), e);
+        }
+    }
+
+    // Notes the records a journaled mutation touched, so the next snapshot
+    // rewrites only the segments holding them. A hand-off moves a hold within
+    // the book's own record, so the ISBN covers it.
+    private void recordChanged(JournalEntry entry) {
+        if (entry.getIsbn() != null) {
+            changedIsbns.add(entry.getIsbn());
+        }
+        if (entry.getUserId() != null) {
+            changedUserIds.add(entry.getUserId());
+        }
+        if (entry.getBook() != null) {
+            changedIsbns.add(entry.getBook().getIsbn());
+        }
+        if (entry.getBooks() != null) {
+            for (Book book : entry.getBooks()) {
+                changedIsbns.add(book.getIsbn());
+            }
+        }
+        if (entry.getUser() != null) {
+            changedUserIds.add(entry.getUser().getUserId());
         }
     }
 
+    private void takeSnapshot() {
+        checkpointLock.writeLock().lock();
+        try {
+            snapshotPending.set(false);
+            if (!closed.get() && journal.size() >= config.getSnapshotInterval()) {
+                saveData();
+            }
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    // Compacts the journal into a fresh books.json/users.json snapshot.
+    // Callers hold the checkpoint write lock, so no mutation is in flight.
     private void saveData() {
         try {
-            // Save books
-            objectMapper.writeValue(new File(BOOKS_FILE), booksByIsbn.values());
-            
-            // Save users
-            objectMapper.writeValue(new File(USERS_FILE), users.values());
+            writeSnapshot();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
     }
 
-    // Sorting Methods
-    public List<Book> getSortedBooks(String sortBy) {
-        List<Book> books = new ArrayList<>(booksByIsbn.values());
-        
-        switch (sortBy.toLowerCase()) {
-            case "title":
-                books.sort(Comparator.comparing(Book::getTitle));
-                break;
-            case "author":
-                books.sort(Comparator.comparing(Book::getAuthor));
-                break;
-            case "year":
-                books.sort(Comparator.comparing(Book::getYear));
-                break;
+    // The changed keys are cleared only once the snapshot has been committed,
+    // so a failed one is retried in full by the next
+    private void writeSnapshot() throws IOException {
+        long start = System.nanoTime();
+        journal.sync();
+        spillHistories();
+        historyArchive.sync();
+        Set<String> isbns = new HashSet<>(changedIsbns);
+        Set<String> userIds = new HashSet<>(changedUserIds);
+        long bytes = snapshotStore.write(booksByIsbn.values(), users.values(), isbns, userIds,
+                journal.getLastSequence());
+        changedIsbns.removeAll(isbns);
+        changedUserIds.removeAll(userIds);
+        journal.reset();
+        metrics.recordSnapshot(start, bytes);
+    }
+
+    // Moves full in-memory histories to the archive ahead of the snapshot
+    // that records their archived counts, off the borrow path
+    private void spillHistories() throws IOException {
+        for (Iterator<LibraryUser> it = historyToSpill.iterator(); it.hasNext(); ) {
+            LibraryUser user = it.next();
+            try {
+                user.spillHistory();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            changedUserIds.add(user.getUserId());
+            it.remove();
+        }
+    }
+
+    // Replication
+    // Passes every mutation from here on to the listener, including bulk
+    // imports that skip the journal; null stops it
+    public void setChangeListener(ChangeListener listener) {
+        checkpointLock.writeLock().lock();
+        try {
+            this.changeListener = listener;
+            journal.setAppendListener(listener == null ? null : listener::changed);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    // The whole library as serialized entries that rebuild it from empty: the
+    // catalog in batches, then one entry per user. Taken with mutations held
+    // off, and atCapture runs before they resume, so a change listener can
+    // mark exactly where the state leaves off.
+    public List<byte[]> captureState(Runnable atCapture) throws IOException {
+        checkpointLock.writeLock().lock();
+        try {
+            List<byte[]> entries = new ArrayList<>();
+            List<Book> batch = new ArrayList<>();
+            for (Book book : booksByIsbn.values()) {
+                batch.add(book);
+                if (batch.size() == STATE_BATCH_SIZE) {
+                    entries.add(objectMapper.writeValueAsBytes(JournalEntry.addBooks(batch)));
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                entries.add(objectMapper.writeValueAsBytes(JournalEntry.addBooks(batch)));
+            }
+            for (User user : users.values()) {
+                entries.add(objectMapper.writeValueAsBytes(JournalEntry.addUser(user)));
+            }
+            atCapture.run();
+            return entries;
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    // Applies a change committed by this standby's primary: the replay rules
+    // of apply(), plus the index and statistics upkeep of the live methods,
+    // so the standby can serve the moment it is promoted. Journaled here as
+    // well, keeping the standby's own data directory current; nobody waits on
+    // a replicated change, so it does not wait for the journal's fsync.
+    public void applyReplicated(JournalEntry entry) {
+        List<Lock> stripes = new ArrayList<>(2);
+        String userId = entry.getUser() != null ? entry.getUser().getUserId() : entry.getUserId();
+        String isbn = entry.getBook() != null ? entry.getBook().getIsbn() : entry.getIsbn();
+        if (userId != null) {
+            stripes.add(userLocks.get(userId));
+        }
+        if (isbn != null) {
+            stripes.add(bookLocks.get(isbn));
+        }
+        commit(false, () -> replicate(entry) ? entry : null, stripes.toArray(new Lock[0]));
+    }
+
+    // Accepts live mutations from here on, and takes over the hold expiries
+    // the primary used to journal
+    public void promote() {
+        if (!standby) {
+            return;
+        }
+        standby = false;
+        for (Book book : booksByIsbn.values()) {
+            scheduleHolds(book);
+        }
+        // Finishes a migration the old primary did not get through
+        passwordMigration = migratePasswords();
+    }
+
+    public boolean isStandby() {
+        return standby;
+    }
+
+    // Returns whether the entry changed anything
+    private boolean replicate(JournalEntry entry) {
+        switch (entry.getType()) {
+            case ADD_BOOK:
+                return addReplicatedBook(entry.getBook());
+            case ADD_BOOKS:
+                boolean added = false;
+                for (Book book : entry.getBooks()) {
+                    added |= addReplicatedBook(book);
+                }
+                return added;
+            case REMOVE_BOOK:
+                Book removed = booksByIsbn.remove(entry.getIsbn());
+                if (removed == null) {
+                    return false;
+                }
+                unindexBook(removed);
+                statistics.bookRemoved(removed);
+                return true;
+            case ADD_USER:
+                return addReplicatedUser(entry.getUser());
+            case PAY_FINES:
+                User payer = users.get(entry.getUserId());
+                return payer instanceof LibraryUser && ((LibraryUser) payer).payFines() > 0;
+            case SET_PASSWORD:
+                return setPassword(entry);
+            case RENAME_USER:
+                User renamed = users.get(entry.getUserId());
+                if (renamed == null || entry.getUsername().equals(renamed.getUsername())) {
+                    return false;
+                }
+                usersByUsername.remove(renamed.getUsername(), renamed);
+                renamed.setUsername(entry.getUsername());
+                usersByUsername.putIfAbsent(entry.getUsername(), renamed);
+                return true;
             default:
-                books.sort(Comparator.comparing(Book::getIsbn));
+                Book book = booksByIsbn.get(entry.getIsbn());
+                if (!applyCirculation(entry)) {
+                    return false;
+                }
+                if (entry.getType() == JournalEntry.Type.BORROW) {
+                    statistics.bookBorrowed((LibraryUser) users.get(entry.getUserId()), book);
+                } else if (entry.getType() == JournalEntry.Type.RETURN) {
+                    statistics.bookReturned(book);
+                } else if (entry.getType() != JournalEntry.Type.RESERVE && entry.getType() != JournalEntry.Type.RENEW) {
+                    statistics.holdsChanged(book);
+                }
+                copiesChanged(book);
+                return true;
+        }
+    }
+
+    private boolean addReplicatedBook(Book book) {
+        book.setSymbols(bookSymbols);
+        if (booksByIsbn.putIfAbsent(book.getIsbn(), book) != null) {
+            return false;
+        }
+        indexBook(book);
+        statistics.bookAdded(book);
+        return true;
+    }
+
+    // Users in a captured state arrive with their loans, after the books
+    private boolean addReplicatedUser(User user) {
+        if (users.putIfAbsent(user.getUserId(), user) != null) {
+            return false;
+        }
+        usersByUsername.putIfAbsent(user.getUsername(), user);
+        attachHistoryArchive(user);
+        if (user instanceof LibraryUser) {
+            LibraryUser libraryUser = (LibraryUser) user;
+            libraryUser.relinkBooks(booksByIsbn::get);
+            for (Loan loan : libraryUser.getLoans()) {
+                loanLedger.add(user.getUserId(), loan);
+            }
+        }
+        statistics.userAdded(user);
+        return true;
+    }
+
+    // Bulk imports that go straight into a snapshot never reach the journal,
+    // so change listeners hear of them here
+    private void publishUnjournaled(JournalEntry entry) {
+        ChangeListener listener = changeListener;
+        if (listener != null) {
+            try {
+                listener.changed(objectMapper.writeValueAsBytes(entry));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to publish " + entry.getType(), e);
+            }
         }
-        
+    }
+
+    // Writes the current state as books.json/users.json into the given directory
+    public void exportJson(Path directory) throws IOException {
+        checkpointLock.writeLock().lock();
+        try {
+            new SnapshotStore(directory, objectMapper, SnapshotFormat.JSON)
+                    .write(booksByIsbn.values(), users.values(), journal.getLastSequence());
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    // Forces journaled mutations that are still waiting for group commit to disk
+    public void flush() {
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+        }
+    }
+
+    // Drains the journal writer and takes a final snapshot; safe to call more than once
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        holdExpiry.close();
+        backgroundExecutor.shutdown();
+        try {
+            backgroundExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            Thread migration = passwordMigration;
+            if (migration != null) {
+                // Stops after the hash in progress; the final snapshot keeps what it did
+                migration.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpointLock.writeLock().lock();
+        try {
+            saveData();
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        try {
+            journal.close();
+            historyArchive.close();
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+        }
+        authenticator.close();
+        if (config.getMetricsDumpIntervalSeconds() > 0) {
+            dumpMetrics();
+        }
+        metrics.unregister();
+    }
+
+    // Metrics
+    public LibraryMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    private void startMetrics() {
+        metrics.registerGauge("journalQueueDepth", journal::getQueueDepth);
+        metrics.registerGauge("journalEntriesSinceSnapshot", journal::size);
+        metrics.registerGauge("journalBytesWritten", journal::getBytesWritten);
+        metrics.registerGauge("pendingHoldExpiries", holdExpiry::size);
+        metrics.registerGauge("openLoans", loanLedger::size);
+        metrics.registerGauge("overdueLoans", loanLedger::getOverdueCount);
+        metrics.registerGauge("books", booksByIsbn::size);
+        metrics.registerGauge("users", users::size);
+        metrics.registerGauge("searchCacheSize", searchCache::size);
+        metrics.registerGauge("searchCacheHits", searchCache::getHits);
+        metrics.registerGauge("searchCacheMisses", searchCache::getMisses);
+        metrics.registerGauge("searchCacheEvictions", searchCache::getEvictions);
+        metrics.registerGauge("searchCacheInvalidations", searchCache::getInvalidations);
+        metrics.registerGauge("credentialCacheSize", authenticator.getCache()::size);
+        metrics.registerGauge("credentialCacheHits", authenticator.getCache()::getHits);
+        metrics.registerGauge("credentialCacheMisses", authenticator.getCache()::getMisses);
+        if (config.isJmxEnabled()) {
+            metrics.register();
+        }
+        long interval = config.getMetricsDumpIntervalSeconds();
+        if (interval > 0) {
+            backgroundExecutor.scheduleAtFixedRate(this::dumpMetrics, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    // Appends the current report to metrics.log in the data directory
+    private void dumpMetrics() {
+        try {
+            Files.write(config.getDataDirectory().resolve(METRICS_FILE),
+                    (metrics.getReport() + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Error writing metrics: " + e.getMessage());
+        }
+    }
+
+    // Index Maintenance
+    // Books loaded at startup are encoded against the library's symbols
+    // here; books added while it runs already were, before being published
+    private void indexBook(Book book) {
+        book.setSymbols(bookSymbols);
+        catalogIndex.add(book);
+        searchCache.add(book);
+        sortedCatalog.add(book);
+        if (catalogColumns != null) {
+            catalogColumns.add(book);
+        }
+        book.setChangeListener(bookChangeListener);
+    }
+
+    private void indexBooks(Collection<Book> books) {
+        for (Book book : books) {
+            book.setSymbols(bookSymbols);
+        }
+        catalogIndex.addAll(books);
+        searchCache.addAll(books);
+        if (catalogColumns != null) {
+            catalogColumns.addAll(books);
+        }
+        for (Book book : books) {
+            sortedCatalog.add(book);
+            book.setChangeListener(bookChangeListener);
+        }
+    }
+
+    private void unindexBook(Book book) {
+        book.setChangeListener(null);
+        catalogIndex.remove(book);
+        searchCache.remove(book);
+        sortedCatalog.remove(book);
+        if (catalogColumns != null) {
+            catalogColumns.remove(book);
+        }
+    }
+
+    private void bookChanged(Book book, String property, Object oldValue) {
+        changedIsbns.add(book.getIsbn());
+        catalogIndex.update(book, property, oldValue);
+        searchCache.update(book, property, oldValue);
+        sortedCatalog.update(book, property, oldValue);
+        statistics.bookChanged(book, property, oldValue);
+        if (catalogColumns != null) {
+            catalogColumns.update(book, property, oldValue);
+        }
+    }
+
+    // Borrowing, returns and holds change copy counts without change events
+    private void copiesChanged(Book book) {
+        if (catalogColumns != null) {
+            catalogColumns.refresh(book);
+        }
+    }
+
+    // Sorting Methods
+    @Override
+    public List<Book> getSortedBooks(String sortBy) {
+        long start = System.nanoTime();
+        List<Book> books = sortedCatalog.list(SortedCatalog.Order.of(sortBy));
+        metrics.record(Operation.LIST, start);
         return books;
     }
 
+    // Cursor-based paging: pass the last book of the previous page, or null for the first page
+    @Override
+    public List<Book> getSortedBooks(String sortBy, Book after, int limit) {
+        long start = System.nanoTime();
+        List<Book> page = sortedCatalog.page(SortedCatalog.Order.of(sortBy), after, limit);
+        metrics.record(Operation.LIST, start);
+        return page;
+    }
+
     // Statistics Methods
+    @Override
     public Book getMostBorrowedBook() {
-        return booksByIsbn.values().stream()
-                .max(Comparator.comparing(book -> book.getTotalCopies() - book.getAvailableCopies()))
-                .orElse(null);
+        return statistics.getMostBorrowedBook();
     }
 
+    @Override
     public LibraryUser getMostActiveUser() {
-        return users.values().stream()
-                .filter(user -> user instanceof LibraryUser)
-                .map(user -> (LibraryUser) user)
-                .max(Comparator.comparing(user -> user.getBorrowingHistory().size()))
-                .orElse(null);
+        return statistics.getMostActiveUser();
+    }
+
+    @Override
+    public Map<String, Long> getBorrowCountsByUser() {
+        return statistics.getBorrowCountsByUser();
+    }
+
+    @Override
+    public int getBookCount() {
+        return statistics.getBookCount();
+    }
+
+    @Override
+    public int getUserCount() {
+        return statistics.getUserCount();
+    }
+
+    @Override
+    public long getTotalCopies() {
+        return statistics.getTotalCopies();
+    }
+
+    @Override
+    public long getCopiesOnLoan() {
+        return statistics.getCopiesOnLoan();
+    }
+
+    @Override
+    public Map<String, Long> getBorrowsByGenre() {
+        return statistics.getBorrowsByGenre();
+    }
+
+    // Catalog breakdowns computed by a full scan of the column store
+    @Override
+    public Map<Integer, Long> getBooksByYear() {
+        return columns().countByYear();
+    }
+
+    @Override
+    public Map<Integer, Long> getBorrowsByYear() {
+        return columns().borrowsByYear();
+    }
+
+    @Override
+    public Map<String, Long> getCopiesByGenre() {
+        return columns().copiesByGenre();
+    }
+
+    @Override
+    public Map<String, Long> getCopiesOnLoanByGenre() {
+        return columns().onLoanByGenre();
+    }
+
+    // Without a maintained column store, one is built from the catalog for the call
+    private CatalogColumns columns() {
+        if (catalogColumns != null) {
+            return catalogColumns;
+        }
+        CatalogColumns columns = new CatalogColumns(bookSymbols);
+        columns.addAll(booksByIsbn.values());
+        return columns;
     }
 
     // Getters for collections
+    @Override
     public Collection<Book> getAllBooks() {
         return new ArrayList<>(booksByIsbn.values());
     }
 
+    @Override
     public Collection<User> getAllUsers() {
         return new ArrayList<>(users.values());
     }
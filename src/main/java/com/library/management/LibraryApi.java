@@ -0,0 +1,106 @@
+package com.library.management;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.Loan;
+import com.library.management.models.User;
+import com.library.management.query.BookQuery;
+
+// Operations of a library, implemented by a single Library and by
+// ShardedLibrary, which routes them across several. Callers outside the
+// library should read loans through getBorrowedBooks(userId): user objects
+// from a remote shard are copies without linked books.
+public interface LibraryApi {
+    // Books
+    boolean addBook(Book book);
+
+    List<Book> addBooks(Collection<Book> books);
+
+    boolean removeBook(String isbn);
+
+    Book findBookByIsbn(String isbn);
+
+    List<Book> findBooksByTitle(String title);
+
+    List<Book> findBooksByAuthor(String author);
+
+    List<Book> findBooksByGenre(String genre);
+
+    List<Book> findBooks(BookQuery query);
+
+    List<Book> getSortedBooks(String sortBy);
+
+    List<Book> getSortedBooks(String sortBy, Book after, int limit);
+
+    Collection<Book> getAllBooks();
+
+    // Users
+    boolean addUser(User user);
+
+    User findUser(String userId);
+
+    User getUserByUsername(String username);
+
+    boolean authenticateUser(String username, String password);
+
+    CompletableFuture<Boolean> authenticateUserAsync(String username, String password);
+
+    Collection<User> getAllUsers();
+
+    // Circulation
+    boolean borrowBook(String userId, String isbn);
+
+    boolean returnBook(String userId, String isbn);
+
+    boolean renewLoan(String userId, String isbn);
+
+    boolean reserveBook(String userId, String isbn);
+
+    boolean cancelReservation(String userId, String isbn);
+
+    int getReservationPosition(String userId, String isbn);
+
+    List<Book> getBorrowedBooks(String userId);
+
+    List<Loan> getLoans(String userId);
+
+    // Fines in cents
+    long getFinesOwed(String userId);
+
+    long payFines(String userId);
+
+    // Statistics
+    Book getMostBorrowedBook();
+
+    LibraryUser getMostActiveUser();
+
+    // Borrowing history sizes of the users who have borrowed, by user id
+    Map<String, Long> getBorrowCountsByUser();
+
+    int getBookCount();
+
+    int getUserCount();
+
+    long getTotalCopies();
+
+    long getCopiesOnLoan();
+
+    long getOverdueLoanCount();
+
+    Map<String, Long> getBorrowsByGenre();
+
+    Map<Integer, Long> getBooksByYear();
+
+    Map<Integer, Long> getBorrowsByYear();
+
+    Map<String, Long> getCopiesByGenre();
+
+    Map<String, Long> getCopiesOnLoanByGenre();
+
+    void close();
+}
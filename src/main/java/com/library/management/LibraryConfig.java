@@ -0,0 +1,193 @@
+package com.library.management;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.library.management.persistence.Durability;
+import com.library.management.persistence.SnapshotFormat;
+
+public class LibraryConfig implements Cloneable {
+    private Path dataDirectory;
+    private int groupCommitSize;
+    private long groupCommitWindowMillis;
+    private int snapshotInterval;
+    private boolean parallelLoad;
+    private SnapshotFormat snapshotFormat;
+    private Durability durability;
+    private int journalQueueCapacity;
+    private long holdDurationMillis;
+    private long loanPeriodMillis;
+    private int maxRenewals;
+    private long finePerDayCents;
+    private long overdueCheckIntervalMillis;
+    private boolean jmxEnabled;
+    private long metricsDumpIntervalSeconds;
+    private int passwordHashIterations;
+    private int hashingThreads;
+    private int credentialCacheSize;
+    private long credentialCacheTtlMillis;
+    private int parallelQueryThreshold;
+    private int searchCacheSize;
+    private boolean columnarCatalog;
+    private int httpPort;
+    private int httpThreads;
+    private long sessionTtlMillis;
+    private String shardBindAddress;
+    private String shardSecret;
+    private boolean standby;
+    private int replicationBacklog;
+    private long replicationHeartbeatMillis;
+    private long failoverTimeoutMillis;
+    private String replicationBindAddress;
+    private String replicationSecret;
+    private boolean autoPromote;
+
+    public LibraryConfig() {
+        this.dataDirectory = Paths.get(".");
+        this.groupCommitSize = 32;        // Journal entries per fsync
+        this.groupCommitWindowMillis = 20; // Longest an appended entry waits for an fsync
+        this.snapshotInterval = 10000;     // Journal entries between compacted snapshots
+        this.parallelLoad = true;          // Read books and users snapshots concurrently
+        this.snapshotFormat = SnapshotFormat.JSON;
+        this.durability = Durability.GROUP_COMMIT;
+        this.journalQueueCapacity = 4096;  // Entries waiting for the writer before mutations block
+        this.holdDurationMillis = 48L * 60 * 60 * 1000;  // How long a returned copy is held for the next waiter
+        this.loanPeriodMillis = 21L * 24 * 60 * 60 * 1000;  // Time from a borrow or renewal until the copy is due
+        this.maxRenewals = 2;              // Renewals allowed per loan
+        this.finePerDayCents = 25;         // Charged per started day a copy comes back late
+        this.overdueCheckIntervalMillis = 60 * 1000;  // Tick of the overdue timer wheel
+        this.jmxEnabled = true;            // Publish operation metrics as an MBean
+        this.metricsDumpIntervalSeconds = 0;  // Period of the metrics.log text dump; 0 turns it off
+        this.passwordHashIterations = 210000;  // PBKDF2 rounds for newly hashed passwords
+        this.hashingThreads = Runtime.getRuntime().availableProcessors();
+        this.credentialCacheSize = 10000;  // Recently verified logins that skip the hash; 0 disables
+        this.credentialCacheTtlMillis = 10L * 60 * 1000;
+        this.parallelQueryThreshold = 10000;  // Catalog size from which BookQuery scans run on the fork-join pool
+        this.searchCacheSize = 1024;       // Title, author and genre search results kept; 0 disables
+        this.columnarCatalog = false;      // Keep a column copy of the catalog for analytics scans
+        this.httpPort = 8080;              // Port of the HTTP service started by "Main serve"
+        this.httpThreads = 0;              // Request threads; 0 means a virtual thread per request where supported
+        this.sessionTtlMillis = 30L * 60 * 1000;  // Idle time before a session token expires
+        this.shardBindAddress = null;      // Interface a shard process listens on; null is loopback only
+        this.shardSecret = null;           // Shared by a router and its shard processes; required off loopback
+        this.standby = false;              // Apply a primary's changes only, until promoted
+        this.replicationBacklog = 100000;  // Changes kept for standbys that reconnect before a full resync
+        this.replicationHeartbeatMillis = 100;  // Longest a connected standby goes without hearing from the primary
+        this.failoverTimeoutMillis = 3000; // Silence after which a standby counts the primary as gone
+        this.replicationBindAddress = null;  // Interface of a primary's replication port; null is loopback only
+        this.replicationSecret = null;     // Shared by a primary and its standbys; required off loopback
+        this.autoPromote = false;          // Standby promotes itself after the failover timeout, even if the primary is only unreachable
+    }
+
+    // Independent copy with the same settings; every field is a primitive or immutable
+    public LibraryConfig copy() {
+        try {
+            return (LibraryConfig) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // Getters and Setters
+    public Path getDataDirectory() { return dataDirectory; }
+    public void setDataDirectory(Path dataDirectory) { this.dataDirectory = dataDirectory; }
+
+    public int getGroupCommitSize() { return groupCommitSize; }
+    public void setGroupCommitSize(int groupCommitSize) { this.groupCommitSize = groupCommitSize; }
+
+    public long getGroupCommitWindowMillis() { return groupCommitWindowMillis; }
+    public void setGroupCommitWindowMillis(long groupCommitWindowMillis) { this.groupCommitWindowMillis = groupCommitWindowMillis; }
+
+    public int getSnapshotInterval() { return snapshotInterval; }
+    public void setSnapshotInterval(int snapshotInterval) { this.snapshotInterval = snapshotInterval; }
+
+    public boolean isParallelLoad() { return parallelLoad; }
+    public void setParallelLoad(boolean parallelLoad) { this.parallelLoad = parallelLoad; }
+
+    public SnapshotFormat getSnapshotFormat() { return snapshotFormat; }
+    public void setSnapshotFormat(SnapshotFormat snapshotFormat) { this.snapshotFormat = snapshotFormat; }
+
+    public Durability getDurability() { return durability; }
+    public void setDurability(Durability durability) { this.durability = durability; }
+
+    public int getJournalQueueCapacity() { return journalQueueCapacity; }
+    public void setJournalQueueCapacity(int journalQueueCapacity) { this.journalQueueCapacity = journalQueueCapacity; }
+
+    public long getHoldDurationMillis() { return holdDurationMillis; }
+    public void setHoldDurationMillis(long holdDurationMillis) { this.holdDurationMillis = holdDurationMillis; }
+
+    public long getLoanPeriodMillis() { return loanPeriodMillis; }
+    public void setLoanPeriodMillis(long loanPeriodMillis) { this.loanPeriodMillis = loanPeriodMillis; }
+
+    public int getMaxRenewals() { return maxRenewals; }
+    public void setMaxRenewals(int maxRenewals) { this.maxRenewals = maxRenewals; }
+
+    public long getFinePerDayCents() { return finePerDayCents; }
+    public void setFinePerDayCents(long finePerDayCents) { this.finePerDayCents = finePerDayCents; }
+
+    public long getOverdueCheckIntervalMillis() { return overdueCheckIntervalMillis; }
+    public void setOverdueCheckIntervalMillis(long overdueCheckIntervalMillis) { this.overdueCheckIntervalMillis = overdueCheckIntervalMillis; }
+
+    public boolean isJmxEnabled() { return jmxEnabled; }
+    public void setJmxEnabled(boolean jmxEnabled) { this.jmxEnabled = jmxEnabled; }
+
+    public long getMetricsDumpIntervalSeconds() { return metricsDumpIntervalSeconds; }
+    public void setMetricsDumpIntervalSeconds(long metricsDumpIntervalSeconds) { this.metricsDumpIntervalSeconds = metricsDumpIntervalSeconds; }
+
+    public int getPasswordHashIterations() { return passwordHashIterations; }
+    public void setPasswordHashIterations(int passwordHashIterations) { this.passwordHashIterations = passwordHashIterations; }
+
+    public int getHashingThreads() { return hashingThreads; }
+    public void setHashingThreads(int hashingThreads) { this.hashingThreads = hashingThreads; }
+
+    public int getCredentialCacheSize() { return credentialCacheSize; }
+    public void setCredentialCacheSize(int credentialCacheSize) { this.credentialCacheSize = credentialCacheSize; }
+
+    public long getCredentialCacheTtlMillis() { return credentialCacheTtlMillis; }
+    public void setCredentialCacheTtlMillis(long credentialCacheTtlMillis) { this.credentialCacheTtlMillis = credentialCacheTtlMillis; }
+
+    public int getParallelQueryThreshold() { return parallelQueryThreshold; }
+    public void setParallelQueryThreshold(int parallelQueryThreshold) { this.parallelQueryThreshold = parallelQueryThreshold; }
+
+    public int getSearchCacheSize() { return searchCacheSize; }
+    public void setSearchCacheSize(int searchCacheSize) { this.searchCacheSize = searchCacheSize; }
+
+    public boolean isColumnarCatalog() { return columnarCatalog; }
+    public void setColumnarCatalog(boolean columnarCatalog) { this.columnarCatalog = columnarCatalog; }
+
+    public int getHttpPort() { return httpPort; }
+    public void setHttpPort(int httpPort) { this.httpPort = httpPort; }
+
+    public int getHttpThreads() { return httpThreads; }
+    public void setHttpThreads(int httpThreads) { this.httpThreads = httpThreads; }
+
+    public long getSessionTtlMillis() { return sessionTtlMillis; }
+    public void setSessionTtlMillis(long sessionTtlMillis) { this.sessionTtlMillis = sessionTtlMillis; }
+
+    public String getShardBindAddress() { return shardBindAddress; }
+    public void setShardBindAddress(String shardBindAddress) { this.shardBindAddress = shardBindAddress; }
+
+    public String getShardSecret() { return shardSecret; }
+    public void setShardSecret(String shardSecret) { this.shardSecret = shardSecret; }
+
+    public boolean isStandby() { return standby; }
+    public void setStandby(boolean standby) { this.standby = standby; }
+
+    public int getReplicationBacklog() { return replicationBacklog; }
+    public void setReplicationBacklog(int replicationBacklog) { this.replicationBacklog = replicationBacklog; }
+
+    public long getReplicationHeartbeatMillis() { return replicationHeartbeatMillis; }
+    public void setReplicationHeartbeatMillis(long replicationHeartbeatMillis) { this.replicationHeartbeatMillis = replicationHeartbeatMillis; }
+
+    public long getFailoverTimeoutMillis() { return failoverTimeoutMillis; }
+    public void setFailoverTimeoutMillis(long failoverTimeoutMillis) { this.failoverTimeoutMillis = failoverTimeoutMillis; }
+
+    public String getReplicationBindAddress() { return replicationBindAddress; }
+    public void setReplicationBindAddress(String replicationBindAddress) { this.replicationBindAddress = replicationBindAddress; }
+
+    public String getReplicationSecret() { return replicationSecret; }
+    public void setReplicationSecret(String replicationSecret) { this.replicationSecret = replicationSecret; }
+
+    public boolean isAutoPromote() { return autoPromote; }
+    public void setAutoPromote(boolean autoPromote) { this.autoPromote = autoPromote; }
+}
@@ -1,24 +1,278 @@
 package com.library.management;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.UUID;
 
+import com.library.management.index.SortedCatalog;
 import com.library.management.models.Admin;
 import com.library.management.models.Book;
 import com.library.management.models.LibraryUser;
+import com.library.management.models.Loan;
 import com.library.management.models.User;
+import com.library.management.query.BookQuery;
+import com.library.management.replication.ReplicationSource;
+import com.library.management.replication.StandbyLibrary;
+import com.library.management.server.LibraryServer;
+import com.library.management.server.ShardServer;
+import com.library.management.shard.RemoteLibrary;
+import com.library.management.shard.ShardedLibrary;
 
 public class Main {
+    private static final int PAGE_SIZE = 20;
+    private static final String REPLICATION_SECRET_VARIABLE = "LIBRARY_REPLICATION_SECRET";
+    private static final String SHARD_SECRET_VARIABLE = "LIBRARY_SHARD_SECRET";
+    private static final String PROMOTE_FILE = "promote";
     private static Library library;
     private static Scanner scanner;
     private static User currentUser;
 
+    // "serve [port] [shards]" starts the HTTP service instead of the interactive menu; shards is
+    // a count of in-process shards or a comma-separated list of shard URLs.
+    // "shard <[bindAddress:]port> [dataDirectory]" runs one shard for a router in another process,
+    // on loopback unless given an address; off loopback the secret in LIBRARY_SHARD_SECRET is
+    // required, and the router must have it too.
+    // "primary <port> <[bindAddress:]replicationPort> [dataDirectory]" serves HTTP like "serve" and
+    // ships every change to standbys, over loopback unless given an address; off loopback the
+    // secret in LIBRARY_REPLICATION_SECRET is required, and standbys must have it too.
+    // "standby <primaryHost:replicationPort> <port> [dataDirectory] [--auto-promote]" follows one
+    // and takes over its HTTP service when a "promote" file appears in its data directory, or
+    // with --auto-promote also once the primary has been silent for the failover timeout.
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("shard")) {
+            shard(args);
+            return;
+        }
+        if (args.length > 2 && args[0].equals("primary")) {
+            primary(args);
+            return;
+        }
+        if (args.length > 2 && args[0].equals("standby")) {
+            standby(args);
+            return;
+        }
         library = new Library();
         scanner = new Scanner(System.in);
+        // Flush the journal writer even when the JVM is stopped without using Exit
+        Runtime.getRuntime().addShutdownHook(new Thread(library::close, "library-shutdown"));
+        addDefaultAdmin(library);
 
-        // Add default admin user if none exists
+        while (true) {
+            try {
+                if (currentUser == null) {
+                    showLoginMenu();
+                } else if (currentUser instanceof Admin) {
+                    showAdminMenu();
+                } else {
+                    showUserMenu();
+                }
+            } catch (UncheckedIOException e) {
+                System.err.println("Error saving data: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void serve(String[] args) {
+        LibraryConfig config = new LibraryConfig();
+        if (args.length > 1) {
+            config.setHttpPort(Integer.parseInt(args[1]));
+        }
+        LibraryApi service;
+        try {
+            service = args.length > 2 ? openShards(config, args[2]) : new Library(config);
+        } catch (IOException e) {
+            System.err.println("Error opening shards: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        addDefaultAdmin(service);
+        startServer(service, config);
+    }
+
+    private static void startServer(LibraryApi service, LibraryConfig config) {
+        try {
+            LibraryServer server = new LibraryServer(service, config);
+            if (service instanceof Library) {
+                ((Library) service).getMetrics().registerGauge("sessions", server.getSessions()::size);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop(1);
+                service.close();
+            }, "library-shutdown"));
+            server.start();
+            System.out.println("Library service listening on port " + server.getPort());
+        } catch (IOException e) {
+            System.err.println("Error starting server: " + e.getMessage());
+            service.close();
+            System.exit(1);
+        }
+    }
+
+    private static LibraryApi openShards(LibraryConfig config, String shards) throws IOException {
+        if (!shards.contains("://")) {
+            return ShardedLibrary.open(config, Integer.parseInt(shards));
+        }
+        config.setShardSecret(System.getenv(SHARD_SECRET_VARIABLE));
+        List<LibraryApi> remotes = new ArrayList<>();
+        for (String url : shards.split(",")) {
+            remotes.add(RemoteLibrary.connect(url.trim(), config.getShardSecret()));
+        }
+        return new ShardedLibrary(remotes);
+    }
+
+    private static void shard(String[] args) {
+        LibraryConfig config = new LibraryConfig();
+        config.setShardBindAddress(addressOf(args[1]));
+        config.setShardSecret(System.getenv(SHARD_SECRET_VARIABLE));
+        if (args.length > 2) {
+            config.setDataDirectory(Paths.get(args[2]));
+        }
+        createDataDirectory(config);
+        library = new Library(config);
+        try {
+            InetAddress address = config.getShardBindAddress() == null ? InetAddress.getLoopbackAddress()
+                    : InetAddress.getByName(config.getShardBindAddress());
+            ShardServer server = new ShardServer(library, address, portOf(args[1]), config.getHttpThreads(),
+                    config.getShardSecret());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop(1);
+                library.close();
+            }, "library-shutdown"));
+            server.start();
+            System.out.println("Library shard listening on port " + server.getPort()
+                    + " of " + server.getAddress().getHostAddress());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error starting shard: " + e.getMessage());
+            library.close();
+            System.exit(1);
+        }
+    }
+
+    private static void primary(String[] args) {
+        LibraryConfig config = new LibraryConfig();
+        config.setHttpPort(Integer.parseInt(args[1]));
+        config.setReplicationBindAddress(addressOf(args[2]));
+        config.setReplicationSecret(System.getenv(REPLICATION_SECRET_VARIABLE));
+        if (args.length > 3) {
+            config.setDataDirectory(Paths.get(args[3]));
+        }
+        createDataDirectory(config);
+        library = new Library(config);
+        addDefaultAdmin(library);
+        try {
+            InetAddress address = config.getReplicationBindAddress() == null ? InetAddress.getLoopbackAddress()
+                    : InetAddress.getByName(config.getReplicationBindAddress());
+            ReplicationSource source = new ReplicationSource(library, address, portOf(args[2]),
+                    config.getReplicationBacklog(), config.getReplicationHeartbeatMillis(),
+                    config.getReplicationSecret());
+            source.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(source::close, "replication-shutdown"));
+            System.out.println("Replication listening on port " + source.getPort()
+                    + " of " + source.getAddress().getHostAddress());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error starting replication: " + e.getMessage());
+            library.close();
+            System.exit(1);
+        }
+        startServer(library, config);
+    }
+
+    // Promotes only a standby that has synchronized at least once, so it
+    // never takes over with an empty library. Nothing fences the old
+    // primary, so promotion waits for the operator, who has stopped it, to
+    // ask for it; --auto-promote takes the risk that it was only unreachable.
+    private static void standby(String[] args) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        boolean autoPromote = arguments.remove("--auto-promote");
+        String[] primary = arguments.get(1).split(":");
+        LibraryConfig config = new LibraryConfig();
+        config.setHttpPort(Integer.parseInt(arguments.get(2)));
+        if (arguments.size() > 3) {
+            config.setDataDirectory(Paths.get(arguments.get(3)));
+        }
+        config.setAutoPromote(autoPromote);
+        config.setReplicationSecret(System.getenv(REPLICATION_SECRET_VARIABLE));
+        createDataDirectory(config);
+        Path trigger = config.getDataDirectory().resolve(PROMOTE_FILE);
+        try {
+            // Left over from an earlier promotion, it would promote this standby at once
+            Files.deleteIfExists(trigger);
+        } catch (IOException e) {
+            System.err.println("Error removing " + trigger + ": " + e.getMessage());
+            System.exit(1);
+        }
+        StandbyLibrary standby = new StandbyLibrary(config, primary[0], Integer.parseInt(primary[1]));
+        Runtime.getRuntime().addShutdownHook(new Thread(standby::close, "standby-shutdown"));
+        standby.start();
+        System.out.println("Standby following " + arguments.get(1) + "; once the primary is stopped, create "
+                + trigger + " to promote it");
+        try {
+            while (!promotionDue(standby, config, trigger)) {
+                Thread.sleep(config.getReplicationHeartbeatMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        boolean requested = Files.exists(trigger);
+        long lag = standby.getLagEntries();
+        library = standby.promote();
+        try {
+            Files.deleteIfExists(trigger);
+        } catch (IOException e) {
+            System.err.println("Error removing " + trigger + ": " + e.getMessage());
+        }
+        System.out.println((requested ? "Promotion requested" : "Primary lost") + "; standby promoted at position "
+                + standby.getAppliedPosition() + (lag > 0 ? " with " + lag + " changes not received" : ""));
+        // The promoted library's data stays in the replica directory it was built in
+        System.out.println("Library data is in " + standby.getReplicaDirectory()
+                + "; restart this library with its path as the data directory");
+        startServer(library, config);
+    }
+
+    private static boolean promotionDue(StandbyLibrary standby, LibraryConfig config, Path trigger) {
+        if (standby.getLibrary() == null) {
+            return false;
+        }
+        return Files.exists(trigger)
+                || (config.isAutoPromote() && standby.getMillisSinceContact() >= config.getFailoverTimeoutMillis());
+    }
+
+    // The address of an "[address:]port" argument, or null if it has none
+    private static String addressOf(String spec) {
+        int colon = spec.lastIndexOf(':');
+        return colon < 0 ? null : spec.substring(0, colon);
+    }
+
+    private static int portOf(String spec) {
+        return Integer.parseInt(spec.substring(spec.lastIndexOf(':') + 1));
+    }
+
+    private static void createDataDirectory(LibraryConfig config) {
+        try {
+            Files.createDirectories(config.getDataDirectory());
+        } catch (IOException e) {
+            System.err.println("Error creating data directory: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Add default admin user if none exists
+    private static void addDefaultAdmin(LibraryApi library) {
         if (library.getUserByUsername("admin") == null) {
             Admin admin = new Admin(
                 "admin1",
@@ -29,16 +283,6 @@ public class Main {
             );
             library.addUser(admin);
         }
-
-        while (true) {
-            if (currentUser == null) {
-                showLoginMenu();
-            } else if (currentUser instanceof Admin) {
-                showAdminMenu();
-            } else {
-                showUserMenu();
-            }
-        }
     }
 
     private static void showLoginMenu() {
@@ -60,6 +304,7 @@ public class Main {
                 break;
             case 3:
                 System.out.println("Goodbye!");
+                library.close();
                 System.exit(0);
             default:
                 System.out.println("Invalid option!");
@@ -110,7 +355,10 @@ public class Main {
         System.out.println("3. Borrow Book");
         System.out.println("4. Return Book");
         System.out.println("5. View My Borrowed Books");
-        System.out.println("6. Logout");
+        System.out.println("6. Reserve Book");
+        System.out.println("7. Cancel Reservation");
+        System.out.println("8. Renew Book");
+        System.out.println("9. Logout");
         System.out.print("Choose an option: ");
 
         int choice = scanner.nextInt();
@@ -133,6 +381,15 @@ public class Main {
                 viewMyBorrowedBooks();
                 break;
             case 6:
+                reserveBook();
+                break;
+            case 7:
+                cancelReservation();
+                break;
+            case 8:
+                renewBook();
+                break;
+            case 9:
                 logout();
                 break;
             default:
@@ -209,6 +466,8 @@ public class Main {
 
         if (library.removeBook(isbn)) {
             System.out.println("Book removed successfully!");
+        } else if (library.findBookByIsbn(isbn) != null) {
+            System.out.println("Book has copies on loan or reserved and cannot be removed yet.");
         } else {
             System.out.println("Book not found!");
         }
@@ -219,9 +478,20 @@ public class Main {
         System.out.println("Sort by (title/author/year): ");
         String sortBy = scanner.nextLine();
         
-        List<Book> books = library.getSortedBooks(sortBy);
-        for (Book book : books) {
-            System.out.println(book);
+        Book last = null;
+        while (true) {
+            List<Book> page = library.getSortedBooks(sortBy, last, PAGE_SIZE);
+            for (Book book : page) {
+                System.out.println(book);
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            System.out.print("Press Enter for more, or q to stop: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                break;
+            }
+            last = page.get(page.size() - 1);
         }
     }
 
@@ -237,11 +507,17 @@ public class Main {
         System.out.println("1. Title");
         System.out.println("2. Author");
         System.out.println("3. Genre");
+        System.out.println("4. Combined filters");
         System.out.print("Choose an option: ");
 
         int choice = scanner.nextInt();
         scanner.nextLine(); // Consume newline
 
+        if (choice == 4) {
+            printResults(library.findBooks(readQuery()));
+            return;
+        }
+
         System.out.print("Enter search term: ");
         String searchTerm = scanner.nextLine();
 
@@ -260,7 +536,45 @@ public class Main {
                 System.out.println("Invalid option!");
                 return;
         }
+        printResults(results);
+    }
 
+    // Blank answers leave a criterion out
+    private static BookQuery readQuery() {
+        BookQuery query = new BookQuery().orderBy(SortedCatalog.Order.TITLE);
+        System.out.print("Title contains: ");
+        String title = scanner.nextLine().trim();
+        if (!title.isEmpty()) {
+            query.titleContains(title);
+        }
+        System.out.print("Author contains: ");
+        String author = scanner.nextLine().trim();
+        if (!author.isEmpty()) {
+            query.authorContains(author);
+        }
+        System.out.print("Genre: ");
+        String genre = scanner.nextLine().trim();
+        if (!genre.isEmpty()) {
+            query.genre(genre);
+        }
+        System.out.print("Published from year: ");
+        String from = scanner.nextLine().trim();
+        System.out.print("Published up to year: ");
+        String to = scanner.nextLine().trim();
+        try {
+            query.yearBetween(from.isEmpty() ? Integer.MIN_VALUE : Integer.parseInt(from),
+                    to.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(to));
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid year range.");
+        }
+        System.out.print("Available copies only (y/n): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+            query.availableOnly();
+        }
+        return query;
+    }
+
+    private static void printResults(List<Book> results) {
         if (results.isEmpty()) {
             System.out.println("No books found!");
         } else {
@@ -303,23 +617,82 @@ public class Main {
         }
     }
 
+    private static void reserveBook() {
+        if (!(currentUser instanceof LibraryUser)) {
+            System.out.println("Only library users can reserve books!");
+            return;
+        }
+
+        System.out.print("Enter ISBN of book to reserve: ");
+        String isbn = scanner.nextLine();
+
+        boolean reserved = library.reserveBook(currentUser.getUserId(), isbn);
+        int position = library.getReservationPosition(currentUser.getUserId(), isbn);
+        if (reserved) {
+            System.out.println("Book reserved! Your position in the queue: " + position);
+        } else if (position == 0) {
+            System.out.println("A copy is already being held for you. Borrow it to pick it up.");
+        } else if (position > 0) {
+            System.out.println("You are already in the queue at position " + position + ".");
+        } else {
+            System.out.println("Unable to reserve book. It might be available to borrow now, or you already have it.");
+        }
+    }
+
+    private static void cancelReservation() {
+        if (!(currentUser instanceof LibraryUser)) {
+            System.out.println("Only library users can cancel reservations!");
+            return;
+        }
+
+        System.out.print("Enter ISBN of reservation to cancel: ");
+        String isbn = scanner.nextLine();
+
+        if (library.cancelReservation(currentUser.getUserId(), isbn)) {
+            System.out.println("Reservation cancelled.");
+        } else {
+            System.out.println("You have no reservation for this book.");
+        }
+    }
+
     private static void viewMyBorrowedBooks() {
         if (!(currentUser instanceof LibraryUser)) {
             System.out.println("Only library users can view borrowed books!");
             return;
         }
 
-        LibraryUser user = (LibraryUser) currentUser;
-        List<Book> borrowedBooks = user.getBorrowedBooks();
+        List<Loan> loans = library.getLoans(currentUser.getUserId());
 
-        if (borrowedBooks.isEmpty()) {
+        if (loans.isEmpty()) {
             System.out.println("You haven't borrowed any books.");
         } else {
             System.out.println("\nYour Borrowed Books:");
-            for (Book book : borrowedBooks) {
-                System.out.println(book);
+            long now = System.currentTimeMillis();
+            for (Loan loan : loans) {
+                System.out.println(loan.getBook() + "\n  Due: " + Instant.ofEpochMilli(loan.getDueAt())
+                        + (loan.isOverdue(now) ? " (OVERDUE)" : ""));
             }
         }
+        long fines = library.getFinesOwed(currentUser.getUserId());
+        if (fines > 0) {
+            System.out.printf("Fines owed: %d.%02d%n", fines / 100, fines % 100);
+        }
+    }
+
+    private static void renewBook() {
+        if (!(currentUser instanceof LibraryUser)) {
+            System.out.println("Only library users can renew books!");
+            return;
+        }
+
+        System.out.print("Enter ISBN of book to renew: ");
+        String isbn = scanner.nextLine();
+
+        if (library.renewLoan(currentUser.getUserId(), isbn)) {
+            System.out.println("Book renewed successfully!");
+        } else {
+            System.out.println("Unable to renew book. It may be overdue, out of renewals, or reserved by someone else.");
+        }
     }
 
     private static void viewStatistics() {
@@ -335,7 +708,17 @@ public class Main {
             System.out.println("Most Active User: " + mostActive.getName());
         }
 
-        System.out.println("Total Books: " + library.getAllBooks().size());
-        System.out.println("Total Users: " + library.getAllUsers().size());
+        System.out.println("Total Books: " + library.getBookCount());
+        System.out.println("Total Users: " + library.getUserCount());
+        System.out.println("Copies on Loan: " + library.getCopiesOnLoan() + "/" + library.getTotalCopies());
+        System.out.println("Overdue Loans: " + library.getOverdueLoanCount());
+
+        Map<String, Long> borrowsByGenre = library.getBorrowsByGenre();
+        if (!borrowsByGenre.isEmpty()) {
+            System.out.println("Borrows by Genre:");
+            for (Map.Entry<String, Long> entry : borrowsByGenre.entrySet()) {
+                System.out.println("  " + entry.getKey() + ": " + entry.getValue());
+            }
+        }
     }
 } 
\ No newline at end of file
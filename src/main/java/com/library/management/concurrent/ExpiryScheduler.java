@@ -0,0 +1,104 @@
+package com.library.management.concurrent;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Hands keys to a handler once their deadline passes. Deadlines sit in a
+// DelayQueue watched by one daemon thread, which sleeps until the earliest
+// one is due and then passes every expired key over in a single batch.
+// Keys are never removed early; the handler is expected to skip keys that
+// no longer apply.
+public class ExpiryScheduler<K> implements Closeable {
+    private final DelayQueue<Deadline<K>> deadlines;
+    private final Consumer<List<K>> handler;
+    private final Thread thread;
+    private final Deadline<K> stop;
+
+    public ExpiryScheduler(String name, Consumer<List<K>> handler) {
+        this.deadlines = new DelayQueue<>();
+        this.handler = handler;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.stop = new Deadline<>(null, 0);  // Already due, so take() returns it at once
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void schedule(K key, long deadlineMillis) {
+        deadlines.put(new Deadline<>(key, deadlineMillis));
+    }
+
+    public int size() {
+        return deadlines.size();
+    }
+
+    // Stops the thread once any batch in progress has been handled
+    @Override
+    public void close() {
+        if (!thread.isAlive()) {
+            return;
+        }
+        deadlines.put(stop);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Deadline<K>> due = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                due.add(deadlines.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            deadlines.drainTo(due);
+            List<K> keys = new ArrayList<>(due.size());
+            for (Deadline<K> deadline : due) {
+                if (deadline == stop) {
+                    running = false;
+                } else {
+                    keys.add(deadline.key);
+                }
+            }
+            due.clear();
+            try {
+                if (!keys.isEmpty()) {
+                    handler.accept(keys);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error processing expirations: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Deadline<K> implements Delayed {
+        final K key;
+        final long deadlineMillis;
+
+        Deadline(K key, long deadlineMillis) {
+            this.key = key;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadlineMillis, ((Deadline<?>) other).deadlineMillis);
+        }
+    }
+}
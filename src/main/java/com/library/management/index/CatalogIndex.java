@@ -0,0 +1,142 @@
+package com.library.management.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.library.management.models.Book;
+
+// Secondary indexes over the catalog, kept in step with Library mutations
+// and with Book setters through the book's change listener. Lookups share a
+// read lock; maintenance takes the write lock.
+public class CatalogIndex {
+    private final ReadWriteLock lock;
+    private final NGramIndex titleIndex;
+    private final NGramIndex authorIndex;
+    private final Map<String, Set<Book>> booksByGenre;  // Keyed by case-folded genre
+
+    public CatalogIndex() {
+        this.lock = new ReentrantReadWriteLock();
+        this.titleIndex = new NGramIndex();
+        this.authorIndex = new NGramIndex();
+        this.booksByGenre = new HashMap<>();
+    }
+
+    public void add(Book book) {
+        lock.writeLock().lock();
+        try {
+            titleIndex.add(book, book.getTitle());
+            authorIndex.add(book, book.getAuthor());
+            addGenre(book, book.getGenre());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Indexes a batch under a single acquisition of the write lock
+    public void addAll(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            for (Book book : books) {
+                titleIndex.add(book, book.getTitle());
+                authorIndex.add(book, book.getAuthor());
+                addGenre(book, book.getGenre());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Book book) {
+        lock.writeLock().lock();
+        try {
+            titleIndex.remove(book, book.getTitle());
+            authorIndex.remove(book, book.getAuthor());
+            removeGenre(book, book.getGenre());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void update(Book book, String property, Object oldValue) {
+        lock.writeLock().lock();
+        try {
+            switch (property) {
+                case "title":
+                    titleIndex.remove(book, (String) oldValue);
+                    titleIndex.add(book, book.getTitle());
+                    break;
+                case "author":
+                    authorIndex.remove(book, (String) oldValue);
+                    authorIndex.add(book, book.getAuthor());
+                    break;
+                case "genre":
+                    removeGenre(book, (String) oldValue);
+                    addGenre(book, book.getGenre());
+                    break;
+                default:
+                    break;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Book> findByTitle(String title) {
+        lock.readLock().lock();
+        try {
+            return titleIndex.search(title);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Book> findByAuthor(String author) {
+        lock.readLock().lock();
+        try {
+            return authorIndex.search(author);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Book> findByGenre(String genre) {
+        lock.readLock().lock();
+        try {
+            Set<Book> books = booksByGenre.get(NGramIndex.normalize(genre));
+            return books == null ? Collections.emptyList() : new ArrayList<>(books);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            titleIndex.clear();
+            authorIndex.clear();
+            booksByGenre.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addGenre(Book book, String genre) {
+        booksByGenre.computeIfAbsent(NGramIndex.normalize(genre), key -> new HashSet<>()).add(book);
+    }
+
+    private void removeGenre(Book book, String genre) {
+        String key = NGramIndex.normalize(genre);
+        Set<Book> books = booksByGenre.get(key);
+        if (books != null && books.remove(book) && books.isEmpty()) {
+            booksByGenre.remove(key);
+        }
+    }
+}
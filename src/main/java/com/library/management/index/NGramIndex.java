@@ -0,0 +1,103 @@
+package com.library.management.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.library.management.models.Book;
+
+// Substring index over one text attribute of the catalog. Books are grouped by
+// their normalized value, and each distinct value is posted under every
+// trigram it contains. A query scans the smallest posting list among its
+// trigrams and confirms candidates with contains(), so results match a
+// case-insensitive substring scan without touching unrelated books.
+public class NGramIndex {
+    private static final int GRAM_LENGTH = 3;
+
+    private final Map<String, Set<Book>> booksByValue;
+    private final Map<String, Set<String>> valuesByGram;
+
+    public NGramIndex() {
+        this.booksByValue = new HashMap<>();
+        this.valuesByGram = new HashMap<>();
+    }
+
+    public static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    public void add(Book book, String value) {
+        String normalized = normalize(value);
+        Set<Book> books = booksByValue.get(normalized);
+        if (books == null) {
+            books = new HashSet<>();
+            booksByValue.put(normalized, books);
+            for (int i = 0; i + GRAM_LENGTH <= normalized.length(); i++) {
+                valuesByGram.computeIfAbsent(normalized.substring(i, i + GRAM_LENGTH), gram -> new HashSet<>())
+                        .add(normalized);
+            }
+        }
+        books.add(book);
+    }
+
+    public void remove(Book book, String value) {
+        String normalized = normalize(value);
+        Set<Book> books = booksByValue.get(normalized);
+        if (books == null || !books.remove(book) || !books.isEmpty()) {
+            return;
+        }
+        booksByValue.remove(normalized);
+        for (int i = 0; i + GRAM_LENGTH <= normalized.length(); i++) {
+            String gram = normalized.substring(i, i + GRAM_LENGTH);
+            Set<String> values = valuesByGram.get(gram);
+            if (values != null) {
+                values.remove(normalized);
+                if (values.isEmpty()) {
+                    valuesByGram.remove(gram);
+                }
+            }
+        }
+    }
+
+    public List<Book> search(String query) {
+        String normalized = normalize(query);
+        List<Book> results = new ArrayList<>();
+
+        // Queries shorter than a gram are checked against every distinct value
+        Iterable<String> candidates = booksByValue.keySet();
+        if (normalized.length() >= GRAM_LENGTH) {
+            Set<String> smallest = null;
+            for (int i = 0; i + GRAM_LENGTH <= normalized.length(); i++) {
+                Set<String> values = valuesByGram.get(normalized.substring(i, i + GRAM_LENGTH));
+                if (values == null) {
+                    return Collections.emptyList();
+                }
+                if (smallest == null || values.size() < smallest.size()) {
+                    smallest = values;
+                }
+            }
+            candidates = smallest;
+        }
+
+        for (String value : candidates) {
+            if (value.contains(normalized)) {
+                results.addAll(booksByValue.get(value));
+            }
+        }
+        return results;
+    }
+
+    public int distinctValueCount() {
+        return booksByValue.size();
+    }
+
+    public void clear() {
+        booksByValue.clear();
+        valuesByGram.clear();
+    }
+}
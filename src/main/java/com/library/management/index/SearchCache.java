@@ -0,0 +1,185 @@
+package com.library.management.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.library.management.models.Book;
+
+// Bounded LRU cache of title, author and genre search results, keyed by the
+// normalized search term. It is told about the same changes as CatalogIndex
+// and drops only the entries a change can affect: title and author entries
+// whose term occurs in the old or new value, and the genre entries for the
+// old and new genre. Every invalidation bumps a generation; a result is only
+// stored if no invalidation happened while it was computed, so a search
+// racing a mutation never caches what the mutation made stale.
+public class SearchCache {
+    public enum Field { TITLE, AUTHOR, GENRE }
+
+    private final int capacity;
+    private final LinkedHashMap<Key, List<Book>> entries;  // Guarded by this, in access order
+    private long generation;                               // Guarded by this
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder invalidations;
+
+    public SearchCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, List<Book>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<Book>> eldest) {
+                if (size() > SearchCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.invalidations = new LongAdder();
+    }
+
+    // The cached result, or null; callers must not modify it
+    public List<Book> get(Field field, String term) {
+        List<Book> result;
+        synchronized (this) {
+            result = entries.get(new Key(field, NGramIndex.normalize(term)));
+        }
+        (result != null ? hits : misses).increment();
+        return result;
+    }
+
+    // Read before computing a result that will be passed to put
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public void put(Field field, String term, List<Book> result, long computedAt) {
+        if (capacity <= 0) {
+            return;
+        }
+        List<Book> copy = new ArrayList<>(result);
+        synchronized (this) {
+            if (computedAt == generation) {
+                entries.put(new Key(field, NGramIndex.normalize(term)), copy);
+            }
+        }
+    }
+
+    public synchronized void add(Book book) {
+        invalidate(book);
+    }
+
+    public synchronized void addAll(Collection<Book> books) {
+        if (books.size() > entries.size()) {
+            clear();
+            return;
+        }
+        for (Book book : books) {
+            invalidate(book);
+        }
+    }
+
+    public synchronized void remove(Book book) {
+        invalidate(book);
+    }
+
+    public synchronized void update(Book book, String property, Object oldValue) {
+        switch (property) {
+            case "title":
+                invalidate(Field.TITLE, (String) oldValue, book.getTitle());
+                break;
+            case "author":
+                invalidate(Field.AUTHOR, (String) oldValue, book.getAuthor());
+                break;
+            case "genre":
+                invalidate(Field.GENRE, (String) oldValue, book.getGenre());
+                break;
+            default:
+                break;
+        }
+    }
+
+    public synchronized void clear() {
+        invalidations.add(entries.size());
+        entries.clear();
+        generation++;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    private void invalidate(Book book) {
+        invalidate(Field.TITLE, book.getTitle(), null);
+        invalidate(Field.AUTHOR, book.getAuthor(), null);
+        invalidate(Field.GENRE, book.getGenre(), null);
+    }
+
+    // Drops the field's entries whose results could include a book with either value
+    private void invalidate(Field field, String oldValue, String newValue) {
+        generation++;
+        String oldNormalized = NGramIndex.normalize(oldValue);
+        String newNormalized = newValue == null ? null : NGramIndex.normalize(newValue);
+        Iterator<Key> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            Key key = keys.next();
+            if (key.field == field && (affects(key, oldNormalized) || (newNormalized != null && affects(key, newNormalized)))) {
+                keys.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    // Genre searches match the whole value; title and author searches any substring
+    private static boolean affects(Key key, String value) {
+        return key.field == Field.GENRE ? value.equals(key.term) : value.contains(key.term);
+    }
+
+    private static final class Key {
+        final Field field;
+        final String term;
+
+        Key(Field field, String term) {
+            this.field = field;
+            this.term = term;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return field == key.field && term.equals(key.term);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(field, term);
+        }
+    }
+}
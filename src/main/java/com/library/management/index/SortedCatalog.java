@@ -0,0 +1,139 @@
+package com.library.management.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+import com.library.management.models.Book;
+
+// Catalog kept in title, author, year and ISBN order. Each order is a skip
+// list keyed by (sort value, ISBN), so listing never re-sorts and a page is
+// read by seeking to the previous page's last book.
+public class SortedCatalog {
+    public enum Order {
+        TITLE("title", Book::getTitle),
+        AUTHOR("author", Book::getAuthor),
+        YEAR("year", Book::getYear),
+        ISBN("isbn", Book::getIsbn);
+
+        private final String property;
+        private final Function<Book, Comparable<?>> value;
+
+        Order(String property, Function<Book, Comparable<?>> value) {
+            this.property = property;
+            this.value = value;
+        }
+
+        // Unrecognized names fall back to ISBN order
+        public static Order of(String name) {
+            for (Order order : values()) {
+                if (order.property.equals(name.toLowerCase(Locale.ROOT))) {
+                    return order;
+                }
+            }
+            return ISBN;
+        }
+
+        // The order's ranking of two books, e.g. for merging lists sorted by it
+        public Comparator<Book> comparator() {
+            return (a, b) -> keyFor(this, a).compareTo(keyFor(this, b));
+        }
+    }
+
+    private final Map<Order, NavigableMap<SortKey, Book>> views;
+
+    public SortedCatalog() {
+        this.views = new EnumMap<>(Order.class);
+        for (Order order : Order.values()) {
+            views.put(order, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    public void add(Book book) {
+        for (Order order : Order.values()) {
+            views.get(order).put(keyFor(order, book), book);
+        }
+    }
+
+    public void remove(Book book) {
+        for (Order order : Order.values()) {
+            views.get(order).remove(keyFor(order, book));
+        }
+    }
+
+    public void update(Book book, String property, Object oldValue) {
+        for (Order order : Order.values()) {
+            if (order.property.equals(property)) {
+                views.get(order).remove(new SortKey((Comparable<?>) oldValue, book.getIsbn()));
+                views.get(order).put(keyFor(order, book), book);
+            }
+        }
+    }
+
+    public List<Book> list(Order order) {
+        return new ArrayList<>(views.get(order).values());
+    }
+
+    // Live, read-only view in the given order; iterating it copies nothing
+    public Collection<Book> view(Order order) {
+        return Collections.unmodifiableCollection(views.get(order).values());
+    }
+
+    // Up to limit books following the given one, or from the start when after is null
+    public List<Book> page(Order order, Book after, int limit) {
+        NavigableMap<SortKey, Book> view = views.get(order);
+        if (after != null) {
+            view = view.tailMap(keyFor(order, after), false);
+        }
+        List<Book> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<Book> books = view.values().iterator();
+        while (page.size() < limit && books.hasNext()) {
+            page.add(books.next());
+        }
+        return page;
+    }
+
+    public void clear() {
+        for (NavigableMap<SortKey, Book> view : views.values()) {
+            view.clear();
+        }
+    }
+
+    private static SortKey keyFor(Order order, Book book) {
+        return new SortKey(order.value.apply(book), book.getIsbn());
+    }
+
+    // Sort value captured when the book was filed, with ISBN as tie-breaker
+    private static final class SortKey implements Comparable<SortKey> {
+        private final Comparable<?> value;
+        private final String isbn;
+
+        SortKey(Comparable<?> value, String isbn) {
+            this.value = value;
+            this.isbn = isbn;
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public int compareTo(SortKey other) {
+            int result = compareNullsFirst((Comparable) value, (Comparable) other.value);
+            return result != 0 ? result : compareNullsFirst(isbn, other.isbn);
+        }
+
+        private static <T extends Comparable<T>> int compareNullsFirst(T a, T b) {
+            if (a == null || b == null) {
+                return a == b ? 0 : (a == null ? -1 : 1);
+            }
+            return a.compareTo(b);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.library.management.loans;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.library.management.models.Loan;
+
+// Open loans indexed by borrower and by ISBN, with their due dates on a
+// timer wheel. advance() reports the loans that fell overdue since the last
+// call and only touches those and the wheel slots the clock passed, so its
+// cost follows the loans expiring rather than the loans outstanding. The
+// loans themselves are stored on LibraryUser; Library rebuilds the ledger
+// from them at startup and keeps it in step with every borrow, renewal and
+// return. Loans without a due date are indexed but never fall overdue.
+public class LoanLedger {
+    // Each user's and each book's loans are changed only inside compute() on
+    // their key, and read under the inner map's monitor, so borrows by
+    // different users share no lock. Due dates, and the timer and overdue
+    // flag of every entry, are guarded by the wheel's monitor, which is held
+    // only while a slot is changed or the clock moves.
+    private final ConcurrentHashMap<String, Map<String, Entry>> byUser;
+    private final ConcurrentHashMap<String, Map<String, Entry>> byIsbn;
+    private final TimerWheel<Entry> dueDates;
+    private final AtomicInteger size;
+    private int overdueCount;  // Guarded by dueDates
+
+    public LoanLedger(long tickMillis, long nowMillis) {
+        this.byUser = new ConcurrentHashMap<>();
+        this.byIsbn = new ConcurrentHashMap<>();
+        this.dueDates = new TimerWheel<>(tickMillis, nowMillis);
+        this.size = new AtomicInteger();
+    }
+
+    // Adds the loan, or replaces the user's loan of the same book
+    public void add(String userId, Loan loan) {
+        byUser.compute(userId, (key, entries) -> {
+            if (entries == null) {
+                entries = new LinkedHashMap<>();
+            }
+            Entry entry;
+            boolean added = false;
+            synchronized (entries) {
+                entry = entries.get(loan.getIsbn());
+                if (entry == null) {
+                    entry = new Entry(userId, loan);
+                    entries.put(loan.getIsbn(), entry);
+                    added = true;
+                }
+            }
+            if (added) {
+                size.incrementAndGet();
+                addBorrower(loan.getIsbn(), entry);
+            }
+            synchronized (dueDates) {
+                unschedule(entry);
+                entry.loan = loan;
+                if (loan.getDueAt() > 0) {
+                    entry.timer = dueDates.schedule(entry, loan.getDueAt());
+                }
+            }
+            return entries;
+        });
+    }
+
+    // Returns the loan removed, or null if the user had none of the book
+    public Loan remove(String userId, String isbn) {
+        Loan[] removed = new Loan[1];
+        byUser.computeIfPresent(userId, (key, entries) -> {
+            Entry entry;
+            boolean empty;
+            synchronized (entries) {
+                entry = entries.remove(isbn);
+                empty = entries.isEmpty();
+            }
+            if (entry != null) {
+                size.decrementAndGet();
+                synchronized (dueDates) {
+                    unschedule(entry);
+                }
+                byIsbn.computeIfPresent(isbn, (book, borrowers) -> {
+                    synchronized (borrowers) {
+                        borrowers.remove(userId);
+                        return borrowers.isEmpty() ? null : borrowers;
+                    }
+                });
+                removed[0] = entry.loan;
+            }
+            return empty ? null : entries;
+        });
+        return removed[0];
+    }
+
+    public Loan get(String userId, String isbn) {
+        Entry entry = getEntry(userId, isbn);
+        return entry == null ? null : entry.loan;
+    }
+
+    // The user's loans in borrowing order
+    public List<Loan> getLoans(String userId) {
+        Map<String, Entry> entries = byUser.get(userId);
+        if (entries == null) {
+            return new ArrayList<>();
+        }
+        synchronized (entries) {
+            List<Loan> loans = new ArrayList<>(entries.size());
+            for (Entry entry : entries.values()) {
+                loans.add(entry.loan);
+            }
+            return loans;
+        }
+    }
+
+    // Users with a copy of the book out
+    public List<String> getBorrowers(String isbn) {
+        Map<String, Entry> borrowers = byIsbn.get(isbn);
+        if (borrowers == null) {
+            return new ArrayList<>();
+        }
+        synchronized (borrowers) {
+            return new ArrayList<>(borrowers.keySet());
+        }
+    }
+
+    // True once advance() has reported the loan overdue, until it is returned or renewed
+    public boolean isOverdue(String userId, String isbn) {
+        Entry entry = getEntry(userId, isbn);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (dueDates) {
+            return entry.overdue;
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int getOverdueCount() {
+        synchronized (dueDates) {
+            return overdueCount;
+        }
+    }
+
+    // Moves the ledger's clock to nowMillis and passes every loan that fell
+    // due on the way to the listener, outside the wheel's lock. Returns the
+    // number of loans reported.
+    public int advance(long nowMillis, OverdueListener listener) {
+        List<Entry> due = new ArrayList<>();
+        List<Loan> loans = new ArrayList<>();
+        synchronized (dueDates) {
+            dueDates.advance(nowMillis, entry -> {
+                entry.timer = null;
+                entry.overdue = true;
+                overdueCount++;
+                due.add(entry);
+                loans.add(entry.loan);
+            });
+        }
+        for (int i = 0; i < due.size(); i++) {
+            listener.loanOverdue(due.get(i).userId, loans.get(i));
+        }
+        return due.size();
+    }
+
+    private Entry getEntry(String userId, String isbn) {
+        Map<String, Entry> entries = byUser.get(userId);
+        if (entries == null) {
+            return null;
+        }
+        synchronized (entries) {
+            return entries.get(isbn);
+        }
+    }
+
+    private void addBorrower(String isbn, Entry entry) {
+        byIsbn.compute(isbn, (key, borrowers) -> {
+            if (borrowers == null) {
+                borrowers = new LinkedHashMap<>();
+            }
+            synchronized (borrowers) {
+                borrowers.put(entry.userId, entry);
+            }
+            return borrowers;
+        });
+    }
+
+    // Called holding the wheel's monitor
+    private void unschedule(Entry entry) {
+        if (entry.timer != null) {
+            dueDates.cancel(entry.timer);
+            entry.timer = null;
+        }
+        if (entry.overdue) {
+            entry.overdue = false;
+            overdueCount--;
+        }
+    }
+
+    private static final class Entry {
+        final String userId;
+        volatile Loan loan;
+        TimerWheel.Timer<Entry> timer;  // Null once fired, or for a loan with no due date
+        boolean overdue;
+
+        Entry(String userId, Loan loan) {
+            this.userId = userId;
+            this.loan = loan;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.library.management.loans;
+
+import com.library.management.models.Loan;
+
+public interface OverdueListener {
+    void loanOverdue(String userId, Loan loan);
+}
@@ -0,0 +1,191 @@
+package com.library.management.loans;
+
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel. Time is counted in ticks; LEVELS wheels of SLOTS
+// slots each cover the next SLOTS^(n+1) ticks. A timer is filed on the wheel
+// of the highest base-SLOTS digit in which its tick differs from the current
+// one, and as the clock reaches its slot it cascades one wheel down, until
+// the bottom wheel fires it. Scheduling and cancelling are O(1); advancing
+// costs one step per tick passed plus at most LEVELS moves per timer, however
+// many timers are pending. Timers beyond the top wheel wait in an overflow
+// list that is refiled each time the top wheel wraps.
+//
+// Timers fire once the clock's tick reaches their deadline rounded up to a
+// tick: never early, at most one tick late. Not thread-safe.
+public class TimerWheel<K> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final Timer<K>[][] wheels;
+    private final Timer<K> overflow;
+    private final Timer<K> due;  // Filed with a deadline already passed; fired by the next advance
+    private long currentTick;    // Every timer due at or before this tick has fired
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimerWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.wheels = new Timer[LEVELS][SLOTS];
+        for (Timer<K>[] wheel : wheels) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheel[slot] = Timer.list();
+            }
+        }
+        this.overflow = Timer.list();
+        this.due = Timer.list();
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    public Timer<K> schedule(K key, long deadlineMillis) {
+        Timer<K> timer = new Timer<>(key, -Math.floorDiv(-deadlineMillis, tickMillis));
+        file(timer);
+        size++;
+        return timer;
+    }
+
+    // False if the timer already fired or was cancelled
+    public boolean cancel(Timer<K> timer) {
+        if (!timer.isScheduled()) {
+            return false;
+        }
+        timer.unlink();
+        size--;
+        return true;
+    }
+
+    // Moves the clock to nowMillis, passing every timer that falls due to the
+    // handler a tick at a time; returns the number fired. A clock moved
+    // backwards is ignored.
+    public int advance(long nowMillis, Consumer<K> handler) {
+        long target = Math.floorDiv(nowMillis, tickMillis);
+        int fired = fire(due, handler);
+        while (currentTick < target) {
+            if (size == 0) {
+                currentTick = target;
+                break;
+            }
+            currentTick++;
+            if (lowBitsZero(currentTick, LEVELS)) {
+                cascade(overflow);
+            }
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if (lowBitsZero(currentTick, level)) {
+                    cascade(wheels[level][slot(currentTick, level)]);
+                }
+            }
+            fired += fire(wheels[0][slot(currentTick, 0)], handler);
+            fired += fire(due, handler);
+        }
+        return fired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void file(Timer<K> timer) {
+        long tick = timer.deadlineTick;
+        if (tick <= currentTick) {
+            due.append(timer);
+            return;
+        }
+        int level = (63 - Long.numberOfLeadingZeros(tick ^ currentTick)) / SLOT_BITS;
+        if (level >= LEVELS) {
+            overflow.append(timer);
+        } else {
+            wheels[level][slot(tick, level)].append(timer);
+        }
+    }
+
+    // Refiles the list's timers against the current tick
+    private void cascade(Timer<K> list) {
+        for (Timer<K> timer = list.detach(); timer != null; ) {
+            Timer<K> next = timer.next;
+            timer.clear();
+            file(timer);
+            timer = next;
+        }
+    }
+
+    private int fire(Timer<K> list, Consumer<K> handler) {
+        int fired = 0;
+        for (Timer<K> timer = list.detach(); timer != null; ) {
+            Timer<K> next = timer.next;
+            timer.clear();
+            size--;
+            fired++;
+            handler.accept(timer.key);
+            timer = next;
+        }
+        return fired;
+    }
+
+    private static int slot(long tick, int level) {
+        return (int) (tick >>> (SLOT_BITS * level)) & (SLOTS - 1);
+    }
+
+    private static boolean lowBitsZero(long tick, int level) {
+        return (tick & ((1L << (SLOT_BITS * level)) - 1)) == 0;
+    }
+
+    // A scheduled timer, and also the sentinel heading each slot's circular list
+    public static final class Timer<K> {
+        private final K key;
+        private final long deadlineTick;
+        private Timer<K> prev;
+        private Timer<K> next;
+
+        private Timer(K key, long deadlineTick) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+        }
+
+        private static <K> Timer<K> list() {
+            Timer<K> sentinel = new Timer<>(null, 0);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+
+        public K getKey() { return key; }
+
+        public boolean isScheduled() { return next != null; }
+
+        private void append(Timer<K> timer) {
+            timer.prev = prev;
+            timer.next = this;
+            prev.next = timer;
+            prev = timer;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            clear();
+        }
+
+        private void clear() {
+            prev = null;
+            next = null;
+        }
+
+        // Empties the list and returns its first timer, chained to the rest
+        // through next and ending in null
+        private Timer<K> detach() {
+            if (next == this) {
+                return null;
+            }
+            Timer<K> first = next;
+            prev.next = null;
+            prev = this;
+            next = this;
+            return first;
+        }
+    }
+}
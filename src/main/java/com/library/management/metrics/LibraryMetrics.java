@@ -0,0 +1,243 @@
+package com.library.management.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Counters and latency histograms for Library operations. Callers take
+// System.nanoTime() before an operation and pass it to record() afterwards;
+// recording touches only preallocated counters. Gauges are sampled when a
+// report is built, never on the request path.
+public class LibraryMetrics implements LibraryMetricsMXBean {
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    public enum Operation {
+        SEARCH, LOOKUP, LIST, ADD_BOOK, REMOVE_BOOK, ADD_USER, AUTHENTICATE,
+        BORROW, RETURN, RENEW, RESERVE, CANCEL_RESERVATION, PAY_FINES, LOAD, SAVE;
+
+        public String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final String dataDirectory;
+    private final LatencyHistogram[] latencies;
+    private final LongAdder[] misses;  // Searches with no result, mutations that changed nothing
+    private final LongAdder snapshotBytes;
+    private final AtomicLong lastSnapshotBytes;
+    private final AtomicLong lastSnapshotNanos;
+    private final Map<String, LongSupplier> gauges;
+    private ObjectName objectName;
+
+    public LibraryMetrics(String dataDirectory) {
+        this.dataDirectory = dataDirectory;
+        this.latencies = new LatencyHistogram[OPERATIONS.length];
+        this.misses = new LongAdder[OPERATIONS.length];
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            misses[i] = new LongAdder();
+        }
+        this.snapshotBytes = new LongAdder();
+        this.lastSnapshotBytes = new AtomicLong();
+        this.lastSnapshotNanos = new AtomicLong();
+        this.gauges = Collections.synchronizedMap(new LinkedHashMap<>());
+    }
+
+    public void record(Operation operation, long startNanos) {
+        latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    // hit is false for a search that found nothing or a mutation that was refused
+    public void record(Operation operation, long startNanos, boolean hit) {
+        record(operation, startNanos);
+        if (!hit) {
+            misses[operation.ordinal()].increment();
+        }
+    }
+
+    public void recordSnapshot(long startNanos, long bytes) {
+        long elapsed = System.nanoTime() - startNanos;
+        latencies[Operation.SAVE.ordinal()].record(elapsed);
+        snapshotBytes.add(bytes);
+        lastSnapshotBytes.set(bytes);
+        lastSnapshotNanos.set(elapsed);
+    }
+
+    public void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public long getMisses(Operation operation) {
+        return misses[operation.ordinal()].sum();
+    }
+
+    // Registers with the platform MBean server under a name unique to this instance
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName("com.library.management:type=Library,id="
+                    + INSTANCES.incrementAndGet());
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            System.err.println("Error registering metrics: " + e.getMessage());
+        }
+    }
+
+    public void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            System.err.println("Error unregistering metrics: " + e.getMessage());
+        }
+        objectName = null;
+    }
+
+    @Override
+    public String getDataDirectory() {
+        return dataDirectory;
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            counts.put(operation.label(), getLatency(operation).getCount());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP50Micros() {
+        return percentileMicros(50);
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP99Micros() {
+        return percentileMicros(99);
+    }
+
+    @Override
+    public Map<String, Long> getLatencyMaxMicros() {
+        Map<String, Long> max = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram histogram = getLatency(operation);
+            if (histogram.getCount() > 0) {
+                max.put(operation.label(), TimeUnit.NANOSECONDS.toMicros(histogram.getMaxNanos()));
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public double getSearchHitRate() {
+        return hitRate(Operation.SEARCH);
+    }
+
+    @Override
+    public double getLookupHitRate() {
+        return hitRate(Operation.LOOKUP);
+    }
+
+    @Override
+    public long getSnapshotBytesWritten() {
+        return snapshotBytes.sum();
+    }
+
+    @Override
+    public long getLastSnapshotBytes() {
+        return lastSnapshotBytes.get();
+    }
+
+    @Override
+    public long getLastSnapshotMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastSnapshotNanos.get());
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        synchronized (gauges) {
+            for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+                values.put(gauge.getKey(), gauge.getValue().getAsLong());
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("Library metrics at ").append(Instant.now()).append(" (").append(dataDirectory).append(")\n");
+        report.append(String.format("%-20s %10s %7s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "hit%", "mean(us)", "p50(us)", "p90(us)", "p99(us)", "max(us)"));
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram histogram = getLatency(operation);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            report.append(String.format("%-20s %10d %7.1f %10.1f %10d %10d %10d %10d%n",
+                    operation.label(), histogram.getCount(), hitRate(operation) * 100,
+                    histogram.getMeanNanos() / 1000,
+                    micros(histogram.getPercentileNanos(50)), micros(histogram.getPercentileNanos(90)),
+                    micros(histogram.getPercentileNanos(99)), micros(histogram.getMaxNanos())));
+        }
+        report.append(String.format("snapshots: %d bytes written, last %d bytes in %d ms%n",
+                getSnapshotBytesWritten(), getLastSnapshotBytes(), getLastSnapshotMillis()));
+        for (Map.Entry<String, Long> gauge : getGauges().entrySet()) {
+            report.append(gauge.getKey()).append(": ").append(gauge.getValue()).append('\n');
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i].reset();
+            misses[i].reset();
+        }
+        snapshotBytes.reset();
+        lastSnapshotBytes.set(0);
+        lastSnapshotNanos.set(0);
+    }
+
+    private double hitRate(Operation operation) {
+        long count = getLatency(operation).getCount();
+        return count == 0 ? 0 : 1 - (double) getMisses(operation) / count;
+    }
+
+    private Map<String, Long> percentileMicros(double percentile) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram histogram = getLatency(operation);
+            if (histogram.getCount() > 0) {
+                values.put(operation.label(), micros(histogram.getPercentileNanos(percentile)));
+            }
+        }
+        return values;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,35 @@
+package com.library.management.metrics;
+
+import java.util.Map;
+
+// JMX view of LibraryMetrics. Latency maps are keyed by operation name and
+// only list operations that have run.
+public interface LibraryMetricsMXBean {
+    String getDataDirectory();
+
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Long> getLatencyP50Micros();
+
+    Map<String, Long> getLatencyP99Micros();
+
+    Map<String, Long> getLatencyMaxMicros();
+
+    // Share of searches that found at least one book
+    double getSearchHitRate();
+
+    // Share of ISBN lookups that found a book
+    double getLookupHitRate();
+
+    long getSnapshotBytesWritten();
+
+    long getLastSnapshotBytes();
+
+    long getLastSnapshotMillis();
+
+    Map<String, Long> getGauges();
+
+    String getReport();
+
+    void reset();
+}
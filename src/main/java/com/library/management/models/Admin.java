@@ -1,9 +1,17 @@
 package com.library.management.models;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 public class Admin extends User {
     private static final String ROLE = "ADMIN";
 
-    public Admin(String userId, String username, String password, String name, String email) {
+    @JsonCreator
+    public Admin(@JsonProperty("userId") String userId,
+                 @JsonProperty("username") String username,
+                 @JsonProperty("password") String password,
+                 @JsonProperty("name") String name,
+                 @JsonProperty("email") String email) {
         super(userId, username, password, name, email);
     }
 
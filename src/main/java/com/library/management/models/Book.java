@@ -1,89 +1,286 @@
 package com.library.management.models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class Book implements Serializable {
+    private static final AtomicIntegerFieldUpdater<Book> AVAILABLE_COPIES =
+            AtomicIntegerFieldUpdater.newUpdater(Book.class, "availableCopies");
+    private static final AtomicIntegerFieldUpdater<Book> TIMES_BORROWED =
+            AtomicIntegerFieldUpdater.newUpdater(Book.class, "timesBorrowed");
+
     private String isbn;
     private String title;
-    private String author;
-    private String genre;
+    // Authors and genres repeat across the catalog, so a catalogued book
+    // holds ids into its library's tables instead of its own copies of the
+    // strings. The ids mean nothing outside those tables; serialized as the strings.
+    private transient BookSymbols symbols;
+    private transient int authorId;
+    private transient int genreId;
     private int year;
     private int totalCopies;
-    private int availableCopies;
-    private final Queue<String> waitingList;  // Queue of user IDs waiting for the book
+    private volatile int availableCopies;  // Updated by CAS so copies are never oversold
+    private volatile int timesBorrowed;  // Lifetime circulation count
+    private Reservations reservations;  // Waiting list and holds, allocated on first use
+    private transient BookChangeListener changeListener;  // Keeps the owning library's indexes current
 
-    public Book(String isbn, String title, String author, String genre, int year, int totalCopies) {
+    @JsonCreator
+    public Book(@JsonProperty("isbn") String isbn,
+                @JsonProperty("title") String title,
+                @JsonProperty("author") String author,
+                @JsonProperty("genre") String genre,
+                @JsonProperty("year") int year,
+                @JsonProperty("totalCopies") int totalCopies) {
         this.isbn = isbn;
         this.title = title;
-        this.author = author;
-        this.genre = genre;
+        this.symbols = BookSymbols.detached();
+        this.authorId = symbols.internAuthor(author);
+        this.genreId = symbols.internGenre(genre);
         this.year = year;
         this.totalCopies = totalCopies;
         this.availableCopies = totalCopies;
-        this.waitingList = new LinkedList<>();
     }
 
     // Getters and Setters
     public String getIsbn() { return isbn; }
-    public void setIsbn(String isbn) { this.isbn = isbn; }
+    public void setIsbn(String isbn) {
+        // The catalog and its indexes are keyed by ISBN, so it is fixed once the book is catalogued
+        if (changeListener != null) {
+            throw new IllegalStateException("Cannot change the ISBN of a catalogued book: " + this.isbn);
+        }
+        this.isbn = isbn;
+    }
     
     public String getTitle() { return title; }
-    public void setTitle(String title) { this.title = title; }
-    
-    public String getAuthor() { return author; }
-    public void setAuthor(String author) { this.author = author; }
+    public void setTitle(String title) {
+        String old = this.title;
+        this.title = title;
+        fireChanged("title", old);
+    }
     
-    public String getGenre() { return genre; }
-    public void setGenre(String genre) { this.genre = genre; }
+    public String getAuthor() { return symbols.author(authorId); }
+    public void setAuthor(String author) {
+        String old = getAuthor();
+        this.authorId = symbols.internAuthor(author);
+        fireChanged("author", old);
+    }
+
+    // Equal authors of books with the same symbols have equal ids, -1 when there is no author
+    @JsonIgnore
+    public int getAuthorId() { return authorId; }
+
+    public String getGenre() { return symbols.genre(genreId); }
+    public void setGenre(String genre) {
+        String old = getGenre();
+        this.genreId = symbols.internGenre(genre);
+        fireChanged("genre", old);
+    }
+
+    @JsonIgnore
+    public int getGenreId() { return genreId; }
+
+    // The book's own until a library catalogues it
+    @JsonIgnore
+    public BookSymbols getSymbols() { return symbols; }
+
+    // Re-encodes the author and genre in the library's tables. Done before
+    // the book is published to other threads, since the ids and the tables
+    // change in separate steps.
+    @JsonIgnore
+    public void setSymbols(BookSymbols symbols) {
+        if (symbols == this.symbols) {
+            return;
+        }
+        int author = symbols.internAuthor(getAuthor());
+        int genre = symbols.internGenre(getGenre());
+        this.symbols = symbols;
+        this.authorId = author;
+        this.genreId = genre;
+    }
     
     public int getYear() { return year; }
-    public void setYear(int year) { this.year = year; }
+    public void setYear(int year) {
+        int old = this.year;
+        this.year = year;
+        fireChanged("year", old);
+    }
     
     public int getTotalCopies() { return totalCopies; }
-    public void setTotalCopies(int totalCopies) { this.totalCopies = totalCopies; }
+    public void setTotalCopies(int totalCopies) {
+        int old = this.totalCopies;
+        this.totalCopies = totalCopies;
+        fireChanged("totalCopies", old);
+    }
     
     public int getAvailableCopies() { return availableCopies; }
-    public void setAvailableCopies(int availableCopies) { this.availableCopies = availableCopies; }
+    public void setAvailableCopies(int availableCopies) {
+        int old = this.availableCopies;
+        this.availableCopies = availableCopies;
+        fireChanged("availableCopies", old);
+    }
+
+    public int getTimesBorrowed() { return timesBorrowed; }
+    public void setTimesBorrowed(int timesBorrowed) {
+        int old = this.timesBorrowed;
+        this.timesBorrowed = timesBorrowed;
+        fireChanged("timesBorrowed", old);
+    }
+
+    @JsonIgnore
+    public BookChangeListener getChangeListener() { return changeListener; }
+    @JsonIgnore
+    public void setChangeListener(BookChangeListener changeListener) { this.changeListener = changeListener; }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(getAuthor());
+        out.writeObject(getGenre());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        symbols = BookSymbols.detached();
+        authorId = symbols.internAuthor((String) in.readObject());
+        genreId = symbols.internGenre((String) in.readObject());
+    }
+
+    private void fireChanged(String property, Object oldValue) {
+        if (changeListener != null) {
+            changeListener.bookChanged(this, property, oldValue);
+        }
+    }
 
     // Book operations
     public boolean isAvailable() {
         return availableCopies > 0;
     }
 
-    public void addToWaitingList(String userId) {
-        waitingList.offer(userId);
+    // Reservations. Callers serialize changes per book (Library holds the
+    // book's lock); copies on hold are not counted as available.
+
+    // Returns false if the user is already waiting or has a copy on hold
+    public synchronized boolean addToWaitingList(String userId) {
+        if (reservations == null) {
+            reservations = new Reservations();
+        }
+        return reservations.enqueue(userId);
     }
 
-    public String getNextWaitingUser() {
-        return waitingList.poll();
+    @JsonIgnore
+    public synchronized String getNextWaitingUser() {
+        String userId = reservations == null ? null : reservations.poll();
+        releaseIfEmpty();
+        return userId;
     }
 
-    public boolean hasWaitingList() {
-        return !waitingList.isEmpty();
+    public synchronized boolean hasWaitingList() {
+        return reservations != null && reservations.hasWaiters();
     }
 
-    public boolean borrow() {
-        if (availableCopies > 0) {
-            availableCopies--;
-            return true;
+    public synchronized boolean removeFromWaitingList(String userId) {
+        boolean removed = reservations != null && reservations.cancel(userId);
+        releaseIfEmpty();
+        return removed;
+    }
+
+    // See Reservations.position
+    public synchronized int getWaitingPosition(String userId) {
+        return reservations == null ? -1 : reservations.position(userId);
+    }
+
+    // Takes an available copy off the shelf for the next waiter; returns that
+    // user, or null if nobody is waiting or no copy is available
+    public synchronized String holdForNextWaiter(long expiresAt) {
+        if (!hasWaitingList()) {
+            return null;
         }
-        return false;
+        int copies;
+        do {
+            copies = availableCopies;
+            if (copies <= 0) {
+                return null;
+            }
+        } while (!AVAILABLE_COPIES.compareAndSet(this, copies, copies - 1));
+        String userId = reservations.poll();
+        reservations.addHold(userId, expiresAt);
+        return userId;
     }
 
-    public boolean returnBook() {
-        if (availableCopies < totalCopies) {
-            availableCopies++;
-            return true;
+    // Puts the user's held copy back on the shelf
+    public synchronized boolean releaseHold(String userId) {
+        if (reservations == null || !reservations.removeHold(userId)) {
+            return false;
+        }
+        AVAILABLE_COPIES.incrementAndGet(this);
+        releaseIfEmpty();
+        return true;
+    }
+
+    // Expiry of the user's hold, or -1 if they have none
+    public synchronized long getHoldExpiry(String userId) {
+        return reservations == null ? -1 : reservations.holdExpiry(userId);
+    }
+
+    @JsonIgnore
+    public synchronized int getHeldCopies() {
+        return reservations == null ? 0 : reservations.getHoldCount();
+    }
+
+    @JsonProperty("reservations")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public synchronized Reservations getReservations() {
+        return reservations;
+    }
+
+    @JsonProperty("reservations")
+    public synchronized void setReservations(Reservations reservations) {
+        this.reservations = reservations;
+        releaseIfEmpty();
+    }
+
+    private void releaseIfEmpty() {
+        if (reservations != null && reservations.isEmpty()) {
+            reservations = null;
         }
-        return false;
+    }
+
+    public boolean borrow() {
+        int copies;
+        do {
+            copies = availableCopies;
+            if (copies <= 0) {
+                return false;
+            }
+        } while (!AVAILABLE_COPIES.compareAndSet(this, copies, copies - 1));
+        TIMES_BORROWED.incrementAndGet(this);
+        return true;
+    }
+
+    public boolean returnBook() {
+        int copies;
+        do {
+            copies = availableCopies;
+            if (copies >= totalCopies) {
+                return false;
+            }
+        } while (!AVAILABLE_COPIES.compareAndSet(this, copies, copies + 1));
+        return true;
     }
 
     @Override
     public String toString() {
         return String.format("Book{ISBN='%s', Title='%s', Author='%s', Genre='%s', Year=%d, Available=%d/%d}",
-                isbn, title, author, genre, year, availableCopies, totalCopies);
+                isbn, title, getAuthor(), getGenre(), year, availableCopies, totalCopies);
     }
 
     @Override
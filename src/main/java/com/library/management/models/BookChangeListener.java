@@ -0,0 +1,5 @@
+package com.library.management.models;
+
+public interface BookChangeListener {
+    void bookChanged(Book book, String property, Object oldValue);
+}
@@ -0,0 +1,38 @@
+package com.library.management.models;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Process-wide interning of ISBNs to dense int ids, so per-user histories
+// can hold primitive ids instead of references. Ids are never persisted.
+public final class BookIds {
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] isbns = new String[1024];
+    private static int nextId;
+
+    private BookIds() {
+    }
+
+    public static int intern(String isbn) {
+        Integer id = IDS.get(isbn);
+        return id != null ? id : assign(isbn);
+    }
+
+    public static String isbn(int id) {
+        return isbns[id];
+    }
+
+    private static synchronized int assign(String isbn) {
+        Integer id = IDS.get(isbn);
+        if (id != null) {
+            return id;
+        }
+        if (nextId == isbns.length) {
+            isbns = Arrays.copyOf(isbns, nextId * 2);
+        }
+        // Publish the ISBN before the id so readers never see an unfilled slot
+        isbns[nextId] = isbn;
+        IDS.put(isbn, nextId);
+        return nextId++;
+    }
+}
@@ -0,0 +1,88 @@
+package com.library.management.models;
+
+// The author and genre tables a catalog's books are encoded against. Each
+// Library has its own, so one library's values never grow another's tables
+// and are dropped with the library; while it is open they only grow, like
+// any SymbolTable. A book not yet catalogued keeps its own two values
+// instead, and is re-encoded when a library takes it in.
+public class BookSymbols {
+    private final SymbolTable authors;
+    private final SymbolTable genres;
+
+    public BookSymbols() {
+        this(new SymbolTable(), new SymbolTable());
+    }
+
+    private BookSymbols(SymbolTable authors, SymbolTable genres) {
+        this.authors = authors;
+        this.genres = genres;
+    }
+
+    // Tables of a book of its own, holding just its values
+    static BookSymbols detached() {
+        return new Detached();
+    }
+
+    // Null for a book of its own
+    public SymbolTable getAuthors() { return authors; }
+
+    public SymbolTable getGenres() { return genres; }
+
+    // The book's ids in these tables: read off the book when it is encoded
+    // against them, otherwise looked up and added
+    public int authorId(Book book) {
+        return book.getSymbols() == this ? book.getAuthorId() : authors.intern(book.getAuthor());
+    }
+
+    public int genreId(Book book) {
+        return book.getSymbols() == this ? book.getGenreId() : genres.intern(book.getGenre());
+    }
+
+    int internAuthor(String author) {
+        return authors.intern(author);
+    }
+
+    String author(int id) {
+        return authors.get(id);
+    }
+
+    int internGenre(String genre) {
+        return genres.intern(genre);
+    }
+
+    String genre(int id) {
+        return genres.get(id);
+    }
+
+    // One book's values, id 0 when set and -1 when null
+    private static final class Detached extends BookSymbols {
+        private String author;
+        private String genre;
+
+        Detached() {
+            super(null, null);
+        }
+
+        @Override
+        int internAuthor(String author) {
+            this.author = author;
+            return author == null ? -1 : 0;
+        }
+
+        @Override
+        String author(int id) {
+            return id < 0 ? null : author;
+        }
+
+        @Override
+        int internGenre(String genre) {
+            this.genre = genre;
+            return genre == null ? -1 : 0;
+        }
+
+        @Override
+        String genre(int id) {
+            return id < 0 ? null : genre;
+        }
+    }
+}
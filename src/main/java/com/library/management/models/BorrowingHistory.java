@@ -0,0 +1,133 @@
+package com.library.management.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A user's borrowing history. The most recent entries live in a ring of
+// primitive book ids and timestamps; once an archive is attached, a ring that
+// has reached capacity is cut back to half by spilling its oldest entries.
+// Spilling is left to the caller so borrows never write to disk. Without an
+// archive the ring grows.
+class BorrowingHistory {
+    static final int DEFAULT_CAPACITY = 64;
+
+    private final int capacity;
+    private int[] bookIds;
+    private long[] borrowedAt;
+    private int head;
+    private int size;
+    private long archivedCount;
+    private String ownerId;
+    private HistoryArchive archive;
+
+    BorrowingHistory(int capacity) {
+        this.capacity = capacity;
+        this.bookIds = new int[4];
+        this.borrowedAt = new long[4];
+    }
+
+    void attach(String ownerId, HistoryArchive archive) {
+        this.ownerId = ownerId;
+        this.archive = archive;
+    }
+
+    void add(String isbn, long timestamp) {
+        if (size == bookIds.length) {
+            grow();
+        }
+        int slot = (head + size) % bookIds.length;
+        bookIds[slot] = BookIds.intern(isbn);
+        borrowedAt[slot] = timestamp;
+        size++;
+    }
+
+    boolean needsSpill() {
+        return archive != null && size >= capacity;
+    }
+
+    // Moves the oldest entries of a full ring to the archive; on failure the
+    // entries stay in memory and the exception reaches the caller
+    void spill() {
+        if (needsSpill()) {
+            spill(size - capacity / 2);
+        }
+    }
+
+    long size() {
+        return archivedCount + size;
+    }
+
+    long getArchivedCount() {
+        return archivedCount;
+    }
+
+    // Entries [from, from + limit) of the full history, oldest first; only the
+    // archived part of the range is read from disk
+    List<HistoryEntry> page(long from, int limit) {
+        List<HistoryEntry> page = new ArrayList<>(Math.max(0, Math.min(limit, 1024)));
+        long end = Math.min(size(), from + limit);
+        if (from < archivedCount && archive != null) {
+            page.addAll(archive.read(ownerId, from, (int) (Math.min(end, archivedCount) - from)));
+        }
+        for (long index = Math.max(from, archivedCount); index < end; index++) {
+            page.add(entry((int) (index - archivedCount)));
+        }
+        return page;
+    }
+
+    List<HistoryEntry> recent() {
+        List<HistoryEntry> recent = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            recent.add(entry(i));
+        }
+        return recent;
+    }
+
+    void restore(List<HistoryEntry> entries, long archivedCount) {
+        head = 0;
+        size = 0;
+        this.archivedCount = archivedCount;
+        for (HistoryEntry entry : entries) {
+            if (size == bookIds.length) {
+                grow();
+            }
+            bookIds[size] = BookIds.intern(entry.getIsbn());
+            borrowedAt[size] = entry.getBorrowedAt();
+            size++;
+        }
+    }
+
+    void setArchivedCount(long archivedCount) {
+        this.archivedCount = archivedCount;
+    }
+
+    private HistoryEntry entry(int offset) {
+        int slot = (head + offset) % bookIds.length;
+        return new HistoryEntry(BookIds.isbn(bookIds[slot]), borrowedAt[slot]);
+    }
+
+    private void spill(int count) {
+        List<HistoryEntry> oldest = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            oldest.add(entry(i));
+        }
+        archive.append(ownerId, archivedCount, oldest);
+        head = (head + count) % bookIds.length;
+        size -= count;
+        archivedCount += count;
+    }
+
+    private void grow() {
+        int length = bookIds.length * 2;
+        int[] ids = new int[length];
+        long[] times = new long[length];
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) % bookIds.length;
+            ids[i] = bookIds[slot];
+            times[i] = borrowedAt[slot];
+        }
+        bookIds = ids;
+        borrowedAt = times;
+        head = 0;
+    }
+}
@@ -0,0 +1,13 @@
+package com.library.management.models;
+
+import java.util.List;
+
+// Durable store for the older part of users' borrowing histories. Entries
+// are addressed by their position in the user's full history.
+public interface HistoryArchive {
+    // Stores entries starting at firstIndex. Positions already stored are
+    // skipped, which is what happens when history is spilled again after a crash.
+    void append(String userId, long firstIndex, List<HistoryEntry> entries);
+
+    List<HistoryEntry> read(String userId, long fromIndex, int limit);
+}
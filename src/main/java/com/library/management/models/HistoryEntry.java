@@ -0,0 +1,28 @@
+package com.library.management.models;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// One past borrow, referencing the book by ISBN
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class HistoryEntry {
+    private final String isbn;
+    private final long borrowedAt;
+
+    @JsonCreator
+    public HistoryEntry(@JsonProperty("isbn") String isbn,
+                        @JsonProperty("borrowedAt") long borrowedAt) {
+        this.isbn = isbn;
+        this.borrowedAt = borrowedAt;
+    }
+
+    public String getIsbn() { return isbn; }
+
+    public long getBorrowedAt() { return borrowedAt; }
+
+    @Override
+    public String toString() {
+        return String.format("HistoryEntry{ISBN='%s', borrowedAt=%d}", isbn, borrowedAt);
+    }
+}
@@ -1,19 +1,33 @@
 package com.library.management.models;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class LibraryUser extends User {
     private static final String ROLE = "USER";
-    private final List<Book> borrowedBooks;
-    private final LinkedList<Book> borrowingHistory;
+    private final Map<String, Loan> loans;  // By ISBN, in borrowing order
+    private final BorrowingHistory borrowingHistory;
     private int maxBooksAllowed;
+    private long finesOwed;  // In cents
+    // Loans restored by ISBN from a snapshot, resolved by relinkBooks
+    private transient List<Loan> pendingLoans;
 
-    public LibraryUser(String userId, String username, String password, String name, String email) {
+    @JsonCreator
+    public LibraryUser(@JsonProperty("userId") String userId,
+                       @JsonProperty("username") String username,
+                       @JsonProperty("password") String password,
+                       @JsonProperty("name") String name,
+                       @JsonProperty("email") String email) {
         super(userId, username, password, name, email);
-        this.borrowedBooks = new ArrayList<>();
-        this.borrowingHistory = new LinkedList<>();
+        this.loans = new LinkedHashMap<>();
+        this.borrowingHistory = new BorrowingHistory(BorrowingHistory.DEFAULT_CAPACITY);
         this.maxBooksAllowed = 5; // Default maximum books allowed
     }
 
@@ -22,39 +36,171 @@ public class LibraryUser extends User {
         return ROLE;
     }
 
-    public List<Book> getBorrowedBooks() {
-        return new ArrayList<>(borrowedBooks);
+    @JsonIgnore
+    public synchronized List<Book> getBorrowedBooks() {
+        List<Book> books = new ArrayList<>(loans.size());
+        for (Loan loan : loans.values()) {
+            books.add(loan.getBook());
+        }
+        return books;
+    }
+
+    // Snapshots store each loan as an ISBN and a timestamp, never the whole book
+    @JsonProperty("loans")
+    public synchronized List<Loan> getLoans() {
+        return new ArrayList<>(pendingLoans != null ? pendingLoans : loans.values());
+    }
+
+    // Null if the user has no copy of the book out
+    public synchronized Loan getLoan(String isbn) {
+        return loans.get(isbn);
+    }
+
+    // Replaces the loan of the same book, e.g. with a renewed one; false if there is none
+    public synchronized boolean updateLoan(Loan loan) {
+        return loans.replace(loan.getIsbn(), loan) != null;
     }
 
-    public LinkedList<Book> getBorrowingHistory() {
-        return new LinkedList<>(borrowingHistory);
+    // A user decoded with no loans, e.g. one sent to a remote shard, has nothing to relink
+    @JsonProperty("loans")
+    private synchronized void setLoans(List<Loan> stored) {
+        pendingLoans = stored.isEmpty() ? null : stored;
     }
 
-    public boolean canBorrowBooks() {
-        return borrowedBooks.size() < maxBooksAllowed;
+    // users.json from before loans were references embeds whole books; only
+    // their ISBNs are read, and the borrow time is recovered from the history
+    @JsonProperty("borrowedBooks")
+    private synchronized void setLegacyBorrowedBooks(List<Loan> stored) {
+        setLoans(stored);
     }
 
-    public boolean borrowBook(Book book) {
-        if (canBorrowBooks() && book.isAvailable()) {
+    // Entries [from, from + limit) of the borrowing history, oldest first
+    public synchronized List<HistoryEntry> getBorrowingHistory(long from, int limit) {
+        return borrowingHistory.page(from, limit);
+    }
+
+    @JsonIgnore
+    public synchronized long getBorrowingHistorySize() {
+        return borrowingHistory.size();
+    }
+
+    // Bounds the in-memory history by spilling older entries to the archive
+    @JsonIgnore
+    public synchronized void setHistoryArchive(HistoryArchive archive) {
+        borrowingHistory.attach(getUserId(), archive);
+    }
+
+    public synchronized boolean hasHistoryToSpill() {
+        return borrowingHistory.needsSpill();
+    }
+
+    // Writes the oldest in-memory entries to the archive; Library does this when it takes a snapshot
+    public synchronized void spillHistory() {
+        borrowingHistory.spill();
+    }
+
+    // Snapshots carry the in-memory part of the history and the archived count
+    @JsonProperty("borrowingHistory")
+    private synchronized List<HistoryEntry> getRecentBorrowingHistory() {
+        return borrowingHistory.recent();
+    }
+
+    @JsonProperty("borrowingHistory")
+    private synchronized void setRecentBorrowingHistory(List<HistoryEntry> entries) {
+        borrowingHistory.restore(entries, borrowingHistory.getArchivedCount());
+    }
+
+    @JsonProperty("archivedHistoryCount")
+    public synchronized long getArchivedHistoryCount() {
+        return borrowingHistory.getArchivedCount();
+    }
+
+    @JsonProperty("archivedHistoryCount")
+    private synchronized void setArchivedHistoryCount(long archivedCount) {
+        borrowingHistory.setArchivedCount(archivedCount);
+    }
+
+    public synchronized void restoreHistory(List<HistoryEntry> recent, long archivedCount) {
+        borrowingHistory.restore(recent, archivedCount);
+    }
+
+    public synchronized boolean canBorrowBooks() {
+        return loans.size() < maxBooksAllowed;
+    }
+
+    public synchronized boolean borrowBook(Book book) {
+        return borrowBook(book, System.currentTimeMillis());
+    }
+
+    public synchronized boolean borrowBook(Book book, long borrowedAt) {
+        return borrowBook(book, borrowedAt, 0);
+    }
+
+    // A user holds at most one copy of a book at a time
+    public synchronized boolean borrowBook(Book book, long borrowedAt, long dueAt) {
+        if (canBorrowBooks() && book.isAvailable() && !loans.containsKey(book.getIsbn())) {
             if (book.borrow()) {
-                borrowedBooks.add(book);
-                borrowingHistory.add(book);
+                loans.put(book.getIsbn(), new Loan(book, borrowedAt, dueAt));
+                borrowingHistory.add(book.getIsbn(), borrowedAt);
                 return true;
             }
         }
         return false;
     }
 
-    public boolean returnBook(Book book) {
-        if (borrowedBooks.contains(book)) {
-            if (book.returnBook()) {
-                borrowedBooks.remove(book);
-                return true;
-            }
+    public synchronized boolean hasBorrowed(Book book) {
+        return loans.containsKey(book.getIsbn());
+    }
+
+    public synchronized boolean returnBook(Book book) {
+        if (loans.containsKey(book.getIsbn()) && book.returnBook()) {
+            loans.remove(book.getIsbn());
+            return true;
         }
         return false;
     }
 
+    public synchronized void restoreLoans(List<Loan> stored) {
+        this.pendingLoans = stored;
+    }
+
+    // Points loans at the catalog's Book instances so copy counts live in one
+    // place. Loans of books no longer in the catalog are dropped. Users stored
+    // before loans were keyed by ISBN may hold several copies of one book:
+    // the first loan is kept and the other copies go back on the shelf.
+    // Returns the loans released that way.
+    public synchronized List<Loan> relinkBooks(Function<String, Book> catalog) {
+        List<Loan> stored = pendingLoans != null ? pendingLoans : new ArrayList<>(loans.values());
+        pendingLoans = null;
+        loans.clear();
+        List<Loan> released = new ArrayList<>();
+        for (Loan loan : stored) {
+            Book book = catalog.apply(loan.getIsbn());
+            if (book == null) {
+                continue;
+            }
+            if (loans.containsKey(loan.getIsbn())) {
+                book.returnBook();
+                released.add(loan);
+            } else {
+                loans.put(loan.getIsbn(), loan.getBorrowedAt() > 0 ? loan.linkedTo(book)
+                        : new Loan(book, lastBorrowedAt(loan.getIsbn()), loan.getDueAt()));
+            }
+        }
+        return released;
+    }
+
+    // Latest borrow of the ISBN still in memory, or 0 if it has been archived
+    private long lastBorrowedAt(String isbn) {
+        List<HistoryEntry> recent = borrowingHistory.recent();
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            if (recent.get(i).getIsbn().equals(isbn)) {
+                return recent.get(i).getBorrowedAt();
+            }
+        }
+        return 0;
+    }
+
     public int getMaxBooksAllowed() {
         return maxBooksAllowed;
     }
@@ -63,7 +209,28 @@ public class LibraryUser extends User {
         this.maxBooksAllowed = maxBooksAllowed;
     }
 
-    public int getCurrentBorrowedCount() {
-        return borrowedBooks.size();
+    @JsonIgnore
+    public synchronized int getCurrentBorrowedCount() {
+        return loans.size();
+    }
+
+    // Fines are charged in cents when overdue copies come back
+    public synchronized long getFinesOwed() {
+        return finesOwed;
+    }
+
+    public synchronized void setFinesOwed(long finesOwed) {
+        this.finesOwed = finesOwed;
+    }
+
+    public synchronized void addFine(long cents) {
+        finesOwed += cents;
+    }
+
+    // Settles every outstanding fine and returns the amount paid
+    public synchronized long payFines() {
+        long paid = finesOwed;
+        finesOwed = 0;
+        return paid;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.library.management.models;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// One copy a user currently has out. Stored as the book's ISBN, the time it
+// was borrowed, when it is due back and how often it has been renewed; in
+// memory it points at the catalog's Book once linked. A due date of 0 means
+// none was recorded, as for loans stored before due dates existed.
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Loan {
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final String isbn;
+    private final long borrowedAt;
+    private final long dueAt;
+    private final int renewals;
+    private final transient Book book;
+
+    public Loan(Book book, long borrowedAt) {
+        this(book, book.getIsbn(), borrowedAt, 0, 0);
+    }
+
+    public Loan(Book book, long borrowedAt, long dueAt) {
+        this(book, book.getIsbn(), borrowedAt, dueAt, 0);
+    }
+
+    public Loan(String isbn, long borrowedAt) {
+        this(null, isbn, borrowedAt, 0, 0);
+    }
+
+    @JsonCreator
+    public Loan(@JsonProperty("isbn") String isbn,
+                @JsonProperty("borrowedAt") long borrowedAt,
+                @JsonProperty("dueAt") long dueAt,
+                @JsonProperty("renewals") int renewals) {
+        this(null, isbn, borrowedAt, dueAt, renewals);
+    }
+
+    private Loan(Book book, String isbn, long borrowedAt, long dueAt, int renewals) {
+        this.isbn = isbn;
+        this.borrowedAt = borrowedAt;
+        this.dueAt = dueAt;
+        this.renewals = renewals;
+        this.book = book;
+    }
+
+    // The same loan pointing at the given catalog entry
+    public Loan linkedTo(Book book) {
+        return new Loan(book, isbn, borrowedAt, dueAt, renewals);
+    }
+
+    public Loan withDueAt(long dueAt) {
+        return new Loan(book, isbn, borrowedAt, dueAt, renewals);
+    }
+
+    public Loan renewed(long dueAt) {
+        return new Loan(book, isbn, borrowedAt, dueAt, renewals + 1);
+    }
+
+    public String getIsbn() { return isbn; }
+
+    public long getBorrowedAt() { return borrowedAt; }
+
+    public long getDueAt() { return dueAt; }
+
+    public int getRenewals() { return renewals; }
+
+    // Null until the loan is linked to the catalog
+    @JsonIgnore
+    public Book getBook() { return book; }
+
+    public boolean isOverdue(long now) {
+        return dueAt > 0 && now > dueAt;
+    }
+
+    // Started days past the due date at the given time, 0 if not overdue
+    public long getDaysOverdue(long now) {
+        return isOverdue(now) ? (now - dueAt + DAY_MILLIS - 1) / DAY_MILLIS : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Loan{ISBN='%s', borrowedAt=%d, dueAt=%d, renewals=%d}",
+                getIsbn(), borrowedAt, dueAt, renewals);
+    }
+}
@@ -0,0 +1,147 @@
+package com.library.management.models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// A book's waiting list and the copies held for users at its front.
+// Waiters sit in an array at absolute indexes from head, so a user's
+// position is their index minus head; serving the front only advances head.
+// Cancelling from the middle shifts the users behind it, which is the one
+// linear operation.
+public class Reservations {
+    private final List<String> waiting;
+    private final Map<String, Integer> indexByUser;
+    private final Map<String, Long> holds;  // userId -> hold expiry, in hand-off order
+    private int head;
+
+    public Reservations() {
+        this.waiting = new ArrayList<>();
+        this.indexByUser = new HashMap<>();
+        this.holds = new LinkedHashMap<>();
+    }
+
+    @JsonCreator
+    public Reservations(@JsonProperty("waiting") List<String> waiting,
+                        @JsonProperty("holds") Map<String, Long> holds) {
+        this();
+        if (waiting != null) {
+            for (String userId : waiting) {
+                enqueue(userId);
+            }
+        }
+        if (holds != null) {
+            this.holds.putAll(holds);
+        }
+    }
+
+    // Returns false if the user is already waiting or has a copy on hold
+    public synchronized boolean enqueue(String userId) {
+        if (indexByUser.containsKey(userId) || holds.containsKey(userId)) {
+            return false;
+        }
+        indexByUser.put(userId, waiting.size());
+        waiting.add(userId);
+        return true;
+    }
+
+    // 1-based place in the queue, 0 while a copy is on hold for the user, -1 otherwise
+    public synchronized int position(String userId) {
+        if (holds.containsKey(userId)) {
+            return 0;
+        }
+        Integer index = indexByUser.get(userId);
+        return index == null ? -1 : index - head + 1;
+    }
+
+    public synchronized boolean cancel(String userId) {
+        Integer index = indexByUser.remove(userId);
+        if (index == null) {
+            return false;
+        }
+        waiting.remove((int) index);
+        for (int i = index; i < waiting.size(); i++) {
+            indexByUser.put(waiting.get(i), i);
+        }
+        return true;
+    }
+
+    public synchronized String poll() {
+        if (head == waiting.size()) {
+            return null;
+        }
+        String userId = waiting.get(head);
+        waiting.set(head++, null);
+        indexByUser.remove(userId);
+        compact();
+        return userId;
+    }
+
+    public synchronized boolean hasWaiters() {
+        return head < waiting.size();
+    }
+
+    @JsonIgnore
+    public synchronized int getWaitingCount() {
+        return waiting.size() - head;
+    }
+
+    public synchronized void addHold(String userId, long expiresAt) {
+        holds.put(userId, expiresAt);
+    }
+
+    public synchronized boolean removeHold(String userId) {
+        return holds.remove(userId) != null;
+    }
+
+    // Expiry of the user's hold, or -1 if they have none
+    public synchronized long holdExpiry(String userId) {
+        Long expiresAt = holds.get(userId);
+        return expiresAt == null ? -1 : expiresAt;
+    }
+
+    @JsonIgnore
+    public synchronized int getHoldCount() {
+        return holds.size();
+    }
+
+    @JsonIgnore
+    public synchronized boolean isEmpty() {
+        return !hasWaiters() && holds.isEmpty();
+    }
+
+    @JsonProperty("waiting")
+    public synchronized List<String> getWaiting() {
+        return new ArrayList<>(waiting.subList(head, waiting.size()));
+    }
+
+    @JsonProperty("holds")
+    public synchronized Map<String, Long> getHolds() {
+        return new LinkedHashMap<>(holds);
+    }
+
+    // Drops served slots once they make up half the array
+    private void compact() {
+        if (head == waiting.size()) {
+            waiting.clear();
+            head = 0;
+            return;
+        }
+        if (head < 32 || head * 2 < waiting.size()) {
+            return;
+        }
+        List<String> remaining = new ArrayList<>(waiting.subList(head, waiting.size()));
+        waiting.clear();
+        waiting.addAll(remaining);
+        head = 0;
+        for (int i = 0; i < waiting.size(); i++) {
+            indexByUser.put(waiting.get(i), i);
+        }
+    }
+}
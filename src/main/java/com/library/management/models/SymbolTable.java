@@ -0,0 +1,78 @@
+package com.library.management.models;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+// Dictionary of strings that repeat across many records, such as authors
+// and genres. Each distinct value is stored once and given a dense int id,
+// so records keep an int and equal values compare as equal ids. Ids are
+// never reused and values are never dropped: the table only grows, with
+// one entry per distinct value ever seen.
+public class SymbolTable {
+    private final ConcurrentHashMap<String, Integer> ids;
+    private volatile String[] symbols;
+    private int size;  // Guarded by this
+
+    public SymbolTable() {
+        this.ids = new ConcurrentHashMap<>();
+        this.symbols = new String[64];
+    }
+
+    // Id of the value, adding it if new; null maps to -1
+    public int intern(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            String[] current = symbols;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = value;
+            symbols = current;  // Publishes the value before its id becomes visible
+            ids.put(value, size);
+            return size++;
+        }
+    }
+
+    // Id of the value without adding it, or -1 if it was never interned
+    public int lookup(String value) {
+        Integer id = value == null ? null : ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    public String get(int id) {
+        return id < 0 ? null : symbols[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Ids of every value accepted by the filter, e.g. all spellings of a genre
+    public BitSet matching(Predicate<String> filter) {
+        String[] current;
+        int count;
+        synchronized (this) {
+            current = symbols;
+            count = size;
+        }
+        BitSet matches = new BitSet(count);
+        for (int id = 0; id < count; id++) {
+            if (filter.test(current[id])) {
+                matches.set(id);
+            }
+        }
+        return matches;
+    }
+}
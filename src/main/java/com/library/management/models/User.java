@@ -2,6 +2,20 @@ package com.library.management.models;
 
 import java.io.Serializable;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+// The serialized "role" property doubles as the type id so users.json stays unchanged.
+// Writing it first lets readers pick the subtype without buffering the record.
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.EXISTING_PROPERTY, property = "role")
+@JsonSubTypes({
+    @JsonSubTypes.Type(value = Admin.class, name = "ADMIN"),
+    @JsonSubTypes.Type(value = LibraryUser.class, name = "USER")
+})
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonPropertyOrder({"role"})
 public abstract class User implements Serializable {
     protected String userId;
     protected String username;
@@ -21,6 +35,7 @@ public abstract class User implements Serializable {
     public String getUserId() { return userId; }
     public void setUserId(String userId) { this.userId = userId; }
 
+    // Library indexes users by username; rename a stored user through Library.changeUsername
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
 
@@ -0,0 +1,316 @@
+package com.library.management.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.library.management.models.Admin;
+import com.library.management.models.Book;
+import com.library.management.models.HistoryEntry;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.Loan;
+import com.library.management.models.Reservations;
+import com.library.management.models.User;
+
+// Length-prefixed binary layout for snapshots, read through a memory-mapped file.
+//
+// books.bin: magic, version, string table (authors and genres), book count,
+//            then per book: isbn, title, author ref, genre ref, year, total, available,
+//            times borrowed, waiting user ids and (user id, expiry) holds
+// users.bin: magic, version, user count, then per user: type, userId, username,
+//            password, name, email and, for library users, the loan limit,
+//            loans as (isbn, borrowedAt, dueAt, renewals), the archived history
+//            count, the in-memory history as (isbn, borrowedAt) pairs and the
+//            fines owed
+//
+// Older versions are still read: version 1 lacks the borrow counts and
+// carries history as bare ISBNs with no archived count, version 2 lacks
+// reservations, versions before 4 carry loans as bare ISBNs, and version 4
+// lacks due dates, renewals and fines.
+//
+// Strings are an int byte length (-1 for null) followed by UTF-8 bytes; a
+// missing author or genre is a null entry in the string table.
+// Users reference books by ISBN; Library relinks them to the catalog after loading.
+final class BinarySnapshotCodec {
+    private static final int BOOKS_MAGIC = 0x4C424B53;  // "LBKS"
+    private static final int USERS_MAGIC = 0x4C555352;  // "LUSR"
+    private static final int VERSION = 5;
+    private static final int MIN_VERSION = 1;
+    private static final byte LIBRARY_USER = 0;
+    private static final byte ADMIN = 1;
+
+    private BinarySnapshotCodec() {
+    }
+
+    static void writeBooks(OutputStream target, Collection<Book> books) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (Book book : books) {
+            strings.putIfAbsent(book.getAuthor(), strings.size());
+            strings.putIfAbsent(book.getGenre(), strings.size());
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 1 << 16));
+        out.writeInt(BOOKS_MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(strings.size());
+        for (String value : strings.keySet()) {
+            writeString(out, value);
+        }
+        out.writeInt(books.size());
+        for (Book book : books) {
+            writeString(out, book.getIsbn());
+            writeString(out, book.getTitle());
+            out.writeInt(strings.get(book.getAuthor()));
+            out.writeInt(strings.get(book.getGenre()));
+            out.writeInt(book.getYear());
+            out.writeInt(book.getTotalCopies());
+            out.writeInt(book.getAvailableCopies());
+            out.writeInt(book.getTimesBorrowed());
+            writeReservations(out, book.getReservations());
+        }
+        out.flush();
+    }
+
+    static void readBooks(Path file, Consumer<Book> consumer) throws IOException {
+        MappedReader in = new MappedReader(file);
+        int version = in.expectHeader(BOOKS_MAGIC);
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readString();
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String isbn = in.readString();
+            String title = in.readString();
+            String author = strings[in.readInt()];
+            String genre = strings[in.readInt()];
+            int year = in.readInt();
+            Book book = new Book(isbn, title, author, genre, year, in.readInt());
+            book.setAvailableCopies(in.readInt());
+            if (version >= 2) {
+                book.setTimesBorrowed(in.readInt());
+            }
+            if (version >= 3) {
+                book.setReservations(readReservations(in));
+            }
+            consumer.accept(book);
+        }
+    }
+
+    static void writeUsers(OutputStream target, Collection<User> users) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 1 << 16));
+        out.writeInt(USERS_MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(users.size());
+        for (User user : users) {
+            out.writeByte(user instanceof Admin ? ADMIN : LIBRARY_USER);
+            writeString(out, user.getUserId());
+            writeString(out, user.getUsername());
+            writeString(out, user.getPassword());
+            writeString(out, user.getName());
+            writeString(out, user.getEmail());
+            if (user instanceof LibraryUser) {
+                LibraryUser libraryUser = (LibraryUser) user;
+                out.writeInt(libraryUser.getMaxBooksAllowed());
+                List<Loan> loans = libraryUser.getLoans();
+                out.writeInt(loans.size());
+                for (Loan loan : loans) {
+                    writeString(out, loan.getIsbn());
+                    out.writeLong(loan.getBorrowedAt());
+                    out.writeLong(loan.getDueAt());
+                    out.writeInt(loan.getRenewals());
+                }
+                long archived = libraryUser.getArchivedHistoryCount();
+                List<HistoryEntry> history = libraryUser.getBorrowingHistory(archived,
+                        (int) (libraryUser.getBorrowingHistorySize() - archived));
+                out.writeLong(archived);
+                out.writeInt(history.size());
+                for (HistoryEntry entry : history) {
+                    writeString(out, entry.getIsbn());
+                    out.writeLong(entry.getBorrowedAt());
+                }
+                out.writeLong(libraryUser.getFinesOwed());
+            }
+        }
+        out.flush();
+    }
+
+    static void readUsers(Path file, Consumer<User> consumer) throws IOException {
+        MappedReader in = new MappedReader(file);
+        int version = in.expectHeader(USERS_MAGIC);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            String userId = in.readString();
+            String username = in.readString();
+            String password = in.readString();
+            String name = in.readString();
+            String email = in.readString();
+            if (type == ADMIN) {
+                consumer.accept(new Admin(userId, username, password, name, email));
+            } else {
+                LibraryUser user = new LibraryUser(userId, username, password, name, email);
+                user.setMaxBooksAllowed(in.readInt());
+                user.restoreLoans(readLoans(in, version));
+                if (version >= 2) {
+                    long archived = in.readLong();
+                    int historySize = in.readInt();
+                    List<HistoryEntry> history = new ArrayList<>(historySize);
+                    for (int j = 0; j < historySize; j++) {
+                        history.add(new HistoryEntry(in.readString(), in.readLong()));
+                    }
+                    user.restoreHistory(history, archived);
+                    if (version >= 5) {
+                        user.setFinesOwed(in.readLong());
+                    }
+                } else {
+                    List<HistoryEntry> history = new ArrayList<>();
+                    for (String isbn : readIsbns(in)) {
+                        history.add(new HistoryEntry(isbn, 0));
+                    }
+                    user.restoreHistory(history, 0);
+                }
+                consumer.accept(user);
+            }
+        }
+    }
+
+    private static void writeReservations(DataOutputStream out, Reservations reservations) throws IOException {
+        List<String> waiting = reservations == null ? new ArrayList<>() : reservations.getWaiting();
+        Map<String, Long> holds = reservations == null ? new LinkedHashMap<>() : reservations.getHolds();
+        out.writeInt(waiting.size());
+        for (String userId : waiting) {
+            writeString(out, userId);
+        }
+        out.writeInt(holds.size());
+        for (Map.Entry<String, Long> hold : holds.entrySet()) {
+            writeString(out, hold.getKey());
+            out.writeLong(hold.getValue());
+        }
+    }
+
+    private static Reservations readReservations(MappedReader in) throws IOException {
+        int waitingCount = in.readInt();
+        List<String> waiting = new ArrayList<>(waitingCount);
+        for (int i = 0; i < waitingCount; i++) {
+            waiting.add(in.readString());
+        }
+        int holdCount = in.readInt();
+        Map<String, Long> holds = new LinkedHashMap<>();
+        for (int i = 0; i < holdCount; i++) {
+            holds.put(in.readString(), in.readLong());
+        }
+        return waitingCount == 0 && holdCount == 0 ? null : new Reservations(waiting, holds);
+    }
+
+    private static List<String> readIsbns(MappedReader in) throws IOException {
+        int count = in.readInt();
+        List<String> isbns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            isbns.add(in.readString());
+        }
+        return isbns;
+    }
+
+    // Loans before version 4 have no borrow time; relinking recovers it from
+    // the history. Loans before version 5 have no due date; Library assigns one.
+    private static List<Loan> readLoans(MappedReader in, int version) throws IOException {
+        int count = in.readInt();
+        List<Loan> loans = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String isbn = in.readString();
+            long borrowedAt = version >= 4 ? in.readLong() : 0;
+            loans.add(version >= 5 ? new Loan(isbn, borrowedAt, in.readLong(), in.readInt()) : new Loan(isbn, borrowedAt));
+        }
+        return loans;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Sequential reader over a read-only mapping of the whole file
+    private static final class MappedReader {
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private byte[] scratch;
+
+        MappedReader(Path file) throws IOException {
+            this.file = file;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Snapshot larger than 2 GB: " + file);
+                }
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            this.scratch = new byte[256];
+        }
+
+        // Returns the file's format version
+        int expectHeader(int magic) throws IOException {
+            int version = readInt() == magic ? readInt() : -1;
+            if (version < MIN_VERSION || version > VERSION) {
+                throw new IOException("Unrecognized snapshot format: " + file);
+            }
+            return version;
+        }
+
+        byte readByte() throws IOException {
+            try {
+                return buffer.get();
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated snapshot: " + file, e);
+            }
+        }
+
+        int readInt() throws IOException {
+            try {
+                return buffer.getInt();
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated snapshot: " + file, e);
+            }
+        }
+
+        long readLong() throws IOException {
+            try {
+                return buffer.getLong();
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated snapshot: " + file, e);
+            }
+        }
+
+        String readString() throws IOException {
+            int length = readInt();
+            if (length < 0) {
+                return null;
+            }
+            if (length > buffer.remaining()) {
+                throw new IOException("Truncated snapshot: " + file);
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.library.management.persistence;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.library.management.models.Book;
+
+// Bulk catalog files: CSV with the columns
+// isbn,title,author,genre,year,totalCopies[,availableCopies]
+// or JSON lines with one book object per line.
+// Input is read in chunks; each chunk is parsed and validated in parallel,
+// and duplicate ISBNs are resolved in parallel keeping the first occurrence.
+public class CatalogFeed {
+    private static final int CHUNK_SIZE = 50000;
+    private static final int MAX_REPORTED_ERRORS = 10;
+    private static final String CSV_HEADER = "isbn,title,author,genre,year,totalCopies,availableCopies";
+
+    public enum Format {
+        CSV,
+        JSON_LINES;
+
+        // .csv is CSV, anything else (.jsonl, .ndjson, ...) is JSON lines
+        public static Format of(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : JSON_LINES;
+        }
+    }
+
+    private final ObjectReader bookReader;
+    private final ObjectMapper objectMapper;
+
+    public CatalogFeed(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.bookReader = objectMapper.readerFor(Book.class);
+    }
+
+    public Result read(Path file) throws IOException {
+        Format format = Format.of(file);
+        List<Record> records = new ArrayList<>();
+        List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+        long[] chunkLines = new long[CHUNK_SIZE];
+        Map<String, Long> firstLineByIsbn = new ConcurrentHashMap<>();
+        Result result = new Result();
+        long lineNumber = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || (lineNumber == 1 && format == Format.CSV && isHeader(line))) {
+                    continue;
+                }
+                chunkLines[chunk.size()] = lineNumber;
+                chunk.add(line);
+                if (chunk.size() == CHUNK_SIZE) {
+                    parseChunk(chunk, chunkLines, format, firstLineByIsbn, records, result);
+                    chunk.clear();
+                }
+            }
+        }
+        parseChunk(chunk, chunkLines, format, firstLineByIsbn, records, result);
+
+        result.books = records.parallelStream()
+                .filter(record -> firstLineByIsbn.get(record.book.getIsbn()) == record.line)
+                .map(record -> record.book)
+                .collect(Collectors.toList());
+        result.duplicates = records.size() - result.books.size();
+        return result;
+    }
+
+    public void write(Path file, Collection<Book> books) throws IOException {
+        Format format = Format.of(file);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.newLine();
+            }
+            for (Book book : books) {
+                writer.write(format == Format.CSV ? toCsv(book) : objectMapper.writeValueAsString(book));
+                writer.newLine();
+            }
+        }
+    }
+
+    private void parseChunk(List<String> chunk, long[] lineNumbers, Format format,
+                            Map<String, Long> firstLineByIsbn, List<Record> records, Result result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<Record> parsed = IntStream.range(0, chunk.size()).parallel()
+                .mapToObj(i -> parse(chunk.get(i), lineNumbers[i], format))
+                .collect(Collectors.toList());
+        parsed.parallelStream()
+                .filter(record -> record.book != null)
+                .forEach(record -> firstLineByIsbn.merge(record.book.getIsbn(), record.line, Math::min));
+        for (Record record : parsed) {
+            if (record.book != null) {
+                records.add(record);
+            } else {
+                result.invalid++;
+                if (result.errors.size() < MAX_REPORTED_ERRORS) {
+                    result.errors.add("Line " + record.line + ": " + record.error);
+                }
+            }
+        }
+        result.records += chunk.size();
+    }
+
+    private Record parse(String line, long lineNumber, Format format) {
+        Book book;
+        try {
+            book = format == Format.CSV ? fromCsv(line) : bookReader.readValue(line);
+        } catch (IOException | IllegalArgumentException e) {
+            return new Record(null, lineNumber, e.getMessage());
+        }
+        String error = validate(book);
+        return error == null ? new Record(book, lineNumber, null) : new Record(null, lineNumber, error);
+    }
+
+    private static String validate(Book book) {
+        if (book == null) {
+            return "not a book record";
+        }
+        if (book.getIsbn() == null || book.getIsbn().trim().isEmpty()) {
+            return "missing ISBN";
+        }
+        if (!book.getIsbn().equals(book.getIsbn().trim())) {
+            return "ISBN has surrounding whitespace";
+        }
+        if (book.getTitle() == null || book.getTitle().trim().isEmpty()) {
+            return "missing title";
+        }
+        if (book.getTotalCopies() < 0) {
+            return "negative total copies";
+        }
+        if (book.getAvailableCopies() < 0 || book.getAvailableCopies() > book.getTotalCopies()) {
+            return "available copies outside 0.." + book.getTotalCopies();
+        }
+        return null;
+    }
+
+    private static boolean isHeader(String line) {
+        return line.trim().toLowerCase(Locale.ROOT).startsWith("isbn,");
+    }
+
+    private static Book fromCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() < 6 || fields.size() > 7) {
+            throw new IllegalArgumentException("expected 6 or 7 fields, found " + fields.size());
+        }
+        Book book = new Book(fields.get(0), fields.get(1), emptyToNull(fields.get(2)), emptyToNull(fields.get(3)),
+                parseInt(fields.get(4), "year"), parseInt(fields.get(5), "totalCopies"));
+        if (fields.size() == 7) {
+            book.setAvailableCopies(parseInt(fields.get(6), "availableCopies"));
+        }
+        return book;
+    }
+
+    // RFC 4180 fields on a single line: quoted fields may contain commas and doubled quotes
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(7);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String toCsv(Book book) {
+        return String.join(",", quote(book.getIsbn()), quote(book.getTitle()), quote(book.getAuthor()),
+                quote(book.getGenre()), String.valueOf(book.getYear()), String.valueOf(book.getTotalCopies()),
+                String.valueOf(book.getAvailableCopies()));
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static int parseInt(String value, String column) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + column + " '" + value + "'");
+        }
+    }
+
+    private static final class Record {
+        final Book book;
+        final long line;
+        final String error;
+
+        Record(Book book, long line, String error) {
+            this.book = book;
+            this.line = line;
+            this.error = error;
+        }
+    }
+
+    // Outcome of reading a feed: valid, de-duplicated books in file order plus counts
+    public static class Result {
+        private List<Book> books = Collections.emptyList();
+        private long records;
+        private long invalid;
+        private long duplicates;
+        private final List<String> errors = new ArrayList<>();
+
+        public List<Book> getBooks() { return books; }
+        public long getRecords() { return records; }
+        public long getInvalid() { return invalid; }
+        public long getDuplicates() { return duplicates; }
+        public List<String> getErrors() { return errors; }
+    }
+}
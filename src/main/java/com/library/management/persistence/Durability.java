@@ -0,0 +1,12 @@
+package com.library.management.persistence;
+
+// When a journaled mutation is acknowledged to its caller
+public enum Durability {
+    // As soon as the entry is queued for the writer; fsync follows within the group-commit window
+    FIRE_AND_FORGET,
+    // Once the entry has been fsynced; the writer syncs after every batch it drains
+    FLUSH_BEFORE_ACK,
+    // Once the entry has been fsynced; the writer waits up to the group-commit
+    // window for more entries so one fsync covers them all
+    GROUP_COMMIT
+}
@@ -0,0 +1,376 @@
+package com.library.management.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Append-only log of library mutations, one JSON entry per line.
+// Callers serialize and enqueue entries; a single writer thread drains the
+// queue, writes each burst with one call and fsyncs according to the
+// durability level: after every batch, or once groupCommitSize entries or
+// groupCommitWindow have accumulated. A full queue blocks appenders.
+// A failed write or fsync fails the journal for good: every entry not yet
+// durable is reported to its waiters as lost, and later appends are
+// refused, since what reached the file is no longer known.
+public class Journal implements Closeable {
+    private static final byte NEWLINE = '\n';
+    private static final Pending SYNC = new Pending(0, null);
+    private static final Pending STOP = new Pending(0, null);
+
+    private final ObjectMapper objectMapper;
+    private final Durability durability;
+    private final int groupCommitSize;
+    private final long groupCommitWindowNanos;
+    private final FileChannel channel;
+    private final BlockingQueue<Pending> queue;
+    private final Object durableLock;
+    private final Thread writer;
+    private long lastSequence;       // Last sequence handed out, guarded by this
+    private int entryCount;          // Guarded by this
+    private long durableSequence;    // Guarded by durableLock
+    private IOException failure;     // First failed write, guarded by durableLock
+    private boolean closed;          // Guarded by this
+    private volatile long bytesWritten;  // Written only by the writer thread
+    private Consumer<byte[]> appendListener;  // Guarded by this
+
+    public Journal(Path file, ObjectMapper objectMapper, Durability durability, int groupCommitSize,
+                   long groupCommitWindowMillis, int queueCapacity) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE),
+                objectMapper, durability, groupCommitSize, groupCommitWindowMillis, queueCapacity);
+    }
+
+    Journal(FileChannel channel, ObjectMapper objectMapper, Durability durability, int groupCommitSize,
+            long groupCommitWindowMillis, int queueCapacity) {
+        this.objectMapper = objectMapper;
+        this.durability = durability;
+        this.groupCommitSize = Math.max(1, groupCommitSize);
+        this.groupCommitWindowNanos = TimeUnit.MILLISECONDS.toNanos(groupCommitWindowMillis);
+        this.channel = channel;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.durableLock = new Object();
+        this.writer = new Thread(this::writeLoop, "journal-writer");
+        this.writer.setDaemon(true);
+    }
+
+    // Returns the entries logged after the given sequence. A torn entry left
+    // by a crash mid-append ends the log and is cut off. Starts the writer.
+    public synchronized List<JournalEntry> recover(long afterSequence) throws IOException {
+        List<JournalEntry> entries = new ArrayList<>();
+        long validLength = 0;
+        int count = 0;
+        lastSequence = afterSequence;
+
+        channel.position(0);
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b != NEWLINE) {
+                line.write(b);
+                continue;
+            }
+            JournalEntry entry;
+            try {
+                entry = objectMapper.readValue(line.toByteArray(), JournalEntry.class);
+            } catch (IOException e) {
+                break;
+            }
+            validLength += line.size() + 1;
+            line.reset();
+            count++;
+            lastSequence = Math.max(lastSequence, entry.getSequence());
+            if (entry.getSequence() > afterSequence) {
+                entries.add(entry);
+            }
+        }
+
+        if (validLength < channel.size()) {
+            channel.truncate(validLength);
+            channel.force(true);
+        }
+        channel.position(validLength);
+        entryCount = count;
+        synchronized (durableLock) {
+            durableSequence = lastSequence;
+        }
+        if (!writer.isAlive()) {
+            writer.start();
+        }
+        return entries;
+    }
+
+    // Queues the entry and returns its sequence; pass that to awaitDurable
+    // once any locks are released. Entries are serialized here, while the
+    // caller still holds the state they describe, and are queued in
+    // sequence order.
+    public synchronized long append(JournalEntry entry) throws IOException {
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+        checkFailure();
+        entry.setSequence(lastSequence + 1);
+        Pending pending = new Pending(entry.getSequence(), objectMapper.writeValueAsBytes(entry));
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the journal writer", e);
+        }
+        lastSequence = entry.getSequence();
+        entryCount++;
+        if (appendListener != null) {
+            appendListener.accept(pending.line);
+        }
+        return lastSequence;
+    }
+
+    // Passes each entry's serialized line to the listener as it is appended,
+    // in sequence order and under the journal's lock, so it must not block
+    public synchronized void setAppendListener(Consumer<byte[]> listener) {
+        this.appendListener = listener;
+    }
+
+    // Blocks until the entry is on disk if the durability level asks for
+    // it; throws if the write failed
+    public void awaitDurable(long sequence) throws IOException {
+        if (durability != Durability.FIRE_AND_FORGET) {
+            waitFor(sequence);
+        }
+    }
+
+    // Forces everything appended so far to disk
+    public void sync() throws IOException {
+        long target;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            target = lastSequence;
+        }
+        if (isDurable(target)) {
+            return;
+        }
+        checkFailure();
+        try {
+            queue.put(SYNC);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the journal writer", e);
+        }
+        waitFor(target);
+    }
+
+    // Discards all entries once a snapshot covering them has been committed.
+    // Callers sync first and keep appends out, so the writer is idle.
+    public synchronized void reset() throws IOException {
+        synchronized (channel) {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+        }
+        entryCount = 0;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized int size() {
+        return entryCount;
+    }
+
+    // Entries appended but not yet handed to the file
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        if (writer.isAlive()) {
+            try {
+                // The writer drains what was queued before STOP
+                queue.put(STOP);
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (channel) {
+            if (channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        long written = durableSequence();
+        int unsynced = 0;
+        long firstUnsyncedNanos = 0;
+        boolean running = true;
+        while (running) {
+            try {
+                Pending next = unsynced == 0
+                        ? queue.take()
+                        : queue.poll(Math.max(0, firstUnsyncedNanos + groupCommitWindowNanos - System.nanoTime()),
+                                TimeUnit.NANOSECONDS);
+                boolean syncRequested = false;
+                if (next != null) {
+                    batch.add(next);
+                    queue.drainTo(batch);
+                }
+                if (failed()) {
+                    // Nothing is written after a failure; the waiters have been told
+                    running = !batch.contains(STOP);
+                    batch.clear();
+                    continue;
+                }
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                for (Pending pending : batch) {
+                    if (pending == SYNC) {
+                        syncRequested = true;
+                    } else if (pending == STOP) {
+                        syncRequested = true;
+                        running = false;
+                    } else {
+                        bytes.write(pending.line);
+                        bytes.write(NEWLINE);
+                        written = pending.sequence;
+                        if (unsynced++ == 0) {
+                            firstUnsyncedNanos = System.nanoTime();
+                        }
+                    }
+                }
+                batch.clear();
+                if (bytes.size() > 0) {
+                    write(ByteBuffer.wrap(bytes.toByteArray()));
+                    bytesWritten += bytes.size();
+                }
+
+                boolean due = unsynced >= groupCommitSize
+                        || System.nanoTime() - firstUnsyncedNanos >= groupCommitWindowNanos;
+                if (unsynced > 0 && (syncRequested || due || durability == Durability.FLUSH_BEFORE_ACK)) {
+                    force();
+                    unsynced = 0;
+                }
+                if (unsynced == 0) {
+                    markDurable(written);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                System.err.println("Error saving data: " + e.getMessage());
+                batch.clear();
+                unsynced = 0;
+                fail(e);
+            }
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        synchronized (channel) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private void force() throws IOException {
+        synchronized (channel) {
+            channel.force(false);
+        }
+    }
+
+    private long durableSequence() {
+        synchronized (durableLock) {
+            return durableSequence;
+        }
+    }
+
+    private boolean isDurable(long sequence) {
+        return durableSequence() >= sequence;
+    }
+
+    private void markDurable(long sequence) {
+        synchronized (durableLock) {
+            if (sequence > durableSequence) {
+                durableSequence = sequence;
+                durableLock.notifyAll();
+            }
+        }
+    }
+
+    private void fail(IOException e) {
+        synchronized (durableLock) {
+            failure = e;
+            durableLock.notifyAll();
+        }
+    }
+
+    private boolean failed() {
+        synchronized (durableLock) {
+            return failure != null;
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        synchronized (durableLock) {
+            if (failure != null) {
+                throw new IOException("Journal write failed: " + failure.getMessage(), failure);
+            }
+        }
+    }
+
+    private void waitFor(long sequence) throws IOException {
+        synchronized (durableLock) {
+            while (durableSequence < sequence && failure == null && writer.isAlive()) {
+                try {
+                    durableLock.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the journal writer", e);
+                }
+            }
+            if (durableSequence < sequence) {
+                checkFailure();
+            }
+        }
+    }
+
+    private static final class Pending {
+        final long sequence;
+        final byte[] line;
+
+        Pending(long sequence, byte[] line) {
+            this.sequence = sequence;
+            this.line = line;
+        }
+    }
+}
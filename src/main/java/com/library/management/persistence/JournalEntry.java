@@ -0,0 +1,160 @@
+package com.library.management.persistence;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.library.management.models.Book;
+import com.library.management.models.User;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JournalEntry {
+    public enum Type {
+        ADD_BOOK,
+        ADD_BOOKS,
+        REMOVE_BOOK,
+        ADD_USER,
+        BORROW,
+        RETURN,
+        RESERVE,
+        CANCEL_RESERVATION,
+        EXPIRE_HOLD,
+        RENEW,
+        PAY_FINES,
+        SET_PASSWORD,
+        RENAME_USER
+    }
+
+    private long sequence;
+    private Type type;
+    private String isbn;
+    private String userId;
+    private Book book;
+    private User user;
+    private List<Book> books;
+    private Long timestamp;  // Event time, so replay rebuilds the same history and hold expiries
+    private Long dueAt;      // Due date set by a borrow or renewal, so replay does not depend on the loan period
+    private String password; // Hash replacing a user's plaintext password
+    private String username; // New username of a renamed user
+
+    public JournalEntry() {
+    }
+
+    private JournalEntry(Type type, String isbn, String userId, Book book, User user) {
+        this.type = type;
+        this.isbn = isbn;
+        this.userId = userId;
+        this.book = book;
+        this.user = user;
+    }
+
+    public static JournalEntry addBook(Book book) {
+        return new JournalEntry(Type.ADD_BOOK, null, null, book, null);
+    }
+
+    // A bulk import is one entry, so a crash keeps all of it or none of it
+    public static JournalEntry addBooks(List<Book> books) {
+        JournalEntry entry = new JournalEntry(Type.ADD_BOOKS, null, null, null, null);
+        entry.books = books;
+        return entry;
+    }
+
+    public static JournalEntry removeBook(String isbn) {
+        return new JournalEntry(Type.REMOVE_BOOK, isbn, null, null, null);
+    }
+
+    public static JournalEntry addUser(User user) {
+        return new JournalEntry(Type.ADD_USER, null, null, null, user);
+    }
+
+    public static JournalEntry borrow(String userId, String isbn, long timestamp, long dueAt) {
+        JournalEntry entry = new JournalEntry(Type.BORROW, isbn, userId, null, null);
+        entry.timestamp = timestamp;
+        entry.dueAt = dueAt;
+        return entry;
+    }
+
+    public static JournalEntry renew(String userId, String isbn, long timestamp, long dueAt) {
+        JournalEntry entry = new JournalEntry(Type.RENEW, isbn, userId, null, null);
+        entry.timestamp = timestamp;
+        entry.dueAt = dueAt;
+        return entry;
+    }
+
+    public static JournalEntry payFines(String userId) {
+        return new JournalEntry(Type.PAY_FINES, null, userId, null, null);
+    }
+
+    // Only ever carries a hash, so migrating a password leaves no plaintext behind
+    public static JournalEntry setPassword(String userId, String hash) {
+        JournalEntry entry = new JournalEntry(Type.SET_PASSWORD, null, userId, null, null);
+        entry.password = hash;
+        return entry;
+    }
+
+    public static JournalEntry renameUser(String userId, String username) {
+        JournalEntry entry = new JournalEntry(Type.RENAME_USER, null, userId, null, null);
+        entry.username = username;
+        return entry;
+    }
+
+    public static JournalEntry returnBook(String userId, String isbn, long timestamp) {
+        JournalEntry entry = new JournalEntry(Type.RETURN, isbn, userId, null, null);
+        entry.timestamp = timestamp;
+        return entry;
+    }
+
+    public static JournalEntry reserve(String userId, String isbn) {
+        return new JournalEntry(Type.RESERVE, isbn, userId, null, null);
+    }
+
+    public static JournalEntry cancelReservation(String userId, String isbn, long timestamp) {
+        JournalEntry entry = new JournalEntry(Type.CANCEL_RESERVATION, isbn, userId, null, null);
+        entry.timestamp = timestamp;
+        return entry;
+    }
+
+    public static JournalEntry expireHold(String userId, String isbn, long timestamp) {
+        JournalEntry entry = new JournalEntry(Type.EXPIRE_HOLD, isbn, userId, null, null);
+        entry.timestamp = timestamp;
+        return entry;
+    }
+
+    // Getters and Setters
+    public long getSequence() { return sequence; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
+
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+
+    public String getIsbn() { return isbn; }
+    public void setIsbn(String isbn) { this.isbn = isbn; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public Book getBook() { return book; }
+    public void setBook(Book book) { this.book = book; }
+
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+
+    public List<Book> getBooks() { return books; }
+    public void setBooks(List<Book> books) { this.books = books; }
+
+    public Long getTimestamp() { return timestamp; }
+    public void setTimestamp(Long timestamp) { this.timestamp = timestamp; }
+
+    public Long getDueAt() { return dueAt; }
+    public void setDueAt(Long dueAt) { this.dueAt = dueAt; }
+
+    public String getPassword() { return password; }
+    public void setPassword(String password) { this.password = password; }
+
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+
+    @Override
+    public String toString() {
+        return String.format("JournalEntry{sequence=%d, type=%s}", sequence, type);
+    }
+}
@@ -0,0 +1,269 @@
+package com.library.management.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.library.management.models.HistoryArchive;
+import com.library.management.models.HistoryEntry;
+
+// Archived borrowing history, spread over a fixed number of append-only
+// segment files by user id. Each record is length-prefixed and holds the
+// user id, the entry's position in that user's history, the ISBN and the
+// borrow time. Positions already in the archive are skipped on append, so
+// entries spilled again after a crash are not stored twice.
+public class SegmentedHistoryArchive implements HistoryArchive, Closeable {
+    private static final int SEGMENT_COUNT = 64;
+
+    private final Path directory;
+    private final Segment[] segments;
+
+    public SegmentedHistoryArchive(Path directory) {
+        this.directory = directory;
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(directory.resolve(String.format("segment-%02d.log", i)));
+        }
+    }
+
+    @Override
+    public void append(String userId, long firstIndex, List<HistoryEntry> entries) {
+        try {
+            segmentFor(userId).append(userId, firstIndex, entries);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to archive borrowing history", e);
+        }
+    }
+
+    @Override
+    public List<HistoryEntry> read(String userId, long fromIndex, int limit) {
+        try {
+            return segmentFor(userId).read(userId, fromIndex, limit);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read borrowing history", e);
+        }
+    }
+
+    // Forces archived entries to disk; called before a snapshot that counts them is committed
+    public void sync() throws IOException {
+        for (Segment segment : segments) {
+            segment.sync();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    private Segment segmentFor(String userId) {
+        return segments[Math.floorMod(userId.hashCode(), SEGMENT_COUNT)];
+    }
+
+    private final class Segment {
+        private final Path file;
+        // Per user, the runs of consecutive positions written by one append,
+        // keyed by first position; built by the scan in open()
+        private final Map<String, TreeMap<Long, Run>> runs;
+        private FileChannel channel;
+        private boolean dirty;
+
+        Segment(Path file) {
+            this.file = file;
+            this.runs = new HashMap<>();
+        }
+
+        synchronized void append(String userId, long firstIndex, List<HistoryEntry> entries) throws IOException {
+            FileChannel target = open();
+            long archivedEnd = archivedEnd(userId);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream recordOut = new DataOutputStream(record);
+            long first = Math.max(firstIndex, archivedEnd);
+            for (long index = first; index < firstIndex + entries.size(); index++) {
+                HistoryEntry entry = entries.get((int) (index - firstIndex));
+                record.reset();
+                recordOut.writeUTF(userId);
+                recordOut.writeLong(index);
+                recordOut.writeUTF(entry.getIsbn());
+                recordOut.writeLong(entry.getBorrowedAt());
+                out.writeInt(record.size());
+                record.writeTo(out);
+            }
+            if (bytes.size() == 0) {
+                return;
+            }
+            long offset = target.position();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            addRun(userId, first, new Run(offset, bytes.size(), (int) (firstIndex + entries.size() - first)));
+            dirty = true;
+        }
+
+        // Reads only the runs that overlap the requested positions
+        synchronized List<HistoryEntry> read(String userId, long fromIndex, int limit) throws IOException {
+            List<HistoryEntry> found = new ArrayList<>();
+            if (limit <= 0 || (channel == null && !Files.exists(file))) {
+                return found;
+            }
+            FileChannel source = open();
+            TreeMap<Long, Run> userRuns = runs.get(userId);
+            if (userRuns == null) {
+                return found;
+            }
+            long end = fromIndex + limit;
+            Long start = userRuns.floorKey(fromIndex);
+            for (Map.Entry<Long, Run> run : userRuns.tailMap(start != null ? start : fromIndex).entrySet()) {
+                if (run.getKey() >= end) {
+                    break;
+                }
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(run.getValue().read(source)));
+                for (int i = 0; i < run.getValue().count; i++) {
+                    in.readInt();
+                    in.readUTF();
+                    long index = in.readLong();
+                    HistoryEntry entry = new HistoryEntry(in.readUTF(), in.readLong());
+                    if (index >= fromIndex && index < end) {
+                        found.add(entry);
+                    }
+                }
+            }
+            return found;
+        }
+
+        synchronized void sync() throws IOException {
+            if (dirty) {
+                channel.force(false);
+                dirty = false;
+            }
+        }
+
+        synchronized void close() throws IOException {
+            if (channel != null) {
+                sync();
+                channel.close();
+                channel = null;
+                runs.clear();
+            }
+        }
+
+        // Opens the segment, indexing its runs and cutting off a record torn by a crash
+        private FileChannel open() throws IOException {
+            if (channel == null) {
+                Files.createDirectories(directory);
+                long validLength = Files.exists(file) ? scan(this::indexRecord) : 0;
+                channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                if (validLength < channel.size()) {
+                    channel.truncate(validLength);
+                    channel.force(true);
+                }
+                channel.position(validLength);
+            }
+            return channel;
+        }
+
+        // Extends the user's last run when the record directly follows it in
+        // both position and file offset, and starts a new run otherwise
+        private void indexRecord(String userId, long index, long offset, int length) {
+            TreeMap<Long, Run> userRuns = runs.get(userId);
+            Map.Entry<Long, Run> last = userRuns == null ? null : userRuns.lastEntry();
+            if (index < archivedEnd(userId)) {
+                return;
+            }
+            if (last != null && last.getKey() + last.getValue().count == index
+                    && last.getValue().offset + last.getValue().length == offset) {
+                last.getValue().length += length;
+                last.getValue().count++;
+            } else {
+                addRun(userId, index, new Run(offset, length, 1));
+            }
+        }
+
+        private void addRun(String userId, long firstIndex, Run run) {
+            runs.computeIfAbsent(userId, key -> new TreeMap<>()).put(firstIndex, run);
+        }
+
+        private long archivedEnd(String userId) {
+            TreeMap<Long, Run> userRuns = runs.get(userId);
+            if (userRuns == null || userRuns.isEmpty()) {
+                return 0;
+            }
+            return userRuns.lastKey() + userRuns.lastEntry().getValue().count;
+        }
+
+        // Visits every complete record and returns the length they cover
+        private long scan(RecordVisitor visitor) throws IOException {
+            long validLength = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ))))) {
+                while (true) {
+                    String owner;
+                    long index;
+                    int length;
+                    try {
+                        length = in.readInt();
+                        owner = in.readUTF();
+                        index = in.readLong();
+                        in.readUTF();
+                        in.readLong();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    visitor.visit(owner, index, validLength, Integer.BYTES + length);
+                    validLength += Integer.BYTES + length;
+                }
+            }
+            return validLength;
+        }
+    }
+
+    // Records of one user at consecutive positions, stored back to back
+    private static final class Run {
+        private final long offset;
+        private int length;
+        private int count;
+
+        Run(long offset, int length, int count) {
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+        }
+
+        byte[] read(FileChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("Archived history run past end of segment");
+                }
+            }
+            return buffer.array();
+        }
+    }
+
+    private interface RecordVisitor {
+        void visit(String userId, long index, long offset, int length);
+    }
+}
@@ -0,0 +1,20 @@
+package com.library.management.persistence;
+
+public enum SnapshotFormat {
+    JSON("books.json", "users.json"),
+    BINARY("books.bin", "users.bin"),
+    // Directories of binary segment files keyed by ISBN or user id hash, of
+    // which a snapshot only rewrites those holding a changed record
+    SEGMENTED("book-segments", "user-segments");
+
+    private final String booksFile;
+    private final String usersFile;
+
+    SnapshotFormat(String booksFile, String usersFile) {
+        this.booksFile = booksFile;
+        this.usersFile = usersFile;
+    }
+
+    public String getBooksFile() { return booksFile; }
+    public String getUsersFile() { return usersFile; }
+}
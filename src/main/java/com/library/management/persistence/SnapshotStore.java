@@ -0,0 +1,366 @@
+package com.library.management.persistence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.library.management.models.Book;
+import com.library.management.models.User;
+
+// Compacted books/users snapshot, in JSON or binary form, plus a checkpoint
+// holding the journal sequence it covers and its record counts.
+// All three files are staged as temporaries first; the fully written checkpoint
+// temporary is the commit point, so an interrupted snapshot is either rolled
+// forward or discarded on the next start.
+//
+// In the segmented format books and users are spread over SEGMENT_COUNT binary
+// files each by ISBN or user id hash. Given the keys changed since the last
+// snapshot, only the segments holding them are staged and committed, so a
+// snapshot after one checkout writes two segments rather than the catalog.
+public class SnapshotStore {
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int SEGMENT_COUNT = 256;
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final SnapshotFormat format;
+    private int bookCount;
+    private int userCount;
+    private boolean segmentsComplete;  // Every segment file reflects the last snapshot
+
+    public SnapshotStore(Path directory, ObjectMapper objectMapper) {
+        this(directory, objectMapper, SnapshotFormat.JSON);
+    }
+
+    public SnapshotStore(Path directory, ObjectMapper objectMapper, SnapshotFormat format) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.format = format;
+    }
+
+    // Completes or discards a snapshot interrupted by a crash and returns the
+    // journal sequence covered by the current snapshot
+    public long recover() throws IOException {
+        Path pendingCheckpoint = temp(CHECKPOINT_FILE);
+        List<Path> pendingSegments = pendingSegments();
+        if (Files.exists(pendingCheckpoint) && readCheckpoint(pendingCheckpoint, true) != null) {
+            commit(format.getBooksFile());
+            commit(format.getUsersFile());
+            for (Path segment : pendingSegments) {
+                commit(segment);
+            }
+            commit(CHECKPOINT_FILE);
+        } else {
+            Files.deleteIfExists(temp(format.getBooksFile()));
+            Files.deleteIfExists(temp(format.getUsersFile()));
+            for (Path segment : pendingSegments) {
+                Files.deleteIfExists(segment);
+            }
+            Files.deleteIfExists(pendingCheckpoint);
+        }
+
+        long[] checkpoint = readCheckpoint(directory.resolve(CHECKPOINT_FILE), false);
+        segmentsComplete = checkpoint != null
+                && storedFormat(SnapshotFormat::getBooksFile) == SnapshotFormat.SEGMENTED
+                && storedFormat(SnapshotFormat::getUsersFile) == SnapshotFormat.SEGMENTED;
+        if (checkpoint == null) {
+            bookCount = 0;
+            userCount = 0;
+            return 0;
+        }
+        bookCount = (int) checkpoint[1];
+        userCount = (int) checkpoint[2];
+        return checkpoint[0];
+    }
+
+    // Record counts of the recovered snapshot, 0 when unknown; used to presize maps
+    public int getBookCount() {
+        return bookCount;
+    }
+
+    public int getUserCount() {
+        return userCount;
+    }
+
+    // Books and users are streamed one record at a time so the snapshot is
+    // never materialized as an intermediate array. A snapshot written in the
+    // other format is read as well, which is how a directory switches formats.
+    public void readBooks(Consumer<Book> consumer) throws IOException {
+        SnapshotFormat stored = storedFormat(SnapshotFormat::getBooksFile);
+        if (stored == SnapshotFormat.SEGMENTED) {
+            for (Path segment : segments(stored.getBooksFile())) {
+                BinarySnapshotCodec.readBooks(segment, consumer);
+            }
+        } else if (stored == SnapshotFormat.BINARY) {
+            BinarySnapshotCodec.readBooks(directory.resolve(stored.getBooksFile()), consumer);
+        } else if (stored == SnapshotFormat.JSON) {
+            readArray(directory.resolve(stored.getBooksFile()), objectMapper.readerFor(Book.class), consumer);
+        }
+    }
+
+    // Users read from a binary snapshot hold their loans as ISBNs until relinked
+    public void readUsers(Consumer<User> consumer) throws IOException {
+        SnapshotFormat stored = storedFormat(SnapshotFormat::getUsersFile);
+        if (stored == SnapshotFormat.SEGMENTED) {
+            for (Path segment : segments(stored.getUsersFile())) {
+                BinarySnapshotCodec.readUsers(segment, consumer);
+            }
+        } else if (stored == SnapshotFormat.BINARY) {
+            BinarySnapshotCodec.readUsers(directory.resolve(stored.getUsersFile()), consumer);
+        } else if (stored == SnapshotFormat.JSON) {
+            readArray(directory.resolve(stored.getUsersFile()), objectMapper.readerFor(User.class), consumer);
+        }
+    }
+
+    // Returns the number of bytes written
+    public long write(Collection<Book> books, Collection<User> users, long sequence) throws IOException {
+        return write(books, users, null, null, sequence);
+    }
+
+    // As above, given the ISBNs and user ids of every record added, changed or
+    // removed since the last snapshot; null means unknown. Only the segmented
+    // format uses them, and only once a complete set of segments is on disk.
+    public long write(Collection<Book> books, Collection<User> users, Set<String> changedIsbns,
+                      Set<String> changedUserIds, long sequence) throws IOException {
+        Files.createDirectories(directory);
+        long bytes;
+        List<Path> staged = new ArrayList<>();
+        if (format == SnapshotFormat.SEGMENTED) {
+            boolean everything = !segmentsComplete || changedIsbns == null || changedUserIds == null;
+            for (Path leftover : pendingSegments()) {
+                Files.delete(leftover);
+            }
+            bytes = writeSegments(format.getBooksFile(), books, Book::getIsbn,
+                    everything ? null : segmentsOf(changedIsbns), BinarySnapshotCodec::writeBooks, staged)
+                    + writeSegments(format.getUsersFile(), users, User::getUserId,
+                    everything ? null : segmentsOf(changedUserIds), BinarySnapshotCodec::writeUsers, staged);
+        } else if (format == SnapshotFormat.BINARY) {
+            bytes = writeFile(temp(format.getBooksFile()), out -> BinarySnapshotCodec.writeBooks(out, books))
+                    + writeFile(temp(format.getUsersFile()), out -> BinarySnapshotCodec.writeUsers(out, users));
+        } else {
+            bytes = writeFile(temp(format.getBooksFile()), out -> writeJson(out, books))
+                    + writeFile(temp(format.getUsersFile()), out -> writeJson(out, users));
+        }
+        byte[] checkpoint = (sequence + "\n" + books.size() + "\n" + users.size() + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        writeDurably(temp(CHECKPOINT_FILE), checkpoint);
+        bytes += checkpoint.length;
+
+        commit(format.getBooksFile());
+        commit(format.getUsersFile());
+        for (Path segment : staged) {
+            commit(segment);
+        }
+        commit(CHECKPOINT_FILE);
+        segmentsComplete = format == SnapshotFormat.SEGMENTED;
+
+        // Files in the other formats are now older than the checkpoint
+        for (SnapshotFormat other : SnapshotFormat.values()) {
+            if (other != format) {
+                delete(directory.resolve(other.getBooksFile()));
+                delete(directory.resolve(other.getUsersFile()));
+            }
+        }
+        return bytes;
+    }
+
+    // Stages the given segments, or all of them when null, each holding the
+    // records whose key hashes to it; an emptied segment is staged empty
+    private <T> long writeSegments(String name, Collection<T> records, Function<T, String> key, BitSet selected,
+                                   SegmentWriter<T> writer, List<Path> staged) throws IOException {
+        Path segmentDirectory = directory.resolve(name);
+        Files.createDirectories(segmentDirectory);
+        List<List<T>> segments = new ArrayList<>(SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments.add(selected == null || selected.get(i) ? new ArrayList<>() : null);
+        }
+        for (T record : records) {
+            List<T> segment = segments.get(segmentOf(key.apply(record)));
+            if (segment != null) {
+                segment.add(record);
+            }
+        }
+        long bytes = 0;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            List<T> segment = segments.get(i);
+            if (segment != null) {
+                Path file = segmentDirectory.resolve(String.format("segment-%03d.bin", i) + TEMP_SUFFIX);
+                bytes += writeFile(file, out -> writer.write(out, segment));
+                staged.add(file);
+            }
+        }
+        return bytes;
+    }
+
+    private interface SegmentWriter<T> {
+        void write(OutputStream out, Collection<T> records) throws IOException;
+    }
+
+    private static BitSet segmentsOf(Set<String> keys) {
+        BitSet segments = new BitSet(SEGMENT_COUNT);
+        for (String key : keys) {
+            segments.set(segmentOf(key));
+        }
+        return segments;
+    }
+
+    private static int segmentOf(String key) {
+        return Math.floorMod(key.hashCode(), SEGMENT_COUNT);
+    }
+
+    // Committed segment files of one kind, in segment order
+    private List<Path> segments(String name) throws IOException {
+        return listSegments(directory.resolve(name), false);
+    }
+
+    // Staged segment files of both kinds
+    private List<Path> pendingSegments() throws IOException {
+        List<Path> pending = listSegments(directory.resolve(SnapshotFormat.SEGMENTED.getBooksFile()), true);
+        pending.addAll(listSegments(directory.resolve(SnapshotFormat.SEGMENTED.getUsersFile()), true));
+        return pending;
+    }
+
+    private List<Path> listSegments(Path segmentDirectory, boolean staged) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(segmentDirectory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(segmentDirectory, "segment-*")) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(TEMP_SUFFIX) == staged) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    // A file, or a segment directory with everything in it
+    private void delete(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path file : stream) {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    private SnapshotFormat storedFormat(Function<SnapshotFormat, String> file) throws IOException {
+        if (isStored(directory.resolve(file.apply(format)))) {
+            return format;
+        }
+        for (SnapshotFormat other : SnapshotFormat.values()) {
+            if (isStored(directory.resolve(file.apply(other)))) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    // A segment directory only counts once a segment has been committed into it
+    private boolean isStored(Path path) throws IOException {
+        return Files.isDirectory(path) ? !listSegments(path, false).isEmpty() : Files.exists(path);
+    }
+
+    private <T> void readArray(Path file, ObjectReader reader, Consumer<T> consumer) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(file.toFile())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected an array in " + file.getFileName());
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(reader.readValue(parser));
+            }
+        }
+    }
+
+    private void writeJson(OutputStream out, Collection<?> values) throws IOException {
+        objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(out, values);
+    }
+
+    private long writeFile(Path file, SnapshotWriter writer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            writer.write(out);
+            out.flush();
+            channel.force(true);
+            return channel.size();
+        }
+    }
+
+    private interface SnapshotWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private void writeDurably(Path file, byte[] content) throws IOException {
+        Files.write(file, content);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private void commit(String name) throws IOException {
+        commit(temp(name));
+    }
+
+    private void commit(Path temp) throws IOException {
+        if (Files.exists(temp)) {
+            String name = temp.getFileName().toString();
+            Files.move(temp, temp.resolveSibling(name.substring(0, name.length() - TEMP_SUFFIX.length())),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // Returns {sequence, books, users}, or null when the checkpoint is missing
+    // or torn. A complete checkpoint ends with a newline after its third value;
+    // committed ones are trusted as they are.
+    private long[] readCheckpoint(Path file, boolean requireComplete) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            String[] lines = content.trim().split("\n");
+            if (requireComplete && (lines.length < 3 || !content.endsWith("\n"))) {
+                return null;
+            }
+            long[] values = new long[3];
+            for (int i = 0; i < lines.length && i < values.length; i++) {
+                values[i] = Long.parseLong(lines[i].trim());
+            }
+            return values;
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Path temp(String name) {
+        return directory.resolve(name + TEMP_SUFFIX);
+    }
+}
@@ -0,0 +1,164 @@
+package com.library.management.query;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.library.management.index.SortedCatalog;
+import com.library.management.models.Book;
+import com.library.management.models.BookSymbols;
+import com.library.management.models.SymbolTable;
+
+// Catalog filter combining any number of criteria, all of which must match:
+//   new BookQuery().titleContains("river").yearBetween(1950, 1999).orderBy(Order.YEAR).limit(20)
+// Text criteria are case-insensitive substring matches, like the indexed
+// searches. With an order the first matches in that order are returned;
+// without one, results come in no particular order. The criteria serialize
+// to JSON, so a query can be sent to a remote shard; where() conditions cannot.
+@JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE,
+        isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
+public class BookQuery {
+    private String title;
+    private String author;
+    private String genre;
+    private int yearFrom;
+    private int yearTo;
+    private boolean availableOnly;
+    @JsonIgnore
+    private final List<Predicate<Book>> conditions;
+    private SortedCatalog.Order order;
+    private int limit;
+
+    public BookQuery() {
+        this.yearFrom = Integer.MIN_VALUE;
+        this.yearTo = Integer.MAX_VALUE;
+        this.conditions = new ArrayList<>();
+        this.limit = Integer.MAX_VALUE;
+    }
+
+    public BookQuery titleContains(String title) {
+        this.title = title;
+        return this;
+    }
+
+    public BookQuery authorContains(String author) {
+        this.author = author;
+        return this;
+    }
+
+    // Exact genre, ignoring case
+    public BookQuery genre(String genre) {
+        this.genre = genre;
+        return this;
+    }
+
+    // Inclusive on both ends
+    public BookQuery yearBetween(int from, int to) {
+        this.yearFrom = from;
+        this.yearTo = to;
+        return this;
+    }
+
+    public BookQuery availableOnly() {
+        this.availableOnly = true;
+        return this;
+    }
+
+    // Any further condition; it may be evaluated from several threads at once
+    public BookQuery where(Predicate<Book> condition) {
+        conditions.add(condition);
+        return this;
+    }
+
+    public BookQuery orderBy(SortedCatalog.Order order) {
+        this.order = order;
+        return this;
+    }
+
+    public BookQuery limit(int limit) {
+        this.limit = Math.max(0, limit);
+        return this;
+    }
+
+    public SortedCatalog.Order getOrder() {
+        return order;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean hasConditions() {
+        return !conditions.isEmpty();
+    }
+
+    // The query as a test for books catalogued against the symbols. Every
+    // spelling of the genre they know is resolved to its id once, so each
+    // of those books is checked with a bit test. Null symbols, or books
+    // encoded elsewhere, compare the genre as a string.
+    public Predicate<Book> matcher(BookSymbols symbols) {
+        if (genre == null || symbols == null) {
+            return this::matches;
+        }
+        SymbolTable genres = symbols.getGenres();
+        int known = genres.size();
+        BitSet genreIds = genres.matching(genre::equalsIgnoreCase);
+        return book -> matches(book, symbols, genreIds, known);
+    }
+
+    public boolean matches(Book book) {
+        return matches(book, null, null, 0);
+    }
+
+    // Cheap numeric checks run before the string scans
+    private boolean matches(Book book, BookSymbols symbols, BitSet genreIds, int known) {
+        if (book.getYear() < yearFrom || book.getYear() > yearTo) {
+            return false;
+        }
+        if (availableOnly && !book.isAvailable()) {
+            return false;
+        }
+        if (genre != null && !genreMatches(book, symbols, genreIds, known)) {
+            return false;
+        }
+        if (title != null && !containsIgnoreCase(book.getTitle(), title)) {
+            return false;
+        }
+        if (author != null && !containsIgnoreCase(book.getAuthor(), author)) {
+            return false;
+        }
+        for (Predicate<Book> condition : conditions) {
+            if (!condition.test(book)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Genres added to the symbols after the ids were resolved are compared as strings
+    private boolean genreMatches(Book book, BookSymbols symbols, BitSet genreIds, int known) {
+        int id = book.getGenreId();
+        if (book.getSymbols() == symbols && id < known) {
+            return id >= 0 && genreIds.get(id);
+        }
+        return genre.equalsIgnoreCase(book.getGenre());
+    }
+
+    // Compares in place, without lower-casing a copy of every value scanned
+    static boolean containsIgnoreCase(String value, String part) {
+        if (value == null) {
+            return part.isEmpty();
+        }
+        int last = value.length() - part.length();
+        for (int i = 0; i <= last; i++) {
+            if (value.regionMatches(true, i, part, 0, part.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
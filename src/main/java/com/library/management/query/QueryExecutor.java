@@ -0,0 +1,148 @@
+package com.library.management.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import com.library.management.models.Book;
+import com.library.management.models.BookSymbols;
+
+// Runs a BookQuery over the catalog in the query's order. Catalogs smaller
+// than the sequential threshold are scanned in place and the scan stops at
+// the limit. Larger ones are copied to a list, split in halves on a
+// fork-join pool and merged back in order. A limited query first scans one
+// threshold's worth in place, since limits are often met near the front,
+// and only copies what remains. Once some prefix holds limit matches,
+// everything after it is skipped, so the result is exactly the first matches.
+public class QueryExecutor {
+    private static final int CUTOFF_CHECK_INTERVAL = 1024;  // Books scanned between checks of the shared cutoff
+
+    private final ForkJoinPool pool;
+    private final int sequentialThreshold;
+
+    public QueryExecutor(ForkJoinPool pool, int sequentialThreshold) {
+        this.pool = pool;
+        this.sequentialThreshold = sequentialThreshold;
+    }
+
+    // size is the number of books in source, which a concurrent view may not know cheaply
+    public List<Book> execute(BookQuery query, Collection<Book> source, int size) {
+        return execute(query, null, source, size);
+    }
+
+    // With the symbols the source's books are catalogued against, the genre is checked by id
+    public List<Book> execute(BookQuery query, BookSymbols symbols, Collection<Book> source, int size) {
+        if (query.getLimit() == 0) {
+            return new ArrayList<>();
+        }
+        Predicate<Book> matcher = query.matcher(symbols);
+        Iterator<Book> books = source.iterator();
+        List<Book> results = new ArrayList<>();
+        if (size < sequentialThreshold || pool.getParallelism() < 2) {
+            scan(query, matcher, books, Integer.MAX_VALUE, results);
+            return results;
+        }
+        if (query.getLimit() != Integer.MAX_VALUE && scan(query, matcher, books, sequentialThreshold, results)) {
+            return results;
+        }
+
+        List<Book> remaining = new ArrayList<>(size);
+        while (books.hasNext()) {
+            remaining.add(books.next());
+        }
+        int leafSize = Math.max(sequentialThreshold / 4, remaining.size() / (pool.getParallelism() * 8) + 1);
+        AtomicInteger cutoff = new AtomicInteger(Integer.MAX_VALUE);
+        results.addAll(pool.invoke(new SearchTask(matcher, remaining, 0, remaining.size(),
+                query.getLimit() - results.size(), leafSize, cutoff)));
+        return results;
+    }
+
+    // Scans up to count books and returns true once results reach the limit
+    private static boolean scan(BookQuery query, Predicate<Book> matcher, Iterator<Book> books, int count,
+                                List<Book> results) {
+        for (int i = 0; i < count && books.hasNext(); i++) {
+            Book book = books.next();
+            if (matcher.test(book)) {
+                results.add(book);
+                if (results.size() == query.getLimit()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class SearchTask extends RecursiveTask<List<Book>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Predicate<Book> matcher;
+        private final List<Book> books;
+        private final int from;
+        private final int to;
+        private final int limit;
+        private final int leafSize;
+        private final AtomicInteger cutoff;  // Matches before this index already fill the limit
+
+        SearchTask(Predicate<Book> matcher, List<Book> books, int from, int to, int limit, int leafSize,
+                   AtomicInteger cutoff) {
+            this.matcher = matcher;
+            this.books = books;
+            this.from = from;
+            this.to = to;
+            this.limit = limit;
+            this.leafSize = leafSize;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected List<Book> compute() {
+            if (from >= cutoff.get()) {
+                return new ArrayList<>();
+            }
+            if (to - from <= leafSize) {
+                return scanRange();
+            }
+            int middle = (from + to) >>> 1;
+            SearchTask right = new SearchTask(matcher, books, middle, to, limit, leafSize, cutoff);
+            right.fork();
+            List<Book> left = new SearchTask(matcher, books, from, middle, limit, leafSize, cutoff).compute();
+            if (left.size() >= limit && right.tryUnfork()) {
+                return left;
+            }
+            return merge(left, right.join());
+        }
+
+        private List<Book> scanRange() {
+            List<Book> results = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                if ((i - from) % CUTOFF_CHECK_INTERVAL == 0 && i >= cutoff.get()) {
+                    break;
+                }
+                Book book = books.get(i);
+                if (matcher.test(book)) {
+                    results.add(book);
+                    if (results.size() == limit) {
+                        cutoff.accumulateAndGet(i + 1, Math::min);
+                        break;
+                    }
+                }
+            }
+            return results;
+        }
+
+        private List<Book> merge(List<Book> left, List<Book> right) {
+            if (left.size() >= limit || right.isEmpty()) {
+                return left;
+            }
+            List<Book> merged = new ArrayList<>(Math.min(limit, left.size() + right.size()));
+            merged.addAll(left);
+            merged.addAll(right.subList(0, Math.min(right.size(), limit - left.size())));
+            return merged;
+        }
+    }
+}
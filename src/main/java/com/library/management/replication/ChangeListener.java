@@ -0,0 +1,8 @@
+package com.library.management.replication;
+
+// Receives every committed Library mutation as a serialized JournalEntry, in
+// the order they were applied. Called while the mutation's locks are held,
+// so implementations must not block.
+public interface ChangeListener {
+    void changed(byte[] entry);
+}
@@ -0,0 +1,189 @@
+package com.library.management.replication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// Frames exchanged between a ReplicationSource and a StandbyLibrary over one
+// TCP connection. Entries are JournalEntry JSON, prefixed by their length.
+//   primary -> standby  CHALLENGE  random bytes
+//   standby -> primary  HELLO      epoch of the stream it follows ("" if none),
+//                                  last position applied, proof: an HMAC of
+//                                  the challenge under the shared secret, or
+//                                  empty without one
+//   primary -> standby  SYNC       epoch, position the stream continues from,
+//                                  then -1 to resume, or the number of state
+//                                  entries that rebuild the library, followed
+//                                  by the entries
+//                       ENTRY      position, capture time, entry
+//                       HEARTBEAT  latest position, primary's time
+// Positions number the primary's changes from 1 within one epoch, which is
+// a fresh id each time a ReplicationSource starts. The primary sends nothing
+// after the challenge until the proof checks out.
+final class ReplicationProtocol {
+    static final byte ENTRY = 1;
+    static final byte HEARTBEAT = 2;
+    private static final int MAGIC = 0x4C524550;  // "LREP"
+    private static final int MAX_ENTRY_BYTES = 256 << 20;
+    private static final int CHALLENGE_BYTES = 32;
+    private static final int MAX_PROOF_BYTES = 64;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ReplicationProtocol() {
+    }
+
+    // Returns the challenge sent
+    static byte[] writeChallenge(DataOutputStream out) throws IOException {
+        byte[] challenge = new byte[CHALLENGE_BYTES];
+        RANDOM.nextBytes(challenge);
+        out.writeInt(MAGIC);
+        out.write(challenge);
+        out.flush();
+        return challenge;
+    }
+
+    static byte[] readChallenge(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a replication source");
+        }
+        byte[] challenge = new byte[CHALLENGE_BYTES];
+        in.readFully(challenge);
+        return challenge;
+    }
+
+    static void writeHello(DataOutputStream out, String epoch, long position, byte[] proof) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(epoch);
+        out.writeLong(position);
+        out.writeByte(proof.length);
+        out.write(proof);
+        out.flush();
+    }
+
+    // Returns the standby's epoch, position and proof
+    static Hello readHello(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a replication client");
+        }
+        String epoch = in.readUTF();
+        long position = in.readLong();
+        int length = in.readUnsignedByte();
+        if (length > MAX_PROOF_BYTES) {
+            throw new IOException("Bad proof length: " + length);
+        }
+        byte[] proof = new byte[length];
+        in.readFully(proof);
+        return new Hello(epoch, position, proof);
+    }
+
+    // Empty when there is no secret, so only a peer without one matches
+    static byte[] proof(String secret, byte[] challenge) {
+        if (secret == null || secret.isEmpty()) {
+            return new byte[0];
+        }
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM));
+            return mac.doFinal(challenge);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " unavailable", e);
+        }
+    }
+
+    static boolean verify(String secret, byte[] challenge, byte[] proof) {
+        return MessageDigest.isEqual(proof(secret, challenge), proof);
+    }
+
+    // A null state resumes the standby where it left off
+    static void writeSync(DataOutputStream out, String epoch, long position, List<byte[]> state) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(epoch);
+        out.writeLong(position);
+        out.writeInt(state == null ? -1 : state.size());
+        if (state != null) {
+            for (byte[] entry : state) {
+                writeBytes(out, entry);
+            }
+        }
+        out.flush();
+    }
+
+    static Sync readSync(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a replication source");
+        }
+        String epoch = in.readUTF();
+        long position = in.readLong();
+        int count = in.readInt();
+        List<byte[]> state = null;
+        if (count >= 0) {
+            state = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                state.add(readBytes(in));
+            }
+        }
+        return new Sync(epoch, position, state);
+    }
+
+    static void writeEntry(DataOutputStream out, long position, long capturedAt, byte[] entry) throws IOException {
+        out.writeByte(ENTRY);
+        out.writeLong(position);
+        out.writeLong(capturedAt);
+        writeBytes(out, entry);
+    }
+
+    static void writeHeartbeat(DataOutputStream out, long position, long now) throws IOException {
+        out.writeByte(HEARTBEAT);
+        out.writeLong(position);
+        out.writeLong(now);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_ENTRY_BYTES) {
+            throw new IOException("Bad entry length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static final class Hello {
+        final String epoch;
+        final long position;
+        final byte[] proof;
+
+        Hello(String epoch, long position, byte[] proof) {
+            this.epoch = epoch;
+            this.position = position;
+            this.proof = proof;
+        }
+    }
+
+    static final class Sync {
+        final String epoch;
+        final long position;
+        final List<byte[]> state;  // Null when resuming
+
+        Sync(String epoch, long position, List<byte[]> state) {
+            this.epoch = epoch;
+            this.position = position;
+            this.state = state;
+        }
+    }
+}
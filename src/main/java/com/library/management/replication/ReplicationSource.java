@@ -0,0 +1,233 @@
+package com.library.management.replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.library.management.Library;
+
+// Ships every mutation of a primary Library to standbys over TCP, as a
+// change stream of serialized journal entries. The latest changes are kept
+// in a bounded in-memory backlog: a standby that reconnects with a position
+// still in it resumes from there, any other first receives the library's
+// full state. Each standby has its own sender thread, so a slow one delays
+// nobody; one that falls further behind than the backlog is disconnected
+// and resynchronizes on reconnect. Shipping is asynchronous: a change is
+// acknowledged to its caller before any standby has it.
+//
+// A standby receives every user record, password hashes included, so the
+// port listens on loopback unless given another address, and off loopback
+// only a standby that proves it holds the shared secret is sent anything.
+public class ReplicationSource implements Closeable {
+    private static final int BATCH_SIZE = 1024;  // Entries written per flush
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+
+    private final Library library;
+    private final String secret;
+    private final String epoch;
+    private final long heartbeatMillis;
+    private final byte[][] backlog;
+    private final long[] capturedAt;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> standbys;
+    private final AtomicLong shippedEntries;
+    private final Thread acceptor;
+    private long position;   // Changes captured so far, guarded by this
+    private volatile boolean closed;
+
+    // On loopback, with no secret
+    public ReplicationSource(Library library, int port, int backlogEntries, long heartbeatMillis) throws IOException {
+        this(library, InetAddress.getLoopbackAddress(), port, backlogEntries, heartbeatMillis, null);
+    }
+
+    public ReplicationSource(Library library, InetAddress bindAddress, int port, int backlogEntries,
+                             long heartbeatMillis, String secret) throws IOException {
+        if (!bindAddress.isLoopbackAddress() && (secret == null || secret.isEmpty())) {
+            throw new IllegalArgumentException("Replication on " + bindAddress.getHostAddress()
+                    + " needs a shared secret");
+        }
+        this.library = library;
+        this.secret = secret;
+        this.epoch = UUID.randomUUID().toString();
+        this.heartbeatMillis = heartbeatMillis;
+        this.backlog = new byte[Math.max(1, backlogEntries)][];
+        this.capturedAt = new long[backlog.length];
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        this.standbys = ConcurrentHashMap.newKeySet();
+        this.shippedEntries = new AtomicLong();
+        this.acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+        acceptor.setDaemon(true);
+    }
+
+    public void start() {
+        library.setChangeListener(this::captured);
+        library.getMetrics().registerGauge("replicationPosition", this::getPosition);
+        library.getMetrics().registerGauge("replicationStandbys", this::getStandbyCount);
+        library.getMetrics().registerGauge("replicationShippedEntries", this::getShippedEntries);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public InetAddress getAddress() {
+        return serverSocket.getInetAddress();
+    }
+
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    public long getStandbyCount() {
+        return standbys.size();
+    }
+
+    public long getShippedEntries() {
+        return shippedEntries.get();
+    }
+
+    // Stops shipping and disconnects every standby; the library carries on
+    @Override
+    public void close() {
+        closed = true;
+        library.setChangeListener(null);
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing replication socket: " + e.getMessage());
+        }
+        for (Socket socket : standbys) {
+            closeQuietly(socket);
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private synchronized void captured(byte[] entry) {
+        int slot = (int) (position % backlog.length);
+        backlog[slot] = entry;
+        capturedAt[slot] = System.currentTimeMillis();
+        position++;
+        notifyAll();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                standbys.add(socket);
+                Thread sender = new Thread(() -> serve(socket), "replication-sender-" + socket.getPort());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Error accepting standby: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            // A peer that stalls in the handshake does not hold its thread for ever
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            byte[] challenge = ReplicationProtocol.writeChallenge(out);
+            ReplicationProtocol.Hello hello = ReplicationProtocol.readHello(in);
+            if (!ReplicationProtocol.verify(secret, challenge, hello.proof)) {
+                System.err.println("Refused standby at " + socket.getRemoteSocketAddress()
+                        + ": wrong replication secret");
+                return;
+            }
+            socket.setSoTimeout(0);
+            long next;
+            if (canResume(hello)) {
+                ReplicationProtocol.writeSync(out, epoch, hello.position, null);
+                next = hello.position + 1;
+            } else {
+                long[] at = new long[1];
+                List<byte[]> state = library.captureState(() -> at[0] = getPosition());
+                ReplicationProtocol.writeSync(out, epoch, at[0], state);
+                next = at[0] + 1;
+            }
+            while (!closed) {
+                next = ship(out, next);
+            }
+        } catch (SocketException e) {
+            // The standby went away or we are closing
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("Replication to " + socket.getRemoteSocketAddress() + " stopped: " + e.getMessage());
+            }
+        } finally {
+            standbys.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private synchronized boolean canResume(ReplicationProtocol.Hello hello) {
+        return epoch.equals(hello.epoch) && hello.position <= position && hello.position >= position - backlog.length;
+    }
+
+    // Sends the changes from next on, or a heartbeat if none arrive within
+    // the heartbeat interval, and returns the next position to send
+    private long ship(DataOutputStream out, long next) throws IOException {
+        List<byte[]> entries = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        long latest;
+        synchronized (this) {
+            if (position < next && !closed) {
+                try {
+                    wait(heartbeatMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for changes", e);
+                }
+            }
+            if (next <= position - backlog.length) {
+                throw new IOException("Standby fell behind the replication backlog");
+            }
+            for (long p = next; p <= position && entries.size() < BATCH_SIZE; p++) {
+                int slot = (int) ((p - 1) % backlog.length);
+                entries.add(backlog[slot]);
+                times.add(capturedAt[slot]);
+            }
+            latest = position;
+        }
+        // The heartbeat tells the standby how far the primary has got, for its lag
+        ReplicationProtocol.writeHeartbeat(out, latest, System.currentTimeMillis());
+        for (int i = 0; i < entries.size(); i++) {
+            ReplicationProtocol.writeEntry(out, next + i, times.get(i), entries.get(i));
+        }
+        out.flush();
+        shippedEntries.addAndGet(entries.size());
+        return next + entries.size();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+}
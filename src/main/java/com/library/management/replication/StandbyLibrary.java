@@ -0,0 +1,309 @@
+package com.library.management.replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.management.Library;
+import com.library.management.LibraryConfig;
+import com.library.management.persistence.JournalEntry;
+
+// Follows a primary's ReplicationSource and keeps a warm Library in step with
+// it: catalog indexes, statistics, the loan ledger and the standby's own
+// journal are all maintained as changes arrive, so promote() hands over a
+// library that serves at once. The first connection, and any after the
+// primary restarted or this standby fell behind its backlog, starts with a
+// full state transfer into a fresh replica-N directory under the data
+// directory; the replica directories before it are deleted. A promoted
+// replica keeps its data in its replica-N directory, which is marked so
+// that a later standby in the same data directory leaves it alone; restart
+// it as a primary on getReplicaDirectory(). Archived borrowing history
+// stays with the primary. Until promoted the library refuses live mutations.
+// The standby answers the primary's challenge with the config's
+// replicationSecret.
+public class StandbyLibrary implements Closeable {
+    private static final String REPLICA_PREFIX = "replica-";
+    private static final String PROMOTED_MARKER = "PROMOTED";
+    private static final long RATE_WINDOW_MILLIS = 1000;
+
+    private final LibraryConfig config;
+    private final Path dataDirectory;
+    private final InetSocketAddress primary;
+    private final ObjectMapper objectMapper;
+    private final Thread receiver;
+    private volatile Library library;      // Null until the first state transfer
+    private volatile Path replicaDirectory;
+    private volatile Socket socket;
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile long lastContactMillis;
+    private String epoch;                  // Written only by the receiver
+    private volatile long appliedPosition;
+    private volatile long primaryPosition;
+    private volatile long lagMillis;       // Capture to apply, for the last change applied
+    private volatile long appliedEntries;
+    private volatile long applyRate;       // Changes per second over the last full window
+    private long rateWindowStart;
+    private long rateWindowEntries;
+    private int replicaCount;
+
+    public StandbyLibrary(LibraryConfig config, String host, int port) {
+        this.config = config.copy();
+        this.config.setStandby(true);
+        this.dataDirectory = config.getDataDirectory();
+        this.primary = new InetSocketAddress(host, port);
+        this.objectMapper = new ObjectMapper();
+        this.receiver = new Thread(this::receiveLoop, "replication-receiver");
+        receiver.setDaemon(true);
+        this.epoch = "";
+        this.lastContactMillis = System.currentTimeMillis();
+    }
+
+    public void start() {
+        running = true;
+        receiver.start();
+    }
+
+    // The replica, for reads; null until the first state transfer completes
+    public Library getLibrary() {
+        return library;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    // Where the replica, and once promoted the library, keeps its data; null
+    // until the first state transfer
+    public Path getReplicaDirectory() {
+        return replicaDirectory;
+    }
+
+    // Time since anything was last heard from the primary
+    public long getMillisSinceContact() {
+        return System.currentTimeMillis() - lastContactMillis;
+    }
+
+    public long getAppliedPosition() {
+        return appliedPosition;
+    }
+
+    public long getPrimaryPosition() {
+        return primaryPosition;
+    }
+
+    // Changes the primary has made that this standby has not yet applied
+    public long getLagEntries() {
+        return Math.max(0, primaryPosition - appliedPosition);
+    }
+
+    public long getLagMillis() {
+        return getLagEntries() == 0 ? 0 : lagMillis;
+    }
+
+    public long getAppliedEntries() {
+        return appliedEntries;
+    }
+
+    public long getApplyRate() {
+        return applyRate;
+    }
+
+    // Stops following and turns the replica into a primary, which the caller
+    // then owns. Changes the primary made that had not arrived are lost.
+    // Nothing fences the old primary: if it is still up, the two libraries
+    // take writes independently and diverge, so make sure it has stopped.
+    public Library promote() {
+        stopReceiver();
+        Library promoted = library;
+        if (promoted == null) {
+            throw new IllegalStateException("Standby never synchronized with its primary");
+        }
+        promoted.promote();
+        try {
+            Files.createFile(replicaDirectory.resolve(PROMOTED_MARKER));
+        } catch (IOException e) {
+            System.err.println("Error marking " + replicaDirectory + " as promoted: " + e.getMessage());
+        }
+        return promoted;
+    }
+
+    @Override
+    public void close() {
+        stopReceiver();
+        Library replica = library;
+        if (replica != null && replica.isStandby()) {
+            replica.close();
+        }
+    }
+
+    private void stopReceiver() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+        if (receiver.isAlive() && Thread.currentThread() != receiver) {
+            try {
+                receiver.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void receiveLoop() {
+        while (running) {
+            try (Socket current = new Socket()) {
+                socket = current;
+                if (!running) {
+                    return;
+                }
+                current.connect(primary, (int) config.getFailoverTimeoutMillis());
+                current.setTcpNoDelay(true);
+                follow(current);
+            } catch (IOException | RuntimeException e) {
+                if (connected && running) {
+                    System.err.println("Lost replication stream from " + primary + ": "
+                            + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+                }
+                connected = false;
+                if (running) {
+                    pause();
+                }
+            }
+        }
+    }
+
+    private void follow(Socket current) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(current.getInputStream(), 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(current.getOutputStream()));
+        byte[] challenge = ReplicationProtocol.readChallenge(in);
+        ReplicationProtocol.writeHello(out, epoch, appliedPosition,
+                ReplicationProtocol.proof(config.getReplicationSecret(), challenge));
+        // Unbounded while the primary captures its state, which can take a while
+        ReplicationProtocol.Sync sync = ReplicationProtocol.readSync(in);
+        contact();
+        // From here heartbeats arrive well within this unless the primary is gone
+        current.setSoTimeout((int) config.getFailoverTimeoutMillis());
+        if (sync.state != null) {
+            bootstrap(sync);
+        }
+        connected = true;
+        while (running) {
+            byte type = in.readByte();
+            long position = in.readLong();
+            long time = in.readLong();
+            contact();
+            if (type == ReplicationProtocol.HEARTBEAT) {
+                primaryPosition = Math.max(primaryPosition, position);
+                updateRate(System.currentTimeMillis());
+            } else if (type == ReplicationProtocol.ENTRY) {
+                byte[] entry = ReplicationProtocol.readBytes(in);
+                if (position != appliedPosition + 1) {
+                    throw new IOException("Replication stream skipped from " + appliedPosition + " to " + position);
+                }
+                library.applyReplicated(objectMapper.readValue(entry, JournalEntry.class));
+                appliedPosition = position;
+                primaryPosition = Math.max(primaryPosition, position);
+                lagMillis = Math.max(0, System.currentTimeMillis() - time);
+                appliedEntries++;
+                updateRate(System.currentTimeMillis());
+            } else {
+                throw new IOException("Unknown replication frame: " + type);
+            }
+        }
+    }
+
+    // Replaces the replica with a fresh library rebuilt from the primary's state
+    private void bootstrap(ReplicationProtocol.Sync sync) throws IOException {
+        Library previous = library;
+        if (previous != null) {
+            previous.close();
+        }
+        library = null;
+        Files.createDirectories(dataDirectory);
+        deleteReplicas();
+        // Promoted replicas are kept, so their names are skipped
+        while (Files.exists(dataDirectory.resolve(REPLICA_PREFIX + replicaCount))) {
+            replicaCount++;
+        }
+        Path directory = Files.createDirectory(dataDirectory.resolve(REPLICA_PREFIX + replicaCount++));
+        LibraryConfig replicaConfig = config.copy();
+        replicaConfig.setDataDirectory(directory);
+        Library replica = new Library(replicaConfig);
+        for (byte[] entry : sync.state) {
+            replica.applyReplicated(objectMapper.readValue(entry, JournalEntry.class));
+        }
+        replica.flush();
+        epoch = sync.epoch;
+        appliedPosition = sync.position;
+        primaryPosition = sync.position;
+        replica.getMetrics().registerGauge("replicationLagEntries", this::getLagEntries);
+        replica.getMetrics().registerGauge("replicationLagMillis", this::getLagMillis);
+        replica.getMetrics().registerGauge("replicationAppliedEntries", this::getAppliedEntries);
+        replica.getMetrics().registerGauge("replicationApplyRate", this::getApplyRate);
+        replicaDirectory = directory;
+        library = replica;
+    }
+
+    private void deleteReplicas() throws IOException {
+        try (Stream<Path> children = Files.list(dataDirectory)) {
+            for (Path child : (Iterable<Path>) children::iterator) {
+                if (Files.isDirectory(child) && child.getFileName().toString().startsWith(REPLICA_PREFIX)
+                        && !Files.exists(child.resolve(PROMOTED_MARKER))) {
+                    deleteRecursively(child);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            List<Path> all = paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+            for (Path path : all) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private void contact() {
+        lastContactMillis = System.currentTimeMillis();
+    }
+
+    private void updateRate(long now) {
+        if (rateWindowStart == 0) {
+            rateWindowStart = now;
+            rateWindowEntries = appliedEntries;
+        } else if (now - rateWindowStart >= RATE_WINDOW_MILLIS) {
+            applyRate = (appliedEntries - rateWindowEntries) * 1000 / (now - rateWindowStart);
+            rateWindowStart = now;
+            rateWindowEntries = appliedEntries;
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(config.getReplicationHeartbeatMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
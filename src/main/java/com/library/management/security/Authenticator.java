@@ -0,0 +1,77 @@
+package com.library.management.security;
+
+import java.io.Closeable;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Password hashing and verification on a dedicated pool of worker threads,
+// so a burst of logins is limited to a fixed number of cores and queues
+// instead of occupying every request thread. Logins found in the credential
+// cache are answered on the calling thread. When the queue is full the
+// caller hashes itself, which slows the burst down at its source.
+public class Authenticator implements Closeable {
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final PasswordHasher hasher;
+    private final CredentialCache cache;
+    private final ThreadPoolExecutor workers;
+    private final String dummyHash;  // Verified against when there is no real hash, so failures cost the same
+
+    public Authenticator(int iterations, int threads, int cacheCapacity, long cacheTtlMillis) {
+        this.hasher = new PasswordHasher(iterations);
+        this.cache = new CredentialCache(cacheCapacity, cacheTtlMillis);
+        AtomicInteger count = new AtomicInteger();
+        int size = Math.max(1, threads);
+        this.workers = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), task -> {
+                    Thread thread = new Thread(task, "password-hasher-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.dummyHash = hasher.hash(UUID.randomUUID().toString());
+    }
+
+    public CompletableFuture<Boolean> verify(String username, String password, String storedHash) {
+        if (password == null || !PasswordHasher.isHash(storedHash)) {
+            return reject(password);
+        }
+        if (cache.contains(username, storedHash, password)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            boolean verified = hasher.verify(password, storedHash);
+            if (verified) {
+                cache.put(username, storedHash, password);
+            }
+            return verified;
+        }, workers);
+    }
+
+    // Fails a login for an unknown user, or one without a usable hash, only
+    // after the work of a real verify, so response times do not tell which
+    // usernames exist
+    public CompletableFuture<Boolean> reject(String password) {
+        String attempt = password == null ? "" : password;
+        return CompletableFuture.supplyAsync(() -> {
+            hasher.verify(attempt, dummyHash);
+            return false;
+        }, workers);
+    }
+
+    public CompletableFuture<String> hash(String password) {
+        return CompletableFuture.supplyAsync(() -> hasher.hash(password), workers);
+    }
+
+    public CredentialCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+}
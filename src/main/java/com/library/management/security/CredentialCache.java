@@ -0,0 +1,118 @@
+package com.library.management.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// Recently verified logins, so repeat logins skip the slow hash. Entries
+// hold an HMAC of the password under a key that lives only in this process,
+// never the password itself, and are tied to the stored hash they were
+// checked against: a changed password misses. Entries expire after ttl and
+// the least recently used one is evicted beyond capacity. Only successful
+// logins are cached, so guessing stays as slow as the hash.
+public class CredentialCache {
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;  // Guarded by this, in access order
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    public CredentialCache(int capacity, long ttlMillis) {
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CredentialCache.Entry> eldest) {
+                return size() > CredentialCache.this.capacity;
+            }
+        };
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    // True if this password was verified against this stored hash within ttl
+    public boolean contains(String username, String storedHash, String password) {
+        if (capacity <= 0) {
+            return false;
+        }
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(username);
+            if (entry != null && System.currentTimeMillis() - entry.verifiedAt > ttlMillis) {
+                entries.remove(username);
+                entry = null;
+            }
+        }
+        boolean hit = entry != null && entry.storedHash.equals(storedHash)
+                && MessageDigest.isEqual(entry.digest, digest(password));
+        (hit ? hits : misses).increment();
+        return hit;
+    }
+
+    public void put(String username, String storedHash, String password) {
+        if (capacity <= 0) {
+            return;
+        }
+        Entry entry = new Entry(storedHash, digest(password), System.currentTimeMillis());
+        synchronized (this) {
+            entries.put(username, entry);
+        }
+    }
+
+    public synchronized void invalidate(String username) {
+        entries.remove(username);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private byte[] digest(String password) {
+        return macs.get().doFinal(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static final class Entry {
+        final String storedHash;
+        final byte[] digest;
+        final long verifiedAt;
+
+        Entry(String storedHash, byte[] digest, long verifiedAt) {
+            this.storedHash = storedHash;
+            this.digest = digest;
+            this.verifiedAt = verifiedAt;
+        }
+    }
+}
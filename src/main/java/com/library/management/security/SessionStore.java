@@ -0,0 +1,84 @@
+package com.library.management.security;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bearer tokens for logged-in users, one per login. A token is 256 random
+// bits and expires after ttl without use; each use pushes the expiry back.
+// Expired sessions are dropped when looked up, and a full sweep runs every
+// SWEEP_INTERVAL logins so abandoned sessions do not accumulate.
+public class SessionStore {
+    private static final int TOKEN_BYTES = 32;
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final long ttlMillis;
+    private final ConcurrentHashMap<String, Session> sessions;
+    private final SecureRandom random;
+    private final AtomicInteger createdSinceSweep;
+
+    public SessionStore(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.sessions = new ConcurrentHashMap<>();
+        this.random = new SecureRandom();
+        this.createdSinceSweep = new AtomicInteger();
+    }
+
+    public String create(String userId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(userId, System.currentTimeMillis() + ttlMillis));
+        if (createdSinceSweep.incrementAndGet() >= SWEEP_INTERVAL) {
+            createdSinceSweep.set(0);
+            sweep();
+        }
+        return token;
+    }
+
+    // The session's user id, or null if the token is unknown or expired
+    public String getUserId(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now > session.expiresAt) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.expiresAt = now + ttlMillis;
+        return session.userId;
+    }
+
+    public void invalidate(String token) {
+        if (token != null) {
+            sessions.remove(token);
+        }
+    }
+
+    public int sweep() {
+        long now = System.currentTimeMillis();
+        int before = sessions.size();
+        sessions.values().removeIf(session -> now > session.expiresAt);
+        return before - sessions.size();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    private static final class Session {
+        final String userId;
+        volatile long expiresAt;
+
+        Session(String userId, long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,631 @@
+package com.library.management.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.management.LibraryApi;
+import com.library.management.LibraryConfig;
+import com.library.management.index.SortedCatalog;
+import com.library.management.models.Admin;
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.Loan;
+import com.library.management.models.User;
+import com.library.management.query.BookQuery;
+import com.library.management.security.SessionStore;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// JSON over HTTP front-end for a Library or ShardedLibrary, on the JDK's built-in HttpServer.
+// Clients log in for a token and send it as "Authorization: Bearer <token>";
+// each token carries its own user, so any number of patrons can be logged in.
+//   POST   /login                {"username", "password"} -> {"token", "userId", "role"}
+//   POST   /logout
+//   POST   /register             {"username", "password", "name", "email"}
+//   GET    /books                ?title=&author=&genre=&from=&to=&available=true&limit=
+//   GET    /books/{isbn}
+//   GET    /loans                the caller's borrowed books with due dates
+//   POST   /loans                {"isbn"}, borrows a copy
+//   DELETE /loans/{isbn}         returns it
+//   POST   /renewals             {"isbn"}, extends the loan
+//   GET    /fines                -> {"finesOwed"} in cents
+//   POST   /fines                pays them -> {"paid"}
+//   POST   /reservations         {"isbn"}
+//   DELETE /reservations/{isbn}
+//   POST   /admin/books          {"isbn", "title", "author", "genre", "year", "totalCopies"}
+//   DELETE /admin/books/{isbn}
+//   GET    /admin/users
+//   GET    /admin/stats
+// Request bodies over MAX_BODY_BYTES are refused with 413.
+// Each request runs on its own virtual thread where the JVM has them (Java 21+)
+// and on a fixed pool otherwise. Logins complete on the password hashing pool
+// without holding a request thread.
+public class LibraryServer {
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 1000;
+    private static final int BACKLOG = 1024;
+    private static final int MAX_BODY_BYTES = 64 << 10;
+    private static final int MAX_DISCARD_BYTES = 1 << 20;  // Of a refused body, read so the client sees the 413
+
+    private final LibraryApi library;
+    private final ObjectMapper objectMapper;
+    private final SessionStore sessions;
+    private final Map<String, Handler> routes;
+    private final ExecutorService executor;
+    private final HttpServer server;
+
+    static {
+        // HttpServer writes headers and body separately; with Nagle's algorithm on, the body
+        // waits for the client's delayed ACK and every response takes ~40 ms. Read once, when
+        // the HttpServer implementation loads, so it must be set before the first create.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    public LibraryServer(LibraryApi library, LibraryConfig config) throws IOException {
+        this.library = library;
+        this.objectMapper = new ObjectMapper();
+        this.sessions = new SessionStore(config.getSessionTtlMillis());
+        this.routes = new HashMap<>();
+        this.executor = requestExecutor(config.getHttpThreads());
+        this.server = HttpServer.create(new InetSocketAddress(config.getHttpPort()), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/", this::dispatch);
+
+        route("POST", "/login", this::login);
+        route("POST", "/logout", this::logout);
+        route("POST", "/register", this::register);
+        route("GET", "/books", this::searchBooks);
+        route("GET", "/books/*", this::getBook);
+        route("GET", "/loans", this::listLoans);
+        route("POST", "/loans", this::borrowBook);
+        route("DELETE", "/loans/*", this::returnBook);
+        route("POST", "/renewals", this::renewLoan);
+        route("GET", "/fines", this::getFines);
+        route("POST", "/fines", this::payFines);
+        route("POST", "/reservations", this::reserveBook);
+        route("DELETE", "/reservations/*", this::cancelReservation);
+        route("POST", "/admin/books", this::addBook);
+        route("DELETE", "/admin/books/*", this::removeBook);
+        route("GET", "/admin/users", this::listUsers);
+        route("GET", "/admin/stats", this::statistics);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Waits up to delaySeconds for requests in flight, then stops accepting
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    // The bound port, useful when configured as 0
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public SessionStore getSessions() {
+        return sessions;
+    }
+
+    // Java 21's virtual-thread executor, looked up reflectively so the build stays on Java 11
+    static ExecutorService requestExecutor(int threads) {
+        if (threads <= 0) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                threads = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "http-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Session Endpoints
+    private CompletableFuture<Response> login(Request request) throws IOException {
+        String username = request.text("username");
+        String password = request.text("password");
+        return library.authenticateUserAsync(username, password).thenApply(authenticated -> {
+            User user = library.getUserByUsername(username);
+            if (!authenticated || user == null) {
+                throw new ApiException(401, "Invalid username or password");
+            }
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("token", sessions.create(user.getUserId()));
+            body.put("userId", user.getUserId());
+            body.put("role", user.getRole());
+            return new Response(200, body);
+        });
+    }
+
+    private CompletableFuture<Response> logout(Request request) {
+        sessions.invalidate(request.token());
+        return ok(Collections.emptyMap());
+    }
+
+    private CompletableFuture<Response> register(Request request) throws IOException {
+        String username = request.text("username");
+        LibraryUser user = new LibraryUser(UUID.randomUUID().toString(), username, request.text("password"),
+                request.text("name"), request.text("email"));
+        if (library.getUserByUsername(username) != null || !library.addUser(user)) {
+            throw new ApiException(409, "Username already exists");
+        }
+        return CompletableFuture.completedFuture(new Response(201, Collections.singletonMap("userId", user.getUserId())));
+    }
+
+    // Catalog Endpoints
+    // A single title, author or genre term uses the cached indexed search;
+    // anything else runs as a BookQuery ordered by title
+    private CompletableFuture<Response> searchBooks(Request request) {
+        String title = request.query("title");
+        String author = request.query("author");
+        String genre = request.query("genre");
+        String from = request.query("from");
+        String to = request.query("to");
+        boolean availableOnly = Boolean.parseBoolean(request.query("available"));
+        int limit = request.intQuery("limit", DEFAULT_LIMIT);
+        if (limit < 1) {
+            throw new ApiException(400, "Expected a limit of at least 1");
+        }
+        limit = Math.min(limit, MAX_LIMIT);
+
+        int terms = (title != null ? 1 : 0) + (author != null ? 1 : 0) + (genre != null ? 1 : 0);
+        List<Book> results;
+        if (terms == 1 && from == null && to == null && !availableOnly) {
+            results = title != null ? library.findBooksByTitle(title)
+                    : author != null ? library.findBooksByAuthor(author)
+                    : library.findBooksByGenre(genre);
+            results = results.subList(0, Math.min(limit, results.size()));
+        } else {
+            BookQuery query = new BookQuery().orderBy(SortedCatalog.Order.TITLE).limit(limit);
+            if (title != null) {
+                query.titleContains(title);
+            }
+            if (author != null) {
+                query.authorContains(author);
+            }
+            if (genre != null) {
+                query.genre(genre);
+            }
+            query.yearBetween(request.intQuery("from", Integer.MIN_VALUE), request.intQuery("to", Integer.MAX_VALUE));
+            if (availableOnly) {
+                query.availableOnly();
+            }
+            results = library.findBooks(query);
+        }
+        return ok(books(results));
+    }
+
+    private CompletableFuture<Response> getBook(Request request) {
+        Book book = library.findBookByIsbn(request.pathParameter());
+        if (book == null) {
+            throw new ApiException(404, "Book not found");
+        }
+        return ok(book(book));
+    }
+
+    // Circulation Endpoints
+    private CompletableFuture<Response> listLoans(Request request) {
+        List<Loan> loans = library.getLoans(patron(request).getUserId());
+        List<Map<String, Object>> body = new ArrayList<>(loans.size());
+        for (Loan loan : loans) {
+            Book book = library.findBookByIsbn(loan.getIsbn());
+            Map<String, Object> entry = book != null ? book(book) : new LinkedHashMap<>();
+            entry.put("isbn", loan.getIsbn());
+            entry.put("borrowedAt", loan.getBorrowedAt());
+            entry.put("dueAt", loan.getDueAt());
+            entry.put("renewals", loan.getRenewals());
+            body.add(entry);
+        }
+        return ok(body);
+    }
+
+    private CompletableFuture<Response> borrowBook(Request request) throws IOException {
+        LibraryUser user = patron(request);
+        if (!library.borrowBook(user.getUserId(), request.text("isbn"))) {
+            throw new ApiException(409, "Unable to borrow book. It might be unavailable or you've reached your limit.");
+        }
+        return ok(Collections.singletonMap("borrowed", true));
+    }
+
+    private CompletableFuture<Response> returnBook(Request request) {
+        LibraryUser user = patron(request);
+        if (!library.returnBook(user.getUserId(), request.pathParameter())) {
+            throw new ApiException(409, "Unable to return book. Make sure you have borrowed this book.");
+        }
+        return ok(Collections.singletonMap("returned", true));
+    }
+
+    private CompletableFuture<Response> renewLoan(Request request) throws IOException {
+        LibraryUser user = patron(request);
+        String isbn = request.text("isbn");
+        if (!library.renewLoan(user.getUserId(), isbn)) {
+            throw new ApiException(409, "Unable to renew. The loan may be overdue, out of renewals, or reserved by someone else.");
+        }
+        Loan loan = library.getLoans(user.getUserId()).stream()
+                .filter(renewed -> renewed.getIsbn().equals(isbn)).findFirst().orElse(null);
+        return ok(Collections.singletonMap("dueAt", loan == null ? null : loan.getDueAt()));
+    }
+
+    private CompletableFuture<Response> getFines(Request request) {
+        return ok(Collections.singletonMap("finesOwed", library.getFinesOwed(patron(request).getUserId())));
+    }
+
+    private CompletableFuture<Response> payFines(Request request) {
+        return ok(Collections.singletonMap("paid", library.payFines(patron(request).getUserId())));
+    }
+
+    private CompletableFuture<Response> reserveBook(Request request) throws IOException {
+        LibraryUser user = patron(request);
+        String isbn = request.text("isbn");
+        boolean reserved = library.reserveBook(user.getUserId(), isbn);
+        int position = library.getReservationPosition(user.getUserId(), isbn);
+        if (!reserved) {
+            throw new ApiException(409, position == 0 ? "A copy is already being held for you"
+                    : position > 0 ? "Already in the queue at position " + position
+                    : "Unable to reserve book. It might be available to borrow now, or you already have it.");
+        }
+        return ok(Collections.singletonMap("position", position));
+    }
+
+    private CompletableFuture<Response> cancelReservation(Request request) {
+        LibraryUser user = patron(request);
+        if (!library.cancelReservation(user.getUserId(), request.pathParameter())) {
+            throw new ApiException(404, "No reservation for this book");
+        }
+        return ok(Collections.singletonMap("cancelled", true));
+    }
+
+    // Admin Endpoints
+    private CompletableFuture<Response> addBook(Request request) throws IOException {
+        admin(request);
+        String isbn = request.optionalText("isbn");
+        String title = request.optionalText("title");
+        if (isbn == null || title == null) {
+            throw new ApiException(400, "A book needs an isbn and a title");
+        }
+        int totalCopies = request.intField("totalCopies", 0);
+        if (totalCopies < 0) {
+            throw new ApiException(400, "totalCopies cannot be negative");
+        }
+        // A new book starts with every copy on the shelf, no borrows and no
+        // holds, whatever else the body says
+        Book book = new Book(isbn, title, request.optionalText("author"), request.optionalText("genre"),
+                request.intField("year", 0), totalCopies);
+        if (!library.addBook(book)) {
+            throw new ApiException(409, "Book with this ISBN already exists");
+        }
+        return CompletableFuture.completedFuture(new Response(201, book(book)));
+    }
+
+    private CompletableFuture<Response> removeBook(Request request) {
+        admin(request);
+        String isbn = request.pathParameter();
+        if (!library.removeBook(isbn)) {
+            if (library.findBookByIsbn(isbn) != null) {
+                throw new ApiException(409, "Book has copies on loan or reserved");
+            }
+            throw new ApiException(404, "Book not found");
+        }
+        return ok(Collections.singletonMap("removed", true));
+    }
+
+    private CompletableFuture<Response> listUsers(Request request) {
+        admin(request);
+        List<Map<String, Object>> body = new ArrayList<>();
+        for (User user : library.getAllUsers()) {
+            body.add(user(user));
+        }
+        return ok(body);
+    }
+
+    private CompletableFuture<Response> statistics(Request request) {
+        admin(request);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("books", library.getBookCount());
+        body.put("users", library.getUserCount());
+        body.put("totalCopies", library.getTotalCopies());
+        body.put("copiesOnLoan", library.getCopiesOnLoan());
+        body.put("overdueLoans", library.getOverdueLoanCount());
+        Book mostBorrowed = library.getMostBorrowedBook();
+        body.put("mostBorrowedBook", mostBorrowed == null ? null : mostBorrowed.getTitle());
+        LibraryUser mostActive = library.getMostActiveUser();
+        body.put("mostActiveUser", mostActive == null ? null : mostActive.getName());
+        body.put("borrowsByGenre", library.getBorrowsByGenre());
+        body.put("sessions", sessions.size());
+        return ok(body);
+    }
+
+    // Authorization
+    private User caller(Request request) {
+        String userId = sessions.getUserId(request.token());
+        User user = userId == null ? null : library.findUser(userId);
+        if (user == null) {
+            throw new ApiException(401, "Login required");
+        }
+        return user;
+    }
+
+    private LibraryUser patron(Request request) {
+        User user = caller(request);
+        if (!(user instanceof LibraryUser)) {
+            throw new ApiException(403, "Only library users can do this");
+        }
+        return (LibraryUser) user;
+    }
+
+    private void admin(Request request) {
+        if (!(caller(request) instanceof Admin)) {
+            throw new ApiException(403, "Admin access required");
+        }
+    }
+
+    // Responses carry only public fields: never password hashes or reservation details
+    private static List<Map<String, Object>> books(List<Book> books) {
+        List<Map<String, Object>> body = new ArrayList<>(books.size());
+        for (Book book : books) {
+            body.add(book(book));
+        }
+        return body;
+    }
+
+    private static Map<String, Object> book(Book book) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("isbn", book.getIsbn());
+        body.put("title", book.getTitle());
+        body.put("author", book.getAuthor());
+        body.put("genre", book.getGenre());
+        body.put("year", book.getYear());
+        body.put("totalCopies", book.getTotalCopies());
+        body.put("availableCopies", book.getAvailableCopies());
+        return body;
+    }
+
+    private Map<String, Object> user(User user) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("userId", user.getUserId());
+        body.put("username", user.getUsername());
+        body.put("name", user.getName());
+        body.put("email", user.getEmail());
+        body.put("role", user.getRole());
+        if (user instanceof LibraryUser) {
+            body.put("borrowedBooks", library.getBorrowedBooks(user.getUserId()).size());
+            body.put("finesOwed", library.getFinesOwed(user.getUserId()));
+        }
+        return body;
+    }
+
+    private static CompletableFuture<Response> ok(Object body) {
+        return CompletableFuture.completedFuture(new Response(200, body));
+    }
+
+    // Dispatch
+    private void route(String method, String path, Handler handler) {
+        routes.put(method + " " + path, handler);
+    }
+
+    // Exact paths first, then "/prefix/*" routes taking the last segment as a parameter
+    private void dispatch(HttpExchange exchange) {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getRawPath();
+        String parameter = null;
+        Handler handler = routes.get(method + " " + path);
+        int slash = path.lastIndexOf('/');
+        if (handler == null && slash > 0 && slash < path.length() - 1) {
+            handler = routes.get(method + " " + path.substring(0, slash + 1) + "*");
+            parameter = decode(path.substring(slash + 1));
+        }
+
+        CompletableFuture<Response> response;
+        if (handler == null) {
+            response = CompletableFuture.failedFuture(new ApiException(404, "No such endpoint: " + method + " " + path));
+        } else {
+            try {
+                response = handler.handle(new Request(exchange, parameter));
+            } catch (IOException | RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+        }
+        response.whenComplete((result, failure) -> respond(exchange, result, failure));
+    }
+
+    private void respond(HttpExchange exchange, Response response, Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        if (failure instanceof ApiException) {
+            ApiException error = (ApiException) failure;
+            response = new Response(error.status, Collections.singletonMap("error", error.getMessage()));
+        } else if (failure instanceof JsonProcessingException) {
+            response = new Response(400, Collections.singletonMap("error", "Malformed JSON request body"));
+        } else if (failure != null) {
+            System.err.println("Error handling request: " + failure.getMessage());
+            response = new Response(500, Collections.singletonMap("error", "Internal error"));
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            byte[] bytes = objectMapper.writeValueAsBytes(response.body);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.status, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            System.err.println("Error writing response: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private interface Handler {
+        CompletableFuture<Response> handle(Request request) throws IOException;
+    }
+
+    private static final class Response {
+        final int status;
+        final Object body;
+
+        Response(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    // Sent back as {"error": message} with the given status
+    private static final class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final class Request {
+        private final HttpExchange exchange;
+        private final String parameter;
+        private Map<String, String> query;
+        private JsonNode json;
+
+        Request(HttpExchange exchange, String parameter) {
+            this.exchange = exchange;
+            this.parameter = parameter;
+        }
+
+        String pathParameter() {
+            return parameter;
+        }
+
+        String token() {
+            String header = exchange.getRequestHeaders().getFirst("Authorization");
+            return header != null && header.startsWith("Bearer ") ? header.substring(7).trim() : null;
+        }
+
+        // A query string parameter, or null if absent or blank
+        String query(String name) {
+            if (query == null) {
+                query = new HashMap<>();
+                String raw = exchange.getRequestURI().getRawQuery();
+                if (raw != null) {
+                    for (String pair : raw.split("&")) {
+                        int equals = pair.indexOf('=');
+                        if (equals > 0 && equals < pair.length() - 1) {
+                            query.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+                        }
+                    }
+                }
+            }
+            return query.get(name);
+        }
+
+        int intQuery(String name, int defaultValue) {
+            String value = query(name);
+            try {
+                return value == null ? defaultValue : Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new ApiException(400, "Expected a number for " + name);
+            }
+        }
+
+        JsonNode json() throws IOException {
+            if (json == null) {
+                json = objectMapper.readTree(body());
+                if (json == null || !json.isObject()) {
+                    throw new ApiException(400, "Expected a JSON object");
+                }
+            }
+            return json;
+        }
+
+        // At most MAX_BODY_BYTES are buffered, whatever the client declares or sends
+        private byte[] body() throws IOException {
+            String length = exchange.getRequestHeaders().getFirst("Content-Length");
+            try {
+                if (length != null && Long.parseLong(length.trim()) > MAX_BODY_BYTES) {
+                    throw tooLarge();
+                }
+            } catch (NumberFormatException e) {
+                throw new ApiException(400, "Malformed Content-Length");
+            }
+            byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw tooLarge();
+            }
+            return body;
+        }
+
+        // Closing on a client still sending resets the connection before it
+        // reads the response, so a bounded amount of the rest is skipped first
+        private ApiException tooLarge() throws IOException {
+            InputStream in = exchange.getRequestBody();
+            byte[] buffer = new byte[8192];
+            long discarded = 0;
+            int read;
+            while (discarded < MAX_DISCARD_BYTES && (read = in.read(buffer)) >= 0) {
+                discarded += read;
+            }
+            return new ApiException(413, "Request body larger than " + MAX_BODY_BYTES + " bytes");
+        }
+
+        // A required string field of the JSON body
+        String text(String field) throws IOException {
+            String value = optionalText(field);
+            if (value == null) {
+                throw new ApiException(400, "Missing field: " + field);
+            }
+            return value;
+        }
+
+        // A string field of the JSON body, or null if absent or empty
+        String optionalText(String field) throws IOException {
+            JsonNode value = json().get(field);
+            if (value == null || value.isNull()) {
+                return null;
+            }
+            if (!value.isTextual()) {
+                throw new ApiException(400, "Expected a string for " + field);
+            }
+            return value.asText().isEmpty() ? null : value.asText();
+        }
+
+        int intField(String field, int defaultValue) throws IOException {
+            JsonNode value = json().get(field);
+            if (value == null || value.isNull()) {
+                return defaultValue;
+            }
+            if (!value.isInt()) {
+                throw new ApiException(400, "Expected a number for " + field);
+            }
+            return value.intValue();
+        }
+    }
+}
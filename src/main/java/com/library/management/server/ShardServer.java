@@ -0,0 +1,194 @@
+package com.library.management.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.library.management.LibraryApi;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Serves one shard of a ShardedLibrary to a router in another process, the
+// counterpart of RemoteLibrary. Every LibraryApi call is
+//   POST /rpc/{method}   a JSON array of the arguments -> the JSON result
+// with the arguments and result typed by the method's declared signature.
+// Errors come back as 500 with {"error": message}. close() is not served:
+// the shard's process owns its lifecycle.
+//
+// The calls include ones that return password hashes and ones that change
+// anything, so the server listens on loopback unless given another address.
+// With a secret, every call must carry it in the X-Shard-Secret header or is
+// refused with 401; off loopback a secret is required. The header is sent
+// in the clear, so keep shard traffic on a trusted network.
+public class ShardServer {
+    public static final String SECRET_HEADER = "X-Shard-Secret";
+    private static final String PREFIX = "/rpc/";
+    private static final int BACKLOG = 1024;
+
+    private final LibraryApi library;
+    private final byte[] secret;  // Null when calls need none
+    private final ObjectMapper objectMapper;
+    private final Map<String, Method> methods;
+    private final ExecutorService executor;
+    private final HttpServer server;
+
+    // On loopback, with no secret
+    public ShardServer(LibraryApi library, int port, int threads) throws IOException {
+        this(library, InetAddress.getLoopbackAddress(), port, threads, null);
+    }
+
+    public ShardServer(LibraryApi library, InetAddress bindAddress, int port, int threads, String secret)
+            throws IOException {
+        if (!bindAddress.isLoopbackAddress() && (secret == null || secret.isEmpty())) {
+            throw new IllegalArgumentException("A shard on " + bindAddress.getHostAddress() + " needs a shared secret");
+        }
+        this.library = library;
+        this.secret = secret == null || secret.isEmpty() ? null : secret.getBytes(StandardCharsets.UTF_8);
+        this.objectMapper = new ObjectMapper();
+        this.methods = new HashMap<>();
+        for (Method method : LibraryApi.class.getMethods()) {
+            if (!method.getName().equals("close")) {
+                methods.put(key(method.getName(), method.getParameterCount()), method);
+            }
+        }
+        // Loads LibraryServer, whose initializer turns off Nagle's algorithm before the create below
+        this.executor = LibraryServer.requestExecutor(threads);
+        this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext(PREFIX, this::dispatch);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public InetAddress getAddress() {
+        return server.getAddress().getAddress();
+    }
+
+    // Overloads are told apart by their number of arguments
+    private static String key(String name, int arity) {
+        return name + "/" + arity;
+    }
+
+    private void dispatch(HttpExchange exchange) {
+        if (!authorized(exchange)) {
+            System.err.println("Refused shard call from " + exchange.getRemoteAddress() + ": wrong shard secret");
+            refuse(exchange);
+            return;
+        }
+        CompletableFuture<?> result;
+        Method method = null;
+        try (InputStream in = exchange.getRequestBody()) {
+            JsonNode args = objectMapper.readTree(in);
+            String name = exchange.getRequestURI().getPath().substring(PREFIX.length());
+            method = methods.get(key(name, args.size()));
+            if (!"POST".equals(exchange.getRequestMethod()) || method == null) {
+                throw new IllegalArgumentException("No such call: " + name + " with " + args.size() + " arguments");
+            }
+            result = invoke(method, args);
+        } catch (IOException | RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        ObjectWriter writer = method == null ? objectMapper.writer() : objectMapper.writerFor(resultType(method));
+        result.whenComplete((value, failure) -> respond(exchange, writer, value, failure));
+    }
+
+    private boolean authorized(HttpExchange exchange) {
+        if (secret == null) {
+            return true;
+        }
+        String sent = exchange.getRequestHeaders().getFirst(SECRET_HEADER);
+        return sent != null && MessageDigest.isEqual(secret, sent.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The body is left unread; closing the exchange drops the connection
+    private void refuse(HttpExchange exchange) {
+        try {
+            byte[] bytes = objectMapper.writeValueAsBytes(Collections.singletonMap("error", "Wrong shard secret"));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(401, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        } catch (IOException e) {
+            System.err.println("Error writing response: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private CompletableFuture<?> invoke(Method method, JsonNode args) throws IOException {
+        Type[] types = method.getGenericParameterTypes();
+        Object[] values = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            values[i] = objectMapper.readerFor(objectMapper.constructType(types[i])).readValue(args.get(i));
+        }
+        try {
+            Object value = method.invoke(library, values);
+            return value instanceof CompletableFuture ? (CompletableFuture<?>) value : CompletableFuture.completedFuture(value);
+        } catch (InvocationTargetException e) {
+            return CompletableFuture.failedFuture(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // A CompletableFuture<T> result is written as its T once complete
+    private JavaType resultType(Method method) {
+        Type type = method.getGenericReturnType();
+        if (method.getReturnType() == CompletableFuture.class) {
+            type = ((ParameterizedType) type).getActualTypeArguments()[0];
+        }
+        return objectMapper.constructType(type);
+    }
+
+    private void respond(HttpExchange exchange, ObjectWriter writer, Object value, Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            byte[] bytes;
+            int status = 200;
+            if (failure == null) {
+                bytes = writer.writeValueAsBytes(value);
+            } else {
+                System.err.println("Error handling shard call: " + failure.getMessage());
+                status = 500;
+                bytes = objectMapper.writeValueAsBytes(Collections.singletonMap("error", String.valueOf(failure.getMessage())));
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            System.err.println("Error writing response: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.library.management.shard;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.management.LibraryApi;
+import com.library.management.query.BookQuery;
+import com.library.management.server.ShardServer;
+
+// Client side of ShardServer: a LibraryApi whose calls go to a shard in
+// another process. Results are decoded copies, so a returned Book or User is
+// a snapshot that later calls do not update, and users carry their loans as
+// ISBNs only. Queries built with BookQuery.where() cannot be sent and are
+// rejected. close() only drops the client; the shard keeps running. A
+// shard started with a secret needs the same one here.
+public final class RemoteLibrary {
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    private RemoteLibrary() {
+    }
+
+    // url is the shard's base address, e.g. http://localhost:9001
+    public static LibraryApi connect(String url) {
+        return connect(url, null);
+    }
+
+    // secret is sent with every call; null sends none
+    public static LibraryApi connect(String url, String secret) {
+        String base = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        HttpClient client = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+        ObjectMapper objectMapper = new ObjectMapper();
+        return (LibraryApi) Proxy.newProxyInstance(LibraryApi.class.getClassLoader(), new Class<?>[] {LibraryApi.class},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return objectMethod(proxy, method, args, base);
+                    }
+                    if (method.getName().equals("close")) {
+                        return null;
+                    }
+                    Object[] values = args == null ? new Object[0] : args;
+                    for (Object value : values) {
+                        if (value instanceof BookQuery && ((BookQuery) value).hasConditions()) {
+                            throw new IllegalArgumentException("Queries with where() conditions cannot be sent to a remote shard");
+                        }
+                    }
+                    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(base + "/rpc/" + method.getName()))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(encode(objectMapper, values)));
+                    if (secret != null && !secret.isEmpty()) {
+                        builder.header(ShardServer.SECRET_HEADER, secret);
+                    }
+                    HttpRequest request = builder.build();
+                    if (method.getReturnType() == CompletableFuture.class) {
+                        Type result = ((ParameterizedType) method.getGenericReturnType()).getActualTypeArguments()[0];
+                        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                                .thenApply(response -> decode(objectMapper, response, objectMapper.constructType(result)));
+                    }
+                    HttpResponse<byte[]> response;
+                    try {
+                        response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new UncheckedIOException(new IOException("Interrupted calling shard " + base, e));
+                    }
+                    return decode(objectMapper, response, objectMapper.constructType(method.getGenericReturnType()));
+                });
+    }
+
+    private static byte[] encode(ObjectMapper objectMapper, Object[] values) {
+        try {
+            return objectMapper.writeValueAsBytes(Arrays.asList(values));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Object decode(ObjectMapper objectMapper, HttpResponse<byte[]> response, JavaType type) {
+        try {
+            if (response.statusCode() != 200) {
+                JsonNode error = objectMapper.readTree(response.body());
+                throw new IllegalStateException("Shard " + response.uri().getAuthority() + " failed: "
+                        + (error.has("error") ? error.get("error").asText() : response.statusCode()));
+            }
+            return objectMapper.readerFor(type).readValue(response.body());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Object objectMethod(Object proxy, Method method, Object[] args, String base) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "RemoteLibrary{" + base + "}";
+        }
+    }
+}
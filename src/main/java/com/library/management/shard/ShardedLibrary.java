@@ -0,0 +1,522 @@
+package com.library.management.shard;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+import com.library.management.Library;
+import com.library.management.LibraryApi;
+import com.library.management.LibraryConfig;
+import com.library.management.concurrent.StripedLock;
+import com.library.management.index.SortedCatalog;
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.Loan;
+import com.library.management.models.User;
+import com.library.management.query.BookQuery;
+
+// Routes the library operations across N shards, each a complete library
+// with its own data directory, journal and snapshots. Books live on the shard
+// picked by their ISBN's hash and user accounts on the shard picked by their
+// userId's hash; searches and statistics run on every shard in parallel and
+// are merged.
+//
+// Circulation runs on the book's shard, which keeps a circulation record of
+// the borrower: a copy of the account holding that shard's loans, holds and
+// history. Every borrow, return and reservation is then a single-shard
+// mutation, journaled and recovered by that shard alone, so no operation
+// spans two shards' persistence. Records carry no credential and no loan
+// limit of their own. The one rule that spans shards, the loan limit, is
+// read from the home shard's account and checked against the loans on all
+// shards under a per-user lock, which assumes a single router.
+//
+// The shard count of a data directory is fixed once created: ISBNs and user
+// ids are not rebalanced. Shards can be in-process Library instances or
+// remote ones reached through RemoteLibrary.
+public class ShardedLibrary implements LibraryApi {
+    private static final String SHARDS_FILE = "shards";
+    private static final int LOCK_STRIPES = 256;
+
+    private final List<LibraryApi> shards;
+    private final ExecutorService executor;
+    private final StripedLock userLocks;
+    private final StripedLock usernameLocks;
+
+    public ShardedLibrary(List<? extends LibraryApi> shards) {
+        this.shards = new ArrayList<>(shards);
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "shard-router-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.userLocks = new StripedLock(LOCK_STRIPES);
+        this.usernameLocks = new StripedLock(LOCK_STRIPES);
+    }
+
+    // In-process shards in shard-0 .. shard-(count-1) under the configured data directory
+    public static ShardedLibrary open(LibraryConfig config, int count) throws IOException {
+        Path directory = config.getDataDirectory();
+        Files.createDirectories(directory);
+        Path shardsFile = directory.resolve(SHARDS_FILE);
+        if (Files.exists(shardsFile)) {
+            int existing = Integer.parseInt(new String(Files.readAllBytes(shardsFile), StandardCharsets.UTF_8).trim());
+            if (existing != count) {
+                throw new IllegalStateException(directory + " holds " + existing + " shards, not " + count);
+            }
+        } else {
+            Files.write(shardsFile, String.valueOf(count).getBytes(StandardCharsets.UTF_8));
+        }
+        List<Library> shards = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                LibraryConfig shardConfig = config.copy();
+                shardConfig.setDataDirectory(directory.resolve("shard-" + i));
+                Files.createDirectories(shardConfig.getDataDirectory());
+                shards.add(new Library(shardConfig));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Library shard : shards) {
+                shard.close();
+            }
+            throw e;
+        }
+        return new ShardedLibrary(shards);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    // Book Management Methods
+    @Override
+    public boolean addBook(Book book) {
+        return shardOf(book.getIsbn()).addBook(book);
+    }
+
+    @Override
+    public List<Book> addBooks(Collection<Book> books) {
+        Map<LibraryApi, List<Book>> batches = new HashMap<>();
+        for (Book book : books) {
+            batches.computeIfAbsent(shardOf(book.getIsbn()), shard -> new ArrayList<>()).add(book);
+        }
+        return concat(onEach(new ArrayList<>(batches.keySet()), shard -> shard.addBooks(batches.get(shard))));
+    }
+
+    @Override
+    public boolean removeBook(String isbn) {
+        return shardOf(isbn).removeBook(isbn);
+    }
+
+    @Override
+    public Book findBookByIsbn(String isbn) {
+        return shardOf(isbn).findBookByIsbn(isbn);
+    }
+
+    @Override
+    public List<Book> findBooksByTitle(String title) {
+        return concat(onAll(shard -> shard.findBooksByTitle(title)));
+    }
+
+    @Override
+    public List<Book> findBooksByAuthor(String author) {
+        return concat(onAll(shard -> shard.findBooksByAuthor(author)));
+    }
+
+    @Override
+    public List<Book> findBooksByGenre(String genre) {
+        return concat(onAll(shard -> shard.findBooksByGenre(genre)));
+    }
+
+    // Each shard returns its first matches; ordered queries are merged in order
+    @Override
+    public List<Book> findBooks(BookQuery query) {
+        List<List<Book>> results = onAll(shard -> shard.findBooks(query));
+        if (query.getOrder() != null) {
+            return merge(results, query.getOrder(), query.getLimit());
+        }
+        List<Book> books = concat(results);
+        return books.size() > query.getLimit() ? new ArrayList<>(books.subList(0, query.getLimit())) : books;
+    }
+
+    @Override
+    public List<Book> getSortedBooks(String sortBy) {
+        return merge(onAll(shard -> shard.getSortedBooks(sortBy)), SortedCatalog.Order.of(sortBy), Integer.MAX_VALUE);
+    }
+
+    // A page of the merged order is within the first limit books after the cursor on every shard
+    @Override
+    public List<Book> getSortedBooks(String sortBy, Book after, int limit) {
+        return merge(onAll(shard -> shard.getSortedBooks(sortBy, after, limit)), SortedCatalog.Order.of(sortBy), limit);
+    }
+
+    @Override
+    public Collection<Book> getAllBooks() {
+        return concat(onAll(shard -> new ArrayList<>(shard.getAllBooks())));
+    }
+
+    // User Management Methods
+    // Usernames are unique across shards; the lock keeps two registrations of one name apart
+    @Override
+    public boolean addUser(User user) {
+        Lock lock = usernameLocks.get(user.getUsername());
+        lock.lock();
+        try {
+            return getUserByUsername(user.getUsername()) == null && homeOf(user.getUserId()).addUser(user);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public User findUser(String userId) {
+        return homeOf(userId).findUser(userId);
+    }
+
+    // Other shards may hold circulation records under the same username; only the account counts
+    @Override
+    public User getUserByUsername(String username) {
+        List<User> users = onAll(shard -> shard.getUserByUsername(username));
+        for (int i = 0; i < shards.size(); i++) {
+            User user = users.get(i);
+            if (user != null && homeOf(user.getUserId()) == shards.get(i)) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean authenticateUser(String username, String password) {
+        return authenticateUserAsync(username, password).join();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> authenticateUserAsync(String username, String password) {
+        User user = getUserByUsername(username);
+        if (user == null) {
+            // No shard has an account under the name, so any of them fails
+            // the login, after as much hashing as a wrong password would take
+            return homeOf(username).authenticateUserAsync(username, password);
+        }
+        return homeOf(user.getUserId()).authenticateUserAsync(username, password);
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return accounts();
+    }
+
+    // Book Borrowing Methods
+    @Override
+    public boolean borrowBook(String userId, String isbn) {
+        Lock lock = userLocks.get(userId);
+        lock.lock();
+        try {
+            User account = findUser(userId);
+            if (!(account instanceof LibraryUser)
+                    || getBorrowedBooks(userId).size() >= ((LibraryUser) account).getMaxBooksAllowed()) {
+                return false;
+            }
+            LibraryApi shard = shardOf(isbn);
+            return ensureCirculationRecord(shard, (LibraryUser) account) && shard.borrowBook(userId, isbn);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean returnBook(String userId, String isbn) {
+        return shardOf(isbn).returnBook(userId, isbn);
+    }
+
+    // Loans, with their renewals, live on the book's shard
+    @Override
+    public boolean renewLoan(String userId, String isbn) {
+        return shardOf(isbn).renewLoan(userId, isbn);
+    }
+
+    @Override
+    public boolean reserveBook(String userId, String isbn) {
+        Lock lock = userLocks.get(userId);
+        lock.lock();
+        try {
+            User account = findUser(userId);
+            if (!(account instanceof LibraryUser)) {
+                return false;
+            }
+            LibraryApi shard = shardOf(isbn);
+            return ensureCirculationRecord(shard, (LibraryUser) account) && shard.reserveBook(userId, isbn);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean cancelReservation(String userId, String isbn) {
+        return shardOf(isbn).cancelReservation(userId, isbn);
+    }
+
+    @Override
+    public int getReservationPosition(String userId, String isbn) {
+        return shardOf(isbn).getReservationPosition(userId, isbn);
+    }
+
+    @Override
+    public List<Book> getBorrowedBooks(String userId) {
+        return concat(onAll(shard -> shard.getBorrowedBooks(userId)));
+    }
+
+    // Loans in shard order, each shard's in borrowing order
+    @Override
+    public List<Loan> getLoans(String userId) {
+        List<Loan> loans = new ArrayList<>();
+        for (List<Loan> shardLoans : onAll(shard -> shard.getLoans(userId))) {
+            loans.addAll(shardLoans);
+        }
+        return loans;
+    }
+
+    // Fines are charged where the late copy was returned, so on every shard the user borrowed from
+    @Override
+    public long getFinesOwed(String userId) {
+        long total = 0;
+        for (long fines : onAll(shard -> shard.getFinesOwed(userId))) {
+            total += fines;
+        }
+        return total;
+    }
+
+    @Override
+    public long payFines(String userId) {
+        long total = 0;
+        for (long paid : onAll(shard -> shard.payFines(userId))) {
+            total += paid;
+        }
+        return total;
+    }
+
+    // Created on the book's shard the first time the user borrows or reserves
+    // there. Logins and the loan limit only ever go through the home account,
+    // so the record gets no password and a limit that never binds.
+    private boolean ensureCirculationRecord(LibraryApi shard, LibraryUser account) {
+        if (shard == homeOf(account.getUserId()) || shard.findUser(account.getUserId()) != null) {
+            return true;
+        }
+        LibraryUser record = new LibraryUser(account.getUserId(), account.getUsername(), null,
+                account.getName(), account.getEmail());
+        record.setMaxBooksAllowed(Integer.MAX_VALUE);
+        return shard.addUser(record) || shard.findUser(account.getUserId()) != null;
+    }
+
+    // Statistics Methods
+    // Each shard's leader by copies out, as a single library ranks its books
+    @Override
+    public Book getMostBorrowedBook() {
+        Book most = null;
+        for (Book book : onAll(LibraryApi::getMostBorrowedBook)) {
+            if (book != null && (most == null || copiesOnLoan(book) > copiesOnLoan(most))) {
+                most = book;
+            }
+        }
+        return most;
+    }
+
+    private static long copiesOnLoan(Book book) {
+        return book.getTotalCopies() - book.getAvailableCopies() - book.getHeldCopies();
+    }
+
+    // Borrowing history is split across the shards the user borrowed from, so it is summed per user
+    @Override
+    public LibraryUser getMostActiveUser() {
+        Map<String, Long> borrows = getBorrowCountsByUser();
+        String mostActive = null;
+        for (Map.Entry<String, Long> entry : borrows.entrySet()) {
+            if (entry.getValue() > 0 && (mostActive == null || entry.getValue() > borrows.get(mostActive))) {
+                mostActive = entry.getKey();
+            }
+        }
+        User user = mostActive == null ? null : findUser(mostActive);
+        return user instanceof LibraryUser ? (LibraryUser) user : null;
+    }
+
+    @Override
+    public Map<String, Long> getBorrowCountsByUser() {
+        return sum(onAll(LibraryApi::getBorrowCountsByUser));
+    }
+
+    @Override
+    public int getBookCount() {
+        int total = 0;
+        for (int count : onAll(LibraryApi::getBookCount)) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public int getUserCount() {
+        return accounts().size();
+    }
+
+    @Override
+    public long getTotalCopies() {
+        long total = 0;
+        for (long copies : onAll(LibraryApi::getTotalCopies)) {
+            total += copies;
+        }
+        return total;
+    }
+
+    @Override
+    public long getCopiesOnLoan() {
+        long total = 0;
+        for (long copies : onAll(LibraryApi::getCopiesOnLoan)) {
+            total += copies;
+        }
+        return total;
+    }
+
+    @Override
+    public long getOverdueLoanCount() {
+        long total = 0;
+        for (long overdue : onAll(LibraryApi::getOverdueLoanCount)) {
+            total += overdue;
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getBorrowsByGenre() {
+        return sum(onAll(LibraryApi::getBorrowsByGenre));
+    }
+
+    @Override
+    public Map<Integer, Long> getBooksByYear() {
+        return sum(onAll(LibraryApi::getBooksByYear));
+    }
+
+    @Override
+    public Map<Integer, Long> getBorrowsByYear() {
+        return sum(onAll(LibraryApi::getBorrowsByYear));
+    }
+
+    @Override
+    public Map<String, Long> getCopiesByGenre() {
+        return sum(onAll(LibraryApi::getCopiesByGenre));
+    }
+
+    @Override
+    public Map<String, Long> getCopiesOnLoanByGenre() {
+        return sum(onAll(LibraryApi::getCopiesOnLoanByGenre));
+    }
+
+    @Override
+    public void close() {
+        onAll(shard -> {
+            shard.close();
+            return null;
+        });
+        executor.shutdown();
+    }
+
+    // Routing
+    private LibraryApi shardOf(String isbn) {
+        return shards.get(Math.floorMod(isbn.hashCode(), shards.size()));
+    }
+
+    private LibraryApi homeOf(String userId) {
+        return shards.get(Math.floorMod(userId.hashCode(), shards.size()));
+    }
+
+    // Accounts only, without the circulation records kept on other shards
+    private List<User> accounts() {
+        List<User> accounts = new ArrayList<>();
+        List<Collection<User>> users = onAll(LibraryApi::getAllUsers);
+        for (int i = 0; i < shards.size(); i++) {
+            for (User user : users.get(i)) {
+                if (homeOf(user.getUserId()) == shards.get(i)) {
+                    accounts.add(user);
+                }
+            }
+        }
+        return accounts;
+    }
+
+    private <T> List<T> onAll(Function<LibraryApi, T> call) {
+        return onEach(shards, call);
+    }
+
+    // Runs the call on every shard in parallel; results are in shard order
+    private <T> List<T> onEach(List<LibraryApi> targets, Function<LibraryApi, T> call) {
+        List<CompletableFuture<T>> calls = new ArrayList<>(targets.size());
+        for (LibraryApi shard : targets) {
+            calls.add(CompletableFuture.supplyAsync(() -> call.apply(shard), executor));
+        }
+        List<T> results = new ArrayList<>(calls.size());
+        for (CompletableFuture<T> result : calls) {
+            try {
+                results.add(result.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new UncheckedIOException(new IOException(e.getCause()));
+            }
+        }
+        return results;
+    }
+
+    private static List<Book> concat(List<? extends Collection<Book>> results) {
+        List<Book> books = new ArrayList<>();
+        for (Collection<Book> result : results) {
+            books.addAll(result);
+        }
+        return books;
+    }
+
+    // K-way merge of lists each sorted by the order, keeping the first limit books
+    private static List<Book> merge(List<List<Book>> results, SortedCatalog.Order order, int limit) {
+        Comparator<Book> comparator = order.comparator();
+        int[] positions = new int[results.size()];
+        List<Book> merged = new ArrayList<>();
+        while (merged.size() < limit) {
+            int next = -1;
+            for (int i = 0; i < results.size(); i++) {
+                if (positions[i] < results.get(i).size() && (next < 0
+                        || comparator.compare(results.get(i).get(positions[i]), results.get(next).get(positions[next])) < 0)) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            merged.add(results.get(next).get(positions[next]++));
+        }
+        return merged;
+    }
+
+    private static <K> Map<K, Long> sum(List<Map<K, Long>> results) {
+        Map<K, Long> total = new TreeMap<>();
+        for (Map<K, Long> result : results) {
+            result.forEach((key, value) -> total.merge(key, value, Long::sum));
+        }
+        return total;
+    }
+}
@@ -0,0 +1,290 @@
+package com.library.management.stats;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.library.management.index.NGramIndex;
+import com.library.management.models.Book;
+import com.library.management.models.BookSymbols;
+
+// Column-oriented copy of the catalog's numeric fields for whole-catalog
+// aggregations. Each book is a row across parallel primitive arrays, with
+// author and genre held as symbol table ids, so a scan walks contiguous
+// ints instead of chasing a pointer per Book. Rows are packed: removing a
+// book moves the last row into its place. Updates take the write lock and
+// scans share the read lock, as in CatalogIndex.
+public class CatalogColumns {
+    private final BookSymbols symbols;
+    private final ReadWriteLock lock;
+    private final Map<String, Integer> rowByIsbn;
+    private String[] isbns;
+    private int[] years;
+    private int[] totalCopies;
+    private int[] availableCopies;
+    private int[] heldCopies;
+    private int[] timesBorrowed;
+    private int[] authorIds;
+    private int[] genreIds;
+    private int size;
+
+    public CatalogColumns() {
+        this(new BookSymbols());
+    }
+
+    // Ids are those of the library's symbols
+    public CatalogColumns(BookSymbols symbols) {
+        this.symbols = symbols;
+        this.lock = new ReentrantReadWriteLock();
+        this.rowByIsbn = new HashMap<>();
+        allocate(1024);
+    }
+
+    public void add(Book book) {
+        lock.writeLock().lock();
+        try {
+            insert(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addAll(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(size + books.size());
+            for (Book book : books) {
+                insert(book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Book book) {
+        lock.writeLock().lock();
+        try {
+            delete(book.getIsbn());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rewrites the book's row; catalogued books keep their ISBN, so the row stays put
+    public void update(Book book, String property, Object oldValue) {
+        lock.writeLock().lock();
+        try {
+            refreshRow(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Picks up copy counts changed by borrowing, returns and holds, which
+    // Book updates without change events
+    public void refresh(Book book) {
+        lock.writeLock().lock();
+        try {
+            refreshRow(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of books per publication year
+    public Map<Integer, Long> countByYear() {
+        lock.readLock().lock();
+        try {
+            return byYear(null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lifetime borrows of the books published in each year
+    public Map<Integer, Long> borrowsByYear() {
+        lock.readLock().lock();
+        try {
+            return byYear(timesBorrowed);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Copies owned per case-folded genre
+    public Map<String, Long> copiesByGenre() {
+        lock.readLock().lock();
+        try {
+            return byGenre(totalCopies);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Copies currently out on loan per case-folded genre
+    public Map<String, Long> onLoanByGenre() {
+        lock.readLock().lock();
+        try {
+            long[] totals = new long[maxGenreId() + 2];
+            for (int row = 0; row < size; row++) {
+                totals[genreIds[row] + 1] += totalCopies[row] - availableCopies[row] - heldCopies[row];
+            }
+            return foldGenres(totals);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long totalTimesBorrowed() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (int row = 0; row < size; row++) {
+                total += timesBorrowed[row];
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Counts rows per year and, given a column, sums it per year, using dense
+    // arrays indexed by the offset from the earliest year
+    private Map<Integer, Long> byYear(int[] values) {
+        Map<Integer, Long> result = new TreeMap<>();
+        if (size == 0) {
+            return result;
+        }
+        int minYear = Integer.MAX_VALUE;
+        int maxYear = Integer.MIN_VALUE;
+        for (int row = 0; row < size; row++) {
+            minYear = Math.min(minYear, years[row]);
+            maxYear = Math.max(maxYear, years[row]);
+        }
+        long[] counts = new long[maxYear - minYear + 1];
+        long[] sums = values == null ? counts : new long[counts.length];
+        for (int row = 0; row < size; row++) {
+            counts[years[row] - minYear]++;
+        }
+        if (values != null) {
+            for (int row = 0; row < size; row++) {
+                sums[years[row] - minYear] += values[row];
+            }
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                result.put(minYear + i, sums[i]);
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Long> byGenre(int[] values) {
+        long[] totals = new long[maxGenreId() + 2];  // Slot 0 collects books without a genre
+        for (int row = 0; row < size; row++) {
+            totals[genreIds[row] + 1] += values[row];
+        }
+        return foldGenres(totals);
+    }
+
+    private int maxGenreId() {
+        int maxId = -1;
+        for (int row = 0; row < size; row++) {
+            maxId = Math.max(maxId, genreIds[row]);
+        }
+        return maxId;
+    }
+
+    private Map<String, Long> foldGenres(long[] totals) {
+        Map<String, Long> result = new TreeMap<>();
+        for (int slot = 0; slot < totals.length; slot++) {
+            if (totals[slot] != 0) {
+                result.merge(NGramIndex.normalize(symbols.getGenres().get(slot - 1)), totals[slot], Long::sum);
+            }
+        }
+        return result;
+    }
+
+    private void insert(Book book) {
+        if (rowByIsbn.containsKey(book.getIsbn())) {
+            refreshRow(book);
+            return;
+        }
+        ensureCapacity(size + 1);
+        int row = size++;
+        isbns[row] = book.getIsbn();
+        rowByIsbn.put(book.getIsbn(), row);
+        write(row, book);
+    }
+
+    private void delete(String isbn) {
+        Integer row = rowByIsbn.remove(isbn);
+        if (row == null) {
+            return;
+        }
+        int last = --size;
+        if (row != last) {
+            isbns[row] = isbns[last];
+            years[row] = years[last];
+            totalCopies[row] = totalCopies[last];
+            availableCopies[row] = availableCopies[last];
+            heldCopies[row] = heldCopies[last];
+            timesBorrowed[row] = timesBorrowed[last];
+            authorIds[row] = authorIds[last];
+            genreIds[row] = genreIds[last];
+            rowByIsbn.put(isbns[row], row);
+        }
+        isbns[last] = null;
+    }
+
+    private void refreshRow(Book book) {
+        Integer row = rowByIsbn.get(book.getIsbn());
+        if (row != null) {
+            write(row, book);
+        }
+    }
+
+    private void write(int row, Book book) {
+        years[row] = book.getYear();
+        totalCopies[row] = book.getTotalCopies();
+        availableCopies[row] = book.getAvailableCopies();
+        heldCopies[row] = book.getHeldCopies();
+        timesBorrowed[row] = book.getTimesBorrowed();
+        authorIds[row] = symbols.authorId(book);
+        genreIds[row] = symbols.genreId(book);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > isbns.length) {
+            allocate(Math.max(capacity, isbns.length * 2));
+        }
+    }
+
+    private void allocate(int capacity) {
+        isbns = isbns == null ? new String[capacity] : Arrays.copyOf(isbns, capacity);
+        years = grow(years, capacity);
+        totalCopies = grow(totalCopies, capacity);
+        availableCopies = grow(availableCopies, capacity);
+        heldCopies = grow(heldCopies, capacity);
+        timesBorrowed = grow(timesBorrowed, capacity);
+        authorIds = grow(authorIds, capacity);
+        genreIds = grow(genreIds, capacity);
+    }
+
+    private static int[] grow(int[] column, int capacity) {
+        return column == null ? new int[capacity] : Arrays.copyOf(column, capacity);
+    }
+}
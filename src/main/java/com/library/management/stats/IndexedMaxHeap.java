@@ -0,0 +1,135 @@
+package com.library.management.stats;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+// Binary max-heap that tracks each key's slot, so a key's priority can be
+// changed or the key removed in O(log N) and the maximum read in O(1)
+public class IndexedMaxHeap<K> {
+    private Object[] keys;
+    private long[] priorities;
+    private int size;
+    private final Map<K, Integer> positions;
+
+    public IndexedMaxHeap() {
+        this.keys = new Object[16];
+        this.priorities = new long[16];
+        this.positions = new HashMap<>();
+    }
+
+    public void set(K key, long priority) {
+        Integer position = positions.get(key);
+        if (position == null) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                priorities = Arrays.copyOf(priorities, size * 2);
+            }
+            keys[size] = key;
+            priorities[size] = priority;
+            positions.put(key, size);
+            siftUp(size++);
+            return;
+        }
+        long old = priorities[position];
+        priorities[position] = priority;
+        if (priority > old) {
+            siftUp(position);
+        } else if (priority < old) {
+            siftDown(position);
+        }
+    }
+
+    public void remove(K key) {
+        Integer position = positions.remove(key);
+        if (position == null) {
+            return;
+        }
+        int last = --size;
+        if (position != last) {
+            move(last, position);
+            siftDown(position);
+            siftUp(position);
+        }
+        keys[last] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public K peek() {
+        return size == 0 ? null : (K) keys[0];
+    }
+
+    public long priorityOf(K key) {
+        Integer position = positions.get(key);
+        return position == null ? 0 : priorities[position];
+    }
+
+    // Visits every key with its priority, in no particular order
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjLongConsumer<K> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept((K) keys[i], priorities[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+        positions.clear();
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (priorities[parent] >= priorities[position]) {
+                return;
+            }
+            swap(parent, position);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int largest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && priorities[left] > priorities[largest]) {
+                largest = left;
+            }
+            if (right < size && priorities[right] > priorities[largest]) {
+                largest = right;
+            }
+            if (largest == position) {
+                return;
+            }
+            swap(largest, position);
+            position = largest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        Object key = keys[a];
+        long priority = priorities[a];
+        move(b, a);
+        keys[b] = key;
+        priorities[b] = priority;
+        track(b);
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        priorities[to] = priorities[from];
+        track(to);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void track(int position) {
+        positions.put((K) keys[position], position);
+    }
+}
@@ -0,0 +1,263 @@
+package com.library.management.stats;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+
+import com.library.management.index.NGramIndex;
+import com.library.management.models.Book;
+import com.library.management.models.BookSymbols;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.User;
+
+// Library-wide counters and leaderboards, updated as the catalog and loans
+// change so that reads never scan books or users. Updates share no lock:
+// counters are adders and per-book and per-user scores sit in concurrent
+// maps, so borrows of different books stay as independent as their stripes.
+// A leaderboard's heap catches up with the scores changed since it was last
+// read when its leader is asked for. While updates are in flight, totals
+// read may be a moment behind each other.
+public class LibraryStatistics {
+    private final Ranking<Book> booksByCopiesOnLoan;
+    private final Ranking<LibraryUser> usersByHistorySize;
+    private final BookSymbols symbols;
+    private final Map<Integer, LongAdder> borrowsByGenre;  // Sum of books' timesBorrowed by genre id, -1 for none
+    private final LongAdder bookCount;
+    private final LongAdder userCount;
+    private final LongAdder totalCopies;
+    private final LongAdder copiesOnLoan;
+
+    public LibraryStatistics() {
+        this(new BookSymbols());
+    }
+
+    // Genre ids are those of the library's symbols
+    public LibraryStatistics(BookSymbols symbols) {
+        this.symbols = symbols;
+        this.booksByCopiesOnLoan = new Ranking<>(Book::getIsbn);
+        this.usersByHistorySize = new Ranking<>(User::getUserId);
+        this.borrowsByGenre = new ConcurrentHashMap<>();
+        this.bookCount = new LongAdder();
+        this.userCount = new LongAdder();
+        this.totalCopies = new LongAdder();
+        this.copiesOnLoan = new LongAdder();
+    }
+
+    public void bookAdded(Book book) {
+        bookCount.increment();
+        totalCopies.add(book.getTotalCopies());
+        updateCopiesOnLoan(book);
+        addBorrows(symbols.genreId(book), book.getTimesBorrowed());
+    }
+
+    public void booksAdded(Collection<Book> books) {
+        for (Book book : books) {
+            bookAdded(book);
+        }
+    }
+
+    public void bookRemoved(Book book) {
+        bookCount.decrement();
+        totalCopies.add(-book.getTotalCopies());
+        copiesOnLoan.add(-booksByCopiesOnLoan.remove(book));
+        addBorrows(symbols.genreId(book), -book.getTimesBorrowed());
+    }
+
+    public void bookChanged(Book book, String property, Object oldValue) {
+        if ("totalCopies".equals(property)) {
+            totalCopies.add(book.getTotalCopies() - (Integer) oldValue);
+            updateCopiesOnLoan(book);
+        } else if ("availableCopies".equals(property)) {
+            updateCopiesOnLoan(book);
+        } else if ("timesBorrowed".equals(property)) {
+            addBorrows(symbols.genreId(book), book.getTimesBorrowed() - (Integer) oldValue);
+        } else if ("genre".equals(property)) {
+            addBorrows(symbols.getGenres().lookup((String) oldValue), -book.getTimesBorrowed());
+            addBorrows(symbols.genreId(book), book.getTimesBorrowed());
+        }
+    }
+
+    public void userAdded(User user) {
+        userCount.increment();
+        if (user instanceof LibraryUser) {
+            LibraryUser libraryUser = (LibraryUser) user;
+            usersByHistorySize.set(libraryUser, libraryUser.getBorrowingHistorySize());
+        }
+    }
+
+    public void bookBorrowed(LibraryUser user, Book book) {
+        updateCopiesOnLoan(book);
+        usersByHistorySize.set(user, user.getBorrowingHistorySize());
+        addBorrows(symbols.genreId(book), 1);
+    }
+
+    public void bookReturned(Book book) {
+        updateCopiesOnLoan(book);
+    }
+
+    // A hold was placed, picked up, expired or cancelled
+    public void holdsChanged(Book book) {
+        updateCopiesOnLoan(book);
+    }
+
+    public Book getMostBorrowedBook() {
+        return booksByCopiesOnLoan.peek();
+    }
+
+    public LibraryUser getMostActiveUser() {
+        return usersByHistorySize.peek();
+    }
+
+    public Map<String, Long> getBorrowCountsByUser() {
+        Map<String, Long> counts = new HashMap<>();
+        usersByHistorySize.forEach((userId, historySize) -> {
+            if (historySize > 0) {
+                counts.put(userId, historySize);
+            }
+        });
+        return counts;
+    }
+
+    public int getBookCount() {
+        return bookCount.intValue();
+    }
+
+    public int getUserCount() {
+        return userCount.intValue();
+    }
+
+    public long getTotalCopies() {
+        return totalCopies.sum();
+    }
+
+    public long getCopiesOnLoan() {
+        return copiesOnLoan.sum();
+    }
+
+    // Keyed by case-folded genre, so spellings differing only in case are summed
+    public Map<String, Long> getBorrowsByGenre() {
+        Map<String, Long> totals = new TreeMap<>();
+        borrowsByGenre.forEach((genreId, borrows) -> {
+            long sum = borrows.sum();
+            if (sum != 0) {
+                totals.merge(NGramIndex.normalize(symbols.getGenres().get(genreId)), sum, Long::sum);
+            }
+        });
+        totals.values().removeIf(total -> total == 0);
+        return totals;
+    }
+
+    // Only while no updates run, as on a reload
+    public void clear() {
+        booksByCopiesOnLoan.clear();
+        usersByHistorySize.clear();
+        borrowsByGenre.clear();
+        bookCount.reset();
+        userCount.reset();
+        totalCopies.reset();
+        copiesOnLoan.reset();
+    }
+
+    private void addBorrows(int genreId, long delta) {
+        if (delta != 0) {
+            borrowsByGenre.computeIfAbsent(genreId, id -> new LongAdder()).add(delta);
+        }
+    }
+
+    private void updateCopiesOnLoan(Book book) {
+        long onLoan = book.getTotalCopies() - book.getAvailableCopies() - book.getHeldCopies();
+        copiesOnLoan.add(onLoan - booksByCopiesOnLoan.set(book, onLoan));
+    }
+
+    // Scores by id, each with the latest object it was set for, so a book
+    // re-added under its ISBN is the one ranked. Setting a score marks its id
+    // changed; peek() moves the changed ids into the heap under the heap's
+    // own lock, so writers never wait for a reader or for each other.
+    private static final class Ranking<K> {
+        private final Function<K, String> id;
+        private final ConcurrentHashMap<String, Scored<K>> scores;
+        private final Set<String> changed;
+        private final IndexedMaxHeap<String> heap;  // Guarded by itself
+
+        Ranking(Function<K, String> id) {
+            this.id = id;
+            this.scores = new ConcurrentHashMap<>();
+            this.changed = ConcurrentHashMap.newKeySet();
+            this.heap = new IndexedMaxHeap<>();
+        }
+
+        // Returns the previous score, 0 if there was none
+        long set(K item, long score) {
+            String key = id.apply(item);
+            Scored<K> previous = scores.put(key, new Scored<>(item, score));
+            changed.add(key);
+            return previous == null ? 0 : previous.score;
+        }
+
+        // Returns the score removed, 0 if there was none
+        long remove(K item) {
+            String key = id.apply(item);
+            Scored<K> previous = scores.remove(key);
+            changed.add(key);
+            return previous == null ? 0 : previous.score;
+        }
+
+        K peek() {
+            synchronized (heap) {
+                // Marked after the score is written, so an id taken off here
+                // is read with its latest score or marked again
+                for (Iterator<String> it = changed.iterator(); it.hasNext(); ) {
+                    String key = it.next();
+                    it.remove();
+                    Scored<K> scored = scores.get(key);
+                    if (scored == null) {
+                        heap.remove(key);
+                    } else {
+                        heap.set(key, scored.score);
+                    }
+                }
+                while (true) {
+                    String top = heap.peek();
+                    if (top == null) {
+                        return null;
+                    }
+                    Scored<K> scored = scores.get(top);
+                    if (scored != null) {
+                        return scored.item;
+                    }
+                    // Removed since the ids were taken; a re-add marks it again
+                    heap.remove(top);
+                }
+            }
+        }
+
+        void forEach(ObjLongConsumer<String> action) {
+            scores.forEach((key, scored) -> action.accept(key, scored.score));
+        }
+
+        void clear() {
+            synchronized (heap) {
+                scores.clear();
+                changed.clear();
+                heap.clear();
+            }
+        }
+    }
+
+    private static final class Scored<K> {
+        final K item;
+        final long score;
+
+        Scored(K item, long score) {
+            this.item = item;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.library.management;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.User;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Many threads borrowing and returning the same few books: copies must
+// never be oversold, loans must never exceed a user's limit, and every
+// copy must be either on the shelf or on exactly one loan
+class LibraryConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int BOOKS = 20;
+    private static final int USERS = 40;
+
+    @TempDir
+    Path directory;
+
+    private LibraryConfig config;
+    private Library library;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        config = new LibraryConfig();
+        config.setDataDirectory(directory);
+        config.setSnapshotInterval(2000);
+        library = new Library(config);
+        for (int i = 0; i < BOOKS; i++) {
+            library.addBook(new Book("isbn-" + i, "Title " + i, "Author", "Genre", 2000, 1 + i % 3));
+        }
+        for (int i = 0; i < USERS; i++) {
+            library.addUser(new LibraryUser("id-" + i, "user" + i, "pw", "User " + i, i + "@example.com"));
+        }
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        library.close();
+    }
+
+    private void runAll(Callable<Void> task) throws Exception {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(task));
+        }
+        for (Future<Void> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+    }
+
+    // A user may hold more than one copy of a book
+    private static long copiesHeld(User user, String isbn) {
+        return ((LibraryUser) user).getBorrowedBooks().stream()
+                .filter(book -> book.getIsbn().equals(isbn))
+                .count();
+    }
+
+    private static List<String> borrowers(Library library, String isbn) {
+        List<String> borrowers = new ArrayList<>();
+        for (User user : library.getAllUsers()) {
+            if (copiesHeld(user, isbn) > 0) {
+                borrowers.add(user.getUserId());
+            }
+        }
+        return borrowers;
+    }
+
+    // Returns the number of copies on loan
+    private long assertCopyInvariants(Library library) {
+        long onLoan = 0;
+        for (Book book : library.getAllBooks()) {
+            long loans = 0;
+            for (User user : library.getAllUsers()) {
+                loans += copiesHeld(user, book.getIsbn());
+            }
+            assertTrue(book.getAvailableCopies() >= 0, book.getIsbn());
+            assertEquals(book.getTotalCopies(), book.getAvailableCopies() + loans, book.getIsbn());
+            onLoan += loans;
+        }
+        for (User user : library.getAllUsers()) {
+            LibraryUser libraryUser = (LibraryUser) user;
+            assertTrue(libraryUser.getCurrentBorrowedCount() <= libraryUser.getMaxBooksAllowed(), user.getUserId());
+        }
+        return onLoan;
+    }
+
+    @Test
+    void randomBorrowsAndReturnsKeepCopyCounts() throws Exception {
+        AtomicInteger seeds = new AtomicInteger();
+        AtomicLong borrowed = new AtomicLong();
+        AtomicLong returned = new AtomicLong();
+        runAll(() -> {
+            Random random = new Random(seeds.incrementAndGet());
+            for (int i = 0; i < 5000; i++) {
+                String userId = "id-" + random.nextInt(USERS);
+                String isbn = "isbn-" + random.nextInt(BOOKS);
+                if (random.nextBoolean()) {
+                    if (library.borrowBook(userId, isbn)) {
+                        borrowed.incrementAndGet();
+                    }
+                } else if (library.returnBook(userId, isbn)) {
+                    returned.incrementAndGet();
+                }
+            }
+            return null;
+        });
+
+        assertTrue(borrowed.get() > 0);
+        assertEquals(borrowed.get() - returned.get(), assertCopyInvariants(library));
+
+        // The journal replays the interleaving to the same counts
+        library.close();
+        library = new Library(config);
+        assertEquals(borrowed.get() - returned.get(), assertCopyInvariants(library));
+    }
+
+    // Every thread races for the last copy at once; exactly one may win
+    @Test
+    void lastCopyGoesToExactlyOneBorrower() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            String isbn = "race-" + round;
+            library.addBook(new Book(isbn, "Race", "Author", "Genre", 2000, 1));
+            CountDownLatch start = new CountDownLatch(1);
+            List<String> winners = new CopyOnWriteArrayList<>();
+            AtomicInteger next = new AtomicInteger();
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    String userId = "id-" + next.getAndIncrement();
+                    start.await();
+                    if (library.borrowBook(userId, isbn)) {
+                        winners.add(userId);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+            assertEquals(1, winners.size(), isbn);
+            assertEquals(0, library.findBookByIsbn(isbn).getAvailableCopies(), isbn);
+            assertEquals(winners, borrowers(library, isbn), isbn);
+            assertTrue(library.returnBook(winners.get(0), isbn));
+        }
+    }
+
+    // One user borrowing different books from every thread stays within the loan limit
+    @Test
+    void loanLimitHoldsUnderConcurrentBorrows() throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        runAll(() -> {
+            int thread = next.getAndIncrement();
+            for (int i = thread; i < BOOKS; i += THREADS) {
+                library.borrowBook("id-0", "isbn-" + i);
+            }
+            return null;
+        });
+        LibraryUser user = (LibraryUser) library.findUser("id-0");
+        assertEquals(user.getMaxBooksAllowed(), user.getCurrentBorrowedCount());
+        assertCopyInvariants(library);
+    }
+}
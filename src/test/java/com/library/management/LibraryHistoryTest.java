@@ -0,0 +1,132 @@
+package com.library.management;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.library.management.models.Book;
+import com.library.management.models.HistoryEntry;
+import com.library.management.models.LibraryUser;
+import com.library.management.persistence.Durability;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Borrowing history beyond the in-memory ring is archived at snapshot time
+// and paged back in order, across the archive/memory boundary and a reload
+class LibraryHistoryTest {
+    private static final int BORROWS = 300;
+
+    @TempDir
+    Path directory;
+
+    private Library open(int snapshotInterval) {
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(directory);
+        // Thousands of sequential mutations; none of the checks needs each one fsynced
+        config.setDurability(Durability.FIRE_AND_FORGET);
+        config.setSnapshotInterval(snapshotInterval);
+        return new Library(config);
+    }
+
+    private static List<String> isbns(List<HistoryEntry> entries) {
+        return entries.stream().map(HistoryEntry::getIsbn).collect(Collectors.toList());
+    }
+
+    private static List<String> expectedHistory() {
+        List<String> isbns = new ArrayList<>();
+        for (int i = 0; i < BORROWS; i++) {
+            isbns.add("isbn-" + i % 7);
+        }
+        return isbns;
+    }
+
+    private static void borrowAndReturn(Library library) {
+        for (int i = 0; i < 7; i++) {
+            library.addBook(new Book("isbn-" + i, "Title " + i, "Author", "Genre", 2000, 1));
+        }
+        library.addUser(new LibraryUser("id-1", "reader", "pw", "Reader", "reader@example.com"));
+        for (int i = 0; i < BORROWS; i++) {
+            assertTrue(library.borrowBook("id-1", "isbn-" + i % 7));
+            assertTrue(library.returnBook("id-1", "isbn-" + i % 7));
+        }
+    }
+
+    private static void assertHistoryPages(Library library) {
+        LibraryUser user = (LibraryUser) library.findUser("id-1");
+        List<String> expected = expectedHistory();
+        assertEquals(BORROWS, user.getBorrowingHistorySize());
+        assertEquals(expected, isbns(user.getBorrowingHistory(0, BORROWS + 10)));
+        for (int pageSize : new int[] {1, 17, 64}) {
+            List<String> paged = new ArrayList<>();
+            for (long from = 0; from < BORROWS; from += pageSize) {
+                paged.addAll(isbns(user.getBorrowingHistory(from, pageSize)));
+            }
+            assertEquals(expected, paged, "page size " + pageSize);
+        }
+        assertTrue(user.getBorrowingHistory(BORROWS, 10).isEmpty());
+    }
+
+    private long archivedBytes() throws Exception {
+        Path history = directory.resolve("history");
+        if (!Files.exists(history)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(history)) {
+            long total = 0;
+            for (Path file : files.collect(Collectors.toList())) {
+                total += Files.size(file);
+            }
+            return total;
+        }
+    }
+
+    @Test
+    void archivedHistoryPagesInOrderAcrossReload() {
+        Library library = open(50);
+        try {
+            borrowAndReturn(library);
+            assertHistoryPages(library);
+        } finally {
+            library.close();
+        }
+
+        // close() snapshots, so the older entries are in the archive by now
+        Library reopened = open(50);
+        try {
+            assertTrue(((LibraryUser) reopened.findUser("id-1")).getArchivedHistoryCount() > 0);
+            assertHistoryPages(reopened);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    // Borrows never write the archive; the spill waits for the next snapshot
+    @Test
+    void borrowsLeaveTheArchiveUntilSnapshot() throws Exception {
+        Library library = open(100_000);
+        try {
+            borrowAndReturn(library);
+            assertEquals(0, archivedBytes());
+            assertEquals(0, ((LibraryUser) library.findUser("id-1")).getArchivedHistoryCount());
+            assertHistoryPages(library);
+        } finally {
+            library.close();
+        }
+        assertTrue(archivedBytes() > 0);
+
+        Library reopened = open(100_000);
+        try {
+            assertTrue(((LibraryUser) reopened.findUser("id-1")).getArchivedHistoryCount() > 0);
+            assertHistoryPages(reopened);
+        } finally {
+            reopened.close();
+        }
+    }
+}
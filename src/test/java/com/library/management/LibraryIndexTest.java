@@ -0,0 +1,196 @@
+package com.library.management;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.User;
+import com.library.management.persistence.Durability;
+import com.library.management.security.PasswordHasher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The genre and username indexes must answer exactly what the linear
+// scans they replaced did, through every kind of change and a reload
+class LibraryIndexTest {
+    private static final List<String> GENRES = Arrays.asList("Fiction", "fiction", "FICTION", "Sci-Fi", "History",
+            "Poetry", "Children's");
+    private static final List<String> QUERIES = Arrays.asList("fiction", "Fiction", "FICTION", "sci-fi", "SCI-FI",
+            "history", "poetry", "children's", "Drama", "", "fict");
+
+    @TempDir
+    Path directory;
+
+    private Library open() {
+        return open(directory);
+    }
+
+    private static Library open(Path directory) {
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(directory);
+        // Thousands of sequential mutations; none of the checks needs each one fsynced
+        config.setDurability(Durability.FIRE_AND_FORGET);
+        return new Library(config);
+    }
+
+    private static Set<String> isbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    // The original findBooksByGenre
+    private static Set<String> scanGenre(Library library, String genre) {
+        return isbns(library.getAllBooks().stream()
+                .filter(book -> book.getGenre().toLowerCase().equals(genre.toLowerCase()))
+                .collect(Collectors.toList()));
+    }
+
+    // The original getUserByUsername
+    private static User scanUsername(Library library, String username) {
+        return library.getAllUsers().stream()
+                .filter(user -> user.getUsername().equals(username))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static void assertMatchesScans(Library library) {
+        for (String genre : QUERIES) {
+            assertEquals(scanGenre(library, genre), isbns(library.findBooksByGenre(genre)), genre);
+        }
+        for (User user : library.getAllUsers()) {
+            assertSame(scanUsername(library, user.getUsername()), library.getUserByUsername(user.getUsername()));
+        }
+        assertNull(library.getUserByUsername("nobody"));
+        assertNull(library.getUserByUsername("READER1"));
+    }
+
+    @Test
+    void genreAndUsernameIndexesMatchLinearScans() {
+        Library library = open();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                library.addBook(new Book("isbn-" + i, "Title " + i, "Author " + i % 37, GENRES.get(i % GENRES.size()),
+                        1950 + i % 70, 1 + i % 3));
+            }
+            for (int i = 0; i < 100; i++) {
+                library.addUser(new LibraryUser("id-" + i, "reader" + i, "pw" + i, "Reader " + i, i + "@example.com"));
+            }
+            assertMatchesScans(library);
+
+            // Removals, additions and edits in place
+            for (int i = 0; i < 2000; i += 7) {
+                assertTrue(library.removeBook("isbn-" + i));
+            }
+            library.addBook(new Book("isbn-new", "New", "Someone", "Drama", 2024, 1));
+            library.findBookByIsbn("isbn-1").setGenre("History");
+            library.findBookByIsbn("isbn-2").setGenre("drama");
+            assertFalse(library.addUser(new LibraryUser("id-5", "reader5", "pw", "Again", "again@example.com")));
+            assertMatchesScans(library);
+            assertTrue(library.authenticateUser("reader42", "pw42"));
+            assertFalse(library.authenticateUser("reader42", "pw41"));
+        } finally {
+            library.close();
+        }
+
+        Library reopened = open();
+        try {
+            assertEquals(2000 - 286 + 1, reopened.getAllBooks().size());
+            assertMatchesScans(reopened);
+            assertTrue(reopened.authenticateUser("reader7", "pw7"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void usernameLookupCostDoesNotGrowWithUserCount() throws IOException {
+        // Stored already hashed, so adding the users does no hashing
+        String hash = new PasswordHasher(1000).hash("pw");
+        long[] small = usernameLookupNanos(Files.createDirectory(directory.resolve("small")), 500, hash);
+        long[] large = usernameLookupNanos(Files.createDirectory(directory.resolve("large")), 50_000, hash);
+        // A scan would be about a hundred times slower on the larger library
+        assertTrue(large[0] < small[0] * 5 + 100_000,
+                "getUserByUsername, 500 users: " + small[0] + " ns, 50k users: " + large[0] + " ns");
+        assertTrue(large[1] < small[1] * 5 + 100_000,
+                "authenticateUser, 500 users: " + small[1] + " ns, 50k users: " + large[1] + " ns");
+    }
+
+    // A rename moves the user in the index, refuses a name already taken,
+    // and is still in the index after a restart
+    @Test
+    void renamesMoveUsersInTheUsernameIndex() {
+        String hash = new PasswordHasher(1000).hash("pw");
+        Library library = open();
+        try {
+            library.addUser(new LibraryUser("id-1", "reader1", hash, "Reader 1", "1@example.com"));
+            library.addUser(new LibraryUser("id-2", "reader2", hash, "Reader 2", "2@example.com"));
+            assertTrue(library.changeUsername("id-1", "renamed"));
+            assertFalse(library.changeUsername("id-1", "reader2"));
+            assertFalse(library.changeUsername("id-1", "renamed"));
+            assertFalse(library.changeUsername("nobody", "other"));
+
+            assertNull(library.getUserByUsername("reader1"));
+            assertSame(library.findUser("id-1"), library.getUserByUsername("renamed"));
+            assertEquals("reader2", library.getUserByUsername("reader2").getUsername());
+            assertFalse(library.authenticateUser("reader1", "pw"));
+            assertTrue(library.authenticateUser("renamed", "pw"));
+            assertTrue(library.addUser(new LibraryUser("id-3", "reader1", hash, "Reader 3", "3@example.com")));
+        } finally {
+            library.close();
+        }
+
+        Library reopened = open();
+        try {
+            assertEquals("id-1", reopened.getUserByUsername("renamed").getUserId());
+            assertEquals("id-3", reopened.getUserByUsername("reader1").getUserId());
+            assertEquals("renamed", reopened.findUser("id-1").getUsername());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    // Best of several rounds of getUserByUsername and of authenticateUser for
+    // the last user added; the first login is verified, so the timed ones are
+    // answered from the credential cache and cost no hashing
+    private static long[] usernameLookupNanos(Path directory, int userCount, String hash) {
+        Library library = open(directory);
+        try {
+            for (int i = 0; i < userCount; i++) {
+                library.addUser(new LibraryUser("id-" + i, "reader" + i, hash, "Reader " + i, i + "@example.com"));
+            }
+            String username = "reader" + (userCount - 1);
+            assertTrue(library.authenticateUser(username, "pw"));
+
+            long[] best = {Long.MAX_VALUE, Long.MAX_VALUE};
+            for (int round = 0; round < 50; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 200; i++) {
+                    assertEquals(username, library.getUserByUsername(username).getUsername());
+                }
+                best[0] = Math.min(best[0], System.nanoTime() - start);
+
+                start = System.nanoTime();
+                for (int i = 0; i < 200; i++) {
+                    assertTrue(library.authenticateUser(username, "pw"));
+                }
+                best[1] = Math.min(best[1], System.nanoTime() - start);
+            }
+            return best;
+        } finally {
+            library.close();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.library.management;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.Loan;
+import com.library.management.persistence.SnapshotFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibraryLoanTest {
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Library open() {
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(directory);
+        config.setJmxEnabled(false);
+        return new Library(config);
+    }
+
+    // Loans due within milliseconds, checked every few, with every mutation
+    // going straight into a snapshot
+    private Library openWithShortLoans(Path dataDirectory, SnapshotFormat format) throws IOException {
+        Files.createDirectories(dataDirectory);
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(dataDirectory);
+        config.setJmxEnabled(false);
+        config.setSnapshotFormat(format);
+        config.setSnapshotInterval(1);
+        config.setLoanPeriodMillis(200);
+        config.setOverdueCheckIntervalMillis(10);
+        return new Library(config);
+    }
+
+    private static LibraryUser user(Library library, String userId) {
+        return (LibraryUser) library.findUser(userId);
+    }
+
+    private static Map<String, Long> borrowTimes(List<Loan> loans) {
+        Map<String, Long> times = new TreeMap<>();
+        for (Loan loan : loans) {
+            times.put(loan.getIsbn(), loan.getBorrowedAt());
+        }
+        return times;
+    }
+
+    private JsonNode read(String file) throws IOException {
+        return objectMapper.readTree(directory.resolve(file).toFile());
+    }
+
+    // users.json written before loans were references embeds whole books
+    // under "borrowedBooks"; the loans must come back linked to the catalog
+    // with their borrow times, and be written in the new form afterwards
+    @Test
+    void legacyBorrowedBooksAreReadAsLoans() throws IOException {
+        List<Loan> original;
+        Library library = open();
+        try {
+            for (int i = 0; i < 3; i++) {
+                library.addBook(new Book("isbn-" + i, "Title " + i, "Author", "Fiction", 2000, 2));
+            }
+            library.addUser(new LibraryUser("id-1", "reader", "pw", "Reader", "reader@example.com"));
+            assertTrue(library.borrowBook("id-1", "isbn-0"));
+            assertTrue(library.borrowBook("id-1", "isbn-1"));
+            original = user(library, "id-1").getLoans();
+        } finally {
+            library.close();
+        }
+
+        // Rewrite the snapshot the way the old format stored it, with stale copy counts
+        ArrayNode users = (ArrayNode) read("users.json");
+        for (JsonNode node : users) {
+            if (node.get("userId").asText().equals("id-1")) {
+                ObjectNode user = (ObjectNode) node;
+                ArrayNode borrowed = user.putArray("borrowedBooks");
+                for (JsonNode book : read("books.json")) {
+                    if (!book.get("isbn").asText().equals("isbn-2")) {
+                        borrowed.add(((ObjectNode) book.deepCopy()).put("availableCopies", 99));
+                    }
+                }
+                user.remove("loans");
+                user.put("currentBorrowedCount", 2);
+            }
+        }
+        objectMapper.writeValue(directory.resolve("users.json").toFile(), users);
+
+        Library reopened = open();
+        try {
+            LibraryUser user = user(reopened, "id-1");
+            assertEquals(borrowTimes(original), borrowTimes(user.getLoans()));
+            for (Loan loan : user.getLoans()) {
+                assertSame(reopened.findBookByIsbn(loan.getIsbn()), loan.getBook());
+            }
+            assertEquals(1, reopened.findBookByIsbn("isbn-0").getAvailableCopies());
+            assertTrue(reopened.returnBook("id-1", "isbn-0"));
+            assertEquals(2, reopened.findBookByIsbn("isbn-0").getAvailableCopies());
+        } finally {
+            reopened.close();
+        }
+
+        JsonNode rewritten = read("users.json");
+        for (JsonNode user : rewritten) {
+            assertNull(user.get("borrowedBooks"));
+            assertNull(user.get("currentBorrowedCount"));
+        }
+        Library again = open();
+        try {
+            List<String> isbns = new ArrayList<>();
+            for (Loan loan : user(again, "id-1").getLoans()) {
+                isbns.add(loan.getIsbn());
+            }
+            assertEquals(List.of("isbn-1"), isbns);
+        } finally {
+            again.close();
+        }
+    }
+
+    // Before loans were keyed by ISBN a user could borrow two copies of one
+    // book; the second copy must come back to the shelf rather than be lost
+    @Test
+    void duplicateLegacyLoansReturnTheExtraCopy() throws IOException {
+        Library library = open();
+        try {
+            library.addBook(new Book("isbn-0", "Title", "Author", "Fiction", 2000, 3));
+            library.addUser(new LibraryUser("id-1", "reader", "pw", "Reader", "reader@example.com"));
+            assertTrue(library.borrowBook("id-1", "isbn-0"));
+        } finally {
+            library.close();
+        }
+
+        // Two copies out to the same user, as the old format could store them
+        ArrayNode books = (ArrayNode) read("books.json");
+        for (JsonNode book : books) {
+            ((ObjectNode) book).put("availableCopies", 1);
+        }
+        objectMapper.writeValue(directory.resolve("books.json").toFile(), books);
+        ArrayNode users = (ArrayNode) read("users.json");
+        for (JsonNode node : users) {
+            if (node.get("userId").asText().equals("id-1")) {
+                ArrayNode loans = ((ObjectNode) node).putArray("loans");
+                loans.addObject().put("isbn", "isbn-0").put("borrowedAt", 1000L);
+                loans.addObject().put("isbn", "isbn-0").put("borrowedAt", 2000L);
+            }
+        }
+        objectMapper.writeValue(directory.resolve("users.json").toFile(), users);
+
+        Library reopened = open();
+        try {
+            LibraryUser user = user(reopened, "id-1");
+            assertEquals(1, user.getLoans().size());
+            assertEquals(1000L, user.getLoan("isbn-0").getBorrowedAt());
+            assertEquals(2, reopened.findBookByIsbn("isbn-0").getAvailableCopies());
+            assertTrue(reopened.returnBook("id-1", "isbn-0"));
+            assertEquals(3, reopened.findBookByIsbn("isbn-0").getAvailableCopies());
+        } finally {
+            reopened.close();
+        }
+
+        Library again = open();
+        try {
+            assertTrue(user(again, "id-1").getLoans().isEmpty());
+            assertEquals(3, again.findBookByIsbn("isbn-0").getAvailableCopies());
+        } finally {
+            again.close();
+        }
+    }
+
+    // A book with copies out or held stays in the catalog, so loans and
+    // holds never dangle, and a reload sees what the live library saw
+    @Test
+    void removeBookIsRefusedWhileCopiesAreOutOrHeld() {
+        Library library = open();
+        try {
+            library.addBook(new Book("isbn-1", "Popular", "Author", "Fiction", 2020, 1));
+            library.addUser(new LibraryUser("a", "user-a", "pw", "A", "a@example.com"));
+            library.addUser(new LibraryUser("b", "user-b", "pw", "B", "b@example.com"));
+            assertTrue(library.borrowBook("a", "isbn-1"));
+            assertFalse(library.removeBook("isbn-1"));
+
+            assertTrue(library.reserveBook("b", "isbn-1"));
+            assertTrue(library.returnBook("a", "isbn-1"));
+            // The returned copy is now held for b
+            assertFalse(library.removeBook("isbn-1"));
+            assertEquals(1, library.findBookByIsbn("isbn-1").getHeldCopies());
+        } finally {
+            library.close();
+        }
+
+        Library reopened = open();
+        try {
+            assertNotNull(reopened.findBookByIsbn("isbn-1"));
+            assertEquals(0, reopened.getReservationPosition("b", "isbn-1"));
+            assertTrue(reopened.borrowBook("b", "isbn-1"));
+            assertSame(reopened.findBookByIsbn("isbn-1"), user(reopened, "b").getBorrowedBooks().get(0));
+            assertFalse(reopened.removeBook("isbn-1"));
+            assertTrue(reopened.returnBook("b", "isbn-1"));
+            assertTrue(reopened.removeBook("isbn-1"));
+            assertFalse(reopened.removeBook("isbn-1"));
+        } finally {
+            reopened.close();
+        }
+
+        Library again = open();
+        try {
+            assertNull(again.findBookByIsbn("isbn-1"));
+            assertTrue(user(again, "b").getLoans().isEmpty());
+            assertEquals(-1, again.getReservationPosition("b", "isbn-1"));
+        } finally {
+            again.close();
+        }
+    }
+
+    // Renewals push the due date out until they run out or the loan is late;
+    // the overdue notice fires once, a late return is fined per started day,
+    // and due dates, renewals and fines survive a reload in either format
+    @Test
+    void dueDatesRenewalsAndFines() throws Exception {
+        for (SnapshotFormat format : new SnapshotFormat[] {SnapshotFormat.JSON, SnapshotFormat.BINARY}) {
+            Path dataDirectory = directory.resolve(format.name());
+            Library library = openWithShortLoans(dataDirectory, format);
+            long renewedDueAt;
+            try {
+                List<String> notices = new ArrayList<>();
+                CountDownLatch overdue = new CountDownLatch(1);
+                library.setOverdueListener((userId, loan) -> {
+                    synchronized (notices) {
+                        notices.add(userId + "/" + loan.getIsbn());
+                    }
+                    overdue.countDown();
+                });
+                library.addBook(new Book("isbn-1", "Late", "Author", "Fiction", 2020, 1));
+                library.addBook(new Book("isbn-2", "Kept", "Author", "Fiction", 2020, 1));
+                library.addUser(new LibraryUser("a", "user-a", "pw", "A", "a@example.com"));
+                library.addUser(new LibraryUser("b", "user-b", "pw", "B", "b@example.com"));
+
+                assertTrue(library.borrowBook("a", "isbn-1"));
+                assertFalse(library.renewLoan("a", "isbn-2"));
+                assertTrue(library.renewLoan("a", "isbn-1"));
+                assertTrue(library.renewLoan("a", "isbn-1"));
+                assertFalse(library.renewLoan("a", "isbn-1"));
+                Loan loan = library.getLoans("a").get(0);
+                assertEquals(2, loan.getRenewals());
+                assertTrue(loan.getDueAt() > loan.getBorrowedAt());
+
+                assertTrue(overdue.await(10, TimeUnit.SECONDS));
+                assertEquals(1, library.getOverdueLoanCount());
+                assertFalse(library.renewLoan("a", "isbn-1"));
+                assertEquals(0, library.getFinesOwed("a"));
+                assertTrue(library.returnBook("a", "isbn-1"));
+                assertEquals(25, library.getFinesOwed("a"));
+                assertEquals(0, library.getOverdueLoanCount());
+                synchronized (notices) {
+                    assertEquals(List.of("a/isbn-1"), notices);
+                }
+
+                assertTrue(library.borrowBook("b", "isbn-2"));
+                assertTrue(library.renewLoan("b", "isbn-2"));
+                renewedDueAt = library.getLoans("b").get(0).getDueAt();
+            } finally {
+                library.close();
+            }
+
+            Library reopened = openWithShortLoans(dataDirectory, format);
+            try {
+                assertEquals(25, reopened.getFinesOwed("a"));
+                assertTrue(reopened.getLoans("a").isEmpty());
+                Loan loan = reopened.getLoans("b").get(0);
+                assertEquals(renewedDueAt, loan.getDueAt());
+                assertEquals(1, loan.getRenewals());
+                assertSame(reopened.findBookByIsbn("isbn-2"), loan.getBook());
+
+                assertEquals(25, reopened.payFines("a"));
+                assertEquals(0, reopened.payFines("a"));
+                // b's loan is past due by now and is reported again after the restart
+                long deadline = System.currentTimeMillis() + 10_000;
+                while (reopened.getOverdueLoanCount() == 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertEquals(1, reopened.getOverdueLoanCount());
+            } finally {
+                reopened.close();
+            }
+
+            Library again = openWithShortLoans(dataDirectory, format);
+            try {
+                assertEquals(0, again.getFinesOwed("a"));
+            } finally {
+                again.close();
+            }
+        }
+    }
+}
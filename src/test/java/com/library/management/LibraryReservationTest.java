@@ -0,0 +1,141 @@
+package com.library.management;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.persistence.SnapshotFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibraryReservationTest {
+    @TempDir
+    Path directory;
+
+    private LibraryConfig config(long holdDurationMillis) {
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(directory);
+        config.setHoldDurationMillis(holdDurationMillis);
+        return config;
+    }
+
+    private static Library open(LibraryConfig config) {
+        Library library = new Library(config);
+        if (library.findBookByIsbn("isbn-1") == null) {
+            library.addBook(new Book("isbn-1", "Popular", "Author", "Fiction", 2020, 1));
+            for (String userId : new String[] {"a", "b", "c", "d"}) {
+                library.addUser(new LibraryUser(userId, "user-" + userId, "pw", userId, userId + "@example.com"));
+            }
+        }
+        return library;
+    }
+
+    private static void assertPositions(Library library, int a, int b, int c, int d) {
+        assertEquals(a, library.getReservationPosition("a", "isbn-1"), "a");
+        assertEquals(b, library.getReservationPosition("b", "isbn-1"), "b");
+        assertEquals(c, library.getReservationPosition("c", "isbn-1"), "c");
+        assertEquals(d, library.getReservationPosition("d", "isbn-1"), "d");
+    }
+
+    // A returned copy goes to the front of the queue and nobody else can take it
+    @Test
+    void returnedCopyIsHeldForTheNextWaiter() {
+        Library library = open(config(60_000));
+        try {
+            // Nothing to reserve while a copy is on the shelf
+            assertFalse(library.reserveBook("b", "isbn-1"));
+            assertTrue(library.borrowBook("a", "isbn-1"));
+            assertFalse(library.reserveBook("a", "isbn-1"));
+            assertTrue(library.reserveBook("b", "isbn-1"));
+            assertTrue(library.reserveBook("c", "isbn-1"));
+            assertFalse(library.reserveBook("c", "isbn-1"));
+            assertPositions(library, -1, 1, 2, -1);
+
+            assertTrue(library.returnBook("a", "isbn-1"));
+            assertPositions(library, -1, 0, 1, -1);
+            assertEquals(0, library.findBookByIsbn("isbn-1").getAvailableCopies());
+            assertFalse(library.borrowBook("d", "isbn-1"));
+            assertFalse(library.borrowBook("c", "isbn-1"));
+
+            assertTrue(library.borrowBook("b", "isbn-1"));
+            assertPositions(library, -1, -1, 1, -1);
+            assertTrue(library.returnBook("b", "isbn-1"));
+            assertPositions(library, -1, -1, 0, -1);
+
+            // Giving up a hold passes the copy on
+            assertTrue(library.reserveBook("d", "isbn-1"));
+            assertTrue(library.cancelReservation("c", "isbn-1"));
+            assertPositions(library, -1, -1, -1, 0);
+            assertEquals(0, library.getCopiesOnLoan());
+        } finally {
+            library.close();
+        }
+    }
+
+    // Queue and holds come back from either snapshot format
+    @Test
+    void reservationsSurviveReload() {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            LibraryConfig config = config(60_000);
+            config.setSnapshotFormat(format);
+            Library library = open(config);
+            try {
+                library.cancelReservation("d", "isbn-1");
+                assertTrue(library.borrowBook("a", "isbn-1"));
+                assertTrue(library.reserveBook("b", "isbn-1"));
+                assertTrue(library.reserveBook("c", "isbn-1"));
+                assertTrue(library.reserveBook("d", "isbn-1"));
+                assertTrue(library.returnBook("a", "isbn-1"));
+                assertTrue(library.cancelReservation("c", "isbn-1"));
+                assertPositions(library, -1, 0, -1, 1);
+            } finally {
+                library.close();
+            }
+
+            Library reopened = new Library(config);
+            try {
+                assertPositions(reopened, -1, 0, -1, 1);
+                assertFalse(reopened.borrowBook("d", "isbn-1"));
+                assertTrue(reopened.borrowBook("b", "isbn-1"));
+                assertTrue(reopened.returnBook("b", "isbn-1"));
+                assertPositions(reopened, -1, -1, -1, 0);
+                assertTrue(reopened.cancelReservation("d", "isbn-1"));
+                assertEquals(1, reopened.findBookByIsbn("isbn-1").getAvailableCopies());
+            } finally {
+                reopened.close();
+            }
+        }
+    }
+
+    // An unclaimed hold expires and the copy moves to the next waiter, then back to the shelf
+    @Test
+    void expiredHoldsPassTheCopyOn() throws InterruptedException {
+        Library library = open(config(200));
+        try {
+            assertTrue(library.borrowBook("a", "isbn-1"));
+            assertTrue(library.reserveBook("b", "isbn-1"));
+            assertTrue(library.reserveBook("c", "isbn-1"));
+            assertTrue(library.returnBook("a", "isbn-1"));
+            assertPositions(library, -1, 0, 1, -1);
+
+            awaitAvailable(library, 1);
+            assertPositions(library, -1, -1, -1, -1);
+            assertTrue(library.borrowBook("d", "isbn-1"));
+        } finally {
+            library.close();
+        }
+    }
+
+    private static void awaitAvailable(Library library, int copies) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (library.findBookByIsbn("isbn-1").getAvailableCopies() != copies) {
+            assertTrue(System.currentTimeMillis() < deadline, "holds did not expire");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.library.management;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.User;
+import com.library.management.persistence.SnapshotFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibrarySnapshotTest {
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private LibraryConfig config(SnapshotFormat format) throws IOException {
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(Files.createDirectories(directory.resolve(format.name())));
+        config.setSnapshotFormat(format);
+        config.setJmxEnabled(false);
+        config.setPasswordHashIterations(1000);
+        return config;
+    }
+
+    private static void populate(Library library, int books, int users) {
+        List<Book> catalog = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            catalog.add(new Book("isbn-" + i, "Title " + i, "Author " + (i % 100), "Genre " + (i % 10), 1950 + i % 70, 3));
+        }
+        library.addBooks(catalog);
+        for (int i = 0; i < users; i++) {
+            library.addUser(new LibraryUser("id-" + i, "user-" + i, "pw", "User " + i, "user" + i + "@example.com"));
+        }
+    }
+
+    // Bytes written by the snapshot that follows a single checkout
+    private long checkoutSnapshotBytes(LibraryConfig config) {
+        Library library = new Library(config);
+        try {
+            populate(library, 20000, 500);
+        } finally {
+            library.close();
+        }
+
+        Library reopened = new Library(config);
+        try {
+            assertTrue(reopened.borrowBook("id-7", "isbn-1234"));
+        } finally {
+            reopened.close();
+        }
+        return reopened.getMetrics().getLastSnapshotBytes();
+    }
+
+    private static long size(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    // Whole-file formats rewrite the catalog for one checkout; segments
+    // rewrite the user's and the book's segment and the checkpoint
+    @Test
+    void checkoutRewritesOnlyItsSegments() throws IOException {
+        LibraryConfig binary = config(SnapshotFormat.BINARY);
+        LibraryConfig segmented = config(SnapshotFormat.SEGMENTED);
+        long binaryBytes = checkoutSnapshotBytes(binary);
+        long segmentedBytes = checkoutSnapshotBytes(segmented);
+        long segmentedTotal = size(segmented.getDataDirectory().resolve("book-segments"))
+                + size(segmented.getDataDirectory().resolve("user-segments"));
+
+        assertTrue(binaryBytes > size(binary.getDataDirectory().resolve("books.bin")),
+                "binary snapshot wrote " + binaryBytes + " bytes");
+        assertTrue(segmentedBytes * 50 < segmentedTotal,
+                "segmented snapshot wrote " + segmentedBytes + " of " + segmentedTotal + " bytes");
+
+        Library reopened = new Library(segmented);
+        try {
+            assertEquals(20000, reopened.getBookCount());
+            assertEquals(500, reopened.getUserCount());
+            assertEquals(2, reopened.findBookByIsbn("isbn-1234").getAvailableCopies());
+            assertEquals(1, reopened.getBorrowedBooks("id-7").size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    // Frequent partial snapshots interleaved with additions, removals and
+    // circulation leave the segments holding exactly the live records
+    @Test
+    void partialSnapshotsMatchTheLiveLibrary() throws IOException {
+        LibraryConfig config = config(SnapshotFormat.SEGMENTED);
+        config.setSnapshotInterval(25);
+        Random random = new Random(23);
+        Map<String, String> books;
+        Map<String, String> users;
+        Library library = new Library(config);
+        try {
+            populate(library, 300, 40);
+            for (int i = 0; i < 2000; i++) {
+                String userId = "id-" + random.nextInt(40);
+                String isbn = "isbn-" + random.nextInt(320);
+                switch (random.nextInt(6)) {
+                    case 0:
+                        library.addBook(new Book(isbn, "Added " + i, "Author", "Genre", 2000, 1 + random.nextInt(3)));
+                        break;
+                    case 1:
+                        library.removeBook(isbn);
+                        break;
+                    case 2:
+                        library.reserveBook(userId, isbn);
+                        break;
+                    case 3:
+                        library.returnBook(userId, isbn);
+                        break;
+                    default:
+                        library.borrowBook(userId, isbn);
+                        break;
+                }
+            }
+            books = json(library.getAllBooks());
+            users = json(library.getAllUsers());
+        } finally {
+            library.close();
+        }
+
+        Library reopened = new Library(config);
+        try {
+            assertEquals(books, json(reopened.getAllBooks()));
+            assertEquals(users, json(reopened.getAllUsers()));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    // A batch big enough to go straight into a snapshot skips the journal, so
+    // once the segments exist it must still be written into them
+    @Test
+    void bulkImportsReachExistingSegments() throws IOException {
+        LibraryConfig config = config(SnapshotFormat.SEGMENTED);
+        config.setSnapshotInterval(50);
+        Library library = new Library(config);
+        try {
+            populate(library, 1, 1);
+        } finally {
+            library.close();
+        }
+
+        Library importing = new Library(config);
+        try {
+            List<Book> batch = new ArrayList<>();
+            for (int i = 1; i <= 100; i++) {
+                batch.add(new Book("isbn-" + i, "Imported " + i, "Author", "Genre", 2000, 1));
+            }
+            assertEquals(100, importing.addBooks(batch).size());
+            assertEquals(101, importing.getBookCount());
+        } finally {
+            importing.close();
+        }
+
+        Library reopened = new Library(config);
+        try {
+            assertEquals(101, reopened.getBookCount());
+            for (int i = 0; i <= 100; i++) {
+                assertNotNull(reopened.findBookByIsbn("isbn-" + i), "isbn-" + i);
+            }
+            assertEquals("Imported 100", reopened.findBookByIsbn("isbn-100").getTitle());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private Map<String, String> json(Iterable<?> records) {
+        Map<String, String> json = new TreeMap<>();
+        for (Object record : records) {
+            String key = record instanceof Book ? ((Book) record).getIsbn() : ((User) record).getUserId();
+            try {
+                json.put(key, objectMapper.writeValueAsString(record));
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return json;
+    }
+}
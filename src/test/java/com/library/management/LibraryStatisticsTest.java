@@ -0,0 +1,167 @@
+package com.library.management;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.User;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibraryStatisticsTest {
+    @TempDir
+    Path directory;
+
+    private Library open() {
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(directory);
+        config.setJmxEnabled(false);
+        config.setPasswordHashIterations(1000);
+        return new Library(config);
+    }
+
+    private static long copiesOnLoan(Book book) {
+        return book.getTotalCopies() - book.getAvailableCopies() - book.getHeldCopies();
+    }
+
+    // The leaders must score what a scan of every book and user finds
+    private static void assertLeaders(Library library, String mostBorrowed, String mostActive) {
+        long maxOnLoan = 0;
+        long totalOnLoan = 0;
+        for (Book book : library.getAllBooks()) {
+            maxOnLoan = Math.max(maxOnLoan, copiesOnLoan(book));
+            totalOnLoan += copiesOnLoan(book);
+        }
+        long maxHistory = 0;
+        for (User user : library.getAllUsers()) {
+            maxHistory = Math.max(maxHistory, ((LibraryUser) user).getBorrowingHistorySize());
+        }
+        assertEquals(maxOnLoan, copiesOnLoan(library.getMostBorrowedBook()));
+        assertEquals(maxHistory, library.getMostActiveUser().getBorrowingHistorySize());
+        assertEquals(totalOnLoan, library.getCopiesOnLoan());
+        assertEquals(mostBorrowed, library.getMostBorrowedBook().getIsbn());
+        assertEquals(mostActive, library.getMostActiveUser().getUserId());
+    }
+
+    // The most borrowed book counts copies out now, not held ones; the most
+    // active user counts every borrow, returned or not
+    @Test
+    void leadersFollowBorrowsReturnsHoldsAndReload() {
+        Library library = open();
+        try {
+            library.addBook(new Book("isbn-a", "A", "Author", "Fiction", 2000, 2));
+            library.addBook(new Book("isbn-b", "B", "Author", "Fiction", 2001, 1));
+            library.addBook(new Book("isbn-c", "C", "Author", "History", 2002, 3));
+            for (String userId : new String[] {"u1", "u2", "u3"}) {
+                library.addUser(new LibraryUser(userId, "user-" + userId, "pw", userId, userId + "@example.com"));
+            }
+
+            assertTrue(library.borrowBook("u1", "isbn-a"));
+            assertTrue(library.borrowBook("u2", "isbn-a"));
+            assertTrue(library.borrowBook("u1", "isbn-b"));
+            assertTrue(library.borrowBook("u3", "isbn-c"));
+            assertLeaders(library, "isbn-a", "u1");
+
+            // The returned copy of B is held for u3 rather than on loan
+            assertTrue(library.reserveBook("u3", "isbn-b"));
+            assertTrue(library.returnBook("u1", "isbn-b"));
+            assertEquals(1, library.findBookByIsbn("isbn-b").getHeldCopies());
+            assertEquals(0, copiesOnLoan(library.findBookByIsbn("isbn-b")));
+
+            assertTrue(library.returnBook("u1", "isbn-a"));
+            assertTrue(library.returnBook("u2", "isbn-a"));
+            assertTrue(library.borrowBook("u2", "isbn-c"));
+            assertTrue(library.borrowBook("u1", "isbn-c"));
+            assertLeaders(library, "isbn-c", "u1");
+
+            // Picking up the hold puts B on loan, and u3 overtakes u1 in borrows
+            assertTrue(library.borrowBook("u3", "isbn-b"));
+            assertTrue(library.borrowBook("u3", "isbn-a"));
+            assertTrue(library.borrowBook("u2", "isbn-a"));
+            assertTrue(library.returnBook("u3", "isbn-a"));
+            assertTrue(library.borrowBook("u3", "isbn-a"));
+            assertLeaders(library, "isbn-c", "u3");
+        } finally {
+            library.close();
+        }
+
+        Library reopened = open();
+        try {
+            assertLeaders(reopened, "isbn-c", "u3");
+            assertTrue(reopened.returnBook("u1", "isbn-c"));
+            assertTrue(reopened.returnBook("u2", "isbn-c"));
+            assertLeaders(reopened, "isbn-a", "u3");
+        } finally {
+            reopened.close();
+        }
+    }
+
+    // Updates from many desks at once share no lock; once they stop, the
+    // counters and leaders match a scan, while readers polled throughout
+    @Test
+    void countersStayExactUnderConcurrentCirculation() throws Exception {
+        Library library = open();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int b = 0; b < 40; b++) {
+                library.addBook(new Book("isbn-" + b, "T" + b, "Author", "Genre " + b % 3, 2000, 3));
+            }
+            for (int u = 0; u < 16; u++) {
+                library.addUser(new LibraryUser("u" + u, "user-u" + u, "pw", "u" + u, u + "@example.com"));
+            }
+            List<Future<?>> desks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                desks.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 2000; i++) {
+                        String userId = "u" + (seed * 2 + random.nextInt(2));
+                        String isbn = "isbn-" + random.nextInt(40);
+                        if (!library.borrowBook(userId, isbn)) {
+                            library.returnBook(userId, isbn);
+                        }
+                        if (i % 100 == 0) {
+                            assertNotNull(library.getMostBorrowedBook());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> desk : desks) {
+                desk.get();
+            }
+
+            long totalOnLoan = 0;
+            long borrows = 0;
+            Book leader = library.findBookByIsbn("isbn-0");
+            for (Book book : library.getAllBooks()) {
+                totalOnLoan += copiesOnLoan(book);
+                borrows += book.getTimesBorrowed();
+                leader = copiesOnLoan(book) > copiesOnLoan(leader) ? book : leader;
+            }
+            assertEquals(totalOnLoan, library.getCopiesOnLoan());
+            assertEquals(120, library.getTotalCopies());
+            assertEquals(borrows, library.getBorrowsByGenre().values().stream().mapToLong(Long::longValue).sum());
+            assertEquals(copiesOnLoan(leader), copiesOnLoan(library.getMostBorrowedBook()));
+            long mostBorrows = 0;
+            for (User user : library.getAllUsers()) {
+                mostBorrows = Math.max(mostBorrows, ((LibraryUser) user).getBorrowingHistorySize());
+            }
+            assertEquals(mostBorrows, library.getMostActiveUser().getBorrowingHistorySize());
+        } finally {
+            executor.shutdownNow();
+            library.close();
+        }
+    }
+}
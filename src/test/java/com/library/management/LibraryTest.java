@@ -0,0 +1,263 @@
+package com.library.management;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.management.metrics.LibraryMetrics;
+import com.library.management.metrics.LibraryMetrics.Operation;
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.User;
+import com.library.management.persistence.SnapshotFormat;
+import com.library.management.query.BookQuery;
+import com.library.management.persistence.SnapshotStore;
+import com.library.management.security.PasswordHasher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibraryTest {
+    @TempDir
+    Path directory;
+
+    private LibraryConfig config() {
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(directory);
+        config.setSnapshotInterval(100);
+        config.setJmxEnabled(false);
+        config.setPasswordHashIterations(1000);
+        return config;
+    }
+
+    private static List<Book> books(int from, int count) {
+        List<Book> books = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            books.add(new Book("isbn-" + i, "Title " + i, "Author " + i % 10, "Genre " + i % 5, 2000 + i % 20, 2));
+        }
+        return books;
+    }
+
+    // Batches below the snapshot interval are journaled, larger ones go
+    // straight into a snapshot; ISBNs already present are skipped
+    @Test
+    void bulkAddSkipsKnownIsbnsAndSurvivesReload() {
+        Library library = new Library(config());
+        try {
+            assertEquals(10, library.addBooks(books(0, 10)).size());
+            assertEquals(150, library.addBooks(books(5, 155)).size());
+            assertTrue(library.addBook(books(160, 1).get(0)));
+            assertEquals(0, library.addBooks(books(0, 20)).size());
+            assertEquals(161, library.getAllBooks().size());
+            assertEquals(161 / 5 + 1, library.findBooksByGenre("genre 0").size());
+        } finally {
+            library.close();
+        }
+
+        Library reopened = new Library(config());
+        try {
+            assertEquals(161, reopened.getAllBooks().size());
+            assertEquals("Title 154", reopened.findBookByIsbn("isbn-154").getTitle());
+            assertEquals(1, reopened.findBooksByTitle("title 154").size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    // Journaled and snapshotted batches both survive a reopen in every
+    // snapshot format, including one that arrives once the files exist
+    @Test
+    void bulkImportsSurviveReloadInEverySnapshotFormat() throws IOException {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            LibraryConfig config = config();
+            config.setDataDirectory(Files.createDirectory(directory.resolve(format.name())));
+            config.setSnapshotFormat(format);
+            Library library = new Library(config);
+            try {
+                assertEquals(150, library.addBooks(books(0, 150)).size());
+            } finally {
+                library.close();
+            }
+
+            Library importing = new Library(config);
+            try {
+                assertEquals(10, importing.addBooks(books(150, 10)).size());
+                assertEquals(200, importing.addBooks(books(160, 200)).size());
+            } finally {
+                importing.close();
+            }
+
+            Library reopened = new Library(config);
+            try {
+                assertEquals(360, reopened.getAllBooks().size(), format.name());
+                assertEquals("Title 359", reopened.findBookByIsbn("isbn-359").getTitle(), format.name());
+                assertEquals("Title 155", reopened.findBookByIsbn("isbn-155").getTitle(), format.name());
+            } finally {
+                reopened.close();
+            }
+        }
+    }
+
+    // A large batch whose snapshot fails is refused as a whole
+    @Test
+    void bulkAddIsRolledBackWhenItsSnapshotFails() throws Exception {
+        Library library = new Library(config());
+        try {
+            library.addBooks(books(0, 10));
+            // A directory where the snapshot's temporary file goes makes the write fail
+            Path blocker = Files.createDirectory(directory.resolve("books.json.tmp"));
+            assertThrows(UncheckedIOException.class, () -> library.addBooks(books(10, 200)));
+            assertEquals(10, library.getAllBooks().size());
+            assertNull(library.findBookByIsbn("isbn-50"));
+            assertTrue(library.findBooksByTitle("title 50").isEmpty());
+            Files.delete(blocker);
+
+            assertEquals(200, library.addBooks(books(10, 200)).size());
+        } finally {
+            library.close();
+        }
+
+        Library reopened = new Library(config());
+        try {
+            assertEquals(210, reopened.getAllBooks().size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    // Plaintext passwords from older users.json files work at once and are
+    // hashed in the background, not by the constructor; the snapshot on
+    // close keeps the hashes
+    @Test
+    void plaintextPasswordsAreMigratedAfterStartup() throws IOException {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            users.add(new LibraryUser("id-" + i, "user" + i, "secret" + i, "User " + i, "user" + i + "@example.com"));
+        }
+        new SnapshotStore(directory, new ObjectMapper(), SnapshotFormat.JSON).write(Collections.emptyList(), users, 0);
+
+        Library library = new Library(config());
+        try {
+            assertTrue(library.authenticateUser("user7", "secret7"));
+            assertFalse(library.authenticateUser("user8", "secret7"));
+            assertTrue(PasswordHasher.isHash(library.getUserByUsername("user7").getPassword()));
+            assertTrue(library.authenticateUser("user7", "secret7"));
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                while (!library.getAllUsers().stream().allMatch(user -> PasswordHasher.isHash(user.getPassword()))) {
+                    Thread.sleep(10);
+                }
+            });
+        } finally {
+            library.close();
+        }
+        Library reopened = new Library(config());
+        try {
+            for (User user : reopened.getAllUsers()) {
+                assertTrue(PasswordHasher.isHash(user.getPassword()), user.getUsername());
+            }
+            assertTrue(reopened.authenticateUser("user42", "secret42"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    // A failed login costs a full hash whether or not the username exists,
+    // so timing cannot be used to find out which usernames are taken
+    @Test
+    void unknownUsernamesCostAsMuchAsWrongPasswords() {
+        LibraryConfig config = config();
+        config.setPasswordHashIterations(100_000);
+        Library library = new Library(config);
+        try {
+            library.addUser(new LibraryUser("id-1", "reader", "secret", "Reader", "reader@example.com"));
+            long wrongPassword = Long.MAX_VALUE;
+            long unknownUser = Long.MAX_VALUE;
+            for (int i = 0; i < 5; i++) {
+                long start = System.nanoTime();
+                assertFalse(library.authenticateUser("reader", "wrong"));
+                wrongPassword = Math.min(wrongPassword, System.nanoTime() - start);
+                start = System.nanoTime();
+                assertFalse(library.authenticateUser("nobody", "wrong"));
+                unknownUser = Math.min(unknownUser, System.nanoTime() - start);
+            }
+            assertTrue(unknownUser * 2 > wrongPassword, unknownUser + " vs " + wrongPassword);
+        } finally {
+            library.close();
+        }
+    }
+
+    // Every operation is timed, and searches that find nothing, lookups that
+    // miss and refused mutations are counted as misses
+    @Test
+    void operationsAndMissesAreRecorded() {
+        Library library = new Library(config());
+        try {
+            library.addBooks(books(0, 3));
+            library.addUser(new LibraryUser("id-1", "reader", "pw", "Reader", "reader@example.com"));
+            LibraryMetrics metrics = library.getMetrics();
+
+            assertNotNull(library.findBookByIsbn("isbn-1"));
+            assertNull(library.findBookByIsbn("missing"));
+            assertEquals(3, library.findBooksByTitle("title").size());
+            assertTrue(library.findBooksByAuthor("nobody").isEmpty());
+            assertTrue(library.borrowBook("id-1", "isbn-1"));
+            assertFalse(library.borrowBook("id-1", "missing"));
+            assertFalse(library.returnBook("id-1", "isbn-2"));
+
+            assertEquals(2, metrics.getLatency(Operation.LOOKUP).getCount());
+            assertEquals(1, metrics.getMisses(Operation.LOOKUP));
+            assertEquals(2, metrics.getLatency(Operation.SEARCH).getCount());
+            assertEquals(1, metrics.getMisses(Operation.SEARCH));
+            assertEquals(2, metrics.getLatency(Operation.BORROW).getCount());
+            assertEquals(1, metrics.getMisses(Operation.BORROW));
+            assertEquals(1, metrics.getMisses(Operation.RETURN));
+            assertEquals(0.5, metrics.getLookupHitRate());
+            assertEquals(2L, metrics.getOperationCounts().get("borrow"));
+            assertTrue(metrics.getLatency(Operation.BORROW).getMaxNanos() > 0);
+            assertTrue(metrics.getLatencyMaxMicros().containsKey("search"));
+            assertFalse(metrics.getLatencyMaxMicros().containsKey("renew"));
+        } finally {
+            library.close();
+        }
+    }
+
+    // Each library numbers the authors and genres of its own books, so one
+    // catalog's values never reach another's tables
+    @Test
+    void librariesKeepTheirOwnAuthorAndGenreTables() throws IOException {
+        LibraryConfig first = config();
+        LibraryConfig second = config();
+        second.setDataDirectory(Files.createDirectory(directory.resolve("second")));
+        Library one = new Library(first);
+        Library other = new Library(second);
+        try {
+            assertTrue(one.addBook(new Book("1", "Emma", "Jane Austen", "Romance", 1815, 1)));
+            assertTrue(other.addBook(new Book("2", "Dune", "Frank Herbert", "Sci-Fi", 1965, 1)));
+            Book emma = one.findBookByIsbn("1");
+            Book dune = other.findBookByIsbn("2");
+            assertNotSame(emma.getSymbols(), dune.getSymbols());
+            assertEquals(-1, dune.getSymbols().getAuthors().lookup("Jane Austen"));
+            assertEquals(-1, emma.getSymbols().getGenres().lookup("Sci-Fi"));
+            assertEquals(1, one.findBooks(new BookQuery().genre("ROMANCE")).size());
+            assertEquals(0, other.findBooks(new BookQuery().genre("romance")).size());
+        } finally {
+            one.close();
+            other.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.library.management.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.library.management.models.Book;
+
+class CatalogIndexTest {
+    private static final String[] GENRES = {"Fiction", "Sci-Fi", "History", "Poetry", "Drama"};
+
+    @Test
+    void settersKeepIndexesCurrent() {
+        CatalogIndex index = new CatalogIndex();
+        Book book = catalogue(index, new Book("1", "The Hobbit", "J.R.R. Tolkien", "Fantasy", 1937, 2));
+
+        book.setTitle("The Silmarillion");
+        assertTrue(index.findByTitle("hobbit").isEmpty());
+        assertEquals(List.of(book), index.findByTitle("silmar"));
+
+        book.setAuthor("Christopher Tolkien");
+        assertEquals(List.of(book), index.findByAuthor("christopher"));
+        assertTrue(index.findByAuthor("j.r.r").isEmpty());
+
+        // Properties the index does not cover leave it untouched
+        book.setGenre("Mythology");
+        book.setAvailableCopies(1);
+        assertEquals(List.of(book), index.findByTitle("silmar"));
+    }
+
+    @Test
+    void removedBookIsNoLongerFound() {
+        CatalogIndex index = new CatalogIndex();
+        Book book = catalogue(index, new Book("1", "Emma", "Jane Austen", "Fiction", 1815, 1));
+
+        index.remove(book);
+        book.setChangeListener(null);
+
+        assertTrue(index.findByTitle("emma").isEmpty());
+        assertTrue(index.findByAuthor("austen").isEmpty());
+    }
+
+    @Test
+    void isbnIsFixedOnceCatalogued() {
+        Book book = new Book("1", "Emma", "Jane Austen", "Fiction", 1815, 1);
+        book.setIsbn("2");
+        assertEquals("2", book.getIsbn());
+
+        catalogue(new CatalogIndex(), book);
+        assertThrows(IllegalStateException.class, () -> book.setIsbn("3"));
+        assertEquals("2", book.getIsbn());
+    }
+
+    @Test
+    void genreLookupCostDoesNotGrowWithCatalogSize() {
+        long small = genreLookupNanos(1_000);
+        long large = genreLookupNanos(100_000);
+        // A scan would be about a hundred times slower on the larger catalog
+        assertTrue(large < small * 5 + 100_000, "1k books: " + small + " ns, 100k books: " + large + " ns");
+    }
+
+    // Best of several rounds, so one slow round from GC or JIT does not count
+    private static long genreLookupNanos(int catalogSize) {
+        CatalogIndex index = new CatalogIndex();
+        for (int i = 0; i < catalogSize; i++) {
+            index.add(new Book("isbn-" + i, "Title " + i, "Author " + i % 97, GENRES[i % GENRES.length], 2000, 1));
+        }
+        index.add(new Book("rare", "Rare", "Someone", "Incunabula", 1480, 1));
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 50; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 200; i++) {
+                assertEquals(1, index.findByGenre("incunabula").size());
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static Book catalogue(CatalogIndex index, Book book) {
+        index.add(book);
+        book.setChangeListener(index::update);
+        return book;
+    }
+}
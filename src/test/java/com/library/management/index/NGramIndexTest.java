@@ -0,0 +1,82 @@
+package com.library.management.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.library.management.models.Book;
+
+class NGramIndexTest {
+    private static final String[] WORDS = {
+        "the", "great", "Gatsby", "war", "and", "peace", "Ulysses", "of", "mice", "men",
+        "a", "tale", "two", "cities", "ÉCOLE", "straße", "Moby", "Dick", "1984", "dune"
+    };
+
+    @Test
+    void searchMatchesLinearScan() {
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>();
+        NGramIndex index = new NGramIndex();
+        for (int i = 0; i < 500; i++) {
+            Book book = new Book("isbn-" + i, randomTitle(random), "Author", "Fiction", 2000, 1);
+            books.add(book);
+            index.add(book, book.getTitle());
+        }
+
+        List<String> queries = new ArrayList<>(List.of("", "a", "th", "THE", "great gat", "ss", "zzz", "é", "ße", " "));
+        for (int i = 0; i < 200; i++) {
+            String title = books.get(random.nextInt(books.size())).getTitle();
+            int start = random.nextInt(title.length());
+            int end = start + random.nextInt(title.length() - start) + 1;
+            queries.add(random.nextBoolean() ? title.substring(start, end).toUpperCase() : title.substring(start, end));
+        }
+
+        for (String query : queries) {
+            assertEquals(scan(books, query), new HashSet<>(index.search(query)), "query: " + query);
+        }
+    }
+
+    @Test
+    void removeDropsOnlyThatBook() {
+        NGramIndex index = new NGramIndex();
+        Book first = new Book("1", "Dune", "Frank Herbert", "Sci-Fi", 1965, 1);
+        Book second = new Book("2", "Dune", "Frank Herbert", "Sci-Fi", 1965, 1);
+        index.add(first, first.getTitle());
+        index.add(second, second.getTitle());
+        assertEquals(1, index.distinctValueCount());
+
+        index.remove(first, first.getTitle());
+        assertEquals(List.of(second), index.search("une"));
+
+        index.remove(second, second.getTitle());
+        assertEquals(0, index.distinctValueCount());
+        assertTrue(index.search("une").isEmpty());
+        assertTrue(index.search("d").isEmpty());
+    }
+
+    private static Set<Book> scan(List<Book> books, String query) {
+        return books.stream()
+                .filter(book -> book.getTitle().toLowerCase().contains(query.toLowerCase()))
+                .collect(Collectors.toSet());
+    }
+
+    private static String randomTitle(Random random) {
+        int words = 1 + random.nextInt(4);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                title.append(' ');
+            }
+            title.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return title.toString();
+    }
+}
@@ -0,0 +1,147 @@
+package com.library.management.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.library.management.models.Book;
+
+class SearchCacheTest {
+    private static final String[] TERMS = {"title 1", "title 2", "tle 3", "author 4", "AUTHOR 1", "genre 2",
+            "Genre 0", "nothing"};
+
+    private final CatalogIndex index = new CatalogIndex();
+    private final SearchCache cache = new SearchCache(1000);
+    private final List<Book> books = new ArrayList<>();
+
+    // Wired the way Library wires them, so the cache sees every index change
+    private void add(Book book) {
+        books.add(book);
+        index.add(book);
+        cache.add(book);
+        book.setChangeListener((changed, property, oldValue) -> {
+            index.update(changed, property, oldValue);
+            cache.update(changed, property, oldValue);
+        });
+    }
+
+    private void remove(Book book) {
+        books.remove(book);
+        book.setChangeListener(null);
+        index.remove(book);
+        cache.remove(book);
+    }
+
+    private List<Book> cached(SearchCache.Field field, String term, Function<String, List<Book>> search) {
+        List<Book> result = cache.get(field, term);
+        if (result == null) {
+            long generation = cache.getGeneration();
+            result = search.apply(term);
+            cache.put(field, term, result, generation);
+        }
+        return result;
+    }
+
+    private static Set<String> isbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private void assertCacheMatchesIndex() {
+        for (String term : TERMS) {
+            assertEquals(isbns(index.findByTitle(term)), isbns(cached(SearchCache.Field.TITLE, term, index::findByTitle)), term);
+            assertEquals(isbns(index.findByAuthor(term)), isbns(cached(SearchCache.Field.AUTHOR, term, index::findByAuthor)), term);
+            assertEquals(isbns(index.findByGenre(term)), isbns(cached(SearchCache.Field.GENRE, term, index::findByGenre)), term);
+        }
+    }
+
+    // A cached result must never be served after a change that alters it
+    @Test
+    void cachedResultsFollowEveryCatalogChange() {
+        Random random = new Random(5);
+        for (int i = 0; i < 300; i++) {
+            add(new Book("isbn-" + i, "Title " + random.nextInt(40), "Author " + random.nextInt(10),
+                    "Genre " + random.nextInt(4), 2000, 1));
+        }
+        assertCacheMatchesIndex();
+
+        for (int i = 0; i < 500; i++) {
+            Book book = books.get(random.nextInt(books.size()));
+            switch (random.nextInt(5)) {
+                case 0:
+                    book.setTitle("Title " + random.nextInt(40));
+                    break;
+                case 1:
+                    book.setAuthor("Author " + random.nextInt(10));
+                    break;
+                case 2:
+                    book.setGenre("Genre " + random.nextInt(4));
+                    break;
+                case 3:
+                    remove(book);
+                    break;
+                default:
+                    add(new Book("new-" + i, "Title " + random.nextInt(40), "Author " + random.nextInt(10),
+                            "Genre " + random.nextInt(4), 2000, 1));
+                    break;
+            }
+            assertCacheMatchesIndex();
+        }
+    }
+
+    @Test
+    void changesDropOnlyTheEntriesTheyAffect() {
+        add(new Book("1", "Dune", "Frank Herbert", "Sci-Fi", 1965, 1));
+        add(new Book("2", "Emma", "Jane Austen", "Fiction", 1815, 1));
+        cached(SearchCache.Field.TITLE, "dune", index::findByTitle);
+        cached(SearchCache.Field.TITLE, "emma", index::findByTitle);
+        cached(SearchCache.Field.GENRE, "fiction", index::findByGenre);
+        cached(SearchCache.Field.GENRE, "sci-fi", index::findByGenre);
+
+        books.get(0).setTitle("Dune Messiah");
+        assertNull(cache.get(SearchCache.Field.TITLE, "dune"));
+        assertNotNull(cache.get(SearchCache.Field.TITLE, "emma"));
+
+        // Both the old and the new genre's results change
+        books.get(1).setGenre("Sci-Fi");
+        assertNull(cache.get(SearchCache.Field.GENRE, "fiction"));
+        assertNull(cache.get(SearchCache.Field.GENRE, "sci-fi"));
+        assertNotNull(cache.get(SearchCache.Field.TITLE, "emma"));
+
+        // Properties no search covers leave the cache alone
+        books.get(1).setAvailableCopies(0);
+        assertNotNull(cache.get(SearchCache.Field.TITLE, "emma"));
+    }
+
+    // A result computed before a change is not stored after it
+    @Test
+    void resultComputedAcrossAChangeIsNotCached() {
+        add(new Book("1", "Dune", "Frank Herbert", "Sci-Fi", 1965, 1));
+        long generation = cache.getGeneration();
+        List<Book> stale = index.findByTitle("dune");
+        books.get(0).setTitle("Arrakis");
+        cache.put(SearchCache.Field.TITLE, "dune", stale, generation);
+        assertNull(cache.get(SearchCache.Field.TITLE, "dune"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        SearchCache small = new SearchCache(2);
+        small.put(SearchCache.Field.TITLE, "a", List.of(), small.getGeneration());
+        small.put(SearchCache.Field.TITLE, "b", List.of(), small.getGeneration());
+        small.get(SearchCache.Field.TITLE, "a");
+        small.put(SearchCache.Field.TITLE, "c", List.of(), small.getGeneration());
+        assertNotNull(small.get(SearchCache.Field.TITLE, "a"));
+        assertNull(small.get(SearchCache.Field.TITLE, "b"));
+        assertEquals(1, small.getEvictions());
+    }
+}
@@ -0,0 +1,126 @@
+package com.library.management.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import com.library.management.models.Book;
+
+class SortedCatalogTest {
+    private final SortedCatalog catalog = new SortedCatalog();
+    private final List<Book> books = new ArrayList<>();
+
+    private void add(Book book) {
+        books.add(book);
+        catalog.add(book);
+        book.setChangeListener(catalog::update);
+    }
+
+    private void remove(Book book) {
+        books.remove(book);
+        catalog.remove(book);
+        book.setChangeListener(null);
+    }
+
+    // What sorting the whole catalog from scratch gives
+    private List<Book> sorted(SortedCatalog.Order order) {
+        List<Book> sorted = new ArrayList<>(books);
+        sorted.sort(comparator(order));
+        return sorted;
+    }
+
+    private static Comparator<Book> comparator(SortedCatalog.Order order) {
+        switch (order) {
+            case TITLE:
+                return byValue(Book::getTitle);
+            case AUTHOR:
+                return byValue(Book::getAuthor);
+            case YEAR:
+                return byValue(Book::getYear);
+            default:
+                return Comparator.comparing(Book::getIsbn);
+        }
+    }
+
+    private static <T extends Comparable<T>> Comparator<Book> byValue(Function<Book, T> value) {
+        return Comparator.comparing(value, Comparator.nullsFirst(Comparator.<T>naturalOrder()))
+                .thenComparing(Book::getIsbn);
+    }
+
+    // Every page read by seeking past the previous page's last book
+    private List<Book> paged(SortedCatalog.Order order, int pageSize) {
+        List<Book> all = new ArrayList<>();
+        Book after = null;
+        while (true) {
+            List<Book> page = catalog.page(order, after, pageSize);
+            assertTrue(page.size() <= pageSize);
+            all.addAll(page);
+            if (page.size() < pageSize) {
+                return all;
+            }
+            after = page.get(page.size() - 1);
+        }
+    }
+
+    private void assertMatchesFreshSort() {
+        for (SortedCatalog.Order order : SortedCatalog.Order.values()) {
+            List<Book> expected = sorted(order);
+            assertEquals(expected, catalog.list(order), order.name());
+            assertEquals(expected, paged(order, 7), order.name());
+            assertEquals(expected, paged(order, 20), order.name());
+        }
+    }
+
+    @Test
+    void listingAndPagingMatchAFreshSortThroughEdits() {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            // Few distinct values, so ties fall back to the ISBN
+            add(new Book(String.format("%05d", random.nextInt(100_000)) + "-" + i, "Title " + random.nextInt(50),
+                    random.nextInt(10) == 0 ? null : "Author " + random.nextInt(20), "Genre",
+                    1900 + random.nextInt(30), 1));
+        }
+        assertMatchesFreshSort();
+
+        for (int i = 0; i < 300; i++) {
+            Book book = books.get(random.nextInt(books.size()));
+            switch (random.nextInt(4)) {
+                case 0:
+                    book.setTitle("Renamed " + random.nextInt(50));
+                    break;
+                case 1:
+                    book.setAuthor(random.nextBoolean() ? null : "Author " + random.nextInt(20));
+                    break;
+                case 2:
+                    book.setYear(1900 + random.nextInt(30));
+                    break;
+                default:
+                    remove(book);
+                    break;
+            }
+        }
+        assertMatchesFreshSort();
+    }
+
+    @Test
+    void pagingPastTheEndIsEmpty() {
+        add(new Book("1", "B", "A", "G", 2000, 1));
+        add(new Book("2", "A", "A", "G", 2000, 1));
+        List<Book> first = catalog.page(SortedCatalog.Order.TITLE, null, 2);
+        assertEquals(List.of(books.get(1), books.get(0)), first);
+        assertTrue(catalog.page(SortedCatalog.Order.TITLE, first.get(1), 2).isEmpty());
+    }
+
+    @Test
+    void unknownOrderFallsBackToIsbn() {
+        assertEquals(SortedCatalog.Order.ISBN, SortedCatalog.Order.of("shelf"));
+        assertEquals(SortedCatalog.Order.TITLE, SortedCatalog.Order.of("Title"));
+    }
+}
@@ -0,0 +1,198 @@
+package com.library.management.loans;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.library.management.models.Loan;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoanLedgerTest {
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long LOAN_PERIOD = 21 * 24 * HOUR;
+    private static final int USERS = 200_000;
+    private static final int BOOKS = 100_000;
+
+    @Test
+    void indexesLoansByUserAndIsbn() {
+        LoanLedger ledger = new LoanLedger(MINUTE, 0);
+        Loan first = new Loan("111", 0, 10 * MINUTE, 0);
+        Loan second = new Loan("222", 0, 20 * MINUTE, 0);
+        ledger.add("u1", first);
+        ledger.add("u1", second);
+        ledger.add("u2", new Loan("111", 0, 30 * MINUTE, 0));
+
+        assertEquals(List.of(first, second), ledger.getLoans("u1"));
+        assertEquals(List.of("u1", "u2"), ledger.getBorrowers("111"));
+        assertEquals(3, ledger.size());
+
+        assertSame(first, ledger.remove("u1", "111"));
+        assertNull(ledger.remove("u1", "111"));
+        assertEquals(List.of("u2"), ledger.getBorrowers("111"));
+        assertEquals(2, ledger.size());
+
+        // A renewal replaces the loan and its due date
+        ledger.add("u1", second.renewed(40 * MINUTE));
+        assertEquals(1, ledger.get("u1", "222").getRenewals());
+        assertEquals(2, ledger.size());
+        assertEquals(1, ledger.advance(35 * MINUTE, (userId, loan) -> assertEquals("u2", userId)));
+        assertTrue(ledger.isOverdue("u2", "111"));
+        assertFalse(ledger.isOverdue("u1", "222"));
+        assertEquals(1, ledger.getOverdueCount());
+    }
+
+    // Two simulated years of hourly clock steps over millions of borrows,
+    // returns and renewals. Each overdue notice fires exactly once, in the
+    // step its due date falls in, and returned or renewed loans never fire.
+    @Test
+    void simulatedClockOverMillionsOfLoans() {
+        Random random = new Random(42);
+        String[] users = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = "u" + i;
+        }
+        String[] isbns = new String[BOOKS];
+        for (int i = 0; i < BOOKS; i++) {
+            isbns[i] = "i" + i;
+        }
+
+        long start = 1_700_000_000_000L / HOUR * HOUR;
+        long now = start;
+        LoanLedger ledger = new LoanLedger(MINUTE, now);
+        Map<Long, Loan> open = new HashMap<>();
+        long[] keys = new long[400_000];
+        int keyCount = 0;
+        Set<Long> overdue = new HashSet<>();
+        long borrowed = 0;
+        long notices = 0;
+
+        for (int step = 0; step < 2 * 365 * 24; step++) {
+            // Borrow, then return and renew at random, keeping roughly 100k loans out
+            for (int i = 0; i < 120; i++) {
+                int user = random.nextInt(USERS);
+                int book = random.nextInt(BOOKS);
+                long key = (long) user * BOOKS + book;
+                if (open.containsKey(key)) {
+                    continue;
+                }
+                Loan loan = new Loan(isbns[book], now, now + LOAN_PERIOD - random.nextInt(60) * MINUTE, 0);
+                ledger.add(users[user], loan);
+                open.put(key, loan);
+                keys[keyCount++] = key;
+                borrowed++;
+            }
+            while (keyCount > 100_000 - random.nextInt(2000)) {
+                int index = random.nextInt(keyCount);
+                long key = keys[index];
+                keys[index] = keys[--keyCount];
+                Loan loan = open.remove(key);
+                assertSame(loan, ledger.remove(users[(int) (key / BOOKS)], isbns[(int) (key % BOOKS)]));
+                overdue.remove(key);
+            }
+            for (int i = 0; i < 20; i++) {
+                long key = keys[random.nextInt(keyCount)];
+                Loan loan = open.get(key).renewed(now + LOAN_PERIOD);
+                ledger.add(users[(int) (key / BOOKS)], loan);
+                open.put(key, loan);
+                overdue.remove(key);
+            }
+
+            long previous = now;
+            now += HOUR;
+            long at = now;
+            notices += ledger.advance(now, (userId, loan) -> {
+                assertTrue(loan.getDueAt() <= at, "early notice for " + loan);
+                assertTrue(loan.getDueAt() > previous, "late notice for " + loan);
+                long key = Long.parseLong(userId.substring(1)) * BOOKS + Long.parseLong(loan.getIsbn().substring(1));
+                assertSame(open.get(key), loan, "notice for a loan no longer open");
+                assertTrue(overdue.add(key), "second notice for " + loan);
+            });
+            assertEquals(open.size(), ledger.size());
+            assertEquals(overdue.size(), ledger.getOverdueCount());
+
+            if (step % 2000 == 0) {
+                for (Map.Entry<Long, Loan> entry : open.entrySet()) {
+                    assertEquals(entry.getValue().getDueAt() <= now, overdue.contains(entry.getKey()));
+                }
+            }
+        }
+        assertTrue(borrowed > 2_000_000, "only " + borrowed + " loans");
+        assertTrue(notices > 100_000, "only " + notices + " notices");
+    }
+
+    // Desks borrowing, renewing and returning for their own users while the
+    // clock moves leave the ledger holding exactly the loans still open
+    @Test
+    void concurrentDesksKeepTheIndexesConsistent() throws Exception {
+        LoanLedger ledger = new LoanLedger(MINUTE, 0);
+        int desks = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(desks + 1);
+        try {
+            List<Future<Map<String, Loan>>> futures = new ArrayList<>();
+            for (int desk = 0; desk < desks; desk++) {
+                int seed = desk;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    Map<String, Loan> open = new HashMap<>();
+                    for (int i = 0; i < 50_000; i++) {
+                        String userId = "d" + seed + "u" + random.nextInt(50);
+                        String isbn = "b" + random.nextInt(200);
+                        String key = userId + "/" + isbn;
+                        if (random.nextInt(3) == 0) {
+                            assertSame(open.remove(key), ledger.remove(userId, isbn));
+                        } else {
+                            Loan loan = new Loan(isbn, 0, (1 + random.nextInt(600)) * MINUTE, 0);
+                            ledger.add(userId, loan);
+                            open.put(key, loan);
+                        }
+                    }
+                    return open;
+                }));
+            }
+            Future<?> clock = executor.submit(() -> {
+                for (int minute = 1; minute <= 300; minute++) {
+                    ledger.advance(minute * MINUTE, (userId, loan) -> { });
+                }
+            });
+
+            Map<String, Loan> open = new HashMap<>();
+            for (Future<Map<String, Loan>> future : futures) {
+                open.putAll(future.get());
+            }
+            clock.get();
+            assertEquals(open.size(), ledger.size());
+            Set<String> borrowed = new HashSet<>();
+            for (int book = 0; book < 200; book++) {
+                for (String userId : ledger.getBorrowers("b" + book)) {
+                    assertTrue(borrowed.add(userId + "/b" + book));
+                }
+            }
+            assertEquals(open.keySet(), borrowed);
+            for (Map.Entry<String, Loan> entry : open.entrySet()) {
+                String[] key = entry.getKey().split("/");
+                assertSame(entry.getValue(), ledger.get(key[0], key[1]));
+            }
+
+            int reported = ledger.advance(1000 * MINUTE, (userId, loan) -> { });
+            assertEquals(open.size(), ledger.getOverdueCount());
+            assertTrue(reported <= open.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.library.management.loans;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+    private static final long TICK = 1000;
+
+    // Deadlines spread from the past to beyond the top wheel fire exactly once,
+    // never early and at most a tick late, unless cancelled first
+    @Test
+    void timersFireOnceWithinATickOfTheirDeadline() {
+        Random random = new Random(5);
+        long now = 1_700_000_000_000L;
+        TimerWheel<Integer> wheel = new TimerWheel<>(TICK, now);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        List<TimerWheel.Timer<Integer>> timers = new ArrayList<>();
+        long[] ranges = {10 * TICK, 5000 * TICK, 300_000 * TICK, 20_000_000 * TICK};
+        for (int key = 0; key < 100_000; key++) {
+            long deadline = now - 5 * TICK + (long) (random.nextDouble() * ranges[key % ranges.length]);
+            deadlines.put(key, deadline);
+            timers.add(wheel.schedule(key, deadline));
+        }
+        Set<Integer> cancelled = new HashSet<>();
+        for (int key = 0; key < timers.size(); key += 3) {
+            assertTrue(wheel.cancel(timers.get(key)));
+            assertFalse(wheel.cancel(timers.get(key)));
+            cancelled.add(key);
+        }
+        assertEquals(timers.size() - cancelled.size(), wheel.size());
+
+        Set<Integer> fired = new HashSet<>();
+        long end = now + ranges[ranges.length - 1] + 10 * TICK;
+        while (now < end) {
+            // Uneven steps, from a fraction of a tick to a few thousand ticks
+            now += 1 + (long) (random.nextDouble() * random.nextDouble() * 4000 * TICK);
+            long at = now;
+            wheel.advance(at, key -> {
+                assertTrue(fired.add(key), "fired twice: " + key);
+                assertFalse(cancelled.contains(key), "cancelled timer fired: " + key);
+                assertTrue(deadlines.get(key) <= at, "fired early: " + key);
+            });
+        }
+        assertEquals(timers.size() - cancelled.size(), fired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    // Stepping a tick at a time, each timer fires in the first step at or
+    // after its deadline rounded up to a tick
+    @Test
+    void tickByTickFiresInTheDeadlineTick() {
+        long start = 123 * TICK + 400;
+        TimerWheel<Long> wheel = new TimerWheel<>(TICK, start);
+        Random random = new Random(9);
+        for (int i = 0; i < 20_000; i++) {
+            long deadline = start + (long) (random.nextDouble() * 300_000 * TICK);
+            wheel.schedule(deadline, deadline);
+        }
+        for (long now = start; wheel.size() > 0; now += TICK) {
+            long at = now;
+            wheel.advance(at, deadline -> {
+                long roundedUp = (deadline + TICK - 1) / TICK * TICK;
+                assertTrue(roundedUp <= at, "early: " + deadline + " at " + at);
+                assertTrue(roundedUp > at - TICK, "late: " + deadline + " at " + at);
+            });
+        }
+    }
+
+    // Timers scheduled from a handler fire in the same advance when already due
+    @Test
+    void handlerCanScheduleMoreTimers() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(TICK, 0);
+        List<Integer> fired = new ArrayList<>();
+        Consumer<Integer> handler = key -> {
+            fired.add(key);
+            if (key < 3) {
+                wheel.schedule(key + 1, key % 2 == 0 ? 9 * TICK : 20 * TICK);
+            }
+        };
+        wheel.schedule(1, 5 * TICK);
+        assertEquals(1, wheel.advance(10 * TICK, handler));
+        assertEquals(List.of(1), fired);
+        assertEquals(2, wheel.advance(20 * TICK, handler));
+        assertEquals(List.of(1, 2, 3), fired);
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,109 @@
+package com.library.management.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+    private static final int LAST_BUCKET = (64 - 5) * 32 - 1;
+
+    // Values below 32 get a bucket each; above, every bucket holds the
+    // values between the previous bucket's upper bound and its own, and is
+    // at most 1/32 of its lowest value wide
+    @Test
+    void bucketsTileTheRangeWithinAThirtySecond() {
+        for (int value = 0; value < 32; value++) {
+            assertEquals(value, LatencyHistogram.bucketOf(value));
+            assertEquals(value, LatencyHistogram.upperBound(value));
+        }
+        for (int bucket = 32; bucket <= LAST_BUCKET; bucket++) {
+            long lower = LatencyHistogram.upperBound(bucket - 1) + 1;
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(lower), "lower bound of " + bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(upper), "upper bound of " + bucket);
+            assertTrue(upper - lower + 1 <= Math.max(1, lower / 32), "width of " + bucket);
+        }
+        assertEquals(LAST_BUCKET, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LAST_BUCKET));
+        for (int exponent = 5; exponent < 63; exponent++) {
+            long power = 1L << exponent;
+            assertEquals(LatencyHistogram.bucketOf(power - 1) + 1, LatencyHistogram.bucketOf(power));
+        }
+    }
+
+    // Each percentile is reported as at least the exact value from the
+    // sorted sample and no more than about 3% above it
+    @Test
+    void percentilesTrackASortedSample() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(14);
+        long[] sample = new long[200_000];
+        long sum = 0;
+        for (int i = 0; i < sample.length; i++) {
+            // Log-normal around 50 µs with a long tail
+            sample[i] = (long) (50_000 * Math.exp(random.nextGaussian()));
+            histogram.record(sample[i]);
+            sum += sample[i];
+        }
+        Arrays.sort(sample);
+        for (double percentile : new double[] {1, 50, 90, 99, 99.9}) {
+            long exact = sample[(int) Math.ceil(sample.length * percentile / 100) - 1];
+            long reported = histogram.getPercentileNanos(percentile);
+            assertTrue(reported >= exact, percentile + ": " + reported + " < " + exact);
+            assertTrue(reported <= exact + exact / 32, percentile + ": " + reported + " > " + exact);
+        }
+        assertEquals(sample.length, histogram.getCount());
+        assertEquals((double) sum / sample.length, histogram.getMeanNanos(), 1e-6);
+        assertEquals(sample[sample.length - 1], histogram.getMaxNanos());
+        assertEquals(sample[sample.length - 1], histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    void maxAndResetAndNegativeDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+        histogram.record(1_000);
+        histogram.record(-5);
+        histogram.record(3_000_000);
+        assertEquals(3, histogram.getCount());
+        assertEquals(3_000_000, histogram.getMaxNanos());
+        assertEquals(0, histogram.getPercentileNanos(1));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getMeanNanos());
+        assertEquals(0, histogram.getPercentileNanos(99));
+        histogram.record(700);
+        assertEquals(700, histogram.getMaxNanos());
+        assertEquals(700, histogram.getPercentileNanos(50));
+    }
+
+    // Measured with the JVM's per-thread allocation counter, where it has one
+    @Test
+    void recordingDoesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        LatencyHistogram histogram = new LatencyHistogram();
+        long thread = Thread.currentThread().getId();
+        long value = 1;
+        for (int i = 0; i < 100_000; i++) {
+            value = value * 6364136223846793005L + 1442695040888963407L;
+            histogram.record(value >>> 30);
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1_000_000; i++) {
+            value = value * 6364136223846793005L + 1442695040888963407L;
+            histogram.record(value >>> 30);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue(allocated < 4096, allocated + " bytes allocated");
+    }
+}
@@ -0,0 +1,88 @@
+package com.library.management.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReservationsTest {
+    @Test
+    void queueKeepsOrderAndRejectsDuplicates() {
+        Reservations reservations = new Reservations();
+        assertTrue(reservations.enqueue("a"));
+        assertTrue(reservations.enqueue("b"));
+        assertTrue(reservations.enqueue("c"));
+        assertFalse(reservations.enqueue("b"));
+
+        assertEquals(2, reservations.position("b"));
+        assertTrue(reservations.cancel("b"));
+        assertFalse(reservations.cancel("b"));
+        assertEquals(-1, reservations.position("b"));
+        assertEquals(2, reservations.position("c"));
+
+        assertEquals("a", reservations.poll());
+        reservations.addHold("a", 500);
+        assertEquals(0, reservations.position("a"));
+        assertEquals(500, reservations.holdExpiry("a"));
+        // A user with a copy on hold cannot queue again until it is released
+        assertFalse(reservations.enqueue("a"));
+        assertEquals(1, reservations.position("c"));
+
+        assertEquals("c", reservations.poll());
+        assertNull(reservations.poll());
+        assertFalse(reservations.hasWaiters());
+        assertTrue(reservations.removeHold("a"));
+        assertEquals(-1, reservations.holdExpiry("a"));
+        assertTrue(reservations.isEmpty());
+    }
+
+    // Random enqueues, polls and cancels agree with a plain list, through compaction
+    @Test
+    void positionsMatchAPlainQueue() {
+        Reservations reservations = new Reservations();
+        LinkedList<String> expected = new LinkedList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 20_000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                String userId = "user-" + random.nextInt(300);
+                assertEquals(!expected.contains(userId), reservations.enqueue(userId));
+                if (!expected.contains(userId)) {
+                    expected.add(userId);
+                }
+            } else if (operation < 8) {
+                assertEquals(expected.poll(), reservations.poll());
+            } else {
+                String userId = "user-" + random.nextInt(300);
+                assertEquals(expected.remove(userId), reservations.cancel(userId));
+            }
+            if (i % 100 == 0) {
+                assertEquals(expected, reservations.getWaiting());
+                for (int position = 0; position < expected.size(); position++) {
+                    assertEquals(position + 1, reservations.position(expected.get(position)));
+                }
+            }
+        }
+        assertEquals(expected.size(), reservations.getWaitingCount());
+    }
+
+    @Test
+    void jsonFormRestoresQueueAndHolds() {
+        Reservations reservations = new Reservations(new ArrayList<>(Arrays.asList("x", "y")), null);
+        reservations.addHold("z", 42);
+        Reservations copy = new Reservations(reservations.getWaiting(), reservations.getHolds());
+        assertEquals(Arrays.asList("x", "y"), copy.getWaiting());
+        assertEquals(0, copy.position("z"));
+        assertEquals(2, copy.position("y"));
+        List<String> holders = new ArrayList<>(copy.getHolds().keySet());
+        assertEquals(Arrays.asList("z"), holders);
+    }
+}
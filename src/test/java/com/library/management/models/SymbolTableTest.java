@@ -0,0 +1,182 @@
+package com.library.management.models;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.management.query.BookQuery;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SymbolTableTest {
+    @Test
+    void valuesRoundTripThroughTheirIds() {
+        SymbolTable table = new SymbolTable();
+        assertEquals(-1, table.intern(null));
+        assertNull(table.get(-1));
+        assertEquals(-1, table.lookup("Fiction"));
+
+        // Past the initial capacity, so the array has to grow
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(table.intern("Author " + i));
+        }
+        for (int i = 0; i < 200; i++) {
+            assertEquals("Author " + i, table.get(ids.get(i)));
+            assertEquals(ids.get(i), table.intern(new String("Author " + i)));
+            assertEquals(ids.get(i), table.lookup("Author " + i));
+        }
+        assertEquals(200, table.size());
+        assertEquals(-1, table.lookup("Author 200"));
+        assertEquals(200, table.size());
+    }
+
+    // Threads interning the same values must all get the same ids
+    @Test
+    void concurrentInterningAgreesOnIds() throws Exception {
+        SymbolTable table = new SymbolTable();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int offset = t;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    int[] ids = new int[1000];
+                    for (int i = 0; i < ids.length; i++) {
+                        int value = (i + offset * 250) % ids.length;
+                        ids[value] = table.intern("Genre " + value);
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+            int[] first = results.get(0).get();
+            for (Future<int[]> result : results) {
+                assertArrayEquals(first, result.get());
+            }
+            assertEquals(1000, table.size());
+            for (int i = 0; i < first.length; i++) {
+                assertEquals("Genre " + i, table.get(first[i]));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void matchingSelectsEverySpelling() {
+        SymbolTable table = new SymbolTable();
+        int lower = table.intern("fiction");
+        int upper = table.intern("FICTION");
+        int other = table.intern("History");
+        BitSet matches = table.matching("Fiction"::equalsIgnoreCase);
+        assertTrue(matches.get(lower));
+        assertTrue(matches.get(upper));
+        assertFalse(matches.get(other));
+    }
+
+    // Books encoded against the same symbols share ids for equal values, and
+    // every external form still carries the strings
+    @Test
+    void booksKeepTheirAuthorAndGenreThroughEveryForm() throws Exception {
+        BookSymbols symbols = new BookSymbols();
+        Book book = new Book("1", "Emma", new String("Jane Austen"), "Fiction", 1815, 2);
+        Book other = new Book("2", "Persuasion", "Jane Austen", null, 1817, 1);
+        book.setSymbols(symbols);
+        other.setSymbols(symbols);
+        assertEquals(book.getAuthorId(), other.getAuthorId());
+        assertEquals("Jane Austen", other.getAuthor());
+        assertNull(other.getGenre());
+        assertEquals(-1, other.getGenreId());
+
+        book.setGenre("Romance");
+        assertEquals("Romance", book.getGenre());
+        assertEquals(symbols.getGenres().lookup("Romance"), book.getGenreId());
+
+        ObjectMapper mapper = new ObjectMapper();
+        Book fromJson = mapper.readValue(mapper.writeValueAsString(book), Book.class);
+        assertEquals("Jane Austen", fromJson.getAuthor());
+        assertEquals("Romance", fromJson.getGenre());
+        assertEquals(book.getGenreId(), symbols.genreId(fromJson));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(book);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Book deserialized = (Book) in.readObject();
+            assertEquals("Jane Austen", deserialized.getAuthor());
+            assertEquals("Romance", deserialized.getGenre());
+            assertEquals(book.getAuthorId(), symbols.authorId(deserialized));
+        }
+    }
+
+    // Each set of symbols numbers only the values of its own books
+    @Test
+    void symbolsAreSeparatePerCatalog() {
+        BookSymbols first = new BookSymbols();
+        BookSymbols second = new BookSymbols();
+        Book drama = new Book("1", "A", "Author", "Drama", 2000, 1);
+        Book poetry = new Book("2", "B", "Author", "Poetry", 2000, 1);
+        drama.setSymbols(first);
+        poetry.setSymbols(second);
+        assertEquals(0, drama.getGenreId());
+        assertEquals(0, poetry.getGenreId());
+        assertEquals(-1, second.getGenres().lookup("Drama"));
+        assertEquals(1, first.getGenres().size());
+
+        // Moving a book re-encodes it without changing what it reads as
+        poetry.setSymbols(first);
+        assertEquals("Poetry", poetry.getGenre());
+        assertEquals(first.getGenres().lookup("Poetry"), poetry.getGenreId());
+        assertEquals(1, first.getAuthors().size());
+    }
+
+    @Test
+    void genreQueryMatchesEveryCaseOfTheGenre() {
+        Book lower = new Book("1", "A", "Author", "poetry", 2000, 1);
+        Book upper = new Book("2", "B", "Author", "POETRY", 2000, 1);
+        Book other = new Book("3", "C", "Author", "Drama", 2000, 1);
+        Book none = new Book("4", "D", "Author", null, 2000, 1);
+        BookQuery query = new BookQuery().genre("Poetry");
+        assertTrue(query.matches(lower));
+        assertTrue(query.matches(upper));
+        assertFalse(query.matches(other));
+        assertFalse(query.matches(none));
+
+        BookSymbols symbols = new BookSymbols();
+        for (Book book : List.of(lower, upper, other, none)) {
+            book.setSymbols(symbols);
+        }
+        Predicate<Book> matcher = query.matcher(symbols);
+        assertTrue(matcher.test(lower));
+        assertTrue(matcher.test(upper));
+        assertFalse(matcher.test(other));
+        assertFalse(matcher.test(none));
+        assertNotEquals(lower.getGenreId(), upper.getGenreId());
+
+        // A spelling first seen after the matcher was made is still matched
+        Book later = new Book("5", "E", "Author", "PoEtRy", 2000, 1);
+        later.setSymbols(symbols);
+        assertTrue(matcher.test(later));
+    }
+}
@@ -0,0 +1,124 @@
+package com.library.management.persistence;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.management.models.Book;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogFeedTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CatalogFeed feed = new CatalogFeed(objectMapper);
+
+    @TempDir
+    Path directory;
+
+    private Path file(String name, String... lines) throws IOException {
+        return Files.write(directory.resolve(name), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    private static List<String> isbns(CatalogFeed.Result result) {
+        return result.getBooks().stream().map(Book::getIsbn).collect(Collectors.toList());
+    }
+
+    private String json(Book book) throws IOException {
+        return objectMapper.writeValueAsString(book);
+    }
+
+    @Test
+    void csvKeepsFirstOccurrenceAndReportsBadRows() throws IOException {
+        CatalogFeed.Result result = feed.read(file("feed.csv",
+                "isbn,title,author,genre,year,totalCopies,availableCopies",
+                "1,\"Dune, Part One\",Frank Herbert,Sci-Fi,1965,3,2",
+                "2,\"The \"\"Quoted\"\" Title\",,Poetry,1990,1",
+                "",
+                "1,Dune Again,Someone,Sci-Fi,1966,1",
+                "3,Bad Year,Author,Genre,nineteen,1",
+                ",No ISBN,Author,Genre,2000,1",
+                "4,Too Many Available,Author,Genre,2000,1,2",
+                "5,Short,Row",
+                "6,\"Unterminated,Author,Genre,2000,1",
+                "7,Last,Author,Genre,2001,4"));
+
+        assertEquals(Arrays.asList("1", "2", "7"), isbns(result));
+        assertEquals(9, result.getRecords());
+        assertEquals(5, result.getInvalid());
+        assertEquals(1, result.getDuplicates());
+        assertEquals(5, result.getErrors().size());
+        assertTrue(result.getErrors().get(0).startsWith("Line 6: "), result.getErrors().get(0));
+
+        Book dune = result.getBooks().get(0);
+        assertEquals("Dune, Part One", dune.getTitle());
+        assertEquals(2, dune.getAvailableCopies());
+        Book quoted = result.getBooks().get(1);
+        assertEquals("The \"Quoted\" Title", quoted.getTitle());
+        assertNull(quoted.getAuthor());
+        assertEquals(1, quoted.getAvailableCopies());
+    }
+
+    @Test
+    void jsonLinesKeepsFirstOccurrenceAndReportsBadRows() throws IOException {
+        CatalogFeed.Result result = feed.read(file("feed.jsonl",
+                json(new Book("1", "First", "Author", "Genre", 2000, 2)),
+                "{\"isbn\": \"2\", \"title\": \"Unknown fields are ignored\", \"shelf\": \"B4\", \"totalCopies\": 1}",
+                json(new Book("1", "Duplicate", "Author", "Genre", 2000, 2)),
+                "{not json",
+                json(new Book("3", "", "Author", "Genre", 2000, 2))));
+
+        assertEquals(Arrays.asList("1", "2"), isbns(result));
+        assertEquals("First", result.getBooks().get(0).getTitle());
+        assertEquals(2, result.getInvalid());
+        assertEquals(1, result.getDuplicates());
+    }
+
+    // The first occurrence wins even when the repeat lands in a later chunk
+    @Test
+    void duplicatesAcrossChunksKeepTheEarliestLine() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 120_000; i++) {
+            int isbn = i < 60_000 ? i : i - 60_000;
+            lines.add(isbn + ",Title " + i + ",Author,Genre,2000,1");
+        }
+        Path csv = Files.write(directory.resolve("large.csv"), lines, StandardCharsets.UTF_8);
+
+        CatalogFeed.Result result = feed.read(csv);
+        assertEquals(60_000, result.getBooks().size());
+        assertEquals(60_000, result.getDuplicates());
+        for (int i = 0; i < 60_000; i += 997) {
+            Book book = result.getBooks().get(i);
+            assertEquals(String.valueOf(i), book.getIsbn());
+            assertEquals("Title " + i, book.getTitle());
+        }
+    }
+
+    @Test
+    void exportedCatalogImportsUnchanged() throws IOException {
+        Book awkward = new Book("1", "Commas, \"quotes\" and Ünïcödé", null, "Genre", 1999, 3);
+        awkward.setAvailableCopies(1);
+        List<Book> books = Arrays.asList(awkward, new Book("2", "Plain", "Author", null, 2001, 2));
+
+        for (String name : Arrays.asList("export.csv", "export.jsonl")) {
+            Path file = directory.resolve(name);
+            feed.write(file, books);
+            CatalogFeed.Result result = feed.read(file);
+            assertEquals(0, result.getInvalid(), name);
+            assertEquals(books.size(), result.getBooks().size(), name);
+            for (int i = 0; i < books.size(); i++) {
+                assertEquals(json(books.get(i)), json(result.getBooks().get(i)), name);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.library.management.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void entriesSurviveReopening() throws IOException {
+        Path file = directory.resolve("journal.log");
+        Journal journal = new Journal(file, new ObjectMapper(), Durability.FLUSH_BEFORE_ACK, 1, 0, 16);
+        journal.recover(0);
+        for (int i = 1; i <= 3; i++) {
+            journal.awaitDurable(journal.append(JournalEntry.removeBook("isbn-" + i)));
+        }
+        journal.close();
+
+        Journal reopened = new Journal(file, new ObjectMapper(), Durability.FLUSH_BEFORE_ACK, 1, 0, 16);
+        List<JournalEntry> entries = reopened.recover(1);
+        reopened.close();
+        assertEquals(2, entries.size());
+        assertEquals(3, entries.get(1).getSequence());
+        assertEquals("isbn-3", entries.get(1).getIsbn());
+    }
+
+    // A failed fsync must fail the waiting entry and every later append,
+    // not acknowledge data that never reached the disk
+    @Test
+    void failedWriteIsReportedToWaiters() throws IOException {
+        for (Durability durability : new Durability[] {Durability.FLUSH_BEFORE_ACK, Durability.GROUP_COMMIT}) {
+            FailingChannel channel = new FailingChannel(FileChannel.open(directory.resolve(durability + ".log"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            Journal journal = new Journal(channel, new ObjectMapper(), durability, 4, 10, 16);
+            journal.recover(0);
+            journal.awaitDurable(journal.append(JournalEntry.removeBook("before")));
+
+            channel.failing = true;
+            long lost = journal.append(JournalEntry.removeBook("lost"));
+            assertThrows(IOException.class, () -> journal.awaitDurable(lost));
+            assertThrows(IOException.class, () -> journal.append(JournalEntry.removeBook("after")));
+            assertThrows(IOException.class, journal::sync);
+            channel.failing = false;
+            journal.close();
+        }
+    }
+
+    // Delegates to a real channel until told to fail writes and forces
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        volatile boolean failing;
+
+        FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        private void check() throws IOException {
+            if (failing) {
+                throw new IOException("No space left on device");
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            check();
+            return delegate.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            check();
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            check();
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            check();
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            check();
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
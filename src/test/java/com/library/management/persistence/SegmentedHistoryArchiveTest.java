@@ -0,0 +1,136 @@
+package com.library.management.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.library.management.models.HistoryEntry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SegmentedHistoryArchiveTest {
+    @TempDir
+    Path directory;
+
+    private static List<HistoryEntry> entries(String userId, long from, int count) {
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (long i = from; i < from + count; i++) {
+            entries.add(new HistoryEntry(userId + "-isbn-" + i, 1000 * i));
+        }
+        return entries;
+    }
+
+    private static List<String> text(List<HistoryEntry> entries) {
+        return entries.stream().map(HistoryEntry::toString).collect(Collectors.toList());
+    }
+
+    private static long segmentBytes(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            long total = 0;
+            for (Path file : files.collect(Collectors.toList())) {
+                total += Files.size(file);
+            }
+            return total;
+        }
+    }
+
+    // Many users share each segment; every page must hold exactly that
+    // user's entries for the range, before and after the runs are re-indexed
+    @Test
+    void pagesMatchWhatWasSpilled() throws IOException {
+        Map<String, List<HistoryEntry>> expected = new HashMap<>();
+        SegmentedHistoryArchive archive = new SegmentedHistoryArchive(directory);
+        Random random = new Random(3);
+        for (int round = 0; round < 20; round++) {
+            for (int user = 0; user < 200; user++) {
+                String userId = "user-" + user;
+                List<HistoryEntry> archived = expected.computeIfAbsent(userId, key -> new ArrayList<>());
+                List<HistoryEntry> spill = entries(userId, archived.size(), 1 + random.nextInt(32));
+                archive.append(userId, archived.size(), spill);
+                archived.addAll(spill);
+            }
+        }
+        assertPagesMatch(archive, expected, random);
+        archive.close();
+
+        SegmentedHistoryArchive reopened = new SegmentedHistoryArchive(directory);
+        try {
+            assertPagesMatch(reopened, expected, random);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void assertPagesMatch(SegmentedHistoryArchive archive, Map<String, List<HistoryEntry>> expected,
+                                         Random random) {
+        for (Map.Entry<String, List<HistoryEntry>> user : expected.entrySet()) {
+            List<HistoryEntry> all = user.getValue();
+            assertEquals(text(all), text(archive.read(user.getKey(), 0, all.size() + 10)));
+            for (int i = 0; i < 5; i++) {
+                int from = random.nextInt(all.size());
+                int limit = random.nextInt(50);
+                List<HistoryEntry> page = all.subList(from, Math.min(all.size(), from + limit));
+                assertEquals(text(page), text(archive.read(user.getKey(), from, limit)), user.getKey() + " @" + from);
+            }
+        }
+        assertEquals(0, archive.read("nobody", 0, 10).size());
+    }
+
+    // A range spilled again, as after a crash before the snapshot committed,
+    // is stored once and keeps the first copy
+    @Test
+    void respilledPositionsAreSkipped() throws IOException {
+        SegmentedHistoryArchive archive = new SegmentedHistoryArchive(directory);
+        archive.append("user", 0, entries("user", 0, 32));
+        archive.sync();
+        long size = segmentBytes(directory);
+
+        archive.append("user", 0, entries("user", 0, 32));
+        archive.sync();
+        assertEquals(size, segmentBytes(directory));
+
+        archive.append("user", 16, entries("user", 16, 32));
+        assertEquals(text(entries("user", 0, 48)), text(archive.read("user", 0, 100)));
+        archive.close();
+
+        SegmentedHistoryArchive reopened = new SegmentedHistoryArchive(directory);
+        try {
+            reopened.append("user", 40, entries("user", 40, 16));
+            assertEquals(text(entries("user", 0, 56)), text(reopened.read("user", 0, 100)));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    // A record torn by a crash is cut when the segment is reopened
+    @Test
+    void tornTailIsDropped() throws IOException {
+        SegmentedHistoryArchive archive = new SegmentedHistoryArchive(directory);
+        archive.append("user", 0, entries("user", 0, 10));
+        archive.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            Path segment = files.findFirst().orElseThrow(AssertionError::new);
+            Files.write(segment, new byte[] {0, 0, 0, 40, 0, 4, 'u'}, StandardOpenOption.APPEND);
+        }
+
+        SegmentedHistoryArchive reopened = new SegmentedHistoryArchive(directory);
+        try {
+            assertEquals(text(entries("user", 0, 10)), text(reopened.read("user", 0, 20)));
+            reopened.append("user", 10, entries("user", 10, 5));
+            assertEquals(text(entries("user", 5, 10)), text(reopened.read("user", 5, 20)));
+        } finally {
+            reopened.close();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.library.management.persistence;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.management.models.Admin;
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.User;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SnapshotStoreTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    private List<Book> books() {
+        Book plain = new Book("isbn-1", "Title", "Author", "Fiction", 1999, 3);
+        Book untagged = new Book("isbn-2", "No Author", null, null, 2005, 1);
+        Book unicode = new Book("isbn-3", "Ωμέγα – 東京", "Zoë", "fiction", 2020, 2);
+        return Arrays.asList(plain, untagged, unicode);
+    }
+
+    private List<User> users(List<Book> books) {
+        LibraryUser reader = new LibraryUser("user-1", "reader", "hash", "Reader", "reader@example.com");
+        reader.setMaxBooksAllowed(3);
+        reader.borrowBook(books.get(0));
+        reader.borrowBook(books.get(1));
+        reader.returnBook(books.get(1));
+        LibraryUser unnamed = new LibraryUser("user-2", "unnamed", "hash", null, null);
+        Admin admin = new Admin("admin-1", "admin", "hash", "Admin", "admin@example.com");
+        return Arrays.asList(reader, unnamed, admin);
+    }
+
+    // Every record as its JSON form, keyed by ISBN or user id
+    private Map<String, String> books(SnapshotStore store) throws IOException {
+        return json(readBooks(store), true);
+    }
+
+    private Map<String, String> users(SnapshotStore store) throws IOException {
+        return json(readUsers(store), false);
+    }
+
+    private Map<String, String> json(Collection<?> records, boolean books) {
+        Map<String, String> json = new TreeMap<>();
+        for (Object record : records) {
+            json.put(books ? ((Book) record).getIsbn() : ((User) record).getUserId(), json(record));
+        }
+        return json;
+    }
+
+    private String json(Object record) {
+        try {
+            return objectMapper.writeValueAsString(record);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private SnapshotStore write(String name, SnapshotFormat format, Collection<Book> books, Collection<User> users,
+                                long sequence) throws IOException {
+        new SnapshotStore(directory.resolve(name), objectMapper, format).write(books, users, sequence);
+        SnapshotStore store = new SnapshotStore(directory.resolve(name), objectMapper, format);
+        assertEquals(sequence, store.recover());
+        return store;
+    }
+
+    @Test
+    void jsonAndBinaryHoldTheSameRecords() throws IOException {
+        List<Book> books = books();
+        List<User> users = users(books);
+        SnapshotStore json = write("json", SnapshotFormat.JSON, books, users, 42);
+        SnapshotStore binary = write("binary", SnapshotFormat.BINARY, books, users, 42);
+
+        assertEquals(json(books, true), books(json));
+        assertEquals(json(books, true), books(binary));
+        assertEquals(json(users, false), users(json));
+        assertEquals(json(users, false), users(binary));
+        assertEquals(3, binary.getBookCount());
+        assertEquals(3, binary.getUserCount());
+    }
+
+    // A missing author or genre stays missing rather than becoming ""
+    @Test
+    void binaryKeepsNullAuthorAndGenre() throws IOException {
+        SnapshotStore binary = write("binary", SnapshotFormat.BINARY, books(), new ArrayList<>(), 1);
+        List<Book> read = new ArrayList<>();
+        binary.readBooks(read::add);
+        Book untagged = read.stream().filter(book -> book.getIsbn().equals("isbn-2")).findFirst().orElse(null);
+        assertNotNull(untagged);
+        assertNull(untagged.getAuthor());
+        assertNull(untagged.getGenre());
+    }
+
+    // JSON read back and written as binary, then binary read back and
+    // written as JSON, ends where it started
+    @Test
+    void convertingBetweenFormatsRoundTrips() throws IOException {
+        List<Book> books = books();
+        SnapshotStore json = write("json", SnapshotFormat.JSON, books, users(books), 5);
+
+        SnapshotStore binary = write("binary", SnapshotFormat.BINARY, readBooks(json), readUsers(json), 5);
+        SnapshotStore back = write("back", SnapshotFormat.JSON, readBooks(binary), readUsers(binary), 5);
+
+        assertEquals(books(json), books(back));
+        assertEquals(users(json), users(back));
+    }
+
+    private static List<Book> readBooks(SnapshotStore store) throws IOException {
+        List<Book> books = new ArrayList<>();
+        store.readBooks(books::add);
+        return books;
+    }
+
+    // Users are relinked to the snapshot's own books, as Library does on load
+    private static List<User> readUsers(SnapshotStore store) throws IOException {
+        Map<String, Book> catalog = new HashMap<>();
+        store.readBooks(book -> catalog.put(book.getIsbn(), book));
+        List<User> users = new ArrayList<>();
+        store.readUsers(user -> {
+            if (user instanceof LibraryUser) {
+                ((LibraryUser) user).relinkBooks(catalog::get);
+            }
+            users.add(user);
+        });
+        return users;
+    }
+}
@@ -0,0 +1,84 @@
+package com.library.management.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.library.management.index.SortedCatalog;
+import com.library.management.models.Book;
+
+class QueryExecutorTest {
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    // A low threshold and small leaves, so the parallel path splits the catalog many times
+    private final QueryExecutor parallel = new QueryExecutor(pool, 64);
+    private final QueryExecutor sequential = new QueryExecutor(pool, Integer.MAX_VALUE);
+    private final SortedCatalog catalog = new SortedCatalog();
+    private final List<Book> books = new ArrayList<>();
+
+    @AfterEach
+    void shutDown() {
+        pool.shutdownNow();
+    }
+
+    private void fill(int count) {
+        Random random = new Random(11);
+        for (int i = 0; i < count; i++) {
+            Book book = new Book(String.format("%06d", i), "Title " + random.nextInt(500),
+                    random.nextInt(20) == 0 ? null : "Author " + random.nextInt(100),
+                    "Genre " + random.nextInt(8), 1900 + random.nextInt(120), 1 + random.nextInt(3));
+            books.add(book);
+            catalog.add(book);
+        }
+    }
+
+    private Collection<Book> source(BookQuery query) {
+        return query.getOrder() == null ? books : catalog.view(query.getOrder());
+    }
+
+    private void assertSameResults(BookQuery query) {
+        List<Book> expected = sequential.execute(query, source(query), books.size());
+        assertEquals(expected, parallel.execute(query, source(query), books.size()));
+    }
+
+    // Splitting, merging and the early cutoff must give exactly the first
+    // matches a single in-order scan gives
+    @Test
+    void parallelScanMatchesSequentialScan() {
+        fill(20_000);
+        List<BookQuery> queries = new ArrayList<>();
+        queries.add(new BookQuery().genre("genre 3"));
+        queries.add(new BookQuery().titleContains("title 4").yearBetween(1950, 1999));
+        queries.add(new BookQuery().authorContains("AUTHOR 7").orderBy(SortedCatalog.Order.TITLE));
+        queries.add(new BookQuery().yearBetween(2000, 2019).orderBy(SortedCatalog.Order.YEAR).limit(25));
+        queries.add(new BookQuery().where(book -> book.getTotalCopies() == 3).orderBy(SortedCatalog.Order.AUTHOR)
+                .limit(5_000));
+        // Matches only near the end, so the limited scan has to go past the in-place prefix
+        queries.add(new BookQuery().where(book -> book.getIsbn().compareTo("019900") > 0).limit(10));
+        queries.add(new BookQuery().titleContains("no such title").limit(10));
+        for (BookQuery query : queries) {
+            assertSameResults(query);
+        }
+    }
+
+    @Test
+    void limitsAreExact() {
+        fill(5_000);
+        for (int limit : new int[] {0, 1, 63, 64, 65, 1_000}) {
+            BookQuery query = new BookQuery().orderBy(SortedCatalog.Order.ISBN).limit(limit);
+            List<Book> results = parallel.execute(query, source(query), books.size());
+            assertEquals(books.subList(0, limit), results);
+        }
+        BookQuery unlimited = new BookQuery().genre("genre 1").limit(Integer.MAX_VALUE);
+        List<Book> all = parallel.execute(unlimited, books, books.size());
+        assertTrue(all.stream().allMatch(book -> book.getGenre().equals("Genre 1")));
+        assertEquals(books.stream().filter(book -> book.getGenre().equals("Genre 1")).count(), all.size());
+    }
+}
@@ -0,0 +1,497 @@
+package com.library.management.replication;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.management.Library;
+import com.library.management.LibraryConfig;
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.Loan;
+import com.library.management.models.User;
+import com.library.management.persistence.SnapshotFormat;
+import com.library.management.persistence.SnapshotStore;
+import com.library.management.security.PasswordHasher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicationTest {
+    private static final Pattern PORT = Pattern.compile("(Replication|Library service) listening on port (\\d+)");
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private LibraryConfig config(String name) throws IOException {
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(Files.createDirectories(directory.resolve(name)));
+        config.setJmxEnabled(false);
+        config.setPasswordHashIterations(1000);
+        config.setSnapshotInterval(500);
+        config.setFailoverTimeoutMillis(1000);
+        return config;
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timed out waiting for " + what);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    // Everything a patron or the desk can observe, per book and per user
+    private static void assertSameState(Library expected, Library actual, int books, int users) {
+        for (int b = 0; b < books; b++) {
+            String isbn = "isbn-" + b;
+            Book want = expected.findBookByIsbn(isbn);
+            Book got = actual.findBookByIsbn(isbn);
+            if (want == null) {
+                assertEquals(null, got, isbn);
+                continue;
+            }
+            assertNotNull(got, isbn);
+            assertEquals(want.getAvailableCopies(), got.getAvailableCopies(), isbn);
+            assertEquals(want.getTimesBorrowed(), got.getTimesBorrowed(), isbn);
+            for (int u = 0; u < users; u++) {
+                assertEquals(expected.getReservationPosition("u" + u, isbn),
+                        actual.getReservationPosition("u" + u, isbn), isbn + " u" + u);
+            }
+        }
+        for (int u = 0; u < users; u++) {
+            String userId = "u" + u;
+            assertEquals(loans(expected.getLoans(userId)), loans(actual.getLoans(userId)), userId);
+            assertEquals(expected.getFinesOwed(userId), actual.getFinesOwed(userId), userId);
+        }
+        assertEquals(expected.getCopiesOnLoan(), actual.getCopiesOnLoan());
+        assertEquals(expected.findBooksByAuthor("Author 3").size(), actual.findBooksByAuthor("Author 3").size());
+        assertEquals(expected.getSortedBooks("title").size(), actual.getSortedBooks("title").size());
+    }
+
+    private static List<String> loans(List<Loan> loans) {
+        List<String> described = new ArrayList<>();
+        for (Loan loan : loans) {
+            described.add(loan.getIsbn() + "/" + loan.getDueAt() + "/" + loan.getRenewals());
+        }
+        return described;
+    }
+
+    // Concurrent circulation on the primary, a bulk import that skips the
+    // journal and a standby that joins midway all end up with the standby
+    // matching the primary, with indexes ready and its own journal current
+    @Test
+    void standbyConvergesWithABusyPrimary() throws Exception {
+        int books = 300;
+        int users = 60;
+        LibraryConfig primaryConfig = config("primary");
+        primaryConfig.setLoanPeriodMillis(50);
+        primaryConfig.setSnapshotInterval(100);
+        Library primary = new Library(primaryConfig);
+        ReplicationSource source = new ReplicationSource(primary, 0, 100_000, 50);
+        source.start();
+        for (int b = 0; b < books / 2; b++) {
+            primary.addBook(new Book("isbn-" + b, "Title " + b, "Author " + (b % 7), "Genre " + (b % 3), 2000, 2));
+        }
+        for (int u = 0; u < users; u++) {
+            primary.addUser(new LibraryUser("u" + u, "user" + u, "pw", "User " + u, u + "@example.com"));
+        }
+
+        LibraryConfig standbyConfig = config("standby");
+        StandbyLibrary standby = new StandbyLibrary(standbyConfig, "localhost", source.getPort());
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        Library promoted = null;
+        Path replicaDirectory = null;
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long seed = t;
+                running.add(workers.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 1000; i++) {
+                        String userId = "u" + random.nextInt(users);
+                        String isbn = "isbn-" + random.nextInt(books);
+                        switch (random.nextInt(6)) {
+                            case 0:
+                            case 1:
+                                primary.borrowBook(userId, isbn);
+                                break;
+                            case 2:
+                                primary.returnBook(userId, isbn);
+                                break;
+                            case 3:
+                                primary.reserveBook(userId, isbn);
+                                break;
+                            case 4:
+                                primary.renewLoan(userId, isbn);
+                                break;
+                            default:
+                                if (random.nextBoolean()) {
+                                    primary.cancelReservation(userId, isbn);
+                                } else {
+                                    primary.payFines(userId);
+                                }
+                                break;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            standby.start();
+            List<Book> imported = new ArrayList<>();
+            for (int b = books / 2; b < books; b++) {
+                imported.add(new Book("isbn-" + b, "Title " + b, "Author " + (b % 7), "Genre " + (b % 3), 2001, 1));
+            }
+            // At least snapshotInterval books, so the import goes straight into a snapshot
+            assertEquals(books / 2, primary.addBooks(imported).size());
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+            primary.removeBook("isbn-0");
+
+            await(() -> standby.getLibrary() != null && standby.getAppliedPosition() == source.getPosition()
+                    && standby.getPrimaryPosition() == source.getPosition(), "the standby to catch up");
+            Library replica = standby.getLibrary();
+            assertTrue(replica.isStandby());
+            assertSameState(primary, replica, books, users);
+            assertEquals(0, standby.getLagEntries());
+            assertTrue(source.getShippedEntries() > 0);
+            assertTrue(replica.getMetrics().getGauges().containsKey("replicationApplyRate"));
+            assertTrue(primary.getMetrics().getGauges().get("replicationStandbys") >= 1);
+            assertThrows(IllegalStateException.class, () -> replica.borrowBook("u1", "isbn-1"));
+
+            // Take over: the promoted library serves and persists changes of its own
+            source.close();
+            primary.close();
+            promoted = standby.promote();
+            assertFalse(promoted.isStandby());
+            replicaDirectory = standby.getReplicaDirectory();
+            assertEquals(standbyConfig.getDataDirectory(), replicaDirectory.getParent());
+            promoted.addBook(new Book("isbn-new", "After Failover", "Author 1", "Genre 1", 2024, 1));
+            promoted.addUser(new LibraryUser("late", "late", "pw", "Late", "late@example.com"));
+            assertTrue(promoted.borrowBook("late", "isbn-new"));
+        } finally {
+            workers.shutdownNow();
+            source.close();
+            primary.close();
+            standby.close();
+            if (promoted != null) {
+                promoted.close();
+            }
+        }
+
+        // The standby's journal and snapshots kept up, so its replica reopens
+        // to the same state as the primary plus the change made after failover
+        LibraryConfig reopenConfig = config("primary");
+        Library reopenedPrimary = new Library(reopenConfig);
+        reopenConfig = config("standby");
+        reopenConfig.setDataDirectory(replicaDirectory);
+        Library reopenedReplica = new Library(reopenConfig);
+        try {
+            assertTrue(reopenedReplica.returnBook("late", "isbn-new"));
+            assertTrue(reopenedReplica.removeBook("isbn-new"));
+            assertSameState(reopenedPrimary, reopenedReplica, books, users);
+        } finally {
+            reopenedReplica.close();
+        }
+
+        // A new standby in the same data directory builds a replica of its
+        // own and leaves the promoted one in place
+        ReplicationSource restarted = new ReplicationSource(reopenedPrimary, 0, 1000, 50);
+        restarted.start();
+        StandbyLibrary next = new StandbyLibrary(config("standby"), "localhost", restarted.getPort());
+        try {
+            next.start();
+            await(() -> next.getLibrary() != null, "the new standby to synchronize");
+            assertNotEquals(replicaDirectory, next.getReplicaDirectory());
+            assertTrue(Files.isDirectory(replicaDirectory));
+            try (Stream<Path> files = Files.list(replicaDirectory)) {
+                assertTrue(files.count() > 1);
+            }
+        } finally {
+            next.close();
+            restarted.close();
+            reopenedPrimary.close();
+        }
+    }
+
+    // The stream carries password hashes: it stays on loopback unless told
+    // otherwise, needs a secret anywhere else, and a standby without the
+    // secret is sent nothing
+    @Test
+    void onlyStandbysWithTheSecretAreSentTheLibrary() throws Exception {
+        Library primary = new Library(config("primary"));
+        primary.addUser(new LibraryUser("u1", "user1", "pw", "User 1", "u1@example.com"));
+        assertThrows(IllegalArgumentException.class, () -> new ReplicationSource(primary,
+                InetAddress.getByName("0.0.0.0"), 0, 1000, 50, null));
+        ReplicationSource open = new ReplicationSource(primary, 0, 1000, 50);
+        assertTrue(open.getAddress().isLoopbackAddress());
+        open.close();
+
+        ReplicationSource source = new ReplicationSource(primary, InetAddress.getLoopbackAddress(), 0, 1000, 50,
+                "shared secret");
+        source.start();
+        LibraryConfig wrongConfig = config("wrong");
+        wrongConfig.setReplicationSecret("guess");
+        StandbyLibrary wrong = new StandbyLibrary(wrongConfig, "localhost", source.getPort());
+        StandbyLibrary none = new StandbyLibrary(config("none"), "localhost", source.getPort());
+        LibraryConfig rightConfig = config("right");
+        rightConfig.setReplicationSecret("shared secret");
+        StandbyLibrary right = new StandbyLibrary(rightConfig, "localhost", source.getPort());
+        try {
+            wrong.start();
+            none.start();
+            right.start();
+            await(() -> right.getLibrary() != null && right.getLibrary().getUserByUsername("user1") != null,
+                    "the standby with the secret to synchronize");
+            Thread.sleep(500);
+            assertNull(wrong.getLibrary());
+            assertNull(none.getLibrary());
+            assertEquals(1, source.getStandbyCount());
+        } finally {
+            wrong.close();
+            none.close();
+            right.close();
+            source.close();
+            primary.close();
+        }
+    }
+
+    private static boolean allHashed(Library library) {
+        return library.getAllUsers().stream().allMatch(user -> PasswordHasher.isHash(user.getPassword()));
+    }
+
+    // Passwords hashed by the primary's migration reach the standby's memory
+    // and disk; a standby that never saw them hashed finishes the job once
+    // promoted
+    @Test
+    void passwordMigrationReachesTheStandby() throws Exception {
+        List<User> plaintext = new ArrayList<>();
+        for (int u = 0; u < 30; u++) {
+            plaintext.add(new LibraryUser("u" + u, "user" + u, "secret" + u, "User " + u, u + "@example.com"));
+        }
+        LibraryConfig primaryConfig = config("primary");
+        new SnapshotStore(primaryConfig.getDataDirectory(), new ObjectMapper(), SnapshotFormat.JSON)
+                .write(Collections.emptyList(), plaintext, 0);
+        Library primary = new Library(primaryConfig);
+        ReplicationSource source = new ReplicationSource(primary, 0, 1000, 50);
+        source.start();
+        StandbyLibrary standby = new StandbyLibrary(config("standby"), "localhost", source.getPort());
+        Path replicaDirectory;
+        try {
+            standby.start();
+            await(() -> allHashed(primary) && standby.getLibrary() != null
+                    && standby.getAppliedPosition() == source.getPosition(), "the migration to reach the standby");
+            assertTrue(allHashed(standby.getLibrary()));
+            replicaDirectory = standby.getReplicaDirectory();
+        } finally {
+            standby.close();
+            source.close();
+            primary.close();
+        }
+        LibraryConfig replicaConfig = config("standby");
+        replicaConfig.setDataDirectory(replicaDirectory);
+        Library reopened = new Library(replicaConfig);
+        try {
+            assertTrue(allHashed(reopened));
+            assertTrue(reopened.authenticateUser("user7", "secret7"));
+        } finally {
+            reopened.close();
+        }
+
+        // Plaintext left behind by a primary that died mid-migration
+        LibraryConfig orphanConfig = config("orphan");
+        new SnapshotStore(orphanConfig.getDataDirectory(), new ObjectMapper(), SnapshotFormat.JSON)
+                .write(Collections.emptyList(), plaintext, 0);
+        orphanConfig.setStandby(true);
+        Library orphan = new Library(orphanConfig);
+        try {
+            assertTrue(orphan.authenticateUser("user3", "secret3"));
+            assertFalse(PasswordHasher.isHash(orphan.getUserByUsername("user3").getPassword()));
+            orphan.promote();
+            await(() -> allHashed(orphan), "the promoted library to hash the rest");
+        } finally {
+            orphan.close();
+        }
+    }
+
+    // A rename on the primary moves the user in the standby's username index
+    @Test
+    void renamesReachTheStandbyIndex() throws Exception {
+        Library primary = new Library(config("primary"));
+        for (int u = 0; u < 3; u++) {
+            primary.addUser(new LibraryUser("u" + u, "user" + u, "pw", "User " + u, u + "@example.com"));
+        }
+        ReplicationSource source = new ReplicationSource(primary, 0, 1000, 50);
+        source.start();
+        StandbyLibrary standby = new StandbyLibrary(config("standby"), "localhost", source.getPort());
+        try {
+            standby.start();
+            await(() -> standby.getLibrary() != null && standby.getAppliedPosition() == source.getPosition(),
+                    "the standby to catch up");
+
+            assertTrue(primary.changeUsername("u1", "renamed"));
+            await(() -> standby.getAppliedPosition() == source.getPosition(), "the rename to reach the standby");
+            Library replica = standby.getLibrary();
+            assertNull(replica.getUserByUsername("user1"));
+            assertEquals("u1", replica.getUserByUsername("renamed").getUserId());
+            assertTrue(replica.authenticateUser("renamed", "pw"));
+        } finally {
+            standby.close();
+            source.close();
+            primary.close();
+        }
+    }
+
+    // The primary runs in its own JVM behind HTTP; it is killed outright and
+    // the standby in this JVM takes over with everything it had acknowledged
+    @Test
+    void standbyInAnotherProcessTakesOverWhenThePrimaryDies() throws Exception {
+        Path primaryDirectory = Files.createDirectories(directory.resolve("primary"));
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        Process process = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                "com.library.management.Main", "primary", "0", "0", primaryDirectory.toString())
+                .redirectErrorStream(true)
+                .start();
+        StandbyLibrary standby = null;
+        Library promoted = null;
+        try {
+            BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            int replicationPort = -1;
+            int httpPort = -1;
+            while (replicationPort < 0 || httpPort < 0) {
+                String line = output.readLine();
+                assertNotNull(line, "primary exited early");
+                Matcher matcher = PORT.matcher(line);
+                if (matcher.find()) {
+                    if (matcher.group(1).equals("Replication")) {
+                        replicationPort = Integer.parseInt(matcher.group(2));
+                    } else {
+                        httpPort = Integer.parseInt(matcher.group(2));
+                    }
+                }
+            }
+            Thread drain = new Thread(() -> output.lines().forEach(line -> { }));
+            drain.setDaemon(true);
+            drain.start();
+
+            StandbyLibrary follower = new StandbyLibrary(config("standby"), "localhost", replicationPort);
+            standby = follower;
+            follower.start();
+
+            String base = "http://localhost:" + httpPort;
+            String admin = login(base, "admin", "admin123");
+            for (int b = 0; b < 10; b++) {
+                assertEquals(201, send(base, "POST", "/admin/books", admin, "{\"isbn\":\"isbn-" + b
+                        + "\",\"title\":\"Title " + b + "\",\"author\":\"Author\",\"genre\":\"Fiction\",\"year\":2020,\"totalCopies\":1}").status);
+            }
+            List<String> tokens = new ArrayList<>();
+            for (int u = 0; u < 3; u++) {
+                assertEquals(201, send(base, "POST", "/register", null, "{\"username\":\"reader" + u
+                        + "\",\"password\":\"pw\",\"name\":\"Reader\",\"email\":\"r@example.com\"}").status);
+                tokens.add(login(base, "reader" + u, "pw"));
+            }
+            for (int b = 0; b < 10; b++) {
+                assertEquals(200, send(base, "POST", "/loans", tokens.get(b % 3), "{\"isbn\":\"isbn-" + b + "\"}").status);
+            }
+            assertEquals(200, send(base, "DELETE", "/loans/isbn-0", tokens.get(0), null).status);
+            assertEquals(200, send(base, "POST", "/renewals", tokens.get(1), "{\"isbn\":\"isbn-1\"}").status);
+            assertEquals(1, send(base, "POST", "/reservations", tokens.get(0), "{\"isbn\":\"isbn-2\"}").body.get("position").asInt());
+
+            await(() -> follower.getLibrary() != null && follower.getLagEntries() == 0
+                    && follower.getLibrary().getReservationPosition(
+                            follower.getLibrary().getUserByUsername("reader0").getUserId(), "isbn-2") == 1,
+                    "the standby to apply the primary's changes");
+            assertTrue(follower.isConnected());
+            long applied = follower.getAppliedPosition();
+
+            process.destroyForcibly();
+            assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+            await(() -> !follower.isConnected(), "the standby to notice the primary is gone");
+
+            promoted = follower.promote();
+            assertEquals(applied, follower.getAppliedPosition());
+            String reader0 = promoted.getUserByUsername("reader0").getUserId();
+            String reader1 = promoted.getUserByUsername("reader1").getUserId();
+            assertEquals(9, promoted.getCopiesOnLoan());
+            assertEquals(1, promoted.findBookByIsbn("isbn-0").getAvailableCopies());
+            assertEquals(1, promoted.getLoans(reader1).get(0).getRenewals());
+            assertEquals(1, promoted.getReservationPosition(reader0, "isbn-2"));
+            assertTrue(promoted.authenticateUser("reader1", "pw"));
+            assertTrue(promoted.authenticateUser("admin", "admin123"));
+            // Serving straight away, with indexes warm
+            assertEquals(10, promoted.findBooksByAuthor("Author").size());
+            assertTrue(promoted.borrowBook(reader0, "isbn-0"));
+        } finally {
+            process.destroyForcibly();
+            if (standby != null) {
+                standby.close();
+            }
+            if (promoted != null) {
+                promoted.close();
+            }
+        }
+    }
+
+    private static final class Reply {
+        final int status;
+        final JsonNode body;
+
+        Reply(int status, JsonNode body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private Reply send(String base, String method, String path, String token, String body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(base + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        return new Reply(response.statusCode(), objectMapper.readTree(response.body()));
+    }
+
+    private String login(String base, String username, String password) throws Exception {
+        Reply reply = send(base, "POST", "/login", null, "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}");
+        assertEquals(200, reply.status);
+        return reply.body.get("token").asText();
+    }
+}
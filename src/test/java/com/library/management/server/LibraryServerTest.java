@@ -0,0 +1,167 @@
+package com.library.management.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.management.Library;
+import com.library.management.LibraryConfig;
+import com.library.management.models.Admin;
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+
+class LibraryServerTest {
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Library library;
+    private LibraryServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(directory);
+        config.setJmxEnabled(false);
+        config.setPasswordHashIterations(1000);
+        config.setHttpPort(0);
+        config.setHttpThreads(4);
+        library = new Library(config);
+        library.addUser(new Admin("admin1", "admin", "admin123", "Admin", "admin@example.com"));
+        library.addUser(new LibraryUser("id-1", "reader", "secret", "Reader", "reader@example.com"));
+        for (int i = 0; i < 5; i++) {
+            library.addBook(new Book("isbn-" + i, "River " + i, "Author " + i, "Fiction", 2000 + i, 1));
+        }
+        server = new LibraryServer(library, config);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        library.close();
+    }
+
+    private static final class Reply {
+        final int status;
+        final JsonNode body;
+
+        Reply(int status, JsonNode body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private Reply send(String method, String path, String token, String body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        return new Reply(response.statusCode(), objectMapper.readTree(response.body()));
+    }
+
+    private String login(String username, String password) throws Exception {
+        Reply reply = send("POST", "/login", null, "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}");
+        assertEquals(200, reply.status);
+        return reply.body.get("token").asText();
+    }
+
+    @Test
+    void patronBorrowsAndReturnsWithASessionToken() throws Exception {
+        assertEquals(401, send("POST", "/login", null, "{\"username\":\"reader\",\"password\":\"wrong\"}").status);
+        assertEquals(401, send("GET", "/loans", null, null).status);
+        assertEquals(401, send("GET", "/loans", "not-a-token", null).status);
+
+        String token = login("reader", "secret");
+        assertEquals(0, send("GET", "/loans", token, null).body.size());
+        assertEquals(200, send("POST", "/loans", token, "{\"isbn\":\"isbn-1\"}").status);
+        Reply loans = send("GET", "/loans", token, null);
+        assertEquals(1, loans.body.size());
+        assertEquals("isbn-1", loans.body.get(0).get("isbn").asText());
+        assertEquals(0, send("GET", "/books/isbn-1", null, null).body.get("availableCopies").asInt());
+
+        // The only copy is out, so a second patron has to queue for it
+        assertEquals(201, send("POST", "/register", null,
+                "{\"username\":\"second\",\"password\":\"pw\",\"name\":\"Second\",\"email\":\"s@example.com\"}").status);
+        String second = login("second", "pw");
+        assertEquals(409, send("POST", "/loans", second, "{\"isbn\":\"isbn-1\"}").status);
+        assertEquals(1, send("POST", "/reservations", second, "{\"isbn\":\"isbn-1\"}").body.get("position").asInt());
+
+        assertEquals(200, send("DELETE", "/loans/isbn-1", token, null).status);
+        assertEquals(409, send("DELETE", "/loans/isbn-1", token, null).status);
+        assertEquals(200, send("POST", "/loans", second, "{\"isbn\":\"isbn-1\"}").status);
+
+        assertEquals(200, send("POST", "/logout", token, null).status);
+        assertEquals(401, send("GET", "/loans", token, null).status);
+    }
+
+    @Test
+    void adminEndpointsNeedAnAdminSession() throws Exception {
+        String patron = login("reader", "secret");
+        assertEquals(403, send("GET", "/admin/stats", patron, null).status);
+        assertEquals(403, send("POST", "/admin/books", patron, "{\"isbn\":\"x\",\"title\":\"X\"}").status);
+
+        String admin = login("admin", "admin123");
+        assertEquals(201, send("POST", "/admin/books", admin,
+                "{\"isbn\":\"isbn-9\",\"title\":\"Delta\",\"author\":\"A\",\"genre\":\"Poetry\",\"year\":1999,\"totalCopies\":2}").status);
+        assertEquals(409, send("POST", "/admin/books", admin, "{\"isbn\":\"isbn-9\",\"title\":\"Delta\"}").status);
+        // Copy counts, borrows and holds start fresh whatever the body says
+        Reply added = send("POST", "/admin/books", admin, "{\"isbn\":\"isbn-8\",\"title\":\"Echo\",\"totalCopies\":1,"
+                + "\"availableCopies\":5,\"timesBorrowed\":7,\"reservations\":{\"queue\":[\"ghost\"]}}");
+        assertEquals(201, added.status);
+        assertEquals(1, added.body.get("availableCopies").asInt());
+        Book echo = library.findBookByIsbn("isbn-8");
+        assertEquals(0, echo.getTimesBorrowed());
+        assertNull(echo.getReservations());
+        assertEquals(400, send("POST", "/admin/books", admin, "{\"isbn\":\"isbn-7\",\"title\":\"Foxtrot\",\"totalCopies\":-1}").status);
+        assertEquals(400, send("POST", "/admin/books", admin, "{\"isbn\":\"isbn-7\",\"title\":\"Foxtrot\",\"year\":\"old\"}").status);
+        assertEquals(200, send("DELETE", "/admin/books/isbn-8", admin, null).status);
+        assertEquals(6, send("GET", "/admin/stats", admin, null).body.get("books").asInt());
+        assertEquals(200, send("DELETE", "/admin/books/isbn-9", admin, null).status);
+        assertEquals(404, send("GET", "/books/isbn-9", null, null).status);
+        assertEquals(404, send("DELETE", "/admin/books/isbn-9", admin, null).status);
+        // A book with a copy out stays in the catalog
+        assertEquals(200, send("POST", "/loans", patron, "{\"isbn\":\"isbn-0\"}").status);
+        assertEquals(409, send("DELETE", "/admin/books/isbn-0", admin, null).status);
+        // Users are listed without their password hashes
+        JsonNode users = send("GET", "/admin/users", admin, null).body;
+        assertEquals(2, users.size());
+        assertNull(users.get(0).get("password"));
+    }
+
+    @Test
+    void searchesAreLimitedAndBadRequestsRefused() throws Exception {
+        assertEquals(5, send("GET", "/books?title=river", null, null).body.size());
+        assertEquals(2, send("GET", "/books?title=river&limit=2", null, null).body.size());
+        JsonNode ranged = send("GET", "/books?genre=fiction&from=2002&to=2003", null, null).body;
+        assertEquals(2, ranged.size());
+        assertEquals("River 2", ranged.get(0).get("title").asText());
+
+        assertEquals(400, send("GET", "/books?title=river&limit=0", null, null).status);
+        assertEquals(400, send("GET", "/books?title=river&limit=-5", null, null).status);
+        assertEquals(400, send("GET", "/books?limit=many", null, null).status);
+        assertEquals(400, send("POST", "/login", null, "{not json").status);
+        assertEquals(400, send("POST", "/login", null, "{\"username\":\"reader\"}").status);
+        assertEquals(404, send("GET", "/nowhere", null, null).status);
+        // Bodies are capped before they are buffered, login or not
+        String padding = "x".repeat(100_000);
+        assertEquals(413, send("POST", "/login", null, "{\"username\":\"" + padding + "\",\"password\":\"pw\"}").status);
+        assertEquals(401, send("POST", "/login", null, "{\"username\":\"" + padding.substring(0, 1000) + "\",\"password\":\"pw\"}").status);
+    }
+}
@@ -0,0 +1,253 @@
+package com.library.management.shard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.library.management.Library;
+import com.library.management.LibraryApi;
+import com.library.management.LibraryConfig;
+import com.library.management.index.SortedCatalog;
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.models.User;
+import com.library.management.persistence.Durability;
+import com.library.management.query.BookQuery;
+import com.library.management.server.ShardServer;
+
+class ShardedLibraryTest {
+    private static final int SHARDS = 3;
+
+    @TempDir
+    Path directory;
+
+    private LibraryConfig config(Path dataDirectory) throws IOException {
+        Files.createDirectories(dataDirectory);
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(dataDirectory);
+        config.setJmxEnabled(false);
+        config.setPasswordHashIterations(1000);
+        // Thousands of sequential mutations; none of the checks needs each one fsynced
+        config.setDurability(Durability.FIRE_AND_FORGET);
+        return config;
+    }
+
+    private ShardedLibrary openSharded() throws IOException {
+        return ShardedLibrary.open(config(directory.resolve("sharded")), SHARDS);
+    }
+
+    private static void seed(LibraryApi library) {
+        for (int i = 0; i < 60; i++) {
+            library.addBook(new Book("isbn-" + i, "Title " + i % 17, "Author " + i % 7, "Genre " + i % 4,
+                    1990 + i % 25, 1 + i % 2));
+        }
+        for (int i = 0; i < 12; i++) {
+            library.addUser(new LibraryUser("id-" + i, "user" + i, "secret" + i, "User " + i, "user" + i + "@example.com"));
+        }
+    }
+
+    private static Set<String> isbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private static List<String> ordered(List<Book> books) {
+        return books.stream().map(Book::getIsbn).collect(Collectors.toList());
+    }
+
+    // Every outcome, loan list and merged result must be what one library gives
+    private static long copiesOnLoan(Book book) {
+        return book.getTotalCopies() - book.getAvailableCopies() - book.getHeldCopies();
+    }
+
+    private static void assertSameState(Library single, LibraryApi sharded) {
+        assertEquals(single.getBookCount(), sharded.getBookCount());
+        assertEquals(single.getUserCount(), sharded.getUserCount());
+        assertEquals(single.getCopiesOnLoan(), sharded.getCopiesOnLoan());
+        assertEquals(single.getBorrowsByGenre(), sharded.getBorrowsByGenre());
+        // Leaders may differ between ties, so their scores are compared
+        assertEquals(copiesOnLoan(single.getMostBorrowedBook()), copiesOnLoan(sharded.getMostBorrowedBook()));
+        Map<String, Long> borrowCounts = single.getBorrowCountsByUser();
+        assertEquals(borrowCounts, sharded.getBorrowCountsByUser());
+        assertEquals(borrowCounts.get(single.getMostActiveUser().getUserId()),
+                borrowCounts.get(sharded.getMostActiveUser().getUserId()));
+        for (int i = 0; i < 12; i++) {
+            assertEquals(isbns(single.getBorrowedBooks("id-" + i)), isbns(sharded.getBorrowedBooks("id-" + i)));
+        }
+        for (SortedCatalog.Order order : SortedCatalog.Order.values()) {
+            String sortBy = order.name().toLowerCase();
+            assertEquals(ordered(single.getSortedBooks(sortBy)), ordered(sharded.getSortedBooks(sortBy)));
+            Book after = single.getSortedBooks(sortBy).get(20);
+            assertEquals(ordered(single.getSortedBooks(sortBy, after, 7)), ordered(sharded.getSortedBooks(sortBy, after, 7)));
+        }
+        BookQuery query = new BookQuery().genre("genre 1").availableOnly().orderBy(SortedCatalog.Order.YEAR).limit(5);
+        assertEquals(ordered(single.findBooks(query)), ordered(sharded.findBooks(query)));
+        assertEquals(isbns(single.findBooksByTitle("title 3")), isbns(sharded.findBooksByTitle("title 3")));
+    }
+
+    @Test
+    void shardedLibraryBehavesLikeOneLibrary() throws IOException {
+        Library single = new Library(config(directory.resolve("single")));
+        ShardedLibrary sharded = openSharded();
+        try {
+            seed(single);
+            seed(sharded);
+            Random random = new Random(17);
+            for (int i = 0; i < 3000; i++) {
+                String userId = "id-" + random.nextInt(12);
+                String isbn = "isbn-" + random.nextInt(60);
+                switch (random.nextInt(4)) {
+                    case 0:
+                    case 1:
+                        assertEquals(single.borrowBook(userId, isbn), sharded.borrowBook(userId, isbn), userId + " " + isbn);
+                        break;
+                    case 2:
+                        assertEquals(single.returnBook(userId, isbn), sharded.returnBook(userId, isbn), userId + " " + isbn);
+                        break;
+                    default:
+                        assertEquals(single.reserveBook(userId, isbn), sharded.reserveBook(userId, isbn), userId + " " + isbn);
+                        assertEquals(single.getReservationPosition(userId, isbn), sharded.getReservationPosition(userId, isbn));
+                        break;
+                }
+            }
+            assertSameState(single, sharded);
+        } finally {
+            sharded.close();
+        }
+
+        ShardedLibrary reopened = openSharded();
+        try {
+            assertSameState(single, reopened);
+        } finally {
+            reopened.close();
+            single.close();
+        }
+    }
+
+    // Loans on several shards count against one limit, read from the home account
+    @Test
+    void loanLimitSpansShardsAndRecordsCarryNoCredential() throws IOException {
+        ShardedLibrary library = openSharded();
+        try {
+            seed(library);
+            LibraryUser account = (LibraryUser) library.findUser("id-1");
+            int limit = account.getMaxBooksAllowed();
+            int borrowed = 0;
+            for (int i = 0; borrowed < limit; i++) {
+                if (library.borrowBook("id-1", "isbn-" + i)) {
+                    borrowed++;
+                }
+            }
+            assertEquals(limit, library.getBorrowedBooks("id-1").size());
+            assertFalse(library.borrowBook("id-1", "isbn-59"));
+
+            assertTrue(library.authenticateUser("user1", "secret1"));
+            assertFalse(library.authenticateUser("user1", "secret2"));
+            assertEquals("id-1", library.getUserByUsername("user1").getUserId());
+            assertEquals(12, library.getUserCount());
+            // The username is taken even though other shards hold records under it
+            assertFalse(library.addUser(new LibraryUser("other", "user1", "pw", "Other", "o@example.com")));
+        } finally {
+            library.close();
+        }
+
+        // Only the home shard holds a password for the user
+        int accounts = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            Library shard = new Library(config(directory.resolve("sharded").resolve("shard-" + i)));
+            try {
+                User user = shard.findUser("id-1");
+                if (user != null && user.getPassword() != null) {
+                    accounts++;
+                } else if (user != null) {
+                    assertFalse(shard.authenticateUser("user1", "secret1"));
+                    assertFalse(((LibraryUser) user).getLoans().isEmpty());
+                }
+            } finally {
+                shard.close();
+            }
+        }
+        assertEquals(1, accounts);
+    }
+
+    @Test
+    void shardCountOfADirectoryIsFixed() throws IOException {
+        openSharded().close();
+        assertThrows(IllegalStateException.class,
+                () -> ShardedLibrary.open(config(directory.resolve("sharded")), SHARDS + 1));
+        ShardedLibrary reopened = openSharded();
+        try {
+            assertNull(reopened.findBookByIsbn("isbn-0"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    // Shard calls hand out password hashes and change data, so shards listen
+    // on loopback by default, need a secret anywhere else and refuse calls
+    // that do not carry theirs
+    @Test
+    void remoteShardsAnswerOnlyCallsWithTheirSecret() throws Exception {
+        List<Library> libraries = new ArrayList<>();
+        List<ShardServer> servers = new ArrayList<>();
+        List<LibraryApi> remotes = new ArrayList<>();
+        try {
+            Library open = new Library(config(directory.resolve("open")));
+            libraries.add(open);
+            assertThrows(IllegalArgumentException.class,
+                    () -> new ShardServer(open, InetAddress.getByName("0.0.0.0"), 0, 2, null));
+            for (int i = 0; i < SHARDS; i++) {
+                Library library = new Library(config(directory.resolve("remote-" + i)));
+                libraries.add(library);
+                ShardServer server = new ShardServer(library, InetAddress.getLoopbackAddress(), 0, 2, "shard secret");
+                servers.add(server);
+                server.start();
+                assertTrue(server.getAddress().isLoopbackAddress());
+                remotes.add(RemoteLibrary.connect("http://localhost:" + server.getPort(), "shard secret"));
+            }
+            ShardedLibrary router = new ShardedLibrary(remotes);
+            seed(router);
+            assertEquals("Title 5", router.findBookByIsbn("isbn-5").getTitle());
+            assertTrue(router.authenticateUser("user3", "secret3"));
+
+            String url = "http://localhost:" + servers.get(0).getPort();
+            IllegalStateException refused = assertThrows(IllegalStateException.class,
+                    () -> RemoteLibrary.connect(url, "guess").getAllUsers());
+            assertTrue(refused.getMessage().contains("Wrong shard secret"), refused.getMessage());
+            assertThrows(IllegalStateException.class, () -> RemoteLibrary.connect(url).getAllUsers());
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create(url + "/rpc/getAllUsers"))
+                            .POST(HttpRequest.BodyPublishers.ofString("[]")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(401, response.statusCode());
+            assertFalse(response.body().contains("user"), response.body());
+        } finally {
+            for (ShardServer server : servers) {
+                server.stop(0);
+            }
+            for (Library library : libraries) {
+                library.close();
+            }
+        }
+    }
+}
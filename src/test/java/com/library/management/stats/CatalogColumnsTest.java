@@ -0,0 +1,172 @@
+package com.library.management.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.ToIntFunction;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.library.management.Library;
+import com.library.management.LibraryConfig;
+import com.library.management.index.NGramIndex;
+import com.library.management.models.Book;
+import com.library.management.models.LibraryUser;
+import com.library.management.persistence.Durability;
+
+class CatalogColumnsTest {
+    private static final String[] GENRES = {"Fiction", "fiction", "History", "Poetry", null};
+
+    @TempDir
+    Path directory;
+
+    private final CatalogColumns columns = new CatalogColumns();
+    private final List<Book> books = new ArrayList<>();
+
+    private void add(Book book) {
+        books.add(book);
+        columns.add(book);
+        book.setChangeListener(columns::update);
+    }
+
+    private void remove(Book book) {
+        books.remove(book);
+        book.setChangeListener(null);
+        columns.remove(book);
+    }
+
+    // The same aggregations done over the Book objects
+    private static Map<Integer, Long> byYear(List<Book> books, ToIntFunction<Book> value) {
+        Map<Integer, Long> totals = new TreeMap<>();
+        for (Book book : books) {
+            totals.merge(book.getYear(), (long) value.applyAsInt(book), Long::sum);
+        }
+        return totals;
+    }
+
+    private static Map<String, Long> byGenre(List<Book> books, ToIntFunction<Book> value) {
+        Map<String, Long> totals = new TreeMap<>();
+        for (Book book : books) {
+            long total = value.applyAsInt(book);
+            if (total != 0) {
+                totals.merge(NGramIndex.normalize(book.getGenre()), total, Long::sum);
+            }
+        }
+        totals.values().removeIf(total -> total == 0);
+        return totals;
+    }
+
+    private void assertMatchesObjects() {
+        assertEquals(books.size(), columns.size());
+        assertEquals(byYear(books, book -> 1), columns.countByYear());
+        assertEquals(byYear(books, Book::getTimesBorrowed), columns.borrowsByYear());
+        assertEquals(byGenre(books, Book::getTotalCopies), columns.copiesByGenre());
+        assertEquals(byGenre(books, book -> book.getTotalCopies() - book.getAvailableCopies()),
+                columns.onLoanByGenre());
+        assertEquals(books.stream().mapToLong(Book::getTimesBorrowed).sum(), columns.totalTimesBorrowed());
+    }
+
+    // Removal packs rows by moving the last one, which must keep every column aligned
+    @Test
+    void aggregatesMatchAScanOfTheBooksThroughEdits() {
+        Random random = new Random(3);
+        for (int i = 0; i < 2_000; i++) {
+            add(new Book("isbn-" + i, "Title " + i, "Author " + random.nextInt(50),
+                    GENRES[random.nextInt(GENRES.length)], 1990 + random.nextInt(30), 1 + random.nextInt(4)));
+        }
+        assertMatchesObjects();
+
+        for (int i = 0; i < 3_000; i++) {
+            Book book = books.get(random.nextInt(books.size()));
+            switch (random.nextInt(6)) {
+                case 0:
+                    book.setYear(1990 + random.nextInt(30));
+                    break;
+                case 1:
+                    book.setGenre(GENRES[random.nextInt(GENRES.length)]);
+                    break;
+                case 2:
+                    if (book.borrow()) {
+                        columns.refresh(book);
+                    }
+                    break;
+                case 3:
+                    if (book.returnBook()) {
+                        columns.refresh(book);
+                    }
+                    break;
+                case 4:
+                    remove(book);
+                    break;
+                default:
+                    add(new Book("new-" + i, "New " + i, "Author", GENRES[random.nextInt(GENRES.length)],
+                            1990 + random.nextInt(30), 2));
+                    break;
+            }
+        }
+        assertMatchesObjects();
+    }
+
+    // The maintained column store and the one built per call must agree
+    // after circulation and a reload
+    @Test
+    void libraryBreakdownsMatchWithAndWithoutTheColumnStore() {
+        Library plain = open(false);
+        try {
+            for (int i = 0; i < 200; i++) {
+                plain.addBook(new Book("isbn-" + i, "Title " + i, "Author", GENRES[i % GENRES.length], 2000 + i % 7,
+                        2));
+            }
+            for (int i = 0; i < 20; i++) {
+                plain.addUser(new LibraryUser("id-" + i, "user" + i, "secret", "User " + i, "user" + i + "@example.com"));
+            }
+            for (int i = 0; i < 60; i++) {
+                plain.borrowBook("id-" + i % 20, "isbn-" + i * 3);
+            }
+            for (int i = 0; i < 30; i++) {
+                plain.returnBook("id-" + i % 20, "isbn-" + i * 3);
+            }
+            plain.findBookByIsbn("isbn-1").setGenre("History");
+            plain.removeBook("isbn-2");
+        } finally {
+            plain.close();
+        }
+
+        Library withoutColumns = open(false);
+        Map<String, Long> onLoan;
+        Map<Integer, Long> borrowsByYear;
+        try {
+            onLoan = withoutColumns.getCopiesOnLoanByGenre();
+            borrowsByYear = withoutColumns.getBorrowsByYear();
+            assertEquals(199, withoutColumns.getBooksByYear().values().stream().mapToLong(Long::longValue).sum());
+        } finally {
+            withoutColumns.close();
+        }
+        Library columnar = open(true);
+        try {
+            assertEquals(onLoan, columnar.getCopiesOnLoanByGenre());
+            assertEquals(borrowsByYear, columnar.getBorrowsByYear());
+            assertEquals(30L, onLoan.values().stream().mapToLong(Long::longValue).sum());
+
+            columnar.borrowBook("id-0", "isbn-100");
+            assertEquals(31L, columnar.getCopiesOnLoanByGenre().values().stream().mapToLong(Long::longValue).sum());
+        } finally {
+            columnar.close();
+        }
+    }
+
+    private Library open(boolean columnar) {
+        LibraryConfig config = new LibraryConfig();
+        config.setDataDirectory(directory);
+        config.setDurability(Durability.FIRE_AND_FORGET);
+        config.setJmxEnabled(false);
+        config.setColumnarCatalog(columnar);
+        return new Library(config);
+    }
+}
@@ -0,0 +1,81 @@
+package com.library.management.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class IndexedMaxHeapTest {
+    private static long max(Map<String, Long> priorities) {
+        long max = Long.MIN_VALUE;
+        for (long priority : priorities.values()) {
+            max = Math.max(max, priority);
+        }
+        return max;
+    }
+
+    // Random sets, raises, lowers and removals, checked after each against a
+    // plain map scanned for its maximum
+    @Test
+    void peekMatchesABruteForceMaximum() {
+        IndexedMaxHeap<String> heap = new IndexedMaxHeap<>();
+        Map<String, Long> expected = new HashMap<>();
+        Random random = new Random(8);
+        for (int i = 0; i < 50_000; i++) {
+            String key = "k" + random.nextInt(300);
+            if (random.nextInt(4) == 0) {
+                heap.remove(key);
+                expected.remove(key);
+            } else {
+                long priority = random.nextInt(1000) - 100;
+                heap.set(key, priority);
+                expected.put(key, priority);
+            }
+            assertEquals(expected.size(), heap.size());
+            if (expected.isEmpty()) {
+                assertNull(heap.peek());
+            } else {
+                assertEquals(max(expected), (long) expected.get(heap.peek()));
+            }
+            String probe = "k" + random.nextInt(300);
+            assertEquals(expected.getOrDefault(probe, 0L), heap.priorityOf(probe));
+        }
+
+        Map<String, Long> visited = new HashMap<>();
+        heap.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    void removalsAndClearLeaveNoStaleKeys() {
+        IndexedMaxHeap<String> heap = new IndexedMaxHeap<>();
+        for (int i = 0; i < 100; i++) {
+            heap.set("k" + i, i);
+        }
+        assertEquals("k99", heap.peek());
+        heap.remove("k99");
+        heap.remove("k99");
+        heap.remove("missing");
+        assertEquals("k98", heap.peek());
+        assertEquals(99, heap.size());
+        assertEquals(0, heap.priorityOf("k99"));
+
+        // Lowering the top lets the next one up
+        heap.set("k98", -1);
+        assertEquals("k97", heap.peek());
+        heap.set("k0", 500);
+        assertEquals("k0", heap.peek());
+
+        heap.clear();
+        assertEquals(0, heap.size());
+        assertNull(heap.peek());
+        assertEquals(0, heap.priorityOf("k0"));
+        heap.set("again", 1);
+        assertEquals("again", heap.peek());
+        assertEquals(1, heap.size());
+    }
+}